@@ -0,0 +1,47 @@
+package com.amazonaws.kinesisvideo.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * PutMedia responses as they come off the wire, shared by the ack parsing benchmarks
+ */
+public final class AckResponses {
+    private static final String RESPONSE_HEADERS = "HTTP/1.1 200 OK\r\n"
+            + "x-amzn-RequestId: d8d4a7ba-4d0e-11e8-9c2d-fa7ae01bbebc\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Transfer-Encoding: chunked\r\n"
+            + "Date: Mon, 30 Apr 2018 17:03:34 GMT\r\n"
+            + "\r\n";
+    private static final String ACK_FORMAT = "{\"EventType\":\"%s\",\"FragmentTimecode\":%d,"
+            + "\"FragmentNumber\":\"9134385233318143239268206262222076519190758%04d\"}";
+    private static final String[] EVENT_TYPES = {"BUFFERING", "RECEIVED", "PERSISTED"};
+    private static final long START_TIMECODE = 1525107814000L;
+    private static final long FRAGMENT_DURATION_IN_MILLIS = 2000L;
+
+    private AckResponses() { }
+
+    /**
+     * Status line and headers of a PutMedia response
+     */
+    public static byte[] headers() {
+        return RESPONSE_HEADERS.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Chunked PutMedia response carrying the BUFFERING, RECEIVED and PERSISTED acks of the fragments
+     */
+    public static byte[] chunkedResponse(final int fragmentCount) {
+        final StringBuilder builder = new StringBuilder(RESPONSE_HEADERS);
+        for (int fragment = 0; fragment < fragmentCount; fragment++) {
+            for (final String eventType : EVENT_TYPES) {
+                final String ack = String.format(Locale.US, ACK_FORMAT, eventType,
+                        START_TIMECODE + fragment * FRAGMENT_DURATION_IN_MILLIS, fragment);
+                builder.append(Integer.toHexString(ack.length())).append("\r\n").append(ack).append("\r\n");
+            }
+        }
+
+        builder.append("0\r\n\r\n");
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
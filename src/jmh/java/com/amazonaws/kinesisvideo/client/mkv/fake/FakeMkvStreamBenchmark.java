@@ -0,0 +1,87 @@
+package com.amazonaws.kinesisvideo.client.mkv.fake;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the endless raw and generated fake MKV streams which feed the PutMedia load tests. Every operation reads
+ * one megabyte.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FakeMkvStreamBenchmark {
+    private static final int HEADER_SIZE = 300;
+    private static final int BYTES_PER_OPERATION = 1024 * 1024;
+    private static final int GENERATED_FPS = 30;
+
+    @Param({"25600", "262144"})
+    public int clusterSize;
+
+    @Param({"4096", "65536"})
+    public int readSize;
+
+    private InputStream mStream;
+    private InputStream mGeneratedStream;
+    private byte[] mBuffer;
+
+    @Setup
+    public void setup() throws IOException {
+        mStream = FakeMkvStream.asInputStream(HEADER_SIZE, clusterSize);
+        // Clusters of about the same size, 30 frames each
+        mGeneratedStream = FakeMkvGenerator.builder()
+                .bitRateKbps(clusterSize * Byte.SIZE / 1024)
+                .fps(GENERATED_FPS)
+                .gopFrames(GENERATED_FPS)
+                .build()
+                .openStream();
+        mBuffer = new byte[readSize];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mStream.close();
+        mGeneratedStream.close();
+    }
+
+    @Benchmark
+    public int readMegabyte() throws IOException {
+        return readMegabyte(mStream);
+    }
+
+    @Benchmark
+    public int readGeneratedMegabyte() throws IOException {
+        return readMegabyte(mGeneratedStream);
+    }
+
+    private int readMegabyte(final InputStream stream) throws IOException {
+        int total = 0;
+        while (total < BYTES_PER_OPERATION) {
+            final int bytesRead = stream.read(mBuffer, 0, mBuffer.length);
+            if (bytesRead < 0) {
+                throw new IOException("Fake MKV stream ended");
+            }
+
+            total += bytesRead;
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,68 @@
+package com.amazonaws.kinesisvideo.client.signing;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.kinesisvideo.config.ClientConfiguration;
+import com.amazonaws.kinesisvideo.http.HttpMethodName;
+import com.amazonaws.kinesisvideo.http.ParallelSimpleHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SigV4 signing of a PutMedia request, done for every PutMedia session
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KinesisVideoAWS4SignerBenchmark {
+    private static final URI PUT_MEDIA_URI =
+            URI.create("https://s-1a2b3c4d.kinesisvideo.us-west-2.amazonaws.com/putMedia");
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String DATE_HEADER = "X-Amz-Date";
+
+    private KinesisVideoAWS4Signer mSigner;
+    private ParallelSimpleHttpClient mHttpClient;
+
+    @Setup
+    public void setup() {
+        mSigner = new KinesisVideoAWS4Signer(
+                new AWSStaticCredentialsProvider(new BasicAWSCredentials("AKIDEXAMPLE", "wJalrXUtnFEMI/K7MDENG")),
+                ClientConfiguration.builder()
+                        .region("us-west-2")
+                        .serviceName("kinesisvideo")
+                        .build());
+        mHttpClient = ParallelSimpleHttpClient.builder()
+                .uri(PUT_MEDIA_URI)
+                .method(HttpMethodName.POST)
+                .header("x-amzn-stream-name", "my-stream")
+                .header("x-amzn-fragment-timecode-type", "ABSOLUTE")
+                .header("x-amzn-producer-start-timestamp", "1525107814.000")
+                .header("Transfer-Encoding", "chunked")
+                .header("Connection", "keep-alive")
+                .build();
+    }
+
+    @Benchmark
+    public Map<String, String> sign() {
+        // Start from the unsigned headers of a new session
+        mHttpClient.getHeaders().remove(AUTHORIZATION_HEADER);
+        mHttpClient.getHeaders().remove(DATE_HEADER);
+        mSigner.sign(mHttpClient);
+        return mHttpClient.getHeaders();
+    }
+}
@@ -0,0 +1,74 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message formatting of the log calls made on the streaming threads. The output channel drops the messages so
+ * only the formatting is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LogBenchmark {
+    private static final String TEMPLATE = "Stream %s fragment %d acked after %d ms with %s";
+    private static final String STREAM_NAME = "my-stream";
+    private static final long FRAGMENT_TIMECODE = 1525107814000L;
+    private static final long LATENCY_IN_MILLIS = 153L;
+
+    private Log mLog;
+    private int mPrinted;
+    private final IOException mException = new IOException("Connection reset");
+
+    @Setup
+    public void setup() {
+        mLog = new Log(new OutputChannel() {
+            @Override
+            public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+                mPrinted += message.length();
+            }
+        });
+    }
+
+    @Benchmark
+    public int plainMessage() {
+        mLog.info("Starting ACK processing");
+        return mPrinted;
+    }
+
+    @Benchmark
+    public int template() {
+        mLog.info(TEMPLATE, STREAM_NAME, FRAGMENT_TIMECODE, LATENCY_IN_MILLIS, "PERSISTED");
+        return mPrinted;
+    }
+
+    /**
+     * A debug call below the log level, which ideally costs nothing
+     */
+    @Benchmark
+    public int filteredTemplate() {
+        mLog.debug(TEMPLATE, STREAM_NAME, FRAGMENT_TIMECODE, LATENCY_IN_MILLIS, "PERSISTED");
+        return mPrinted;
+    }
+
+    @Benchmark
+    public int exception() {
+        mLog.exception(mException, TEMPLATE, STREAM_NAME, FRAGMENT_TIMECODE, LATENCY_IN_MILLIS, "ERROR");
+        return mPrinted;
+    }
+}
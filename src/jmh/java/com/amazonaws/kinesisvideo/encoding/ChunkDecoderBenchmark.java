@@ -0,0 +1,83 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import com.amazonaws.kinesisvideo.benchmark.AckResponses;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.model.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response header and chunk parsing of the PutMedia responses
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ChunkDecoderBenchmark {
+    private static final int FRAGMENT_COUNT = 16;
+    private static final String WRAPPED_CHUNK_SIZE = "1f4\r\n";
+
+    private byte[] mHeaders;
+    private byte[] mAckResponse;
+    private byte[] mChunkSizeRing;
+    private int mChunkSizeTail;
+    private int mChunkSizeHead;
+    private int mAckCount;
+
+    private final Consumer<String> mAckCounter = new Consumer<String>() {
+        @Override
+        public void accept(final String ack) {
+            mAckCount += ack.length();
+        }
+    };
+
+    @Setup
+    public void setup() {
+        mHeaders = AckResponses.headers();
+        mAckResponse = AckResponses.chunkedResponse(FRAGMENT_COUNT);
+
+        // The chunk size wraps around the end of the ring buffer
+        final byte[] chunkSize = WRAPPED_CHUNK_SIZE.getBytes(StandardCharsets.US_ASCII);
+        mChunkSizeRing = new byte[64];
+        mChunkSizeTail = mChunkSizeRing.length - 2;
+        for (int i = 0; i < chunkSize.length; i++) {
+            mChunkSizeRing[(mChunkSizeTail + i) % mChunkSizeRing.length] = chunkSize[i];
+        }
+
+        mChunkSizeHead = (mChunkSizeTail + chunkSize.length - 2) % mChunkSizeRing.length;
+    }
+
+    @Benchmark
+    public Response parseStatusLineAndHeaders() {
+        return ChunkDecoder.parseStatusLineAndHeaders(new ByteArrayInputStream(mHeaders));
+    }
+
+    @Benchmark
+    public int parseChunkSize() {
+        return ChunkDecoder.parseChunkSize(mChunkSizeRing, mChunkSizeTail, mChunkSizeHead);
+    }
+
+    /**
+     * Decodes the 48 acks of 16 fragments
+     */
+    @Benchmark
+    public int decodeAckInResponseBody() {
+        mAckCount = 0;
+        ChunkDecoder.decodeAckInResponseBody(new ByteArrayInputStream(mAckResponse), mAckCounter);
+        return mAckCount;
+    }
+}
@@ -0,0 +1,51 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chunk encoding of the PutMedia payload, done for every buffer sent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ChunkEncoderBenchmark {
+    @Param({"1024", "16384", "262144"})
+    public int payloadSize;
+
+    private byte[] mPayload;
+    private byte[] mChunkBuffer;
+
+    @Setup
+    public void setup() {
+        mPayload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(mPayload);
+        mChunkBuffer = new byte[ChunkEncoder.MAX_CHUNK_HEADER_SIZE + payloadSize + ChunkEncoder.CHUNK_TRAILER_SIZE];
+        System.arraycopy(mPayload, 0, mChunkBuffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, payloadSize);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return ChunkEncoder.encode(mPayload, payloadSize);
+    }
+
+    @Benchmark
+    public int encodeInPlace() {
+        return ChunkEncoder.encodeInPlace(mChunkBuffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, payloadSize);
+    }
+}
@@ -0,0 +1,63 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame data hand-off to the native producer. Heap buffers are copied into a direct buffer on every call.
+ * <p>
+ * The frame is created in the benchmark as getData consumes a heap buffer; its cost is the same for both cases.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KinesisVideoFrameBenchmark {
+    private static final int FRAME_FLAG_KEY_FRAME = 1;
+    private static final long FRAME_DURATION = 333333L;
+
+    @Param({"4096", "65536", "1048576"})
+    public int frameSize;
+
+    private ByteBuffer mHeapData;
+    private ByteBuffer mDirectData;
+
+    @Setup
+    public void setup() {
+        final byte[] data = new byte[frameSize];
+        new Random(frameSize).nextBytes(data);
+        mHeapData = ByteBuffer.wrap(data);
+        mDirectData = ByteBuffer.allocateDirect(frameSize);
+        mDirectData.put(data);
+        mDirectData.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer heapFrame() {
+        return newFrame(mHeapData.duplicate()).getData();
+    }
+
+    @Benchmark
+    public ByteBuffer directFrame() {
+        return newFrame(mDirectData.duplicate()).getData();
+    }
+
+    private static KinesisVideoFrame newFrame(final ByteBuffer data) {
+        return new KinesisVideoFrame(0, FRAME_FLAG_KEY_FRAME, 0, 0, FRAME_DURATION, data);
+    }
+}
@@ -0,0 +1,79 @@
+package com.amazonaws.kinesisvideo.service;
+
+import com.amazonaws.kinesisvideo.benchmark.AckResponses;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoProducerStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Java side of the ack processing: reading the ack stream and handing the text to the stream.
+ * <p>
+ * The native ack parser is replaced by a proxy which only counts the calls, so this measures the reads,
+ * the string decoding and the logging done per read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AckConsumerBenchmark {
+    private static final int FRAGMENT_COUNT = 64;
+    private static final long UPLOAD_HANDLE = 1;
+
+    private byte[] mAckResponse;
+    private KinesisVideoProducerStream mStream;
+    private Log mLog;
+    private int mParsedAcks;
+    private int mPrinted;
+
+    @Setup
+    public void setup() {
+        mAckResponse = AckResponses.chunkedResponse(FRAGMENT_COUNT);
+        mStream = (KinesisVideoProducerStream) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {KinesisVideoProducerStream.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("parseFragmentAck".equals(method.getName())) {
+                            mParsedAcks += ((String) args[1]).length();
+                        }
+
+                        return null;
+                    }
+                });
+        mLog = new Log(new OutputChannel() {
+            @Override
+            public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+                mPrinted += message.length();
+            }
+        });
+    }
+
+    /**
+     * Consumes the response with the acks of 64 fragments
+     */
+    @Benchmark
+    public int consumeAcks() {
+        mParsedAcks = 0;
+        new AckConsumer(UPLOAD_HANDLE, mStream, mLog).accept(new ByteArrayInputStream(mAckResponse));
+        return mParsedAcks + mPrinted;
+    }
+}
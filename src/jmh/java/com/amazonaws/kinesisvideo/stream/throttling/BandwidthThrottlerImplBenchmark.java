@@ -0,0 +1,44 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bookkeeping cost of the throttler, which is consulted for every write of a throttled stream. The limit is high
+ * enough to never sleep.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BandwidthThrottlerImplBenchmark {
+    private static final long UNREACHABLE_BPS = Long.MAX_VALUE / 1024;
+
+    @Param({"1460", "16384"})
+    public int writeSize;
+
+    private BandwidthThrottlerImpl mThrottler;
+
+    @Setup
+    public void setup() {
+        mThrottler = new BandwidthThrottlerImpl(UNREACHABLE_BPS);
+    }
+
+    @Benchmark
+    public int getAllowedBytes() {
+        return mThrottler.getAllowedBytes(writeSize);
+    }
+}
@@ -0,0 +1,79 @@
+package com.amazonaws.kinesisvideo.demoapp;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.load.LoadHarness;
+import com.amazonaws.kinesisvideo.load.LoadProfile;
+import com.amazonaws.kinesisvideo.load.LoadSourceType;
+import com.amazonaws.kinesisvideo.service.local.LocalKinesisVideoServer;
+
+import java.io.File;
+
+/**
+ * Runs a load test of synthetic streams against an in-process local endpoint and writes the report.
+ *
+ * Usage: LoadHarnessDemo [source] [streams] [kbps] [fps] [gop frames] [seconds] [report file]
+ *
+ *      source is one of BYTES, SYNTHETIC, IMAGE_FILES and FAKE_MKV. All but FAKE_MKV need the producer JNI library.
+ *
+ *      LoadHarnessDemo BYTES 8 2048 30 60 120 target/load-report.txt
+ */
+public final class LoadHarnessDemo {
+    private static final String DEFAULT_SOURCE = "BYTES";
+    private static final int DEFAULT_STREAMS = 4;
+    private static final int DEFAULT_KBPS = 2048;
+    private static final int DEFAULT_FPS = 30;
+    private static final int DEFAULT_GOP_FRAMES = 60;
+    private static final long DEFAULT_DURATION_IN_SECONDS = 60;
+    private static final String DEFAULT_REPORT_FILE = "load-report.txt";
+
+    /* ack latencies of the local endpoint, roughly those of the service */
+    private static final long BUFFERING_ACK_LATENCY_IN_MILLIS = 20;
+    private static final long RECEIVED_ACK_LATENCY_IN_MILLIS = 50;
+    private static final long PERSISTED_ACK_LATENCY_IN_MILLIS = 400;
+
+    private LoadHarnessDemo() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final LoadSourceType source = LoadSourceType.valueOf(arg(args, 0, DEFAULT_SOURCE));
+        final LoadProfile profile = LoadProfile.builder(source)
+                .streamCount(Integer.parseInt(arg(args, 1, String.valueOf(DEFAULT_STREAMS))))
+                .bitRateKbps(Integer.parseInt(arg(args, 2, String.valueOf(DEFAULT_KBPS))))
+                .fps(Integer.parseInt(arg(args, 3, String.valueOf(DEFAULT_FPS))))
+                .gopFrames(Integer.parseInt(arg(args, 4, String.valueOf(DEFAULT_GOP_FRAMES))))
+                .build();
+        final long durationInSeconds = Long.parseLong(arg(args, 5, String.valueOf(DEFAULT_DURATION_IN_SECONDS)));
+        final File reportFile = new File(arg(args, 6, DEFAULT_REPORT_FILE));
+
+        final Log log = new Log(Log.SYSTEM_OUT);
+        final LocalKinesisVideoServer server = LocalKinesisVideoServer.builder()
+                .bufferingAckLatencyInMillis(BUFFERING_ACK_LATENCY_IN_MILLIS)
+                .receivedAckLatencyInMillis(RECEIVED_ACK_LATENCY_IN_MILLIS)
+                .persistedAckLatencyInMillis(PERSISTED_ACK_LATENCY_IN_MILLIS)
+                .autoCreateStreams(true)
+                .log(log)
+                .build()
+                .start();
+        try {
+            LoadHarness.builder()
+                    .server(server)
+                    .profile(profile)
+                    .durationInSeconds(durationInSeconds)
+                    .reportFile(reportFile)
+                    .log(log)
+                    .build()
+                    .run();
+            System.out.println("Report written to " + reportFile.getAbsolutePath());
+        } finally {
+            server.close();
+        }
+
+        // The media sources leave their generator threads behind
+        System.exit(0);
+    }
+
+    private static String arg(final String[] args, final int index, final String defaultValue) {
+        return args.length > index ? args[index] : defaultValue;
+    }
+}
@@ -5,6 +5,7 @@ import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
 import com.amazonaws.kinesisvideo.client.mediasource.UnknownMediaSourceException;
 import com.amazonaws.kinesisvideo.client.mediasource.UnsupportedConfigurationException;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.metrics.MetricsRegistry;
 import com.amazonaws.kinesisvideo.producer.DeviceInfo;
 
 import javax.annotation.Nonnull;
@@ -69,6 +70,14 @@ public interface KinesisVideoClient {
             final MediaSourceConfiguration mediaSourceConfiguration) throws KinesisVideoException;
 
 
+    /**
+     * Returns the registry of the client metrics with the registries of the streams as its children,
+     * e.g. to export them with {@link com.amazonaws.kinesisvideo.metrics.TextMetricsExporter}.
+     * Available once the client is initialized.
+     */
+    @Nonnull
+    MetricsRegistry getMetricsRegistry();
+
     /**
      * Stops the media sources and frees/releases the underlying objects
      */
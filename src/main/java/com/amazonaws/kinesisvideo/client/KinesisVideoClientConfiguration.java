@@ -2,7 +2,11 @@ package com.amazonaws.kinesisvideo.client;
 
 import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
 import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
+import com.amazonaws.kinesisvideo.metrics.FlightRecorder;
 import com.amazonaws.kinesisvideo.producer.StorageCallbacks;
+import com.amazonaws.kinesisvideo.producer.jni.KinesisVideoMetricsSampler;
+import com.amazonaws.kinesisvideo.service.spool.OfflineSpool;
 
 /**
  * Configuration for KinesisVideoClient.
@@ -13,6 +17,12 @@ public final class KinesisVideoClientConfiguration {
     private final StorageCallbacks storageCallbacks;
     private final String endpoint;
     private final OutputChannel logChannel;
+    private final OfflineSpool offlineSpool;
+    private final boolean jmxMetricsEnabled;
+    private final long metricsSamplingIntervalInMillis;
+    private final int frameTraceSampleInterval;
+    private final int flightRecorderCapacity;
+    private final FramePacer framePacer;
 
     private KinesisVideoClientConfiguration(final Builder builder) {
         this.region = builder.region;
@@ -20,6 +30,12 @@ public final class KinesisVideoClientConfiguration {
         this.storageCallbacks = builder.storageCallbacks;
         this.endpoint = builder.endpoint;
         this.logChannel = builder.logChannel;
+        this.offlineSpool = builder.offlineSpool;
+        this.jmxMetricsEnabled = builder.jmxMetricsEnabled;
+        this.metricsSamplingIntervalInMillis = builder.metricsSamplingIntervalInMillis;
+        this.frameTraceSampleInterval = builder.frameTraceSampleInterval;
+        this.flightRecorderCapacity = builder.flightRecorderCapacity;
+        this.framePacer = builder.framePacer;
     }
 
     public static Builder builder() {
@@ -73,6 +89,30 @@ public final class KinesisVideoClientConfiguration {
         return this.logChannel;
     }
 
+    public OfflineSpool getOfflineSpool() {
+        return this.offlineSpool;
+    }
+
+    public boolean isJmxMetricsEnabled() {
+        return this.jmxMetricsEnabled;
+    }
+
+    public long getMetricsSamplingIntervalInMillis() {
+        return this.metricsSamplingIntervalInMillis;
+    }
+
+    public int getFrameTraceSampleInterval() {
+        return this.frameTraceSampleInterval;
+    }
+
+    public int getFlightRecorderCapacity() {
+        return this.flightRecorderCapacity;
+    }
+
+    public FramePacer getFramePacer() {
+        return this.framePacer;
+    }
+
     public static class Builder {
         private String region;
         private KinesisVideoCredentialsProvider credentialsProvider;
@@ -80,6 +120,13 @@ public final class KinesisVideoClientConfiguration {
                 KinesisVideoClientConfigurationDefaults.NO_OP_STORAGE_CALLBACKS;
         private String endpoint;
         private OutputChannel logChannel;
+        private OfflineSpool offlineSpool;
+        private boolean jmxMetricsEnabled;
+        private long metricsSamplingIntervalInMillis =
+                KinesisVideoMetricsSampler.DEFAULT_SAMPLING_INTERVAL_IN_MILLIS;
+        private int frameTraceSampleInterval;
+        private int flightRecorderCapacity = FlightRecorder.DEFAULT_CAPACITY;
+        private FramePacer framePacer;
 
         public Builder withRegion(final String region) {
             this.region = region;
@@ -106,6 +153,59 @@ public final class KinesisVideoClientConfiguration {
             return this;
         }
 
+        /**
+         * Spools the streams to the local disk while the connectivity is lost. Not set by default.
+         */
+        public Builder withOfflineSpool(final OfflineSpool offlineSpool) {
+            this.offlineSpool = offlineSpool;
+            return this;
+        }
+
+        /**
+         * Registers the metrics of the client and of its streams as MBeans of the platform MBean server.
+         * Disabled by default.
+         */
+        public Builder withJmxMetrics(final boolean jmxMetricsEnabled) {
+            this.jmxMetricsEnabled = jmxMetricsEnabled;
+            return this;
+        }
+
+        /**
+         * Sets how often the client and stream metrics are sampled from the native producer. One second by default.
+         */
+        public Builder withMetricsSamplingInterval(final long metricsSamplingIntervalInMillis) {
+            this.metricsSamplingIntervalInMillis = metricsSamplingIntervalInMillis;
+            return this;
+        }
+
+        /**
+         * Traces one in every given number of frames through the pipeline stages into the trace_*_us stream
+         * metrics. 0, the default, disables the tracing.
+         */
+        public Builder withFrameTracing(final int frameTraceSampleInterval) {
+            this.frameTraceSampleInterval = frameTraceSampleInterval;
+            return this;
+        }
+
+        /**
+         * Sets the number of the latest events each stream keeps in its flight recorder, a power of two.
+         * 0 disables the recording. 2048 by default.
+         */
+        public Builder withFlightRecorderCapacity(final int flightRecorderCapacity) {
+            this.flightRecorderCapacity = flightRecorderCapacity;
+            return this;
+        }
+
+        /**
+         * Paces the media sources registered with the client on the given pacer, which the caller closes.
+         * By default the client creates a pacer of {@link FramePacer#DEFAULT_TIMER_THREADS} threads and closes it
+         * when freed.
+         */
+        public Builder withFramePacer(final FramePacer framePacer) {
+            this.framePacer = framePacer;
+            return this;
+        }
+
         public KinesisVideoClientConfiguration build() {
             sanitizeBuilder(this);
             return new KinesisVideoClientConfiguration(this);
@@ -4,19 +4,28 @@ import com.amazonaws.kinesisvideo.auth.DefaultAuthCallbacks;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.AsyncOutputChannel;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.logging.LogLevel;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
 import com.amazonaws.kinesisvideo.mediasource.ProducerStreamSink;
+import com.amazonaws.kinesisvideo.metrics.FlightRecorder;
+import com.amazonaws.kinesisvideo.metrics.JmxMetricsExporter;
+import com.amazonaws.kinesisvideo.metrics.MetricsRegistry;
 import com.amazonaws.kinesisvideo.producer.*;
 import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
+import com.amazonaws.kinesisvideo.producer.jni.KinesisVideoMetricsSampler;
 import com.amazonaws.kinesisvideo.producer.jni.NativeKinesisVideoProducerJni;
 import com.amazonaws.kinesisvideo.service.DefaultServiceCallbacksImpl;
 import com.amazonaws.kinesisvideo.streaming.DefaultStreamCallbacks;
 import com.amazonaws.kinesisvideo.util.ProducerStreamUtil;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -41,6 +50,7 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
      * Logging tag
      */
     private static final String TAG = "NativeKinesisVideoClient";
+    private static final String LOG_WRITER_THREAD_NAME = "KinesisVideoClientLog";
 
     /**
      * Kinesis Video producer callbacks
@@ -56,14 +66,63 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
      */
     private KinesisVideoProducer kinesisVideoProducer;
 
+    /**
+     * Exports the client and stream metrics to JMX when enabled in the configuration
+     */
+    private JmxMetricsExporter jmxMetricsExporter;
+
+    /**
+     * Interval of sampling the client and stream metrics
+     */
+    private long metricsSamplingIntervalInMillis = KinesisVideoMetricsSampler.DEFAULT_SAMPLING_INTERVAL_IN_MILLIS;
+
+    /**
+     * One in how many frames is traced or 0 when the tracing is disabled
+     */
+    private int frameTraceSampleInterval;
+
+    /**
+     * Number of the latest events recorded per stream or 0 when the recording is disabled
+     */
+    private int flightRecorderCapacity = FlightRecorder.DEFAULT_CAPACITY;
+
+    /**
+     * Paces the registered media sources
+     */
+    private FramePacer framePacer;
+
+    /**
+     * Log channel created for the client, closed when the client is freed
+     */
+    private AsyncOutputChannel logChannel;
+
+    /**
+     * Whether the pacer has been created by the client and is closed when the client is freed
+     */
+    private boolean ownsFramePacer;
+
     public NativeKinesisVideoClient(
             @Nonnull final KinesisVideoClientConfiguration configuration,
             @Nonnull final KinesisVideoServiceClient serviceClient,
             @Nonnull final ScheduledExecutorService executor) {
-        this(new Log(configuration.getLogChannel(), LogLevel.VERBOSE, TAG),
+        this(createLogChannel(configuration.getLogChannel()),
+                configuration,
+                serviceClient,
+                executor);
+    }
+
+    private NativeKinesisVideoClient(
+            @Nonnull final AsyncOutputChannel logChannel,
+            @Nonnull final KinesisVideoClientConfiguration configuration,
+            @Nonnull final KinesisVideoServiceClient serviceClient,
+            @Nonnull final ScheduledExecutorService executor) {
+        this(new Log(logChannel, LogLevel.VERBOSE, TAG),
                 configuration,
                 serviceClient,
                 executor);
+        if (logChannel != configuration.getLogChannel()) {
+            this.logChannel = logChannel;
+        }
     }
 
     public NativeKinesisVideoClient(
@@ -78,6 +137,11 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
                 configuration.getStorageCallbacks(),
                 new DefaultServiceCallbacksImpl(log, executor, configuration, serviceClient),
                 new DefaultStreamCallbacks());
+        setJmxMetricsEnabled(configuration.isJmxMetricsEnabled());
+        setMetricsSamplingInterval(configuration.getMetricsSamplingIntervalInMillis());
+        setFrameTraceSampleInterval(configuration.getFrameTraceSampleInterval());
+        setFlightRecorderCapacity(configuration.getFlightRecorderCapacity());
+        setFramePacer(configuration.getFramePacer());
     }
 
     public NativeKinesisVideoClient(
@@ -97,19 +161,96 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
         mediaSources = new ArrayList<MediaSource>();
     }
 
+    /**
+     * Registers the client and stream metrics as MBeans when they are created. Must be set before initializing.
+     */
+    protected void setJmxMetricsEnabled(final boolean jmxMetricsEnabled) {
+        checkState(!isInitialized(), "Already initialized");
+        jmxMetricsExporter = jmxMetricsEnabled ? new JmxMetricsExporter(mLog) : null;
+    }
+
+    /**
+     * Sets the interval of sampling the client and stream metrics. Must be set before initializing.
+     */
+    protected void setMetricsSamplingInterval(final long metricsSamplingIntervalInMillis) {
+        checkState(!isInitialized(), "Already initialized");
+        this.metricsSamplingIntervalInMillis = metricsSamplingIntervalInMillis;
+    }
+
+    /**
+     * Traces one in every given number of frames or none if 0. Must be set before initializing.
+     */
+    protected void setFrameTraceSampleInterval(final int frameTraceSampleInterval) {
+        checkState(!isInitialized(), "Already initialized");
+        this.frameTraceSampleInterval = frameTraceSampleInterval;
+    }
+
+    /**
+     * Records the given number of the latest events of each stream or none if 0. Must be set before initializing.
+     */
+    protected void setFlightRecorderCapacity(final int flightRecorderCapacity) {
+        checkState(!isInitialized(), "Already initialized");
+        this.flightRecorderCapacity = flightRecorderCapacity;
+    }
+
+    /**
+     * Wraps the configured log channel so the records are printed by a background writer rather than on the
+     * logging threads. A channel which is already asynchronous, e.g. {@link Log#SYSTEM_OUT}, is returned as is.
+     * The client using a channel created here closes it with {@link #closeLogChannelOnFree(AsyncOutputChannel)}.
+     */
+    @Nonnull
+    public static AsyncOutputChannel createLogChannel(@Nonnull final OutputChannel outputChannel) {
+        checkNotNull(outputChannel);
+        if (outputChannel instanceof AsyncOutputChannel) {
+            return (AsyncOutputChannel) outputChannel;
+        }
+
+        return new AsyncOutputChannel(outputChannel, LOG_WRITER_THREAD_NAME);
+    }
+
+    /**
+     * Closes the log channel created for the client, printing its pending records, when the client is freed
+     */
+    public void closeLogChannelOnFree(@Nonnull final AsyncOutputChannel logChannel) {
+        this.logChannel = checkNotNull(logChannel);
+    }
+
+    /**
+     * Paces the registered media sources on the given pacer, which the caller closes, or on a pacer owned by the
+     * client if null. Must be set before initializing.
+     */
+    protected void setFramePacer(@Nullable final FramePacer framePacer) {
+        checkState(!isInitialized(), "Already initialized");
+        this.framePacer = framePacer;
+    }
+
     /**
      * Initializes the client object.
      */
     @Override
     public void initialize(@Nonnull final DeviceInfo deviceInfo) throws KinesisVideoException {
         // Create the producer object
-        kinesisVideoProducer = new NativeKinesisVideoProducerJni(
+        final NativeKinesisVideoProducerJni producerJni = new NativeKinesisVideoProducerJni(
                 authCallbacks,
                 storageCallbacks,
                 defaultServiceCallbacks,
-                mLog);
+                mLog,
+                new MetricsRegistry(MetricsRegistry.CLIENT, deviceInfo.getName()));
+        producerJni.setMetricsSamplingInterval(metricsSamplingIntervalInMillis);
+        producerJni.setFrameTraceSampleInterval(frameTraceSampleInterval);
+        producerJni.setFlightRecorderCapacity(flightRecorderCapacity);
+        kinesisVideoProducer = producerJni;
 
         kinesisVideoProducer.createSync(deviceInfo);
+        if (framePacer == null) {
+            framePacer = new FramePacer(FramePacer.DEFAULT_TIMER_THREADS, "KinesisVideoMediaSources");
+            ownsFramePacer = true;
+        }
+
+        framePacer.registerMetrics(kinesisVideoProducer.getMetricsRegistry());
+        if (jmxMetricsExporter != null) {
+            jmxMetricsExporter.register(kinesisVideoProducer.getMetricsRegistry());
+        }
 
         super.initialize(deviceInfo);
     }
@@ -119,7 +260,12 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
                                     final MediaSource mediaSource) throws KinesisVideoException {
         final StreamInfo streamInfo = ProducerStreamUtil.toStreamInfo(streamName, mediaSource.getConfiguration());
         final KinesisVideoProducerStream producerStream = kinesisVideoProducer.createStreamSync(streamInfo, streamCallbacks);
+        if (jmxMetricsExporter != null) {
+            jmxMetricsExporter.register(producerStream.getMetricsRegistry());
+        }
+
         mediaSources.add(mediaSource);
+        mediaSource.setFramePacer(framePacer);
         mediaSource.initialize(new ProducerStreamSink(producerStream));
         defaultServiceCallbacks.addStream(producerStream);
     }
@@ -142,16 +288,40 @@ public class NativeKinesisVideoClient extends AbstractKinesisVideoClient {
         return Collections.emptyList();
     }
 
+    @Nonnull
+    @Override
+    public MetricsRegistry getMetricsRegistry() {
+        checkState(isInitialized(), "Must initialize first.");
+        return kinesisVideoProducer.getMetricsRegistry();
+    }
+
     @Override
     public void free() throws KinesisVideoException {
         if (isInitialized()) {
             super.free();
 
+            // The media sources have been stopped
+            if (ownsFramePacer) {
+                framePacer.close();
+                framePacer = null;
+                ownsFramePacer = false;
+            }
+
+            if (jmxMetricsExporter != null) {
+                jmxMetricsExporter.close();
+            }
+
             defaultServiceCallbacks.free();
             kinesisVideoProducer.stopStreams();
             kinesisVideoProducer.free();
 
             mIsInitialized = false;
         }
+
+        // Last, so the records of freeing the client are printed
+        if (logChannel != null) {
+            logChannel.close();
+            logChannel = null;
+        }
     }
 }
@@ -5,17 +5,19 @@ import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.encoding.ChunkEncoder;
 import com.amazonaws.kinesisvideo.http.ParallelSimpleHttpClient;
 import com.amazonaws.kinesisvideo.signing.KinesisVideoSigner;
+import com.amazonaws.kinesisvideo.socket.SocketFactory;
+import com.amazonaws.kinesisvideo.stream.recording.AsyncRecordingSink;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthMeasuringOutputStream;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottledOutputStream;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
 import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottlerImpl;
 import com.amazonaws.kinesisvideo.stream.throttling.OpsPerSecondMeasurer;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -36,6 +38,7 @@ public final class PutMediaClient {
     private static final String CONNECTION = "connection";
     private static final String KEEP_ALIVE = "keep-alive";
     private static final int BUFFER_SIZE = 128 * 128; //16kb
+    private static final int MAX_BUFFER_SIZE = 32 * BUFFER_SIZE; //512kb
     private static final double MILLI_TO_SEC = 1000;
     private static final int LOGGING_INTERVAL = 250; // Rougly every 10 seconds in 25 fps
     private final Builder mBuilder;
@@ -61,6 +64,9 @@ public final class PutMediaClient {
         // Timeout if no response is received from the server for put(i.e., acks)
         // Socket will/should be closed by the consumer by throwing the SocketTimeoutException
         clientBuilder.setTimeout(mBuilder.mReceiveTimeout);
+        if (mBuilder.mSocketFactory != null) {
+            clientBuilder.socketFactory(mBuilder.mSocketFactory);
+        }
         httpClient = clientBuilder.build();
         sign(httpClient);
         // add additional unsigned headers
@@ -86,16 +92,25 @@ public final class PutMediaClient {
         return new Consumer<OutputStream>() {
             @Override
             public void accept(final OutputStream rawOutputStream) {
-                FileOutputStream outputFileStream = null;
+                AsyncRecordingSink recordingSink = null;
                 try {
                     final OutputStream throttledOutputStream = throttleAndMeasureOutput(rawOutputStream);
-                    outputFileStream = createOutputFileStream();
-                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    recordingSink = createRecordingSink();
+
+                    // The payload is read straight into the chunk buffer leaving room for the chunk header
+                    // and trailer so that each chunk is encoded in place and written with a single call.
+                    // The buffer grows when the reader falls behind so that the backlog is drained in fewer reads.
+                    int payloadSize = BUFFER_SIZE;
+                    byte[] buffer = allocateChunkBuffer(payloadSize);
+                    ByteBuffer payloadBuffer = ByteBuffer.wrap(buffer);
+                    final ReadableByteChannel mkvChannel = mBuilder.mMkvStream instanceof ReadableByteChannel
+                            ? (ReadableByteChannel) mBuilder.mMkvStream
+                            : null;
                     int mkvBytesRead;
                     long counter = 0;
                     boolean continueLoop = true;
                     while (continueLoop) {
-                        mkvBytesRead = mBuilder.mMkvStream.read(buffer);
+                        mkvBytesRead = readPayload(mkvChannel, payloadBuffer, payloadSize);
                         counter++;
                         if (counter % LOGGING_INTERVAL == 0) {
                             log.debug("Sending data, counter : " + counter);
@@ -103,24 +118,53 @@ public final class PutMediaClient {
                         if (mkvBytesRead == -1) {
                             log.info("End-of-stream is reported. Terminating...");
                             continueLoop = false;
-                        } else {
-                            throttledOutputStream.write(ChunkEncoder.encode(buffer, mkvBytesRead));
-                            tryWriteToFile(outputFileStream, buffer, mkvBytesRead);
+                        } else if (mkvBytesRead > 0) {
+                            writeChunk(throttledOutputStream, buffer, mkvBytesRead);
+                            tryRecord(recordingSink, buffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, mkvBytesRead);
+
+                            if (mkvBytesRead == payloadSize && payloadSize < MAX_BUFFER_SIZE
+                                    && mBuilder.mMkvStream.available() > payloadSize) {
+                                payloadSize = Math.min(2 * payloadSize, MAX_BUFFER_SIZE);
+                                buffer = allocateChunkBuffer(payloadSize);
+                                payloadBuffer = ByteBuffer.wrap(buffer);
+                            }
                         }
                     }
-                    throttledOutputStream.write(ChunkEncoder.encode(buffer, 0));
+                    writeChunk(throttledOutputStream, buffer, 0);
                     rawOutputStream.flush();
                     log.debug("Data sent. counter : " + counter);
                 } catch (final IOException e) {
                     log.debug("Exception while sending data.", e);
                     throw new RuntimeException("Exception while sending encoded chunk in MKV stream ! ", e);
                 } finally {
-                    tryCloseOutputFileStream(outputFileStream);
+                    tryCloseRecordingSink(recordingSink);
                 }
             }
         };
     }
 
+    private static byte[] allocateChunkBuffer(final int payloadSize) {
+        return new byte[ChunkEncoder.MAX_CHUNK_HEADER_SIZE + payloadSize + ChunkEncoder.CHUNK_TRAILER_SIZE];
+    }
+
+    private int readPayload(final ReadableByteChannel mkvChannel, final ByteBuffer payloadBuffer,
+                            final int payloadSize) throws IOException {
+        if (mkvChannel == null) {
+            return mBuilder.mMkvStream.read(payloadBuffer.array(), ChunkEncoder.MAX_CHUNK_HEADER_SIZE, payloadSize);
+        }
+
+        payloadBuffer.limit(ChunkEncoder.MAX_CHUNK_HEADER_SIZE + payloadSize);
+        payloadBuffer.position(ChunkEncoder.MAX_CHUNK_HEADER_SIZE);
+        return mkvChannel.read(payloadBuffer);
+    }
+
+    private static void writeChunk(final OutputStream outputStream, final byte[] buffer, final int payloadSize)
+            throws IOException {
+        final int chunkOffset = ChunkEncoder.encodeInPlace(buffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, payloadSize);
+        final int chunkEnd = ChunkEncoder.MAX_CHUNK_HEADER_SIZE + payloadSize + ChunkEncoder.CHUNK_TRAILER_SIZE;
+        outputStream.write(buffer, chunkOffset, chunkEnd - chunkOffset);
+    }
+
     private OutputStream throttleAndMeasureOutput(final OutputStream rawOutputStream) {
         final OutputStream throttledOutputStream = throttleStream(rawOutputStream);
         return mBuilder.mLogUsedBandwidth ? logBytesPerSecond(throttledOutputStream) : throttledOutputStream;
@@ -143,40 +187,39 @@ public final class PutMediaClient {
         return new Consumer<Long>() {
             @Override
             public void accept(final Long bytesWrittenPerSecond) {
-                final double megabitPerSecond = mbitPerSecond(bytesWrittenPerSecond);
-                System.out.println(String.format("%n   ===> actual megabit/sec: %.2f mbps", megabitPerSecond));
+                log.info("Actual upload rate of stream %s: %.2f mbps", mBuilder.mStreamName,
+                        mbitPerSecond(bytesWrittenPerSecond));
             }
         };
     }
 
-    private FileOutputStream createOutputFileStream() {
-        try {
-            return mBuilder.mFileOutputPath == null ? null : new FileOutputStream(mBuilder.mFileOutputPath);
-        } catch (final FileNotFoundException e) {
-            throw new RuntimeException("Unable to open the file " + mBuilder.mFileOutputPath, e);
+    private AsyncRecordingSink createRecordingSink() {
+        if (mBuilder.mRecordingSink != null) {
+            return mBuilder.mRecordingSink;
         }
+
+        return mBuilder.mFileOutputPath == null
+                ? null
+                : AsyncRecordingSink.builder().filePath(mBuilder.mFileOutputPath).log(log).build();
     }
 
-    private void tryWriteToFile(final FileOutputStream fileOutputStream, final byte[] buffer, final int bytesToWrite) {
-        if (fileOutputStream == null) {
+    private void tryRecord(final AsyncRecordingSink recordingSink, final byte[] buffer, final int offset,
+                           final int bytesToWrite) {
+        if (recordingSink == null) {
             return;
         }
-        try {
-            fileOutputStream.write(buffer, 0, bytesToWrite);
-            fileOutputStream.flush();
-        } catch (final IOException e) {
-            e.printStackTrace();
-        }
+        recordingSink.write(buffer, offset, bytesToWrite);
     }
 
-    private void tryCloseOutputFileStream(final FileOutputStream outputFileStream) {
-        if (outputFileStream == null) {
+    private void tryCloseRecordingSink(final AsyncRecordingSink recordingSink) {
+        // Sinks supplied through the builder are owned by the caller and can outlive the session
+        if (recordingSink == null || recordingSink == mBuilder.mRecordingSink) {
             return;
         }
         try {
-            outputFileStream.close();
+            recordingSink.close();
         } catch (final IOException e) {
-            e.printStackTrace();
+            log.exception(e, "Closing the recording sink threw an exception");
         }
     }
 
@@ -196,6 +239,8 @@ public final class PutMediaClient {
         private Integer mReceiveTimeout;
         private boolean mLogUsedBandwidth;
         private String mFileOutputPath;
+        private AsyncRecordingSink mRecordingSink;
+        private SocketFactory mSocketFactory;
         private Long upstreamKbps;
         private Consumer<Exception> mCompletion;
         // TODO: Set to correct output channel
@@ -255,18 +300,38 @@ public final class PutMediaClient {
         /**
          * Allows writing the stream data into a localc file in addition to sending it to back-end.
          * <p>
-         * Useful for debugging
+         * Useful for debugging. The file is written asynchronously by an {@link AsyncRecordingSink} with the
+         * default settings so the disk doesn't slow down the upload.
          */
         public Builder fileOutputPath(final String fileOutputPath) {
             mFileOutputPath = fileOutputPath;
             return this;
         }
 
+        /**
+         * Records the stream data into the given sink in addition to sending it to back-end.
+         * <p>
+         * Takes precedence over {@link #fileOutputPath(String)}. The sink is not closed by the client.
+         */
+        public Builder recordingSink(final AsyncRecordingSink recordingSink) {
+            mRecordingSink = recordingSink;
+            return this;
+        }
+
         public Builder upstreamKbps(final long kbps) {
             upstreamKbps = kbps;
             return this;
         }
 
+        /**
+         * Factory of the PutMedia connection sockets, e.g. the one of a
+         * {@link com.amazonaws.kinesisvideo.socket.emulation.NetworkEmulator} for the upload tests.
+         */
+        public Builder socketFactory(final SocketFactory socketFactory) {
+            mSocketFactory = socketFactory;
+            return this;
+        }
+
         public Builder log(final Log log) {
             if (log == null) {
                 throw new NullPointerException("log");
@@ -0,0 +1,129 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Persists the acked fragments of every file so that the upload resumes after the last acked fragment when
+ * the process is restarted.
+ * <p>
+ * The checkpoint is a text file with a line per file holding its size, the acked fragment ranges and its path.
+ * The file is rewritten atomically. An entry is ignored when the size of the file has changed.
+ */
+final class BackfillCheckpoint {
+    private static final String CHECKPOINT_FILE_NAME = "backfill.checkpoint";
+    private static final String CHECKPOINT_TEMP_FILE_NAME = "backfill.checkpoint.tmp";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final int FIELD_COUNT = 3;
+
+    private final File mDirectory;
+    private final Log mLog;
+    private final Map<String, String[]> mEntries = new HashMap<String, String[]>();
+
+    BackfillCheckpoint(@Nonnull final File directory, @Nonnull final Log log) throws IOException {
+        mDirectory = checkNotNull(directory);
+        mLog = checkNotNull(log);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the checkpoint directory " + directory);
+        }
+
+        load();
+    }
+
+    /**
+     * @return the acked fragment ranges stored for the file or null if there are none
+     */
+    @Nullable
+    synchronized String getAckedRanges(@Nonnull final File file, final long size) {
+        final String[] entry = mEntries.get(file.getAbsolutePath());
+        if (entry == null) {
+            return null;
+        }
+
+        if (Long.parseLong(entry[0]) != size) {
+            mLog.warn("Size of %s has changed since the last checkpoint. Starting over.", file);
+            return null;
+        }
+
+        return entry[1];
+    }
+
+    synchronized void store(@Nonnull final List<BackfillFile> files) {
+        for (final BackfillFile file : files) {
+            mEntries.put(file.getJob().getFile().getAbsolutePath(),
+                    new String[] {Long.toString(file.getIndex().getFileSize()), file.getAckedRanges()});
+        }
+
+        final File tempFile = new File(mDirectory, CHECKPOINT_TEMP_FILE_NAME);
+        final File checkpointFile = new File(mDirectory, CHECKPOINT_FILE_NAME);
+        try {
+            try (final Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                for (final Map.Entry<String, String[]> entry : mEntries.entrySet()) {
+                    writer.write(entry.getValue()[0]);
+                    writer.write(FIELD_SEPARATOR);
+                    writer.write(entry.getValue()[1]);
+                    writer.write(FIELD_SEPARATOR);
+                    writer.write(entry.getKey());
+                    writer.write('\n');
+                }
+            }
+
+            try {
+                Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException e) {
+            mLog.exception(e, "Storing the backfill checkpoint in %s threw an exception", mDirectory);
+        }
+    }
+
+    private void load() throws IOException {
+        final File checkpointFile = new File(mDirectory, CHECKPOINT_FILE_NAME);
+        if (!checkpointFile.isFile()) {
+            return;
+        }
+
+        try (final BufferedReader reader = Files.newBufferedReader(checkpointFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // The path goes last as it is the only field which could contain the separator
+                final String[] fields = line.split(FIELD_SEPARATOR, FIELD_COUNT);
+                if (fields.length != FIELD_COUNT || !isNumber(fields[0])) {
+                    mLog.warn("Skipping malformed backfill checkpoint entry %s", line);
+                    continue;
+                }
+
+                mEntries.put(fields[2], new String[] {fields[0], fields[1]});
+            }
+        }
+
+        mLog.info("Loaded the backfill checkpoint of %d files from %s", mEntries.size(), mDirectory);
+    }
+
+    private static boolean isNumber(@Nonnull final String field) {
+        try {
+            Long.parseLong(field);
+            return true;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Upload state of a single file: its fragment index, the open channel shared by all of the sessions reading
+ * from it and the set of the fragments acked as persisted.
+ */
+final class BackfillFile implements Closeable {
+    private static final String RANGE_SEPARATOR = ",";
+    private static final String BOUND_SEPARATOR = "-";
+
+    private final BackfillJob mJob;
+    private final FileChannel mChannel;
+    private final MkvFragmentIndex mIndex;
+    private final BitSet mAcked = new BitSet();
+    private long mAckedBytes;
+    private boolean mFailed;
+
+    BackfillFile(@Nonnull final BackfillJob job,
+                 @Nonnull final FileChannel channel,
+                 @Nonnull final MkvFragmentIndex index) {
+        mJob = checkNotNull(job);
+        mChannel = checkNotNull(channel);
+        mIndex = checkNotNull(index);
+    }
+
+    @Nonnull
+    BackfillJob getJob() {
+        return mJob;
+    }
+
+    @Nonnull
+    MkvFragmentIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Reads from the file at the given position. Safe to call from several sessions at once.
+     */
+    int read(@Nonnull final ByteBuffer buffer, final long position) throws IOException {
+        return mChannel.read(buffer, position);
+    }
+
+    /**
+     * @return whether the fragment was not acked before
+     */
+    synchronized boolean markAcked(final int fragment) {
+        if (mAcked.get(fragment)) {
+            return false;
+        }
+
+        mAcked.set(fragment);
+        mAckedBytes += mIndex.getFragmentLength(fragment);
+        return true;
+    }
+
+    synchronized void markFailed() {
+        mFailed = true;
+    }
+
+    synchronized boolean isFailed() {
+        return mFailed;
+    }
+
+    synchronized boolean isComplete() {
+        return mAcked.cardinality() == mIndex.getFragmentCount();
+    }
+
+    synchronized boolean isFinished() {
+        return mFailed || isComplete();
+    }
+
+    /**
+     * Ranges of the fragments which have not been acked yet as pairs of from (inclusive) and to (exclusive)
+     */
+    @Nonnull
+    synchronized List<int[]> getUnackedRanges() {
+        final List<int[]> ranges = new ArrayList<int[]>();
+        int from = mAcked.nextClearBit(0);
+        while (from < mIndex.getFragmentCount()) {
+            final int nextAcked = mAcked.nextSetBit(from);
+            final int to = nextAcked < 0 ? mIndex.getFragmentCount() : nextAcked;
+            ranges.add(new int[] {from, to});
+            from = mAcked.nextClearBit(to);
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Acked fragments in the checkpoint format, e.g. 0-41,50-63
+     */
+    @Nonnull
+    synchronized String getAckedRanges() {
+        final StringBuilder builder = new StringBuilder();
+        int from = mAcked.nextSetBit(0);
+        while (from >= 0) {
+            final int to = mAcked.nextClearBit(from);
+            if (builder.length() > 0) {
+                builder.append(RANGE_SEPARATOR);
+            }
+
+            builder.append(from).append(BOUND_SEPARATOR).append(to - 1);
+            from = mAcked.nextSetBit(to);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Restores the acked fragments from the checkpoint format. Fragments outside of the file are ignored.
+     *
+     * @return false if the ranges are malformed
+     */
+    synchronized boolean restoreAckedRanges(@Nullable final String ranges) {
+        if (ranges == null || ranges.isEmpty()) {
+            return true;
+        }
+
+        try {
+            for (final String range : ranges.split(RANGE_SEPARATOR)) {
+                final String[] bounds = range.split(BOUND_SEPARATOR);
+                final int from = Integer.parseInt(bounds[0]);
+                final int to = Integer.parseInt(bounds[bounds.length - 1]);
+                for (int fragment = from; fragment <= to && fragment < mIndex.getFragmentCount(); fragment++) {
+                    markAcked(fragment);
+                }
+            }
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Nonnull
+    synchronized BackfillProgress getProgress() {
+        return new BackfillProgress(mJob.getFile(),
+                mJob.getStreamName(),
+                mIndex.getFragmentCount(),
+                mAcked.cardinality(),
+                mIndex.getFileSize(),
+                mAckedBytes,
+                mFailed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s (%d fragments)", mJob, mIndex.getFragmentCount());
+    }
+}
@@ -0,0 +1,127 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.net.URI;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * A recorded MKV file to be uploaded into a stream by the {@link MkvBackfillEngine}.
+ */
+public final class BackfillJob {
+    public static final String ABSOLUTE = "ABSOLUTE";
+    public static final String RELATIVE = "RELATIVE";
+
+    private final File mFile;
+    private final String mStreamName;
+    private final URI mPutMediaDestinationUri;
+    private final long mProducerStartTimestamp;
+    private final String mFragmentTimecodeType;
+
+    private BackfillJob(final Builder builder) {
+        mFile = builder.mFile;
+        mStreamName = builder.mStreamName;
+        mPutMediaDestinationUri = builder.mPutMediaDestinationUri;
+        mProducerStartTimestamp = builder.mProducerStartTimestamp;
+        mFragmentTimecodeType = builder.mFragmentTimecodeType;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Nonnull
+    public File getFile() {
+        return mFile;
+    }
+
+    @Nonnull
+    public String getStreamName() {
+        return mStreamName;
+    }
+
+    @Nonnull
+    public URI getPutMediaDestinationUri() {
+        return mPutMediaDestinationUri;
+    }
+
+    public long getProducerStartTimestamp() {
+        return mProducerStartTimestamp;
+    }
+
+    @Nonnull
+    public String getFragmentTimecodeType() {
+        return mFragmentTimecodeType;
+    }
+
+    /**
+     * Jobs with the same session key can share a PutMedia session
+     */
+    @Nonnull
+    String getSessionKey() {
+        return String.format(Locale.US, "%s|%s|%s|%d", mStreamName, mPutMediaDestinationUri,
+                mFragmentTimecodeType, mProducerStartTimestamp);
+    }
+
+    @Override
+    public String toString() {
+        return mFile.getName() + " -> " + mStreamName;
+    }
+
+    public static final class Builder {
+        private File mFile;
+        private String mStreamName;
+        private URI mPutMediaDestinationUri;
+        private long mProducerStartTimestamp;
+        private String mFragmentTimecodeType = ABSOLUTE;
+
+        private Builder() { }
+
+        public Builder file(final File file) {
+            mFile = file;
+            return this;
+        }
+
+        public Builder streamName(final String streamName) {
+            mStreamName = streamName;
+            return this;
+        }
+
+        /**
+         * The data endpoint of the stream with the PutMedia path, i.e. the endpoint returned by GetDataEndpoint
+         * followed by /putMedia
+         */
+        public Builder putMediaDestinationUri(final URI uri) {
+            mPutMediaDestinationUri = uri;
+            return this;
+        }
+
+        /**
+         * Producer start timestamp in milliseconds. The relative fragment timecodes are offset from it.
+         */
+        public Builder producerStartTimestamp(final long timestamp) {
+            mProducerStartTimestamp = timestamp;
+            return this;
+        }
+
+        /**
+         * Either {@link #ABSOLUTE} (the default) or {@link #RELATIVE}
+         */
+        public Builder fragmentTimecodeType(final String fragmentTimecodeType) {
+            mFragmentTimecodeType = fragmentTimecodeType;
+            return this;
+        }
+
+        public BackfillJob build() {
+            checkNotNull(mFile);
+            checkNotNull(mStreamName);
+            checkNotNull(mPutMediaDestinationUri);
+            checkArgument(ABSOLUTE.equals(mFragmentTimecodeType) || RELATIVE.equals(mFragmentTimecodeType),
+                    "Fragment timecode type must be ABSOLUTE or RELATIVE");
+            return new BackfillJob(this);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Snapshot of the upload progress of a single file.
+ */
+public final class BackfillProgress {
+    private static final double PERCENT = 100.0;
+
+    private final File mFile;
+    private final String mStreamName;
+    private final int mFragmentCount;
+    private final int mAckedFragmentCount;
+    private final long mSize;
+    private final long mAckedBytes;
+    private final boolean mFailed;
+
+    // CHECKSTYLE:SUPPRESS:ParameterNumber
+    BackfillProgress(@Nonnull final File file,
+                     @Nonnull final String streamName,
+                     final int fragmentCount,
+                     final int ackedFragmentCount,
+                     final long size,
+                     final long ackedBytes,
+                     final boolean failed) {
+        mFile = checkNotNull(file);
+        mStreamName = checkNotNull(streamName);
+        mFragmentCount = fragmentCount;
+        mAckedFragmentCount = ackedFragmentCount;
+        mSize = size;
+        mAckedBytes = ackedBytes;
+        mFailed = failed;
+    }
+
+    @Nonnull
+    public File getFile() {
+        return mFile;
+    }
+
+    @Nonnull
+    public String getStreamName() {
+        return mStreamName;
+    }
+
+    public int getFragmentCount() {
+        return mFragmentCount;
+    }
+
+    /**
+     * Number of the fragments acked as persisted, including the ones acked before a restart
+     */
+    public int getAckedFragmentCount() {
+        return mAckedFragmentCount;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    public long getAckedBytes() {
+        return mAckedBytes;
+    }
+
+    /**
+     * Whether some of the fragments ran out of retries. The acked fragments stay in the checkpoint.
+     */
+    public boolean isFailed() {
+        return mFailed;
+    }
+
+    public boolean isComplete() {
+        return mAckedFragmentCount == mFragmentCount;
+    }
+
+    public double getPercentComplete() {
+        // The acked bytes don't include the MKV header
+        return isComplete() || mSize == 0 ? PERCENT : PERCENT * mAckedBytes / mSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s -> %s: %d/%d fragments, %.1f%%%s", mFile.getName(), mStreamName,
+                mAckedFragmentCount, mFragmentCount, getPercentComplete(), mFailed ? ", failed" : "");
+    }
+}
@@ -0,0 +1,347 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import com.amazonaws.kinesisvideo.client.PutMediaClient;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.encoding.ChunkDecoder;
+import com.amazonaws.kinesisvideo.signing.KinesisVideoSigner;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottledInputStream;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * A single PutMedia session of the backfill engine.
+ * <p>
+ * The session keeps pulling batches with the same session parameters from the engine until there are none left
+ * or the session has sent enough data, so a single connection carries many fragments of many files. The MKV
+ * header is sent in front of a batch only when it differs from the last header sent on the session.
+ * <p>
+ * The acks of a session arrive in the fragment order so the n-th PERSISTED ack is matched with the n-th fragment
+ * sent. When the session fails, every fragment from the first unacked one onwards is handed back to the engine.
+ */
+final class BackfillSession {
+    private static final int HTTP_OK = 200;
+    private static final int ACK_BUFFER_SIZE = 4096;
+    private static final String EVENT_TYPE_PREFIX = "\"EventType\":\"";
+    private static final String PERSISTED_EVENT = "PERSISTED";
+    private static final String ERROR_EVENT = "ERROR";
+
+    private final MkvBackfillEngine mEngine;
+    private final FragmentBatch mFirstBatch;
+    private final KinesisVideoSigner mSigner;
+    private final BandwidthThrottler mThrottler;
+    private final Integer mReceiveTimeoutInMillis;
+    private final Log mLog;
+
+    private final CountDownLatch mDoneLatch = new CountDownLatch(1);
+    private final List<FragmentBatch> mBatches = new ArrayList<FragmentBatch>();
+    private volatile Exception mFailure;
+    private volatile boolean mInputEnded;
+    private int mSentFragmentCount;
+    private int mAckedFragmentCount;
+    private int mAckBatch;
+    private int mAckFragment;
+
+    BackfillSession(@Nonnull final MkvBackfillEngine engine,
+                    @Nonnull final FragmentBatch firstBatch,
+                    @Nullable final KinesisVideoSigner signer,
+                    @Nullable final BandwidthThrottler throttler,
+                    @Nullable final Integer receiveTimeoutInMillis,
+                    @Nonnull final Log log) {
+        mEngine = checkNotNull(engine);
+        mFirstBatch = checkNotNull(firstBatch);
+        mSigner = signer;
+        mThrottler = throttler;
+        mReceiveTimeoutInMillis = receiveTimeoutInMillis;
+        mLog = checkNotNull(log);
+        mBatches.add(firstBatch);
+    }
+
+    /**
+     * Runs the session to the end
+     *
+     * @return the unacked parts of the batches taken by the session, empty if all of them were acked
+     */
+    @Nonnull
+    List<FragmentBatch> run() {
+        final BackfillJob job = mFirstBatch.getFile().getJob();
+        final InputStream sessionStream = new SessionInputStream();
+        PutMediaClient client = null;
+        try {
+            client = PutMediaClient.builder()
+                    .putMediaDestinationUri(job.getPutMediaDestinationUri())
+                    .mkvStream(mThrottler == null
+                            ? sessionStream
+                            : new BandwidthThrottledInputStream(sessionStream, mThrottler))
+                    .streamName(job.getStreamName())
+                    .timestamp(job.getProducerStartTimestamp())
+                    .fragmentTimecodeType(job.getFragmentTimecodeType())
+                    .signWith(mSigner)
+                    .receiveAcks(new AckReader())
+                    .receiveCompletion(new CompletionRecorder())
+                    .receiveTimeout(mReceiveTimeoutInMillis)
+                    .log(mLog)
+                    .build();
+            client.putMediaInBackground();
+            mDoneLatch.await();
+        } catch (final RuntimeException e) {
+            recordFailure(e);
+        } catch (final InterruptedException e) {
+            recordFailure(e);
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(client);
+        }
+
+        return getUnackedBatches();
+    }
+
+    @Nullable
+    Exception getFailure() {
+        return mFailure;
+    }
+
+    private synchronized void onBatchTaken(@Nonnull final FragmentBatch batch) {
+        mBatches.add(batch);
+    }
+
+    private synchronized void onFragmentSent() {
+        mSentFragmentCount++;
+    }
+
+    private synchronized boolean isAllSentAcked() {
+        return mInputEnded && mAckedFragmentCount == mSentFragmentCount;
+    }
+
+    private synchronized void onFragmentAcked() {
+        if (mAckedFragmentCount == mSentFragmentCount) {
+            mLog.warn("Received an ack for a fragment which hasn't been sent on the session of %s", mFirstBatch);
+            return;
+        }
+
+        FragmentBatch batch = mBatches.get(mAckBatch);
+        if (batch.getFrom() + mAckFragment == batch.getTo()) {
+            batch = mBatches.get(++mAckBatch);
+            mAckFragment = 0;
+        }
+
+        mAckedFragmentCount++;
+        mEngine.onFragmentAcked(batch.getFile(), batch.getFrom() + mAckFragment++);
+    }
+
+    @Nonnull
+    private synchronized List<FragmentBatch> getUnackedBatches() {
+        final List<FragmentBatch> unacked = new ArrayList<FragmentBatch>();
+        for (int i = mAckBatch; i < mBatches.size(); i++) {
+            final FragmentBatch batch = mBatches.get(i);
+            final int from = i == mAckBatch ? batch.getFrom() + mAckFragment : batch.getFrom();
+            if (from < batch.getTo()) {
+                unacked.add(new FragmentBatch(batch.getFile(), from, batch.getTo(), batch.getAttempt()));
+            }
+        }
+
+        return unacked;
+    }
+
+    private void recordFailure(@Nonnull final Exception e) {
+        if (mFailure == null) {
+            mFailure = e;
+        }
+    }
+
+    private void closeQuietly(@Nullable final PutMediaClient client) {
+        if (client == null) {
+            return;
+        }
+
+        try {
+            client.close();
+        } catch (final IOException e) {
+            mLog.exception(e, "Closing the backfill session threw an exception");
+        } catch (final RuntimeException e) {
+            // The connection was never established
+        }
+    }
+
+    /**
+     * Streams the header and fragment ranges of the batches straight from the files
+     */
+    private final class SessionInputStream extends InputStream {
+        private final byte[] mOneByteBuffer = new byte[1];
+        private FragmentBatch mBatch;
+        private int mNextFragment;
+        private BackfillFile mHeaderFile;
+        private long mHeaderOffset = -1;
+        private BackfillFile mRegionFile;
+        private long mRegionPosition;
+        private long mRegionRemaining;
+        private boolean mRegionIsFragment;
+        private long mBytesSent;
+
+        @Override
+        public int read() throws IOException {
+            final int bytesRead = read(mOneByteBuffer, 0, 1);
+            return bytesRead == -1 ? -1 : mOneByteBuffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            while (mRegionRemaining == 0) {
+                if (!nextRegion()) {
+                    mInputEnded = true;
+                    return -1;
+                }
+            }
+
+            final int bytesToRead = (int) Math.min(len, mRegionRemaining);
+            final int bytesRead = mRegionFile.read(ByteBuffer.wrap(b, off, bytesToRead), mRegionPosition);
+            if (bytesRead <= 0) {
+                throw new IOException("Unexpected end of " + mRegionFile.getJob().getFile());
+            }
+
+            mRegionPosition += bytesRead;
+            mRegionRemaining -= bytesRead;
+            mBytesSent += bytesRead;
+            mEngine.onBytesSent(bytesRead);
+
+            if (mRegionRemaining == 0 && mRegionIsFragment) {
+                onFragmentSent();
+            }
+
+            return bytesRead;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(mRegionRemaining, Integer.MAX_VALUE);
+        }
+
+        private boolean nextRegion() {
+            if (mBatch == null) {
+                mBatch = mFirstBatch;
+                mNextFragment = mBatch.getFrom();
+            } else if (mNextFragment == mBatch.getTo()) {
+                final FragmentBatch batch = mEngine.nextBatch(mFirstBatch, mBytesSent);
+                if (batch == null) {
+                    return false;
+                }
+
+                mBatch = batch;
+                mNextFragment = mBatch.getFrom();
+                onBatchTaken(mBatch);
+            }
+
+            final BackfillFile file = mBatch.getFile();
+            final MkvFragmentIndex index = file.getIndex();
+            mRegionFile = file;
+            if (file != mHeaderFile || index.getHeaderOffset(mNextFragment) != mHeaderOffset) {
+                mHeaderFile = file;
+                mHeaderOffset = index.getHeaderOffset(mNextFragment);
+                mRegionPosition = mHeaderOffset;
+                mRegionRemaining = index.getHeaderLength(mNextFragment);
+                mRegionIsFragment = false;
+            } else {
+                mRegionPosition = index.getFragmentOffset(mNextFragment);
+                mRegionRemaining = index.getFragmentLength(mNextFragment);
+                mRegionIsFragment = true;
+                mNextFragment++;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Matches the PERSISTED acks with the sent fragments until all of them are acked
+     */
+    private final class AckReader implements Consumer<InputStream> {
+        @Override
+        public void accept(@Nonnull final InputStream inputStream) {
+            try {
+                final int statusCode = ChunkDecoder.readStatusLine(inputStream).getStatusCode();
+                if (statusCode != HTTP_OK) {
+                    recordFailure(new IOException("PutMedia returned status " + statusCode));
+                    return;
+                }
+
+                readAcks(inputStream);
+            } catch (final IOException e) {
+                recordFailure(e);
+            } catch (final RuntimeException e) {
+                recordFailure(e);
+            } finally {
+                mDoneLatch.countDown();
+            }
+        }
+
+        private void readAcks(@Nonnull final InputStream inputStream) throws IOException {
+            final byte[] buffer = new byte[ACK_BUFFER_SIZE];
+            final StringBuilder pending = new StringBuilder();
+            int bytesRead;
+            while (!isAllSentAcked() && (bytesRead = inputStream.read(buffer)) != -1) {
+                pending.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
+
+                // Only look at the complete ack objects
+                final int end = pending.lastIndexOf("}");
+                if (end < 0) {
+                    continue;
+                }
+
+                final String acks = pending.substring(0, end + 1);
+                pending.delete(0, end + 1);
+                if (!processAcks(acks)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return false if the session has failed
+         */
+        private boolean processAcks(@Nonnull final String acks) {
+            int index = acks.indexOf(EVENT_TYPE_PREFIX);
+            while (index >= 0) {
+                final int typeStart = index + EVENT_TYPE_PREFIX.length();
+                if (acks.startsWith(PERSISTED_EVENT, typeStart)) {
+                    onFragmentAcked();
+                } else if (acks.startsWith(ERROR_EVENT, typeStart)) {
+                    recordFailure(new IOException("PutMedia returned an error ack " + acks.substring(index)));
+                    return false;
+                }
+
+                index = acks.indexOf(EVENT_TYPE_PREFIX, typeStart);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Records the first exception reported by either side of the session and ends the session as the other side
+     * could be blocked until the receive timeout otherwise
+     */
+    private final class CompletionRecorder implements Consumer<Exception> {
+        @Override
+        public void accept(@Nullable final Exception object) {
+            if (object != null) {
+                recordFailure(object);
+                mDoneLatch.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * A contiguous range of the fragments of a file which is the unit of scheduling across the sessions.
+ */
+final class FragmentBatch {
+    private final BackfillFile mFile;
+    private final int mFrom;
+    private final int mTo;
+    private final int mAttempt;
+
+    FragmentBatch(@Nonnull final BackfillFile file, final int from, final int to, final int attempt) {
+        mFile = checkNotNull(file);
+        mFrom = from;
+        mTo = to;
+        mAttempt = attempt;
+    }
+
+    @Nonnull
+    BackfillFile getFile() {
+        return mFile;
+    }
+
+    /**
+     * First fragment, inclusive
+     */
+    int getFrom() {
+        return mFrom;
+    }
+
+    /**
+     * Last fragment, exclusive
+     */
+    int getTo() {
+        return mTo;
+    }
+
+    int getAttempt() {
+        return mAttempt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s fragments %d - %d", mFile.getJob(), mFrom, mTo - 1);
+    }
+}
@@ -0,0 +1,644 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.signing.KinesisVideoSigner;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottlerImpl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+
+/**
+ * Uploads recorded MKV files through many concurrent PutMedia sessions.
+ * <p>
+ * Every submitted file is split at the cluster boundaries and its fragments are queued in batches. A fixed pool
+ * of sessions picks the batches up, at most {@link Builder#maxSessionsPerStream(int)} at a time for any single
+ * stream. A session keeps taking the batches of its stream until there are none left, so a connection and the
+ * signer are reused for many fragments and files instead of being set up for every file. All of the sessions
+ * share a single bandwidth throttler which caps their combined upload rate.
+ * <p>
+ * Fragments are acked individually. The acked fragments are written to a checkpoint so that a restarted
+ * process which submits the same files only sends the fragments which weren't acked yet. Failed batches are
+ * retried from their first unacked fragment.
+ * <p>
+ * The aggregate upload rate and the progress of the files in flight are logged periodically and are available
+ * through {@link #getMegabytesPerSecond()} and {@link #getProgress()}.
+ */
+public final class MkvBackfillEngine implements Closeable {
+    private static final double BYTES_IN_MB = 1024.0 * 1024.0;
+    private static final double MILLIS_IN_A_SECOND = 1000.0;
+    private static final long BITS_IN_A_KILOBIT = 1024L;
+    private static final long SHUTDOWN_TIMEOUT_IN_MILLIS = 5000L;
+
+    private final Builder mBuilder;
+    private final Log mLog;
+    private final BandwidthThrottler mThrottler;
+    private final BackfillCheckpoint mCheckpoint;
+    private final ExecutorService mSessionExecutor;
+    private final ScheduledExecutorService mMaintenanceExecutor = Executors.newScheduledThreadPool(1);
+
+    // Guarded by this
+    private final Map<String, ArrayDeque<FragmentBatch>> mPendingBatches =
+            new LinkedHashMap<String, ArrayDeque<FragmentBatch>>();
+    private final Map<String, Integer> mActiveSessions = new HashMap<String, Integer>();
+    private final Map<String, BackfillFile> mFiles = new LinkedHashMap<String, BackfillFile>();
+    // Paths reserved while their files are being scanned, so a path is only submitted once
+    private final Set<String> mScanningPaths = new HashSet<String>();
+    private boolean mClosed;
+
+    private final AtomicLong mBytesSent = new AtomicLong();
+    private final AtomicLong mBytesAcked = new AtomicLong();
+    private final long mStartTime = System.currentTimeMillis();
+    private volatile boolean mCheckpointDirty;
+    private long mLastReportTime = mStartTime;
+    private long mLastReportBytes;
+
+    private MkvBackfillEngine(final Builder builder) throws IOException {
+        mBuilder = builder;
+        mLog = builder.mLog;
+        mThrottler = builder.mUpstreamKbps == null
+                ? null
+                : new BandwidthThrottlerImpl(builder.mUpstreamKbps * BITS_IN_A_KILOBIT);
+        mCheckpoint = builder.mCheckpointDirectory == null
+                ? null
+                : new BackfillCheckpoint(builder.mCheckpointDirectory, mLog);
+
+        mSessionExecutor = Executors.newFixedThreadPool(builder.mMaxSessions);
+        for (int i = 0; i < builder.mMaxSessions; i++) {
+            mSessionExecutor.execute(new SessionWorker());
+        }
+
+        mMaintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reportProgress();
+            }
+        }, builder.mProgressIntervalInMillis, builder.mProgressIntervalInMillis, TimeUnit.MILLISECONDS);
+
+        if (mCheckpoint != null) {
+            mMaintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    storeCheckpoint();
+                }
+            }, builder.mCheckpointIntervalInMillis, builder.mCheckpointIntervalInMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Scans the file for the fragment boundaries and queues the fragments which haven't been acked before.
+     *
+     * @return the progress of the file at the time of the submission
+     * @throws IOException if the file can't be read or isn't an MKV file
+     */
+    @Nonnull
+    public BackfillProgress submit(@Nonnull final BackfillJob job) throws IOException {
+        checkNotNull(job);
+        final String path = job.getFile().getAbsolutePath();
+        synchronized (this) {
+            checkState(!mClosed, "Backfill engine is closed");
+            checkArgument(!mFiles.containsKey(path) && mScanningPaths.add(path),
+                    "File " + path + " has already been submitted");
+        }
+
+        final BackfillFile file;
+        try {
+            file = scan(job);
+        } catch (final IOException | RuntimeException e) {
+            synchronized (this) {
+                mScanningPaths.remove(path);
+            }
+
+            throw e;
+        }
+
+        final List<int[]> ranges = file.getUnackedRanges();
+        synchronized (this) {
+            mScanningPaths.remove(path);
+            if (mClosed) {
+                file.close();
+                throw new IllegalStateException("Backfill engine is closed");
+            }
+
+            mFiles.put(path, file);
+            for (final int[] range : ranges) {
+                for (int from = range[0]; from < range[1]; from += mBuilder.mFragmentsPerBatch) {
+                    enqueue(new FragmentBatch(file, from, Math.min(from + mBuilder.mFragmentsPerBatch, range[1]), 0),
+                            false);
+                }
+            }
+
+            notifyAll();
+        }
+
+        final BackfillProgress progress = file.getProgress();
+        mLog.info("Submitted %s with %d of %d fragments left to upload", file,
+                progress.getFragmentCount() - progress.getAckedFragmentCount(), progress.getFragmentCount());
+        return progress;
+    }
+
+    /**
+     * Waits until all of the submitted files are either completely uploaded or have failed
+     *
+     * @return false on timeout
+     */
+    public synchronized boolean awaitCompletion(final long timeoutInMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutInMillis;
+        while (!isFinished()) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+
+            wait(remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * Progress of every submitted file in the submission order
+     */
+    @Nonnull
+    public List<BackfillProgress> getProgress() {
+        final List<BackfillProgress> progress = new ArrayList<BackfillProgress>();
+        for (final BackfillFile file : getFiles()) {
+            progress.add(file.getProgress());
+        }
+
+        return progress;
+    }
+
+    /**
+     * Bytes sent by all of the sessions, including the ones which will be resent after a failure
+     */
+    public long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    /**
+     * Bytes of the fragments acked as persisted since the engine was started
+     */
+    public long getBytesAcked() {
+        return mBytesAcked.get();
+    }
+
+    /**
+     * Average rate of the acked data since the engine was started
+     */
+    public double getMegabytesPerSecond() {
+        final long duration = Math.max(1, System.currentTimeMillis() - mStartTime);
+        return mBytesAcked.get() / BYTES_IN_MB / (duration / MILLIS_IN_A_SECOND);
+    }
+
+    /**
+     * Stops all of the sessions and stores the checkpoint. The fragments which haven't been acked are sent
+     * again once the files are submitted to a new engine.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+
+            mClosed = true;
+            notifyAll();
+        }
+
+        mSessionExecutor.shutdownNow();
+        try {
+            if (!mSessionExecutor.awaitTermination(SHUTDOWN_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS)) {
+                mLog.warn("Backfill sessions didn't stop in %d ms", SHUTDOWN_TIMEOUT_IN_MILLIS);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        mMaintenanceExecutor.shutdownNow();
+        mCheckpointDirty = true;
+        storeCheckpoint();
+        reportProgress();
+
+        for (final BackfillFile file : getFiles()) {
+            file.close();
+        }
+    }
+
+    /**
+     * Takes the next batch for a running session
+     *
+     * @return null if there are no batches left for the session or it has sent enough data
+     */
+    @Nullable
+    synchronized FragmentBatch nextBatch(@Nonnull final FragmentBatch firstBatch, final long sessionBytes) {
+        if (mClosed || sessionBytes >= mBuilder.mMaxSessionBytes) {
+            return null;
+        }
+
+        final String sessionKey = firstBatch.getFile().getJob().getSessionKey();
+        final ArrayDeque<FragmentBatch> batches = mPendingBatches.get(sessionKey);
+        final FragmentBatch batch = batches == null ? null : pollBatch(batches);
+        if (batches != null && batches.isEmpty()) {
+            mPendingBatches.remove(sessionKey);
+        }
+
+        return batch;
+    }
+
+    void onBytesSent(final int bytes) {
+        mBytesSent.addAndGet(bytes);
+    }
+
+    void onFragmentAcked(@Nonnull final BackfillFile file, final int fragment) {
+        if (!file.markAcked(fragment)) {
+            return;
+        }
+
+        mBytesAcked.addAndGet(file.getIndex().getFragmentLength(fragment));
+        mCheckpointDirty = true;
+        if (file.isComplete()) {
+            mLog.info("Backfilled %s", file);
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Blocks until there is a batch for a stream with a free session slot
+     *
+     * @return the first batch of the new session or null if the engine is closed
+     */
+    @Nullable
+    private synchronized FragmentBatch claimBatch() throws InterruptedException {
+        while (!mClosed) {
+            final Iterator<Map.Entry<String, ArrayDeque<FragmentBatch>>> iterator =
+                    mPendingBatches.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<String, ArrayDeque<FragmentBatch>> entry = iterator.next();
+                final FragmentBatch batch = pollBatch(entry.getValue());
+                if (batch == null) {
+                    iterator.remove();
+                    continue;
+                }
+
+                final String streamName = batch.getFile().getJob().getStreamName();
+                final int activeSessions = getActiveSessions(streamName);
+                if (activeSessions >= mBuilder.mMaxSessionsPerStream) {
+                    entry.getValue().addFirst(batch);
+                    continue;
+                }
+
+                // Move the stream to the back of the queue so that all of them get a fair share of sessions
+                iterator.remove();
+                if (!entry.getValue().isEmpty()) {
+                    mPendingBatches.put(entry.getKey(), entry.getValue());
+                }
+
+                mActiveSessions.put(streamName, activeSessions + 1);
+                return batch;
+            }
+
+            wait();
+        }
+
+        return null;
+    }
+
+    /**
+     * Ends the session and queues the unacked parts of its batches for another attempt
+     *
+     * @return whether anything had to be retried
+     */
+    private synchronized boolean releaseSession(@Nonnull final FragmentBatch firstBatch,
+                                                @Nonnull final List<FragmentBatch> unackedBatches,
+                                                @Nullable final Exception failure) {
+        final String streamName = firstBatch.getFile().getJob().getStreamName();
+        final int activeSessions = getActiveSessions(streamName) - 1;
+        if (activeSessions > 0) {
+            mActiveSessions.put(streamName, activeSessions);
+        } else {
+            mActiveSessions.remove(streamName);
+        }
+
+        notifyAll();
+        if (unackedBatches.isEmpty() || mClosed) {
+            return false;
+        }
+
+        if (failure != null) {
+            mLog.exception(failure, "Backfill session of %s failed with %d batches unacked", firstBatch,
+                    unackedBatches.size());
+        } else {
+            mLog.warn("Backfill session of %s ended with %d batches unacked", firstBatch, unackedBatches.size());
+        }
+
+        // Keep the original order by adding the batches to the front of the queue in reverse
+        final ListIterator<FragmentBatch> iterator = unackedBatches.listIterator(unackedBatches.size());
+        while (iterator.hasPrevious()) {
+            final FragmentBatch batch = iterator.previous();
+            if (batch.getAttempt() >= mBuilder.mMaxRetries) {
+                mLog.error("Giving up on %s after %d attempts", batch, batch.getAttempt() + 1);
+                batch.getFile().markFailed();
+                continue;
+            }
+
+            enqueue(new FragmentBatch(batch.getFile(), batch.getFrom(), batch.getTo(), batch.getAttempt() + 1), true);
+        }
+
+        return true;
+    }
+
+    private void enqueue(@Nonnull final FragmentBatch batch, final boolean first) {
+        final String sessionKey = batch.getFile().getJob().getSessionKey();
+        ArrayDeque<FragmentBatch> batches = mPendingBatches.get(sessionKey);
+        if (batches == null) {
+            batches = new ArrayDeque<FragmentBatch>();
+            mPendingBatches.put(sessionKey, batches);
+        }
+
+        if (first) {
+            batches.addFirst(batch);
+        } else {
+            batches.addLast(batch);
+        }
+    }
+
+    /**
+     * Polls the next batch skipping the ones of the failed files
+     */
+    @Nullable
+    private static FragmentBatch pollBatch(@Nonnull final ArrayDeque<FragmentBatch> batches) {
+        FragmentBatch batch;
+        while ((batch = batches.pollFirst()) != null && batch.getFile().isFailed()) {
+            // Skip
+        }
+
+        return batch;
+    }
+
+    private int getActiveSessions(@Nonnull final String streamName) {
+        final Integer activeSessions = mActiveSessions.get(streamName);
+        return activeSessions == null ? 0 : activeSessions;
+    }
+
+    /**
+     * Indexes the fragments of the file and restores its acked fragments from the checkpoint
+     */
+    @Nonnull
+    private BackfillFile scan(@Nonnull final BackfillJob job) throws IOException {
+        final FileChannel channel = FileChannel.open(job.getFile().toPath(), StandardOpenOption.READ);
+        try {
+            final BackfillFile file = new BackfillFile(job, channel, MkvFragmentIndex.scan(channel));
+            if (mCheckpoint != null && !file.restoreAckedRanges(
+                    mCheckpoint.getAckedRanges(job.getFile(), file.getIndex().getFileSize()))) {
+                mLog.warn("Ignoring the malformed checkpoint of %s", job.getFile());
+            }
+
+            return file;
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private synchronized boolean isFinished() {
+        for (final BackfillFile file : mFiles.values()) {
+            if (!file.isFinished()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Nonnull
+    private synchronized List<BackfillFile> getFiles() {
+        return new ArrayList<BackfillFile>(mFiles.values());
+    }
+
+    private void storeCheckpoint() {
+        if (mCheckpoint == null || !mCheckpointDirty) {
+            return;
+        }
+
+        mCheckpointDirty = false;
+        mCheckpoint.store(getFiles());
+    }
+
+    private void reportProgress() {
+        final long now = System.currentTimeMillis();
+        final long bytesAcked = mBytesAcked.get();
+        final double intervalSeconds = Math.max(1, now - mLastReportTime) / MILLIS_IN_A_SECOND;
+        final double megabytesPerSecond = (bytesAcked - mLastReportBytes) / BYTES_IN_MB / intervalSeconds;
+        mLastReportTime = now;
+        mLastReportBytes = bytesAcked;
+
+        int finishedFiles = 0;
+        final List<BackfillProgress> inProgress = new ArrayList<BackfillProgress>();
+        final List<BackfillProgress> progress = getProgress();
+        for (final BackfillProgress fileProgress : progress) {
+            if (fileProgress.isComplete() || fileProgress.isFailed()) {
+                finishedFiles++;
+            } else if (fileProgress.getAckedFragmentCount() > 0) {
+                inProgress.add(fileProgress);
+            }
+        }
+
+        mLog.info("Backfill: %.2f MB/s (%.2f MB/s average), %.1f MB sent, %.1f MB acked, %d of %d files finished",
+                megabytesPerSecond, getMegabytesPerSecond(), mBytesSent.get() / BYTES_IN_MB,
+                bytesAcked / BYTES_IN_MB, finishedFiles, progress.size());
+        for (final BackfillProgress fileProgress : inProgress) {
+            mLog.info("Backfill: %s", fileProgress);
+        }
+    }
+
+    /**
+     * Runs the sessions one after another for as long as the engine is open
+     */
+    private final class SessionWorker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                FragmentBatch firstBatch;
+                while ((firstBatch = claimBatch()) != null) {
+                    final BackfillSession session = new BackfillSession(MkvBackfillEngine.this,
+                            firstBatch,
+                            mBuilder.mSigner,
+                            mThrottler,
+                            mBuilder.mReceiveTimeoutInMillis,
+                            mLog);
+                    List<FragmentBatch> unackedBatches = Collections.emptyList();
+                    try {
+                        unackedBatches = session.run();
+                    } finally {
+                        if (releaseSession(firstBatch, unackedBatches, session.getFailure())) {
+                            Thread.sleep(mBuilder.mRetryDelayInMillis);
+                        }
+                    }
+                }
+            } catch (final InterruptedException e) {
+                // Closing
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static final class Builder {
+        private KinesisVideoSigner mSigner;
+        private int mMaxSessions = 8;
+        private int mMaxSessionsPerStream = 1;
+        private Long mUpstreamKbps;
+        private int mFragmentsPerBatch = 32;
+        private long mMaxSessionBytes = 1024L * 1024L * 1024L;
+        private Integer mReceiveTimeoutInMillis = 60000;
+        private int mMaxRetries = 3;
+        private long mRetryDelayInMillis = 5000;
+        private File mCheckpointDirectory;
+        private long mCheckpointIntervalInMillis = 1000;
+        private long mProgressIntervalInMillis = 10000;
+        private Log mLog = new Log(Log.SYSTEM_OUT);
+
+        private Builder() { }
+
+        /**
+         * Signer shared by all of the sessions
+         */
+        public Builder signWith(final KinesisVideoSigner signer) {
+            mSigner = signer;
+            return this;
+        }
+
+        /**
+         * Number of concurrent PutMedia sessions across all of the streams
+         */
+        public Builder maxSessions(final int maxSessions) {
+            mMaxSessions = maxSessions;
+            return this;
+        }
+
+        /**
+         * Number of concurrent PutMedia sessions into a single stream. Defaults to 1 which keeps the fragments of a
+         * stream in order. Only raise it for the files with absolute fragment timecodes.
+         */
+        public Builder maxSessionsPerStream(final int maxSessionsPerStream) {
+            mMaxSessionsPerStream = maxSessionsPerStream;
+            return this;
+        }
+
+        /**
+         * Combined upload bandwidth cap of all of the sessions
+         */
+        public Builder upstreamKbps(final long kbps) {
+            mUpstreamKbps = kbps;
+            return this;
+        }
+
+        /**
+         * Number of fragments scheduled as a unit
+         */
+        public Builder fragmentsPerBatch(final int fragmentsPerBatch) {
+            mFragmentsPerBatch = fragmentsPerBatch;
+            return this;
+        }
+
+        /**
+         * Amount of data after which a session stops taking new batches and a new connection is made
+         */
+        public Builder maxSessionBytes(final long maxSessionBytes) {
+            mMaxSessionBytes = maxSessionBytes;
+            return this;
+        }
+
+        /**
+         * Time to wait for the acks before the session is failed
+         */
+        public Builder receiveTimeout(final Integer timeoutInMillis) {
+            mReceiveTimeoutInMillis = timeoutInMillis;
+            return this;
+        }
+
+        /**
+         * Number of times a batch is retried before its file is failed
+         */
+        public Builder maxRetries(final int maxRetries) {
+            mMaxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder retryDelayInMillis(final long retryDelayInMillis) {
+            mRetryDelayInMillis = retryDelayInMillis;
+            return this;
+        }
+
+        /**
+         * Directory for the checkpoint of the acked fragments. The upload can't be resumed without it.
+         */
+        public Builder checkpointDirectory(final File checkpointDirectory) {
+            mCheckpointDirectory = checkpointDirectory;
+            return this;
+        }
+
+        /**
+         * How often the checkpoint is stored. The fragments acked since the last store are sent again after
+         * a crash.
+         */
+        public Builder checkpointIntervalInMillis(final long checkpointIntervalInMillis) {
+            mCheckpointIntervalInMillis = checkpointIntervalInMillis;
+            return this;
+        }
+
+        public Builder progressIntervalInMillis(final long progressIntervalInMillis) {
+            mProgressIntervalInMillis = progressIntervalInMillis;
+            return this;
+        }
+
+        public Builder log(final Log log) {
+            if (log == null) {
+                throw new NullPointerException("log");
+            }
+            mLog = log;
+            return this;
+        }
+
+        public MkvBackfillEngine build() throws IOException {
+            checkArgument(mMaxSessions > 0, "At least one session is needed");
+            checkArgument(mMaxSessionsPerStream > 0, "At least one session per stream is needed");
+            checkArgument(mFragmentsPerBatch > 0, "At least one fragment per batch is needed");
+            checkArgument(mMaxRetries >= 0, "Number of retries can't be negative");
+            checkArgument(mCheckpointIntervalInMillis > 0 && mProgressIntervalInMillis > 0,
+                    "Intervals must be positive");
+            return new MkvBackfillEngine(this);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import com.amazonaws.kinesisvideo.client.mkv.MkvBoundaries;
+import com.amazonaws.kinesisvideo.client.mkv.MkvStreamSplitter;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Byte ranges of the fragments (clusters) in an MKV file along with the MKV header each fragment belongs to.
+ * <p>
+ * The ranges are kept in primitive arrays as a recording can easily have hundreds of thousands of fragments.
+ */
+final class MkvFragmentIndex {
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] mFragmentOffsets = new long[INITIAL_CAPACITY];
+    private long[] mHeaderOffsets = new long[INITIAL_CAPACITY];
+    private int[] mHeaderLengths = new int[INITIAL_CAPACITY];
+    private int mFragmentCount;
+    private long mEndOffset;
+
+    private MkvFragmentIndex() { }
+
+    /**
+     * Scans the file for the EBML header and cluster boundaries
+     */
+    @Nonnull
+    static MkvFragmentIndex scan(@Nonnull final FileChannel channel) throws IOException {
+        final MkvFragmentIndex index = new MkvFragmentIndex();
+        final Scanner scanner = index.new Scanner();
+        final MkvStreamSplitter splitter = new MkvStreamSplitter();
+        final byte[] buffer = new byte[MkvStreamSplitter.HOLD_BACK_SIZE + SCAN_BUFFER_SIZE];
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long position = 0;
+        int bytesRead;
+        do {
+            byteBuffer.limit(buffer.length);
+            byteBuffer.position(MkvStreamSplitter.HOLD_BACK_SIZE);
+            bytesRead = channel.read(byteBuffer, position);
+            if (bytesRead > 0) {
+                splitter.split(buffer, MkvStreamSplitter.HOLD_BACK_SIZE, bytesRead, scanner);
+                position += bytesRead;
+            }
+        } while (bytesRead != -1);
+
+        splitter.flush(scanner);
+        index.mEndOffset = scanner.mPosition;
+        return index;
+    }
+
+    int getFragmentCount() {
+        return mFragmentCount;
+    }
+
+    long getFragmentOffset(final int fragment) {
+        return mFragmentOffsets[fragment];
+    }
+
+    long getFragmentLength(final int fragment) {
+        if (fragment + 1 == mFragmentCount) {
+            return mEndOffset - mFragmentOffsets[fragment];
+        }
+
+        // The header of the next fragment is in between the two clusters when the stream restarts
+        final long end = mHeaderOffsets[fragment + 1] > mFragmentOffsets[fragment]
+                ? mHeaderOffsets[fragment + 1]
+                : mFragmentOffsets[fragment + 1];
+        return end - mFragmentOffsets[fragment];
+    }
+
+    long getHeaderOffset(final int fragment) {
+        return mHeaderOffsets[fragment];
+    }
+
+    int getHeaderLength(final int fragment) {
+        return mHeaderLengths[fragment];
+    }
+
+    long getFileSize() {
+        return mEndOffset;
+    }
+
+    private void addFragment(final long offset, final long headerOffset, final int headerLength) {
+        if (mFragmentCount == mFragmentOffsets.length) {
+            final int capacity = 2 * mFragmentCount;
+            mFragmentOffsets = Arrays.copyOf(mFragmentOffsets, capacity);
+            mHeaderOffsets = Arrays.copyOf(mHeaderOffsets, capacity);
+            mHeaderLengths = Arrays.copyOf(mHeaderLengths, capacity);
+        }
+
+        mFragmentOffsets[mFragmentCount] = offset;
+        mHeaderOffsets[mFragmentCount] = headerOffset;
+        mHeaderLengths[mFragmentCount] = headerLength;
+        mFragmentCount++;
+    }
+
+    /**
+     * Tracks the file offsets of the boundaries reported by the splitter
+     */
+    private final class Scanner implements MkvStreamSplitter.Listener {
+        private long mPosition;
+        private long mHeaderOffset = -1;
+        private int mHeaderLength;
+        private boolean mInHeader;
+
+        @Override
+        public void onData(final byte[] buffer, final int offset, final int length) {
+            mPosition += length;
+        }
+
+        @Override
+        public void onBoundary(final int elementId) throws IOException {
+            if (elementId == MkvBoundaries.EBML_HEADER_ID) {
+                mHeaderOffset = mPosition;
+                mInHeader = true;
+                return;
+            }
+
+            if (mHeaderOffset < 0) {
+                throw new IOException("MKV file has a cluster before the EBML header at offset " + mPosition);
+            }
+
+            if (mInHeader) {
+                final long headerLength = mPosition - mHeaderOffset;
+                if (headerLength > Integer.MAX_VALUE) {
+                    throw new IOException("MKV header at offset " + mHeaderOffset + " is too large");
+                }
+
+                mHeaderLength = (int) headerLength;
+                mInHeader = false;
+            }
+
+            addFragment(mPosition, mHeaderOffset, mHeaderLength);
+        }
+    }
+}
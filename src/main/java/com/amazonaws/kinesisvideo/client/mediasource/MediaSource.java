@@ -3,6 +3,7 @@ package com.amazonaws.kinesisvideo.client.mediasource;
 import javax.annotation.Nonnull;
 
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
 
 /**
  * Interface representing a media source.
@@ -20,6 +21,13 @@ public interface MediaSource {
      */
     MediaSourceConfiguration getConfiguration();
 
+    /**
+     * Sets the pacer the media source schedules its frames on, called by the client before initializing.
+     * The media sources paced by themselves ignore it.
+     */
+    default void setFramePacer(@Nonnull final FramePacer framePacer) {
+    }
+
     /**
      * Initializes the media source with a {@link MediaSourceSink} object
      */
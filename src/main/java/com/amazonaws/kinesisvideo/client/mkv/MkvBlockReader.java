@@ -0,0 +1,469 @@
+package com.amazonaws.kinesisvideo.client.mkv;
+
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Streaming reader of the SimpleBlocks of an MKV stream.
+ * <p>
+ * The elements are parsed as they are read from the channel through a small read buffer, without building a tree
+ * or loading the file. The segment, info, tracks, track entry and cluster elements are descended into, of any size
+ * including unknown, and the other elements are skipped. The tracks and the timecode scale are picked up on the way,
+ * a new EBML header starts over with the tracks of the next stream.
+ * <p>
+ * The data of a block is read straight from the channel into a buffer of the {@link FrameBufferPool}, which the
+ * caller releases once done with the block. The laced blocks and the block groups are skipped.
+ */
+@NotThreadSafe
+public final class MkvBlockReader {
+    /**
+     * Default size of the read buffer
+     */
+    public static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Default timecode scale in nanoseconds
+     */
+    public static final long DEFAULT_TIMECODE_SCALE = 1000000L;
+
+    private static final int SEGMENT_ID = 0x18538067;
+    private static final int INFO_ID = 0x1549A966;
+    private static final int TIMECODE_SCALE_ID = 0x2AD7B1;
+    private static final int TRACKS_ID = 0x1654AE6B;
+    private static final int TRACK_ENTRY_ID = 0xAE;
+    private static final int TRACK_NUMBER_ID = 0xD7;
+    private static final int TRACK_TYPE_ID = 0x83;
+    private static final int CODEC_ID_ID = 0x86;
+    private static final int CODEC_PRIVATE_ID = 0x63A2;
+    private static final int DEFAULT_DURATION_ID = 0x23E383;
+    private static final int SIMPLE_BLOCK_ID = 0xA3;
+
+    private static final int MAX_ID_LENGTH = 4;
+    private static final int MAX_SIZE_LENGTH = 8;
+    private static final int MAX_VALUE_SIZE = 8;
+    private static final int MAX_CODEC_PRIVATE_SIZE = 1024 * 1024;
+    private static final long UNKNOWN_SIZE = -1;
+    private static final int BLOCK_HEADER_SIZE = 3;
+    private static final int FLAG_KEY_FRAME = 0x80;
+    private static final int FLAG_INVISIBLE = 0x08;
+    private static final int FLAG_LACING = 0x06;
+    private static final int FLAG_DISCARDABLE = 0x01;
+    private static final long NANOS_IN_A_TIME_UNIT = 100;
+
+    /**
+     * Track of the stream
+     */
+    public static final class Track {
+        private long mNumber;
+        private int mType;
+        private String mCodecId;
+        private byte[] mCodecPrivateData;
+        private long mDefaultDurationInNanos;
+
+        public long getNumber() {
+            return mNumber;
+        }
+
+        /**
+         * @return Track type, 1 for video and 2 for audio
+         */
+        public int getType() {
+            return mType;
+        }
+
+        @Nullable
+        public String getCodecId() {
+            return mCodecId;
+        }
+
+        /**
+         * @return Codec private data, a new array whenever it is read again
+         */
+        @Nullable
+        public byte[] getCodecPrivateData() {
+            return mCodecPrivateData;
+        }
+
+        /**
+         * @return Duration of the frames in nanoseconds or 0 if not set
+         */
+        public long getDefaultDurationInNanos() {
+            return mDefaultDurationInNanos;
+        }
+    }
+
+    /**
+     * Block read by {@link #readBlock(Block)}. The same instance can be read into again.
+     */
+    public static final class Block {
+        private Track mTrack;
+        private long mTimecode;
+        private int mFlags;
+        private ByteBuffer mData;
+
+        @Nonnull
+        public Track getTrack() {
+            return mTrack;
+        }
+
+        /**
+         * @return Absolute timecode of the block in 100ns
+         */
+        public long getTimecode() {
+            return mTimecode;
+        }
+
+        public boolean isKeyFrame() {
+            return (mFlags & FLAG_KEY_FRAME) != 0;
+        }
+
+        public boolean isInvisible() {
+            return (mFlags & FLAG_INVISIBLE) != 0;
+        }
+
+        public boolean isDiscardable() {
+            return (mFlags & FLAG_DISCARDABLE) != 0;
+        }
+
+        /**
+         * @return Data of the block, a buffer of the pool to release when done
+         */
+        @Nonnull
+        public ByteBuffer getData() {
+            return mData;
+        }
+    }
+
+    private final ReadableByteChannel mChannel;
+    private final FrameBufferPool mBufferPool;
+    private final ByteBuffer mReadBuffer;
+    private final List<Track> mTracks = new ArrayList<Track>();
+    private Track mTrack;
+    private long mTimecodeScale = DEFAULT_TIMECODE_SCALE;
+    private long mClusterTimecode;
+    private long mSkippedBlockCount;
+
+    public MkvBlockReader(@Nonnull final ReadableByteChannel channel, @Nonnull final FrameBufferPool bufferPool) {
+        this(channel, bufferPool, DEFAULT_READ_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel channel to read the stream from. A {@link SeekableByteChannel} skips the elements by seeking.
+     * @param bufferPool pool of the buffers the block data is read into
+     * @param readBufferSize size of the read buffer
+     */
+    public MkvBlockReader(@Nonnull final ReadableByteChannel channel,
+                          @Nonnull final FrameBufferPool bufferPool,
+                          final int readBufferSize) {
+        checkArgument(readBufferSize >= MAX_ID_LENGTH + MAX_SIZE_LENGTH + MAX_VALUE_SIZE, "Read buffer is too small");
+        mChannel = checkNotNull(channel);
+        mBufferPool = checkNotNull(bufferPool);
+        mReadBuffer = ByteBuffer.allocate(readBufferSize);
+        mReadBuffer.flip();
+    }
+
+    /**
+     * @return Tracks of the current stream read so far
+     */
+    @Nonnull
+    public List<Track> getTracks() {
+        return Collections.unmodifiableList(mTracks);
+    }
+
+    /**
+     * @return Number of the laced blocks and the blocks of unknown tracks skipped
+     */
+    public long getSkippedBlockCount() {
+        return mSkippedBlockCount;
+    }
+
+    /**
+     * Reads the next SimpleBlock
+     *
+     * @param block block to read into
+     * @return false at the end of the stream
+     * @throws IOException if the stream can't be read or is malformed
+     */
+    public boolean readBlock(@Nonnull final Block block) throws IOException {
+        checkNotNull(block);
+        while (fill(1)) {
+            final int id = readId();
+            final long size = readSize();
+            switch (id) {
+                case MkvBoundaries.EBML_HEADER_ID:
+                    // A new stream
+                    mTracks.clear();
+                    mTrack = null;
+                    mTimecodeScale = DEFAULT_TIMECODE_SCALE;
+                    skip(size);
+                    break;
+                case TRACKS_ID:
+                    // The tracks replace the ones read before
+                    mTracks.clear();
+                    mTrack = null;
+                    break;
+                case SEGMENT_ID:
+                case INFO_ID:
+                case MkvBoundaries.CLUSTER_ID:
+                    // Descend into the children
+                    break;
+                case TRACK_ENTRY_ID:
+                    mTrack = new Track();
+                    mTracks.add(mTrack);
+                    break;
+                case TIMECODE_SCALE_ID:
+                    mTimecodeScale = readUnsigned(size);
+                    break;
+                case TRACK_NUMBER_ID:
+                    currentTrack().mNumber = readUnsigned(size);
+                    break;
+                case TRACK_TYPE_ID:
+                    currentTrack().mType = (int) readUnsigned(size);
+                    break;
+                case CODEC_ID_ID:
+                    currentTrack().mCodecId = new String(readBytes(size), StandardCharsets.US_ASCII).trim();
+                    break;
+                case CODEC_PRIVATE_ID:
+                    currentTrack().mCodecPrivateData = readBytes(size);
+                    break;
+                case DEFAULT_DURATION_ID:
+                    currentTrack().mDefaultDurationInNanos = readUnsigned(size);
+                    break;
+                case MkvBoundaries.CLUSTER_TIMECODE_ID:
+                    mClusterTimecode = readUnsigned(size);
+                    break;
+                case SIMPLE_BLOCK_ID:
+                    if (readSimpleBlock(size, block)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    if (size == UNKNOWN_SIZE) {
+                        // Can't be skipped, read its children
+                        break;
+                    }
+
+                    skip(size);
+                    break;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean readSimpleBlock(final long size, final Block block) throws IOException {
+        if (size == UNKNOWN_SIZE) {
+            throw new IOException("SimpleBlock of unknown size");
+        }
+
+        requireBytes(1);
+        final int trackNumberLength = vintLength(mReadBuffer.get(mReadBuffer.position()));
+        final long headerSize = trackNumberLength + BLOCK_HEADER_SIZE;
+        if (trackNumberLength == 0 || size < headerSize) {
+            throw new IOException("Malformed SimpleBlock");
+        }
+
+        requireBytes((int) headerSize);
+        final long trackNumber = readVint(trackNumberLength, false);
+        final short relativeTimecode = mReadBuffer.getShort();
+        final int flags = mReadBuffer.get() & 0xff;
+        final long dataSize = size - headerSize;
+        final Track track = findTrack(trackNumber);
+        if (track == null || (flags & FLAG_LACING) != 0 || dataSize > Integer.MAX_VALUE) {
+            mSkippedBlockCount++;
+            skip(dataSize);
+            return false;
+        }
+
+        final ByteBuffer data = mBufferPool.acquire((int) dataSize);
+        try {
+            readFully(data);
+        } catch (final IOException e) {
+            mBufferPool.release(data);
+            throw e;
+        }
+
+        data.flip();
+        block.mTrack = track;
+        block.mTimecode = (mClusterTimecode + relativeTimecode) * mTimecodeScale / NANOS_IN_A_TIME_UNIT;
+        block.mFlags = flags;
+        block.mData = data;
+        return true;
+    }
+
+    private Track currentTrack() throws IOException {
+        if (mTrack == null) {
+            throw new IOException("Track element outside of a track entry");
+        }
+
+        return mTrack;
+    }
+
+    private Track findTrack(final long trackNumber) {
+        for (int i = 0; i < mTracks.size(); i++) {
+            if (mTracks.get(i).mNumber == trackNumber) {
+                return mTracks.get(i);
+            }
+        }
+
+        return null;
+    }
+
+    private int readId() throws IOException {
+        final int length = vintLength(mReadBuffer.get(mReadBuffer.position()));
+        if (length == 0 || length > MAX_ID_LENGTH) {
+            throw new IOException("Malformed element id");
+        }
+
+        requireBytes(length);
+        return (int) readVint(length, true);
+    }
+
+    /**
+     * @return Element size or {@link #UNKNOWN_SIZE}
+     */
+    private long readSize() throws IOException {
+        requireBytes(1);
+        final int length = vintLength(mReadBuffer.get(mReadBuffer.position()));
+        if (length == 0) {
+            throw new IOException("Malformed element size");
+        }
+
+        requireBytes(length);
+        final long size = readVint(length, false);
+        return size == (1L << (7 * length)) - 1 ? UNKNOWN_SIZE : size;
+    }
+
+    private long readVint(final int length, final boolean keepMarker) {
+        long value = mReadBuffer.get() & (keepMarker ? 0xff : 0xff >> length);
+        for (int i = 1; i < length; i++) {
+            value = (value << 8) | (mReadBuffer.get() & 0xff);
+        }
+
+        return value;
+    }
+
+    private long readUnsigned(final long size) throws IOException {
+        if (size < 0 || size > MAX_VALUE_SIZE) {
+            throw new IOException("Malformed unsigned integer element");
+        }
+
+        requireBytes((int) size);
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (mReadBuffer.get() & 0xff);
+        }
+
+        return value;
+    }
+
+    private byte[] readBytes(final long size) throws IOException {
+        if (size < 0 || size > MAX_CODEC_PRIVATE_SIZE) {
+            throw new IOException("Malformed binary element");
+        }
+
+        final ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        readFully(bytes);
+        return bytes.array();
+    }
+
+    /**
+     * Fills the buffer from the read buffer and then straight from the channel
+     */
+    private void readFully(final ByteBuffer destination) throws IOException {
+        final int buffered = Math.min(mReadBuffer.remaining(), destination.remaining());
+        final int limit = mReadBuffer.limit();
+        mReadBuffer.limit(mReadBuffer.position() + buffered);
+        destination.put(mReadBuffer);
+        mReadBuffer.limit(limit);
+
+        while (destination.hasRemaining()) {
+            if (mChannel.read(destination) < 0) {
+                throw new EOFException("Stream ends in the middle of an element");
+            }
+        }
+    }
+
+    private void skip(final long size) throws IOException {
+        if (size == UNKNOWN_SIZE) {
+            throw new IOException("Can't skip an element of unknown size");
+        }
+
+        final int buffered = (int) Math.min(mReadBuffer.remaining(), size);
+        mReadBuffer.position(mReadBuffer.position() + buffered);
+        long remaining = size - buffered;
+        if (remaining == 0) {
+            return;
+        }
+
+        if (mChannel instanceof SeekableByteChannel) {
+            final SeekableByteChannel channel = (SeekableByteChannel) mChannel;
+            channel.position(channel.position() + remaining);
+            return;
+        }
+
+        while (remaining > 0) {
+            mReadBuffer.clear();
+            mReadBuffer.limit((int) Math.min(mReadBuffer.capacity(), remaining));
+            final int read = mChannel.read(mReadBuffer);
+            if (read < 0) {
+                throw new EOFException("Stream ends in the middle of an element");
+            }
+
+            remaining -= read;
+        }
+
+        mReadBuffer.clear();
+        mReadBuffer.flip();
+    }
+
+    private void requireBytes(final int count) throws IOException {
+        if (!fill(count)) {
+            throw new EOFException("Stream ends in the middle of an element");
+        }
+    }
+
+    /**
+     * Reads from the channel until the read buffer has the given number of bytes
+     *
+     * @return false if the stream ends first
+     */
+    private boolean fill(final int count) throws IOException {
+        if (mReadBuffer.remaining() >= count) {
+            return true;
+        }
+
+        mReadBuffer.compact();
+        try {
+            while (mReadBuffer.position() < count) {
+                if (mChannel.read(mReadBuffer) < 0) {
+                    return false;
+                }
+            }
+        } finally {
+            mReadBuffer.flip();
+        }
+
+        return true;
+    }
+
+    private static int vintLength(final byte firstByte) {
+        final int value = firstByte & 0xff;
+        return value == 0 ? 0 : Integer.numberOfLeadingZeros(value) - (Integer.SIZE - Byte.SIZE) + 1;
+    }
+}
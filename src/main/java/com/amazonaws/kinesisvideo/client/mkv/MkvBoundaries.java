@@ -0,0 +1,146 @@
+package com.amazonaws.kinesisvideo.client.mkv;
+
+/**
+ * Helpers for locating the top-level element boundaries in a streaming MKV byte stream.
+ *
+ * The producer emits an EBML header at the start of every session followed by the segment and tracks
+ * elements and then one cluster per fragment. Both the EBML header and the cluster start with
+ * a well-known 4 byte element id which is what is being matched here.
+ *
+ * NOTE: The match is done on the raw bytes and could in theory be found inside of the frame data.
+ */
+public final class MkvBoundaries {
+    /**
+     * Size of the element ids being matched
+     */
+    public static final int ELEMENT_ID_SIZE = 4;
+
+    /**
+     * EBML header element id which starts a new MKV stream
+     */
+    public static final int EBML_HEADER_ID = 0x1A45DFA3;
+
+    /**
+     * Cluster element id which starts a new fragment
+     */
+    public static final int CLUSTER_ID = 0x1F43B675;
+
+    /**
+     * Cluster timecode element id
+     */
+    public static final int CLUSTER_TIMECODE_ID = 0xE7;
+
+    /**
+     * Returned by {@link #readClusterTimecode} when there is not enough data to read the timecode
+     */
+    public static final long TIMECODE_INCOMPLETE = -1;
+
+    /**
+     * Returned by {@link #readClusterTimecode} when the cluster doesn't start with a timecode
+     */
+    public static final long TIMECODE_NOT_FOUND = -2;
+
+    private static final int MAX_VINT_LENGTH = 8;
+
+    private MkvBoundaries() { }
+
+    /**
+     * Returns the offset of the first EBML header or cluster element id fully contained in the range.
+     *
+     * @param buffer Buffer to scan
+     * @param from Start offset, inclusive
+     * @param to End offset, exclusive
+     * @return Offset of the first byte of the element id or -1 if none
+     */
+    public static int indexOfBoundary(final byte[] buffer, final int from, final int to) {
+        int window = 0;
+        for (int i = from; i < to; i++) {
+            window = (window << 8) | (buffer[i] & 0xff);
+            if (i - from >= ELEMENT_ID_SIZE - 1 && (window == CLUSTER_ID || window == EBML_HEADER_ID)) {
+                return i - ELEMENT_ID_SIZE + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads the element id at the given offset
+     *
+     * @param buffer Buffer containing the id
+     * @param offset Offset of the first byte of the id
+     * @return Element id
+     */
+    public static int elementIdAt(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) << 24
+                | (buffer[offset + 1] & 0xff) << 16
+                | (buffer[offset + 2] & 0xff) << 8
+                | (buffer[offset + 3] & 0xff);
+    }
+
+    /**
+     * Reads the timecode of a cluster. The producer always writes the timecode as the first child of the cluster.
+     *
+     * @param buffer Buffer starting with the cluster element id
+     * @param offset Offset of the cluster element id
+     * @param length Number of bytes available from the offset
+     * @return Cluster timecode in the segment timecode scale, {@link #TIMECODE_INCOMPLETE}
+     *         or {@link #TIMECODE_NOT_FOUND}
+     */
+    public static long readClusterTimecode(final byte[] buffer, final int offset, final int length) {
+        final int end = offset + length;
+        int position = offset + ELEMENT_ID_SIZE;
+
+        // Skip the cluster size
+        if (position >= end) {
+            return TIMECODE_INCOMPLETE;
+        }
+
+        final int clusterSizeLength = vintLength(buffer[position]);
+        if (clusterSizeLength == 0) {
+            return TIMECODE_NOT_FOUND;
+        }
+
+        position += clusterSizeLength;
+        if (position + 1 >= end) {
+            return TIMECODE_INCOMPLETE;
+        }
+
+        if ((buffer[position] & 0xff) != CLUSTER_TIMECODE_ID) {
+            return TIMECODE_NOT_FOUND;
+        }
+
+        position++;
+        final int timecodeSizeLength = vintLength(buffer[position]);
+        if (timecodeSizeLength == 0 || position + timecodeSizeLength > end) {
+            return timecodeSizeLength == 0 ? TIMECODE_NOT_FOUND : TIMECODE_INCOMPLETE;
+        }
+
+        final long timecodeSize = readUnsigned(buffer, position, timecodeSizeLength)
+                & (0xffffffffffffffffL >>> (Long.SIZE - 7 * timecodeSizeLength));
+        position += timecodeSizeLength;
+        if (timecodeSize > MAX_VINT_LENGTH) {
+            return TIMECODE_NOT_FOUND;
+        }
+
+        if (position + timecodeSize > end) {
+            return TIMECODE_INCOMPLETE;
+        }
+
+        return readUnsigned(buffer, position, (int) timecodeSize);
+    }
+
+    private static int vintLength(final byte firstByte) {
+        final int value = firstByte & 0xff;
+        return value == 0 ? 0 : Integer.numberOfLeadingZeros(value) - (Integer.SIZE - Byte.SIZE) + 1;
+    }
+
+    private static long readUnsigned(final byte[] buffer, final int offset, final int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buffer[offset + i] & 0xff);
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,92 @@
+package com.amazonaws.kinesisvideo.client.mkv;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Splits a streaming MKV byte stream on the EBML header and cluster boundaries.
+ * <p>
+ * The last {@link #HOLD_BACK_SIZE} bytes of every buffer are held back until the next buffer arrives so that
+ * an element id is never split between two buffers. The buffers passed in need {@link #HOLD_BACK_SIZE} spare
+ * bytes in front of the data which are used to prepend the held back bytes without copying the data.
+ */
+public final class MkvStreamSplitter {
+    /**
+     * Number of bytes held back between the buffers
+     */
+    public static final int HOLD_BACK_SIZE = MkvBoundaries.ELEMENT_ID_SIZE - 1;
+
+    /**
+     * Receives the split stream
+     */
+    public interface Listener {
+        /**
+         * Called with the data between the boundaries in the stream order. The data is either a slice of the
+         * buffer passed to {@link #split} or, when flushing, of an internal buffer which is only valid for
+         * the duration of the call.
+         */
+        void onData(byte[] buffer, int offset, int length) throws IOException;
+
+        /**
+         * Called before the data of the element starting at the boundary.
+         *
+         * @param elementId either {@link MkvBoundaries#EBML_HEADER_ID} or {@link MkvBoundaries#CLUSTER_ID}
+         */
+        void onBoundary(int elementId) throws IOException;
+    }
+
+    private final byte[] mCarry = new byte[HOLD_BACK_SIZE];
+    private int mCarryLength;
+
+    /**
+     * Splits the next part of the stream.
+     *
+     * @param buffer Buffer with the data. The {@link #HOLD_BACK_SIZE} bytes before the offset are overwritten.
+     * @param offset Offset of the data, at least {@link #HOLD_BACK_SIZE}
+     * @param length Length of the data
+     * @param listener Listener to call
+     */
+    public void split(@Nonnull final byte[] buffer, final int offset, final int length,
+                      @Nonnull final Listener listener) throws IOException {
+        if (offset < HOLD_BACK_SIZE) {
+            throw new IllegalArgumentException("The buffer needs " + HOLD_BACK_SIZE + " bytes before the data");
+        }
+
+        // Prepend the bytes held back from the previous buffer
+        final int start = offset - mCarryLength;
+        System.arraycopy(mCarry, 0, buffer, start, mCarryLength);
+
+        final int end = offset + length;
+        final int holdFrom = Math.max(start, end - HOLD_BACK_SIZE);
+        int cursor = start;
+        int boundary;
+        while ((boundary = MkvBoundaries.indexOfBoundary(buffer, cursor, end)) >= 0) {
+            if (boundary > cursor) {
+                listener.onData(buffer, cursor, boundary - cursor);
+            }
+
+            listener.onBoundary(MkvBoundaries.elementIdAt(buffer, boundary));
+            listener.onData(buffer, boundary, MkvBoundaries.ELEMENT_ID_SIZE);
+            cursor = boundary + MkvBoundaries.ELEMENT_ID_SIZE;
+        }
+
+        if (cursor < holdFrom) {
+            listener.onData(buffer, cursor, holdFrom - cursor);
+            cursor = holdFrom;
+        }
+
+        mCarryLength = end - cursor;
+        System.arraycopy(buffer, cursor, mCarry, 0, mCarryLength);
+    }
+
+    /**
+     * Passes on the held back bytes. Called at the end of the stream or before a discontinuity.
+     */
+    public void flush(@Nonnull final Listener listener) throws IOException {
+        if (mCarryLength > 0) {
+            final int length = mCarryLength;
+            mCarryLength = 0;
+            listener.onData(mCarry, 0, length);
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package com.amazonaws.kinesisvideo.client.mkv.fake;
+
+import com.amazonaws.kinesisvideo.client.mkv.MkvBoundaries;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Generates a parseable MKV stream of a single video track at a target bit rate.
+ * <p>
+ * Every stream starts with the EBML header and a segment of unknown size holding the segment info and the tracks,
+ * followed by one cluster of unknown size per GOP. Each frame is a SimpleBlock of track 1 with a timecode relative
+ * to its cluster, the first one of every cluster being flagged as a key frame. The timecode scale is 1ms. The key
+ * frames are {@link Builder#keyFrameSizeRatio(int)} times the size of the other frames and the GOP adds up to the
+ * bit rate.
+ * <p>
+ * The generator is immutable and every {@link #openStream()} returns an independent stream, so one generator can
+ * feed any number of concurrent streams. The payloads come from random buffers shared by all of the streams, which
+ * never contain the bytes starting the cluster and EBML header IDs so that the clusters can be found by scanning.
+ * With wall clock pacing the frames become readable at their presentation time and their timecodes are the wall
+ * clock time, otherwise the stream is read as fast as possible with timecodes from the start timestamp.
+ */
+public final class FakeMkvGenerator {
+    private static final int EBML_ID = MkvBoundaries.EBML_HEADER_ID;
+    private static final int EBML_VERSION_ID = 0x4286;
+    private static final int EBML_READ_VERSION_ID = 0x42F7;
+    private static final int EBML_MAX_ID_LENGTH_ID = 0x42F2;
+    private static final int EBML_MAX_SIZE_LENGTH_ID = 0x42F3;
+    private static final int DOC_TYPE_ID = 0x4282;
+    private static final int DOC_TYPE_VERSION_ID = 0x4287;
+    private static final int DOC_TYPE_READ_VERSION_ID = 0x4285;
+    private static final int SEGMENT_ID = 0x18538067;
+    private static final int INFO_ID = 0x1549A966;
+    private static final int TIMECODE_SCALE_ID = 0x2AD7B1;
+    private static final int MUXING_APP_ID = 0x4D80;
+    private static final int WRITING_APP_ID = 0x5741;
+    private static final int TRACKS_ID = 0x1654AE6B;
+    private static final int TRACK_ENTRY_ID = 0xAE;
+    private static final int TRACK_NUMBER_ID = 0xD7;
+    private static final int TRACK_UID_ID = 0x73C5;
+    private static final int TRACK_TYPE_ID = 0x83;
+    private static final int CODEC_ID_ID = 0x86;
+    private static final int CODEC_PRIVATE_ID = 0x63A2;
+    private static final int NAME_ID = 0x536E;
+    private static final int VIDEO_ID = 0xE0;
+    private static final int PIXEL_WIDTH_ID = 0xB0;
+    private static final int PIXEL_HEIGHT_ID = 0xBA;
+    private static final int CLUSTER_ID = MkvBoundaries.CLUSTER_ID;
+    private static final int CLUSTER_TIMECODE_ID = MkvBoundaries.CLUSTER_TIMECODE_ID;
+    private static final int SIMPLE_BLOCK_ID = 0xA3;
+
+    private static final long TIMECODE_SCALE_1MS = 1000000L;
+    private static final int TRACK_NUMBER = 1;
+    private static final int TRACK_TYPE_VIDEO = 1;
+    private static final String APPLICATION_NAME = "kinesisvideo-fake-mkv";
+    private static final byte[] UNKNOWN_SIZE = {
+            (byte) 0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff
+    };
+    private static final int BLOCK_HEADER_SIZE = 4;
+    private static final int FLAG_KEY_FRAME = 0x80;
+    private static final int MAX_FRAME_PREFIX_SIZE = 64;
+    private static final long MILLIS_IN_A_SECOND = 1000L;
+    private static final long NANOS_IN_A_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long PAYLOAD_SEED = 0x5DEECE66DL;
+    private static final long NOT_STARTED = -1L;
+
+    // Read-only random payloads by size, shared by all of the generated streams
+    private static final ConcurrentMap<Integer, byte[]> PAYLOADS = new ConcurrentHashMap<Integer, byte[]>();
+
+    private final byte[] mHeader;
+    private final int mFps;
+    private final int mGopFrames;
+    private final int mKeyFrameSize;
+    private final int mFrameSize;
+    private final boolean mWallClockPacing;
+    private final long mStartTimestamp;
+    private final long mFrameCount;
+
+    private FakeMkvGenerator(@Nonnull final Builder builder) {
+        mFps = builder.mFps;
+        mGopFrames = builder.mGopFrames;
+        mWallClockPacing = builder.mWallClockPacing;
+        mStartTimestamp = builder.mStartTimestamp;
+        mFrameCount = builder.mFrameCount;
+
+        final long gopSize = (long) builder.mBitRateKbps * 1024 / Byte.SIZE * mGopFrames / mFps;
+        mFrameSize = (int) Math.max(1, gopSize / (builder.mKeyFrameSizeRatio + mGopFrames - 1));
+        mKeyFrameSize = mFrameSize * builder.mKeyFrameSizeRatio;
+        mHeader = createHeader(builder);
+        payload(mKeyFrameSize);
+    }
+
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Opens a new stream starting with the MKV header
+     */
+    @Nonnull
+    public InputStream openStream() {
+        return new GeneratedStream();
+    }
+
+    public int getKeyFrameSize() {
+        return mKeyFrameSize;
+    }
+
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+
+    /**
+     * EBML header, segment start, segment info and tracks
+     */
+    @Nonnull
+    public byte[] getHeader() {
+        return Arrays.copyOf(mHeader, mHeader.length);
+    }
+
+    @Nonnull
+    private static byte[] createHeader(@Nonnull final Builder builder) {
+        final EbmlBuffer ebml = new EbmlBuffer()
+                .uint(EBML_VERSION_ID, 1)
+                .uint(EBML_READ_VERSION_ID, 1)
+                .uint(EBML_MAX_ID_LENGTH_ID, 4)
+                .uint(EBML_MAX_SIZE_LENGTH_ID, 8)
+                .string(DOC_TYPE_ID, "matroska")
+                .uint(DOC_TYPE_VERSION_ID, 2)
+                .uint(DOC_TYPE_READ_VERSION_ID, 2);
+
+        final EbmlBuffer info = new EbmlBuffer()
+                .uint(TIMECODE_SCALE_ID, TIMECODE_SCALE_1MS)
+                .string(MUXING_APP_ID, APPLICATION_NAME)
+                .string(WRITING_APP_ID, APPLICATION_NAME);
+
+        final EbmlBuffer video = new EbmlBuffer()
+                .uint(PIXEL_WIDTH_ID, builder.mWidth)
+                .uint(PIXEL_HEIGHT_ID, builder.mHeight);
+
+        final EbmlBuffer trackEntry = new EbmlBuffer()
+                .uint(TRACK_NUMBER_ID, TRACK_NUMBER)
+                .uint(TRACK_UID_ID, TRACK_NUMBER)
+                .uint(TRACK_TYPE_ID, TRACK_TYPE_VIDEO)
+                .string(NAME_ID, builder.mTrackName)
+                .string(CODEC_ID_ID, builder.mCodecId);
+        if (builder.mCodecPrivateData != null) {
+            trackEntry.binary(CODEC_PRIVATE_ID, builder.mCodecPrivateData);
+        }
+
+        trackEntry.master(VIDEO_ID, video);
+
+        return new EbmlBuffer()
+                .master(EBML_ID, ebml)
+                .id(SEGMENT_ID)
+                .bytes(UNKNOWN_SIZE)
+                .master(INFO_ID, info)
+                .master(TRACKS_ID, new EbmlBuffer().master(TRACK_ENTRY_ID, trackEntry))
+                .toByteArray();
+    }
+
+    /**
+     * Random bytes without the first bytes of the cluster and EBML header IDs
+     */
+    @Nonnull
+    private static byte[] payload(final int size) {
+        byte[] payload = PAYLOADS.get(size);
+        if (payload == null) {
+            payload = new byte[size];
+            new Random(PAYLOAD_SEED + size).nextBytes(payload);
+            for (int i = 0; i < size; i++) {
+                if (payload[i] == (byte) (CLUSTER_ID >>> 24) || payload[i] == (byte) (EBML_ID >>> 24)) {
+                    payload[i] = 0;
+                }
+            }
+
+            final byte[] existing = PAYLOADS.putIfAbsent(size, payload);
+            if (existing != null) {
+                payload = existing;
+            }
+        }
+
+        return payload;
+    }
+
+    /**
+     * One generated stream. The parts of the stream are the header, then the prefix and the payload of every frame,
+     * the prefix holding the cluster start for the key frames and the SimpleBlock header.
+     */
+    private final class GeneratedStream extends InputStream {
+        private final byte[] mPrefix = new byte[MAX_FRAME_PREFIX_SIZE];
+        private final byte[] mKeyFramePayload = payload(mKeyFrameSize);
+        private final byte[] mFramePayload = payload(mFrameSize);
+        private long mFrameIndex;
+        private long mStartTime = NOT_STARTED;
+        private long mStartNanos;
+        private long mClusterTimecode;
+        private boolean mPayloadNext;
+        private byte[] mPart = mHeader;
+        private int mPartOffset;
+        private int mPartEnd = mHeader.length;
+        private boolean mClosed;
+
+        @Override
+        public int read() throws IOException {
+            final byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(@Nonnull final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            int bytesRead = 0;
+            while (bytesRead < length) {
+                if (mPartOffset == mPartEnd) {
+                    // Hand out what has been read rather than wait for the next frame
+                    if (bytesRead > 0 && !mPayloadNext && !isFrameDue()) {
+                        break;
+                    }
+
+                    if (!nextPart()) {
+                        break;
+                    }
+                }
+
+                final int count = Math.min(length - bytesRead, mPartEnd - mPartOffset);
+                System.arraycopy(mPart, mPartOffset, buffer, offset + bytesRead, count);
+                mPartOffset += count;
+                bytesRead += count;
+            }
+
+            return bytesRead == 0 ? -1 : bytesRead;
+        }
+
+        @Override
+        public int available() {
+            return mPartEnd - mPartOffset;
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+
+        private boolean nextPart() throws IOException {
+            if (mClosed) {
+                return false;
+            }
+
+            final boolean keyFrame = mFrameIndex % mGopFrames == 0;
+            if (mPayloadNext) {
+                mPart = keyFrame ? mKeyFramePayload : mFramePayload;
+                mPartOffset = 0;
+                mPartEnd = mPart.length;
+                mPayloadNext = false;
+                mFrameIndex++;
+                return true;
+            }
+
+            if (mFrameCount >= 0 && mFrameIndex >= mFrameCount) {
+                return false;
+            }
+
+            awaitFrame();
+            final long frameTimecode = frameTimecode(mFrameIndex);
+            int position = 0;
+            if (keyFrame) {
+                mClusterTimecode = frameTimecode;
+                position = putId(mPrefix, position, CLUSTER_ID);
+                System.arraycopy(UNKNOWN_SIZE, 0, mPrefix, position, UNKNOWN_SIZE.length);
+                position += UNKNOWN_SIZE.length;
+                position = putId(mPrefix, position, CLUSTER_TIMECODE_ID);
+                position = putUnsignedElementBody(mPrefix, position, mClusterTimecode);
+            }
+
+            final int payloadSize = keyFrame ? mKeyFrameSize : mFrameSize;
+            final int relativeTimecode = (int) (frameTimecode - mClusterTimecode);
+            position = putId(mPrefix, position, SIMPLE_BLOCK_ID);
+            position = putSize(mPrefix, position, BLOCK_HEADER_SIZE + payloadSize);
+            mPrefix[position++] = (byte) (0x80 | TRACK_NUMBER);
+            mPrefix[position++] = (byte) (relativeTimecode >>> 8);
+            mPrefix[position++] = (byte) relativeTimecode;
+            mPrefix[position++] = (byte) (keyFrame ? FLAG_KEY_FRAME : 0);
+
+            mPart = mPrefix;
+            mPartOffset = 0;
+            mPartEnd = position;
+            mPayloadNext = true;
+            return true;
+        }
+
+        private long frameTimecode(final long frameIndex) {
+            return mStartTime + frameIndex * MILLIS_IN_A_SECOND / mFps;
+        }
+
+        private boolean isFrameDue() {
+            return !mWallClockPacing || mStartTime == NOT_STARTED
+                    || System.nanoTime() >= mStartNanos + mFrameIndex * NANOS_IN_A_SECOND / mFps;
+        }
+
+        private void awaitFrame() throws IOException {
+            if (mStartTime == NOT_STARTED) {
+                mStartTime = mWallClockPacing || mStartTimestamp == NOT_STARTED
+                        ? System.currentTimeMillis()
+                        : mStartTimestamp;
+                mStartNanos = System.nanoTime();
+            }
+
+            if (!mWallClockPacing) {
+                return;
+            }
+
+            final long waitTime = mStartNanos + mFrameIndex * NANOS_IN_A_SECOND / mFps - System.nanoTime();
+            if (waitTime > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitTime);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while pacing the fake MKV stream");
+                }
+            }
+        }
+    }
+
+    private static int putId(@Nonnull final byte[] buffer, final int offset, final int id) {
+        int position = offset;
+        for (int shift = (idLength(id) - 1) * Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            buffer[position++] = (byte) (id >>> shift);
+        }
+
+        return position;
+    }
+
+    private static int putSize(@Nonnull final byte[] buffer, final int offset, final long size) {
+        int length = 1;
+        // All ones is reserved for the unknown size
+        while (size >= (1L << (7 * length)) - 1) {
+            length++;
+        }
+
+        int position = offset;
+        final long marked = size | (1L << (7 * length));
+        for (int shift = (length - 1) * Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            buffer[position++] = (byte) (marked >>> shift);
+        }
+
+        return position;
+    }
+
+    private static int putUnsignedElementBody(@Nonnull final byte[] buffer, final int offset, final long value) {
+        int length = 1;
+        while (length < Long.SIZE / Byte.SIZE && (value >>> (length * Byte.SIZE)) != 0) {
+            length++;
+        }
+
+        int position = putSize(buffer, offset, length);
+        for (int shift = (length - 1) * Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+
+        return position;
+    }
+
+    private static int idLength(final int id) {
+        if ((id & 0xFF000000) != 0) {
+            return 4;
+        } else if ((id & 0xFF0000) != 0) {
+            return 3;
+        } else if ((id & 0xFF00) != 0) {
+            return 2;
+        }
+
+        return 1;
+    }
+
+    /**
+     * Builds the EBML elements of the header
+     */
+    private static final class EbmlBuffer {
+        private static final int MAX_ELEMENT_PREFIX_SIZE = 16;
+
+        private byte[] mBuffer = new byte[256];
+        private int mSize;
+
+        @Nonnull
+        EbmlBuffer id(final int id) {
+            ensureCapacity(MAX_ELEMENT_PREFIX_SIZE);
+            mSize = putId(mBuffer, mSize, id);
+            return this;
+        }
+
+        @Nonnull
+        EbmlBuffer bytes(@Nonnull final byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, mBuffer, mSize, bytes.length);
+            mSize += bytes.length;
+            return this;
+        }
+
+        @Nonnull
+        EbmlBuffer uint(final int id, final long value) {
+            id(id);
+            ensureCapacity(MAX_ELEMENT_PREFIX_SIZE);
+            mSize = putUnsignedElementBody(mBuffer, mSize, value);
+            return this;
+        }
+
+        @Nonnull
+        EbmlBuffer string(final int id, @Nonnull final String value) {
+            return binary(id, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Nonnull
+        EbmlBuffer binary(final int id, @Nonnull final byte[] value) {
+            id(id);
+            mSize = putSize(mBuffer, mSize, value.length);
+            return bytes(value);
+        }
+
+        @Nonnull
+        EbmlBuffer master(final int id, @Nonnull final EbmlBuffer children) {
+            return binary(id, children.toByteArray());
+        }
+
+        @Nonnull
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBuffer, mSize);
+        }
+
+        private void ensureCapacity(final int extra) {
+            if (mSize + extra + MAX_ELEMENT_PREFIX_SIZE > mBuffer.length) {
+                mBuffer = Arrays.copyOf(mBuffer, Math.max(2 * mBuffer.length, mSize + extra + MAX_ELEMENT_PREFIX_SIZE));
+            }
+        }
+    }
+
+    public static final class Builder {
+        private static final int DEFAULT_BIT_RATE_KBPS = 2048;
+        private static final int DEFAULT_FPS = 30;
+        private static final int DEFAULT_GOP_FRAMES = 60;
+        private static final int DEFAULT_KEY_FRAME_SIZE_RATIO = 4;
+        private static final int DEFAULT_WIDTH = 1280;
+        private static final int DEFAULT_HEIGHT = 720;
+        private static final String DEFAULT_CODEC_ID = "V_MPEG4/ISO/AVC";
+        private static final String DEFAULT_TRACK_NAME = "fake-video";
+        private static final long MAX_CLUSTER_DURATION_IN_MILLIS = Short.MAX_VALUE;
+
+        private int mBitRateKbps = DEFAULT_BIT_RATE_KBPS;
+        private int mFps = DEFAULT_FPS;
+        private int mGopFrames = DEFAULT_GOP_FRAMES;
+        private int mKeyFrameSizeRatio = DEFAULT_KEY_FRAME_SIZE_RATIO;
+        private int mWidth = DEFAULT_WIDTH;
+        private int mHeight = DEFAULT_HEIGHT;
+        private String mCodecId = DEFAULT_CODEC_ID;
+        private String mTrackName = DEFAULT_TRACK_NAME;
+        private byte[] mCodecPrivateData;
+        private boolean mWallClockPacing;
+        private long mStartTimestamp = NOT_STARTED;
+        private long mFrameCount = -1;
+
+        private Builder() {
+        }
+
+        public Builder bitRateKbps(final int bitRateKbps) {
+            checkArgument(bitRateKbps > 0, "bit rate should be positive");
+            mBitRateKbps = bitRateKbps;
+            return this;
+        }
+
+        public Builder fps(final int fps) {
+            checkArgument(fps > 0, "frame rate should be positive");
+            mFps = fps;
+            return this;
+        }
+
+        /**
+         * Frames per cluster, starting with a key frame
+         */
+        public Builder gopFrames(final int gopFrames) {
+            checkArgument(gopFrames > 0, "GOP should be positive");
+            mGopFrames = gopFrames;
+            return this;
+        }
+
+        /**
+         * Size of the key frames relative to the other frames, 4 by default
+         */
+        public Builder keyFrameSizeRatio(final int keyFrameSizeRatio) {
+            checkArgument(keyFrameSizeRatio > 0, "key frame size ratio should be positive");
+            mKeyFrameSizeRatio = keyFrameSizeRatio;
+            return this;
+        }
+
+        public Builder resolution(final int width, final int height) {
+            checkArgument(width > 0 && height > 0, "resolution should be positive");
+            mWidth = width;
+            mHeight = height;
+            return this;
+        }
+
+        public Builder codecId(@Nonnull final String codecId) {
+            mCodecId = checkNotNull(codecId);
+            return this;
+        }
+
+        public Builder trackName(@Nonnull final String trackName) {
+            mTrackName = checkNotNull(trackName);
+            return this;
+        }
+
+        public Builder codecPrivateData(@Nullable final byte[] codecPrivateData) {
+            mCodecPrivateData = codecPrivateData == null ? null : codecPrivateData.clone();
+            return this;
+        }
+
+        /**
+         * Whether the frames become readable at their presentation time, with the wall clock as their timecodes
+         */
+        public Builder wallClockPacing(final boolean wallClockPacing) {
+            mWallClockPacing = wallClockPacing;
+            return this;
+        }
+
+        /**
+         * Timecode in milliseconds of the first frame without wall clock pacing, the time of the first read by
+         * default
+         */
+        public Builder startTimestamp(final long startTimestamp) {
+            checkArgument(startTimestamp >= 0, "start timestamp should not be negative");
+            mStartTimestamp = startTimestamp;
+            return this;
+        }
+
+        /**
+         * Frames after which the streams end, endless by default
+         */
+        public Builder frameCount(final long frameCount) {
+            checkArgument(frameCount >= 0, "frame count should not be negative");
+            mFrameCount = frameCount;
+            return this;
+        }
+
+        public FakeMkvGenerator build() {
+            checkArgument((mGopFrames - 1) * MILLIS_IN_A_SECOND / mFps <= MAX_CLUSTER_DURATION_IN_MILLIS,
+                    "GOP is too long for the relative timecodes of the blocks");
+            return new FakeMkvGenerator(this);
+        }
+    }
+}
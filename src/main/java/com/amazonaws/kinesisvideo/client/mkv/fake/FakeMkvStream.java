@@ -9,11 +9,16 @@ import com.google.common.primitives.Longs;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Random;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Raw fake MKV stream of random header bytes and clusters of random bodies, only meant to push bytes.
+ * <p>
+ * Use {@link FakeMkvGenerator} for a parseable stream with real tracks, SimpleBlocks and a target bit rate.
+ */
 public final class FakeMkvStream {
     private static final Random RAND = new Random();
     private static final int DEFAULT_HEADER_SIZE = 300;
@@ -121,21 +126,20 @@ public final class FakeMkvStream {
      * Return byte source containing a specified number of random bytes.
      */
 
-    private static Map<Integer, ByteSource> sBytesourceCache = new HashMap<>();
+    private static final ConcurrentMap<Integer, ByteSource> sBytesourceCache =
+            new ConcurrentHashMap<Integer, ByteSource>();
 
     private static ByteSource randomBytes(final Integer size) {
-        ensureByteSourceInCache(size);
-        return sBytesourceCache.get(size);
-    }
-
-    private static void ensureByteSourceInCache(final Integer size) {
-        if (sBytesourceCache.containsKey(size)) {
-            return;
+        final ByteSource cached = sBytesourceCache.get(size);
+        if (cached != null) {
+            return cached;
         }
 
-        byte[] body = new byte[size];
+        final byte[] body = new byte[size];
         RAND.nextBytes(body);
-        sBytesourceCache.put(size, ByteSource.wrap(body));
+        final ByteSource created = ByteSource.wrap(body);
+        final ByteSource existing = sBytesourceCache.putIfAbsent(size, created);
+        return existing == null ? created : existing;
     }
 
     public static interface Callback<T> {
@@ -0,0 +1,276 @@
+package com.amazonaws.kinesisvideo.common.logging;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+/**
+ * {@link OutputChannel} which moves the formatting and the printing of the messages off the logging thread.
+ * <p>
+ * The messages are handed to a background writer thread through a bounded lock-free ring. Printing a message
+ * only claims a slot of the ring, the writer wakes up every {@link #WRITER_INTERVAL_IN_MILLIS} or after every half
+ * a ring of messages and prints the messages in batches, flushing the wrapped channel once per batch if it is
+ * {@link Flushable}. The messages which don't fit in the ring are dropped and counted rather than blocking the
+ * caller. The writer reports the number of dropped messages through the wrapped channel.
+ * <p>
+ * {@link Log} hands the templates and arguments of the parameterized messages to the channel as is, so they are
+ * only formatted on the writer thread. Closing the channel prints the pending messages, the messages printed
+ * after that are printed on the calling thread.
+ */
+public final class AsyncOutputChannel implements OutputChannel, Closeable {
+    /**
+     * Default number of the messages waiting to be printed
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * How often the writer prints the pending messages
+     */
+    public static final long WRITER_INTERVAL_IN_MILLIS = 10;
+
+    private static final int BATCH_SIZE = 256;
+    private static final long CLOSE_TIMEOUT_IN_MILLIS = 5000;
+    private static final String DROPPED_MESSAGES_FORMAT = "Dropped %d log messages, %d in total";
+
+    private final OutputChannel mOutputChannel;
+    private final int mMask;
+    private final AtomicLongArray mSequences;
+    private final int[] mLevels;
+    private final String[] mTags;
+    private final String[] mMessages;
+    private final Object[][] mArgs;
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final Thread mWriterThread;
+    private volatile boolean mClosed;
+
+    // Only touched by the writer
+    private long mHead;
+    private long mReportedDroppedCount;
+
+    /**
+     * Creates a new instance with the default capacity and starts its writer thread
+     *
+     * @param outputChannel
+     *         Channel to print the messages to
+     * @param writerThreadName
+     *         Name of the writer thread
+     */
+    public AsyncOutputChannel(final @Nonnull OutputChannel outputChannel, final @Nonnull String writerThreadName) {
+        this(outputChannel, writerThreadName, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance and starts its writer thread
+     *
+     * @param outputChannel
+     *         Channel to print the messages to
+     * @param writerThreadName
+     *         Name of the writer thread
+     * @param capacity
+     *         Number of the messages waiting to be printed, a power of two
+     */
+    public AsyncOutputChannel(final @Nonnull OutputChannel outputChannel,
+                              final @Nonnull String writerThreadName,
+                              final int capacity) {
+        Preconditions.checkArgument(capacity > 1 && Integer.bitCount(capacity) == 1,
+                "Capacity must be a power of two");
+        mOutputChannel = Preconditions.checkNotNull(outputChannel);
+        mMask = capacity - 1;
+        mSequences = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            mSequences.set(slot, slot);
+        }
+
+        mLevels = new int[capacity];
+        mTags = new String[capacity];
+        mMessages = new String[capacity];
+        mArgs = new Object[capacity][];
+
+        mWriterThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, Preconditions.checkNotNull(writerThreadName));
+        mWriterThread.setDaemon(true);
+        mWriterThread.start();
+    }
+
+    @Override
+    public void print(final int level, final @Nonnull String tag, final @Nonnull String message) {
+        print(level, tag, message, null);
+    }
+
+    /**
+     * Prints a message formatted on the writer thread. The arguments must not change after the call.
+     *
+     * @param level
+     *         Log level
+     * @param tag
+     *         Tag to be used with the message
+     * @param template
+     *         {@link String#format} template of the message
+     * @param args
+     *         Arguments of the template or null if the template is the message
+     */
+    public void print(final int level,
+                      final @Nonnull String tag,
+                      final @Nonnull String template,
+                      final @Nullable Object[] args) {
+        if (mClosed) {
+            printNow(level, tag, template, args);
+            return;
+        }
+
+        long position;
+        int slot;
+        while (true) {
+            position = mTail.get();
+            slot = (int) (position & mMask);
+            final long sequence = mSequences.get(slot);
+            if (sequence < position) {
+                // The writer hasn't caught up
+                mDroppedCount.incrementAndGet();
+                return;
+            }
+
+            if (sequence == position && mTail.compareAndSet(position, position + 1)) {
+                break;
+            }
+        }
+
+        mLevels[slot] = level;
+        mTags[slot] = tag;
+        mMessages[slot] = template;
+        mArgs[slot] = args;
+        mSequences.lazySet(slot, position + 1);
+
+        if ((position & (mMask >> 1)) == 0) {
+            // Don't wait for the writer interval once half a ring has been put
+            LockSupport.unpark(mWriterThread);
+        }
+    }
+
+    /**
+     * @return Number of the messages dropped because the ring was full
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Prints the pending messages and stops the writer thread
+     */
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+        LockSupport.unpark(mWriterThread);
+        try {
+            mWriterThread.join(CLOSE_TIMEOUT_IN_MILLIS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "asynchronous " + mOutputChannel;
+    }
+
+    private void write() {
+        while (true) {
+            // Read the flag first so that the messages put before closing are printed
+            final boolean closed = mClosed;
+            int printed;
+            do {
+                printed = printBatch();
+            } while (printed == BATCH_SIZE);
+
+            reportDroppedMessages();
+            if (closed) {
+                return;
+            }
+
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(WRITER_INTERVAL_IN_MILLIS));
+        }
+    }
+
+    private int printBatch() {
+        int printed = 0;
+        while (printed < BATCH_SIZE) {
+            final int slot = (int) (mHead & mMask);
+            if (mSequences.get(slot) != mHead + 1) {
+                break;
+            }
+
+            final int level = mLevels[slot];
+            final String tag = mTags[slot];
+            final String message = mMessages[slot];
+            final Object[] args = mArgs[slot];
+            mTags[slot] = null;
+            mMessages[slot] = null;
+            mArgs[slot] = null;
+            mSequences.lazySet(slot, mHead + mMask + 1);
+            mHead++;
+
+            printNow(level, tag, message, args);
+            printed++;
+        }
+
+        if (printed > 0) {
+            flush();
+        }
+
+        return printed;
+    }
+
+    private void reportDroppedMessages() {
+        final long droppedCount = mDroppedCount.get();
+        if (droppedCount != mReportedDroppedCount) {
+            printNow(LogLevel.WARN.getLogLevel(), getClass().getSimpleName(), DROPPED_MESSAGES_FORMAT,
+                    new Object[] { droppedCount - mReportedDroppedCount, droppedCount });
+            flush();
+            mReportedDroppedCount = droppedCount;
+        }
+    }
+
+    private void printNow(final int level,
+                          final @Nonnull String tag,
+                          final @Nonnull String template,
+                          final @Nullable Object[] args) {
+        try {
+            mOutputChannel.print(level, tag, args == null ? template : String.format(template, args));
+        } catch (final RuntimeException e) {
+            // A malformed message or a failing channel must not stop the writer
+            try {
+                mOutputChannel.print(LogLevel.ERROR.getLogLevel(), tag,
+                        String.format("Failed to print \"%s\": %s", template, e));
+            } catch (final RuntimeException ignored) {
+                // Nothing to report it to
+            }
+        }
+    }
+
+    private void flush() {
+        if (mOutputChannel instanceof Flushable) {
+            try {
+                ((Flushable) mOutputChannel).flush();
+            } catch (final Exception e) {
+                // Nothing to report it to
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.amazonaws.kinesisvideo.common.logging;
 
+import java.io.Flushable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
@@ -37,21 +40,44 @@ public class Log {
     private static final int DEFAULT_MESSAGE_BUFFER = 1024;
 
     /**
-     * OutputChannel implementation based on System.out. This can be useful in JUnit tests, since they run in an
-     * environment that lacks a working implementation of actual logging mechanism.
+     * Terminates the messages printed to the console
+     */
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    /**
+     * Synchronous OutputChannel implementation based on System.out. The messages are buffered until the channel
+     * is flushed, which {@link AsyncOutputChannel} does once per batch.
      */
-    public static final OutputChannel SYSTEM_OUT = new OutputChannel() {
+    private static final class ConsoleOutputChannel implements OutputChannel, Flushable {
+        private final StringBuilder mBuffer = new StringBuilder(DEFAULT_MESSAGE_BUFFER);
+
         @Override
-        public void print(final int level, final String tag, final String message) {
-            System.out.println(
-                    String.format("%s%s%s\t%s", LogLevel.fromInt(level).toString(), MESSAGE_DELIMITER, tag, message));
+        public synchronized void print(final int level, final String tag, final String message) {
+            mBuffer.append(LogLevel.fromInt(level).toString()).append(MESSAGE_DELIMITER)
+                    .append(tag).append('\t').append(message).append(LINE_SEPARATOR);
+        }
+
+        @Override
+        public synchronized void flush() {
+            System.out.print(mBuffer);
+            System.out.flush();
+            mBuffer.setLength(0);
         }
 
         @Override
         public String toString() {
             return "standard output console";
         }
-    };
+    }
+
+    /**
+     * OutputChannel implementation based on System.out. This can be useful in JUnit tests, since they run in an
+     * environment that lacks a working implementation of actual logging mechanism.
+     * <p>
+     * The messages are formatted and printed on a background thread, see {@link AsyncOutputChannel}. The pending
+     * messages are printed when the JVM shuts down.
+     */
+    public static final OutputChannel SYSTEM_OUT = createSystemOut();
 
     /**
      * Output channel to use.
@@ -59,9 +85,9 @@ public class Log {
     private final OutputChannel mOutputChannel;
 
     /**
-     * Used to build the log message
+     * Set if the output channel formats the parameterized messages itself
      */
-    private final StringBuilder mStringBuilder;
+    private final AsyncOutputChannel mAsyncOutputChannel;
 
     /**
      * Current tag value
@@ -97,7 +123,19 @@ public class Log {
         mOutputChannel = Preconditions.checkNotNull(outputChannel);
         mTag = Preconditions.checkNotNull(tag);
         mCurrentLogLevel = currentLogLevel;
-        mStringBuilder = new StringBuilder(DEFAULT_MESSAGE_BUFFER);
+        mAsyncOutputChannel = outputChannel instanceof AsyncOutputChannel ? (AsyncOutputChannel) outputChannel : null;
+    }
+
+    private static OutputChannel createSystemOut() {
+        final AsyncOutputChannel systemOut = new AsyncOutputChannel(new ConsoleOutputChannel(), BASE_TAG + "Log");
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                systemOut.close();
+            }
+        }));
+
+        return systemOut;
     }
 
     /**
@@ -110,6 +148,17 @@ public class Log {
         mCurrentLogLevel = logLevel;
     }
 
+    /**
+     * Checks whether the messages of a level are logged. Useful to skip building expensive arguments.
+     *
+     * @param logLevel
+     *         Log level
+     * @return Whether the messages of the level are logged
+     */
+    public boolean isLoggable(final LogLevel logLevel) {
+        return logLevel.getLogLevel() >= mCurrentLogLevel.getLogLevel();
+    }
+
     /**
      * Sets the tag with the package name prefix
      */
@@ -129,13 +178,14 @@ public class Log {
      *         Message to log
      */
     public void log(final LogLevel logLevel, final String message) {
-        if (logLevel.getLogLevel() >= mCurrentLogLevel.getLogLevel()) {
+        if (isLoggable(logLevel)) {
             mOutputChannel.print(logLevel.getLogLevel(), mTag, message);
         }
     }
 
     /**
-     * Parameterized versions of the logging functions
+     * Parameterized versions of the logging functions. The message is only formatted if the level is logged and,
+     * with an {@link AsyncOutputChannel} and immutable arguments, on the writer thread of the channel.
      *
      * @param logLevel
      *         Log level
@@ -145,7 +195,15 @@ public class Log {
      *         Arguments
      */
     public void log(final LogLevel logLevel, final String template, final Object... args) {
-        log(logLevel, String.format(template, args));
+        if (!isLoggable(logLevel)) {
+            return;
+        }
+
+        if (mAsyncOutputChannel != null && isImmutable(args)) {
+            mAsyncOutputChannel.print(logLevel.getLogLevel(), mTag, template, args);
+        } else {
+            mOutputChannel.print(logLevel.getLogLevel(), mTag, String.format(template, args));
+        }
     }
 
     /**
@@ -287,11 +345,19 @@ public class Log {
      *         Exception to log
      */
     public void exception(final Throwable e) {
+        if (!isLoggable(LogLevel.ERROR)) {
+            return;
+        }
+
         log(LogLevel.ERROR,
                 createMessage("EXCEPTION: ", e.getClass().getSimpleName(), MESSAGE_DELIMITER, e.getMessage()));
     }
 
     public void exception(final Throwable e, final String template, final Object... args) {
+        if (!isLoggable(LogLevel.ERROR)) {
+            return;
+        }
+
         log(LogLevel.ERROR, createMessage("EXCEPTION: ", e.getClass().getSimpleName(), MESSAGE_DELIMITER,
                 String.format(template, args), MESSAGE_DELIMITER, e.getMessage()));
     }
@@ -310,35 +376,52 @@ public class Log {
             return (String) args[0];
         }
 
-        // Clear the buffer
-        mStringBuilder.setLength(0);
+        // Built per call as the instances are shared between threads
+        final StringBuilder builder = new StringBuilder(DEFAULT_MESSAGE_BUFFER);
 
         // Add the date
-        mStringBuilder.append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z' ").format(new Date()));
+        builder.append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z' ").format(new Date()));
 
         // Add the thread
-        mStringBuilder.append("T").append(Thread.currentThread().getId()).append(MESSAGE_DELIMITER);
+        builder.append("T").append(Thread.currentThread().getId()).append(MESSAGE_DELIMITER);
 
         // Append the rest
-        addFlattenedArray(args);
+        addFlattenedArray(builder, args);
+
+        return builder.toString();
+    }
+
+    /**
+     * Checks whether the arguments can be formatted later on another thread. Only the immutable numbers are, not
+     * the atomic ones or the adders.
+     */
+    private static boolean isImmutable(final Object[] args) {
+        for (final Object arg : args) {
+            if (arg != null && !(arg instanceof String || arg instanceof Long || arg instanceof Integer
+                    || arg instanceof Short || arg instanceof Byte || arg instanceof Double || arg instanceof Float
+                    || arg instanceof BigInteger || arg instanceof BigDecimal || arg instanceof Boolean
+                    || arg instanceof Character || arg instanceof Enum)) {
+                return false;
+            }
+        }
 
-        return mStringBuilder.toString();
+        return true;
     }
 
     /**
      * Converts an Object array to a flat string representation, recursively expanding subarrays,
      * and appends the result to the StringBuilder.
      */
-    private void addFlattenedArray(final Object[] args) {
+    private static void addFlattenedArray(final StringBuilder builder, final Object[] args) {
         for (final Object item : args) {
             if (null == item) {
-                mStringBuilder.append("null");
+                builder.append("null");
             } else if (item instanceof byte[]) {
-                addHexString((byte[]) item);
+                addHexString(builder, (byte[]) item);
             } else if (item instanceof Object[]) {
-                addFlattenedArray((Object[]) item);
+                addFlattenedArray(builder, (Object[]) item);
             } else {
-                mStringBuilder.append(item.toString());
+                builder.append(item.toString());
             }
         }
     }
@@ -346,17 +429,19 @@ public class Log {
     /**
      * Converts a byte array to hex string representation and appends it to the StringBuilder.
      *
+     * @param builder
+     *         Builder to append to
      * @param bytes
      *         Array of types to represent
      */
-    private void addHexString(final byte[] bytes) {
+    private static void addHexString(final StringBuilder builder, final byte[] bytes) {
         for (int i = 0; i < bytes.length; i++) {
             final int unsignedByte = bytes[i] & 0xff; // Need to cast up to int to preserve unsignedness of each byte
             if (unsignedByte < 16) {
-                mStringBuilder.append('0'); // so we have two characters per digit
+                builder.append('0'); // so we have two characters per digit
             }
 
-            mStringBuilder.append(Integer.toHexString(unsignedByte));
+            builder.append(Integer.toHexString(unsignedByte));
         }
     }
 }
\ No newline at end of file
@@ -5,6 +5,54 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
 public final class ChunkEncoder {
+    /**
+     * Space to reserve in front of the payload for {@link #encodeInPlace(byte[], int, int)}:
+     * up to 8 hex digits for the chunk size followed by CRLF.
+     */
+    public static final int MAX_CHUNK_HEADER_SIZE = 10;
+
+    /**
+     * Space to reserve after the payload for {@link #encodeInPlace(byte[], int, int)}.
+     */
+    public static final int CHUNK_TRAILER_SIZE = 2;
+
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    /**
+     * Encodes a chunk around a payload which has already been placed in the buffer.
+     * <p>
+     * The chunk size and CRLF are written right in front of the payload and the closing CRLF right after it,
+     * so the caller must reserve {@link #MAX_CHUNK_HEADER_SIZE} bytes before the payload and
+     * {@link #CHUNK_TRAILER_SIZE} bytes after it. No allocations or copies of the payload are made.
+     *
+     * @param buffer buffer holding the payload
+     * @param payloadOffset offset of the payload in the buffer
+     * @param count payload size
+     * @return offset in the buffer where the encoded chunk starts. The chunk ends at
+     *         {@code payloadOffset + count + CHUNK_TRAILER_SIZE}
+     */
+    public static int encodeInPlace(final byte[] buffer, final int payloadOffset, final int count) {
+        if (payloadOffset < MAX_CHUNK_HEADER_SIZE || payloadOffset + count + CHUNK_TRAILER_SIZE > buffer.length) {
+            throw new IllegalArgumentException("Not enough space reserved around the chunk payload");
+        }
+
+        buffer[payloadOffset + count] = '\r';
+        buffer[payloadOffset + count + 1] = '\n';
+
+        int offset = payloadOffset;
+        buffer[--offset] = '\n';
+        buffer[--offset] = '\r';
+
+        int remaining = count;
+        do {
+            buffer[--offset] = HEX_DIGITS[remaining & 0xf];
+            remaining >>>= 4;
+        } while (remaining != 0);
+
+        return offset;
+    }
 
     public static byte[] encode(final byte[] bytes, final int count) {
         try {
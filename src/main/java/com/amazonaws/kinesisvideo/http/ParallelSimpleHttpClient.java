@@ -47,6 +47,7 @@ public final class ParallelSimpleHttpClient implements HttpClient {
         private Consumer<InputStream> mReceiver;
         private Integer mTimeout;
         private Consumer<Exception> mCompletion;
+        private SocketFactory mSocketFactory = new SocketFactory();
         // TODO: Set to correct output channel
         private Log mLog = new Log(Log.SYSTEM_OUT);
 
@@ -95,6 +96,14 @@ public final class ParallelSimpleHttpClient implements HttpClient {
             return this;
         }
 
+        /**
+         * Factory of the connection sockets. Allows running over an emulated network in the tests.
+         */
+        public Builder socketFactory(final SocketFactory socketFactory) {
+            mSocketFactory = checkNotNull(socketFactory);
+            return this;
+        }
+
         public Builder log(final Log log) {
             if (log == null) {
                 throw new NullPointerException("log");
@@ -136,7 +145,7 @@ public final class ParallelSimpleHttpClient implements HttpClient {
     }
 
     private void initSocket() throws IOException {
-        mSocket = new SocketFactory().createSocket(mBuilder.mUri);
+        mSocket = mBuilder.mSocketFactory.createSocket(mBuilder.mUri);
         if (mBuilder.mTimeout != null) {
             mSocket.setSoTimeout(mBuilder.mTimeout);
         }
@@ -50,5 +50,10 @@ public final class JavaKinesisVideoClient extends NativeKinesisVideoClient {
                 configuration.getStorageCallbacks(),
                 new DefaultServiceCallbacksImpl(log, executor, configuration, serviceClient),
                 streamCallbacks);
+        setJmxMetricsEnabled(configuration.isJmxMetricsEnabled());
+        setMetricsSamplingInterval(configuration.getMetricsSamplingIntervalInMillis());
+        setFrameTraceSampleInterval(configuration.getFrameTraceSampleInterval());
+        setFlightRecorderCapacity(configuration.getFlightRecorderCapacity());
+        setFramePacer(configuration.getFramePacer());
     }
 }
@@ -4,7 +4,9 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
 import com.amazonaws.kinesisvideo.client.KinesisVideoClient;
 import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
+import com.amazonaws.kinesisvideo.client.NativeKinesisVideoClient;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.AsyncOutputChannel;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.logging.LogLevel;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
@@ -19,6 +21,7 @@ import com.amazonaws.kinesisvideo.storage.DefaultStorageCallbacks;
 import com.amazonaws.regions.Regions;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -95,18 +98,19 @@ public final class KinesisVideoJavaClientFactory {
         Preconditions.checkNotNull(deviceInfo);
         Preconditions.checkNotNull(executor);
 
-        final Log log = new Log(configuration.getLogChannel(), LogLevel.DEBUG, "KinesisVideo");
+        final AsyncOutputChannel logChannel = NativeKinesisVideoClient.createLogChannel(configuration.getLogChannel());
+        final Log log = new Log(logChannel, LogLevel.DEBUG, "KinesisVideo");
 
         final JavaKinesisVideoServiceClient serviceClient = new JavaKinesisVideoServiceClient(log);
 
-        final KinesisVideoClient kinesisVideoClient = new JavaKinesisVideoClient(log,
+        final JavaKinesisVideoClient kinesisVideoClient = new JavaKinesisVideoClient(log,
                 configuration,
                 serviceClient,
                 executor);
 
-        kinesisVideoClient.initialize(deviceInfo);
-
-        return kinesisVideoClient;
+        return initialize(kinesisVideoClient,
+                logChannel != configuration.getLogChannel() ? logChannel : null,
+                deviceInfo);
     }
 
     /**
@@ -123,17 +127,45 @@ public final class KinesisVideoJavaClientFactory {
         Preconditions.checkNotNull(deviceInfo);
         Preconditions.checkNotNull(executor);
 
-        final Log log = new Log(configuration.getLogChannel(), LogLevel.DEBUG, "KinesisVideo");
+        final AsyncOutputChannel logChannel = NativeKinesisVideoClient.createLogChannel(configuration.getLogChannel());
+        final Log log = new Log(logChannel, LogLevel.DEBUG, "KinesisVideo");
 
         final JavaKinesisVideoServiceClient serviceClient = new JavaKinesisVideoServiceClient(log);
 
-        final KinesisVideoClient kinesisVideoClient = new JavaKinesisVideoClient(log,
+        final JavaKinesisVideoClient kinesisVideoClient = new JavaKinesisVideoClient(log,
                 configuration,
                 serviceClient,
                 executor,
                 streamCallbacks);
 
-        kinesisVideoClient.initialize(deviceInfo);
+        return initialize(kinesisVideoClient,
+                logChannel != configuration.getLogChannel() ? logChannel : null,
+                deviceInfo);
+    }
+
+    /**
+     * Initializes the client which closes the log channel created for it when freed, or closes it right away on
+     * failure
+     *
+     * @param logChannel log channel created for the client or null if the configured one is used as is
+     */
+    @Nonnull
+    private static KinesisVideoClient initialize(@Nonnull final JavaKinesisVideoClient kinesisVideoClient,
+                                                 @Nullable final AsyncOutputChannel logChannel,
+                                                 @Nonnull final DeviceInfo deviceInfo)
+            throws KinesisVideoException {
+        if (logChannel == null) {
+            kinesisVideoClient.initialize(deviceInfo);
+            return kinesisVideoClient;
+        }
+
+        kinesisVideoClient.closeLogChannelOnFree(logChannel);
+        try {
+            kinesisVideoClient.initialize(deviceInfo);
+        } catch (final KinesisVideoException | RuntimeException e) {
+            logChannel.close();
+            throw e;
+        }
 
         return kinesisVideoClient;
     }
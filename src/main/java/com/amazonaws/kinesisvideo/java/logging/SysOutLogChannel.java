@@ -9,12 +9,14 @@ import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
  * Log output channel which uses System.out.println()
  */
 public class SysOutLogChannel implements OutputChannel {
-    private static final String LOG_FORMAT = "%s / %s: %s";
+    private static final String LEVEL_DELIMITER = " / ";
+    private static final String TAG_DELIMITER = ": ";
+
     @Override
     public void print(final int level,
                       @Nonnull final String tag,
                       @Nonnull final String message) {
-        System.out.println(String.format(LOG_FORMAT, getLevel(level), tag, message));
+        System.out.println(getLevel(level) + LEVEL_DELIMITER + tag + TAG_DELIMITER + message);
     }
 
     private String getLevel(final int level) {
@@ -0,0 +1,182 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Frames of a range of image files, loaded once and served without copying.
+ * <p>
+ * When the files fit in the resident size limit they are read at construction into a single direct buffer, of
+ * which each frame is a slice. Otherwise the files are memory-mapped on first use and the least recently used
+ * mappings are dropped once their total size goes over the limit. The frames are read-only views starting at
+ * the first byte of the file, which the producer hands to the native code as is.
+ * <p>
+ * A cache can be shared between the sources replaying the same files.
+ */
+@ThreadSafe
+public final class FrameFileCache {
+    /**
+     * Default limit of the frame data kept resident
+     */
+    public static final long DEFAULT_MAX_RESIDENT_BYTES = 64L * 1024 * 1024;
+
+    private final Path[] mPaths;
+    private final long mMaxResidentBytes;
+
+    /**
+     * Slices of the preloaded frames or null if the frames are mapped on demand
+     */
+    private final ByteBuffer[] mFrames;
+    private final long mPreloadedBytes;
+
+    // Guarded by itself
+    private final LinkedHashMap<Integer, ByteBuffer> mMappedFrames;
+    private long mMappedBytes;
+
+    /**
+     * Creates the cache of the files of the configuration
+     *
+     * @param configuration configuration with the directory, the file name format and the file index range
+     * @param maxResidentBytes limit of the frame data kept resident
+     * @throws IOException if a file can't be read
+     */
+    public FrameFileCache(@Nonnull final ImageFileMediaSourceConfiguration configuration,
+                          final long maxResidentBytes) throws IOException {
+        Preconditions.checkNotNull(configuration);
+        Preconditions.checkArgument(maxResidentBytes > 0, "Resident size limit must be positive");
+        Preconditions.checkState(configuration.getEndFileIndex() >= configuration.getStartFileIndex());
+
+        mPaths = new Path[configuration.getEndFileIndex() - configuration.getStartFileIndex() + 1];
+        long totalBytes = 0;
+        for (int frame = 0; frame < mPaths.length; frame++) {
+            mPaths[frame] = Paths.get(configuration.getDir() + String.format(configuration.getFilenameFormat(),
+                    configuration.getStartFileIndex() + frame));
+            totalBytes += Files.size(mPaths[frame]);
+        }
+
+        mMaxResidentBytes = maxResidentBytes;
+        if (totalBytes <= maxResidentBytes && totalBytes <= Integer.MAX_VALUE) {
+            mFrames = preload((int) totalBytes);
+            mPreloadedBytes = totalBytes;
+            mMappedFrames = null;
+        } else {
+            mFrames = null;
+            mPreloadedBytes = 0;
+            mMappedFrames = new LinkedHashMap<Integer, ByteBuffer>(16, 0.75f, true);
+        }
+    }
+
+    /**
+     * @return Number of the frames, one per file
+     */
+    public int getFrameCount() {
+        return mPaths.length;
+    }
+
+    /**
+     * @return Whether the frames have been loaded at construction rather than being mapped on demand
+     */
+    public boolean isPreloaded() {
+        return mFrames != null;
+    }
+
+    /**
+     * @return Size of the frame data currently held
+     */
+    public long getResidentBytes() {
+        if (mFrames != null) {
+            return mPreloadedBytes;
+        }
+
+        synchronized (mMappedFrames) {
+            return mMappedBytes;
+        }
+    }
+
+    /**
+     * Returns a frame, the frames repeat after the last file
+     *
+     * @param index index of the frame from the first file
+     * @return Read-only view of the data of the frame
+     * @throws IOException if the file of the frame can't be mapped
+     */
+    @Nonnull
+    public ByteBuffer getFrame(final long index) throws IOException {
+        final int frame = (int) (index % mPaths.length);
+        if (mFrames != null) {
+            return mFrames[frame].asReadOnlyBuffer();
+        }
+
+        synchronized (mMappedFrames) {
+            ByteBuffer data = mMappedFrames.get(frame);
+            if (data == null) {
+                data = map(mPaths[frame]);
+                mMappedFrames.put(frame, data);
+                mMappedBytes += data.capacity();
+                evict();
+            }
+
+            return data.asReadOnlyBuffer();
+        }
+    }
+
+    private ByteBuffer[] preload(final int totalBytes) throws IOException {
+        final ByteBuffer arena = ByteBuffer.allocateDirect(totalBytes);
+        final ByteBuffer[] frames = new ByteBuffer[mPaths.length];
+        for (int frame = 0; frame < mPaths.length; frame++) {
+            final int start = arena.position();
+            final FileChannel channel = FileChannel.open(mPaths[frame], StandardOpenOption.READ);
+            try {
+                final long end = start + channel.size();
+                Preconditions.checkState(end <= arena.capacity(), "File " + mPaths[frame] + " has grown");
+                arena.limit((int) end);
+                while (arena.hasRemaining() && channel.read(arena) >= 0) {
+                    // Read the rest
+                }
+            } finally {
+                channel.close();
+            }
+
+            final ByteBuffer slice = arena.duplicate();
+            slice.position(start);
+            slice.limit(arena.position());
+            frames[frame] = slice.slice();
+        }
+
+        return frames;
+    }
+
+    private static ByteBuffer map(final Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Drops the least recently used mappings over the limit, keeping at least the latest one
+     */
+    private void evict() {
+        final Iterator<Map.Entry<Integer, ByteBuffer>> iterator = mMappedFrames.entrySet().iterator();
+        while (mMappedBytes > mMaxResidentBytes && mMappedFrames.size() > 1) {
+            final Map.Entry<Integer, ByteBuffer> eldest = iterator.next();
+            mMappedBytes -= eldest.getValue().capacity();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the access units of an H.264 Annex-B elementary stream file.
+ * <p>
+ * The file is memory-mapped a window at a time and the access units are returned as read-only slices of the
+ * window, start codes included, without copying. The window moves forward when an access unit runs past its end,
+ * so files of any size are read with a bounded mapping. The start codes are searched for eight bytes at a time,
+ * only the words holding a zero byte are checked byte by byte.
+ * <p>
+ * An access unit ends before the access unit delimiter, SEI, SPS or PPS NAL unit or the first slice of a picture,
+ * i.e. the slice with first_mb_in_slice 0, following a slice. The access units with an IDR slice are key frames.
+ * The latest SPS and PPS are kept for {@link #getCodecPrivateData()}.
+ */
+@NotThreadSafe
+public final class H264AnnexBReader implements Closeable {
+    /**
+     * Default size of the mapped window, which bounds the size of an access unit
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final int NAL_TYPE_MASK = 0x1f;
+    private static final int NAL_TYPE_SLICE = 1;
+    private static final int NAL_TYPE_IDR_SLICE = 5;
+    private static final int NAL_TYPE_SEI = 6;
+    private static final int NAL_TYPE_SPS = 7;
+    private static final int NAL_TYPE_PPS = 8;
+    private static final int NAL_TYPE_ACCESS_UNIT_DELIMITER = 9;
+    private static final int START_CODE_SIZE = 3;
+    private static final int SPS_PROFILE_LEVEL_SIZE = 3;
+    private static final int RUNS_PAST_WINDOW = -1;
+    private static final int NO_NAL_UNIT = -2;
+
+    // SWAR constants of the zero byte search
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private final FileChannel mChannel;
+    private final long mFileSize;
+    private final int mWindowSize;
+
+    private ByteBuffer mWindow;
+    private long mWindowStart;
+    private long mPosition;
+    private int mAccessUnitStart;
+    private boolean mKeyFrame;
+    private byte[] mSps;
+    private byte[] mPps;
+
+    /**
+     * Opens the file with the default window size
+     *
+     * @param path path of the elementary stream
+     * @throws IOException if the file can't be opened
+     */
+    public H264AnnexBReader(@Nonnull final Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens the file
+     *
+     * @param path path of the elementary stream
+     * @param windowSize size of the mapped window, larger than any access unit
+     * @throws IOException if the file can't be opened
+     */
+    public H264AnnexBReader(@Nonnull final Path path, final int windowSize) throws IOException {
+        Preconditions.checkNotNull(path);
+        Preconditions.checkArgument(windowSize > START_CODE_SIZE, "Window size is too small");
+        mChannel = FileChannel.open(path, StandardOpenOption.READ);
+        mFileSize = mChannel.size();
+        mWindowSize = windowSize;
+    }
+
+    /**
+     * Reads the next access unit
+     *
+     * @return Read-only slice of the access unit, valid as long as it is referenced, or null at the end of the file
+     * @throws IOException if the file can't be mapped or an access unit is larger than the window
+     */
+    @Nullable
+    public ByteBuffer next() throws IOException {
+        while (mPosition < mFileSize) {
+            if (mWindow == null || mPosition < mWindowStart || mPosition >= mWindowStart + mWindow.limit()) {
+                map(mPosition);
+            }
+
+            final int start = (int) (mPosition - mWindowStart);
+            final int end = findAccessUnitEnd(start);
+            if (end >= 0) {
+                mPosition = mWindowStart + end;
+                final ByteBuffer accessUnit = mWindow.duplicate();
+                accessUnit.limit(end);
+                accessUnit.position(mAccessUnitStart);
+                return accessUnit.slice();
+            }
+
+            if (end == NO_NAL_UNIT) {
+                // Trailing bytes without a NAL unit
+                mPosition = mFileSize;
+                break;
+            }
+
+            if (start == 0) {
+                throw new IOException("Access unit at " + mPosition + " is larger than the window of "
+                        + mWindowSize + " bytes");
+            }
+
+            // Runs past the window, map the window from its start
+            map(mPosition);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return Whether the access unit last returned by {@link #next()} has an IDR slice
+     */
+    public boolean isKeyFrame() {
+        return mKeyFrame;
+    }
+
+    /**
+     * Builds the AVC decoder configuration record of the latest SPS and PPS
+     *
+     * @return Codec private data in the AVCC format or null if no SPS and PPS have been read
+     */
+    @Nullable
+    public byte[] getCodecPrivateData() {
+        return toCodecPrivateData(mSps, mPps);
+    }
+
+    /**
+     * Builds the AVC decoder configuration record of an SPS and a PPS
+     *
+     * @param sps SPS NAL unit without its start code
+     * @param pps PPS NAL unit without its start code
+     * @return Codec private data in the AVCC format or null if either is missing
+     */
+    @Nullable
+    public static byte[] toCodecPrivateData(@Nullable final byte[] sps, @Nullable final byte[] pps) {
+        if (sps == null || pps == null || sps.length < 1 + SPS_PROFILE_LEVEL_SIZE) {
+            return null;
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate(11 + sps.length + pps.length);
+        record.put((byte) 1);
+        // Profile, profile compatibility and level follow the NAL header of the SPS
+        record.put(sps, 1, SPS_PROFILE_LEVEL_SIZE);
+        // 4 byte NAL unit lengths
+        record.put((byte) 0xff);
+        // One SPS
+        record.put((byte) 0xe1);
+        record.putShort((short) sps.length);
+        record.put(sps);
+        // One PPS
+        record.put((byte) 1);
+        record.putShort((short) pps.length);
+        record.put(pps);
+        return record.array();
+    }
+
+    /**
+     * Reads from the start of the file again
+     */
+    public void rewind() {
+        mPosition = 0;
+        mKeyFrame = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mappings stay valid for the slices still referenced
+        mChannel.close();
+    }
+
+    private void map(final long position) throws IOException {
+        final MappedByteBuffer window = mChannel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(mWindowSize, mFileSize - position));
+        window.order(ByteOrder.nativeOrder());
+        mWindow = window;
+        mWindowStart = position;
+    }
+
+    /**
+     * Parses the NAL units of the access unit starting in the window at the given offset
+     *
+     * @return Offset of the end of the access unit, {@link #RUNS_PAST_WINDOW} or {@link #NO_NAL_UNIT} if the rest of
+     * the file has no NAL unit
+     */
+    private int findAccessUnitEnd(final int start) {
+        final int limit = mWindow.limit();
+        final boolean lastWindow = mWindowStart + limit == mFileSize;
+        mKeyFrame = false;
+        boolean hasSlice = false;
+
+        int nal = findStartCode(mWindow, start, limit);
+        if (nal < 0) {
+            return lastWindow ? NO_NAL_UNIT : RUNS_PAST_WINDOW;
+        }
+
+        // Skips the bytes before the first NAL unit
+        mAccessUnitStart = boundaryOf(nal, start);
+        while (nal >= 0) {
+            final int payload = nal + START_CODE_SIZE;
+            final int next = findStartCode(mWindow, payload, limit);
+            if (next < 0 && !lastWindow) {
+                return RUNS_PAST_WINDOW;
+            }
+
+            final int nalEnd = next < 0 ? limit : boundaryOf(next, payload);
+            if (payload < nalEnd) {
+                final int type = mWindow.get(payload) & NAL_TYPE_MASK;
+                if (hasSlice && startsAccessUnit(type, payload, nalEnd)) {
+                    return boundaryOf(nal, start);
+                }
+
+                if (type == NAL_TYPE_SLICE || type == NAL_TYPE_IDR_SLICE) {
+                    hasSlice = true;
+                    mKeyFrame |= type == NAL_TYPE_IDR_SLICE;
+                } else if (type == NAL_TYPE_SPS) {
+                    mSps = copy(payload, nalEnd);
+                } else if (type == NAL_TYPE_PPS) {
+                    mPps = copy(payload, nalEnd);
+                }
+            }
+
+            nal = next;
+        }
+
+        return limit;
+    }
+
+    private boolean startsAccessUnit(final int type, final int payload, final int nalEnd) {
+        switch (type) {
+            case NAL_TYPE_ACCESS_UNIT_DELIMITER:
+            case NAL_TYPE_SEI:
+            case NAL_TYPE_SPS:
+            case NAL_TYPE_PPS:
+                return true;
+            case NAL_TYPE_SLICE:
+            case NAL_TYPE_IDR_SLICE:
+                // first_mb_in_slice is ue(v) coded, its first bit is set when it is 0
+                return payload + 1 < nalEnd && (mWindow.get(payload + 1) & 0x80) != 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Includes the leading zero byte of a 4 byte start code
+     */
+    private int boundaryOf(final int startCode, final int floor) {
+        return startCode > floor && mWindow.get(startCode - 1) == 0 ? startCode - 1 : startCode;
+    }
+
+    private byte[] copy(final int from, final int to) {
+        final byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = mWindow.get(from + i);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Finds the first 0x000001 start code from the given offset
+     *
+     * @return Offset of the start code or -1 if there is none before the limit
+     */
+    public static int findStartCode(@Nonnull final ByteBuffer buffer, final int from, final int limit) {
+        final int last = limit - START_CODE_SIZE;
+        int offset = from;
+        while (offset <= last) {
+            if (offset + Long.BYTES <= limit) {
+                final long word = buffer.getLong(offset);
+                if (((word - ONES) & ~word & HIGHS) == 0) {
+                    // No zero byte in the word so no start code starts in it
+                    offset += Long.BYTES;
+                    continue;
+                }
+            }
+
+            final int stop = Math.min(offset + Long.BYTES - 1, last);
+            for (; offset <= stop; offset++) {
+                if (buffer.get(offset) == 0 && buffer.get(offset + 1) == 0 && buffer.get(offset + 2) == 1) {
+                    return offset;
+                }
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,197 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * MediaSource replaying an H.264 Annex-B elementary stream file.
+ * <p>
+ * The access units are read by a {@link H264AnnexBReader} and put as frames without copying, at the configured
+ * frame rate. The frames are key frames when they have an IDR slice and the codec private data is built from the
+ * SPS and PPS of the file and updated when they change. A late source catches up rather than skipping frames,
+ * which the following frames depend on.
+ */
+public class H264FileMediaSource implements MediaSource {
+    private final Log log = LogFactory.getLog(H264FileMediaSource.class);
+
+    private H264FileMediaSourceConfiguration configuration;
+    private MediaSourceState mediaSourceState;
+    private MediaSourceSink mediaSourceSink;
+    private FramePacer framePacer;
+    private FramePacer.Pacing pacing;
+    private volatile H264AnnexBReader reader;
+    private byte[] codecPrivateData;
+    private boolean hasKeyFrame;
+
+    @Override
+    public MediaSourceState getMediaSourceState() {
+        return mediaSourceState;
+    }
+
+    @Override
+    public MediaSourceConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public void setFramePacer(@Nonnull final FramePacer framePacer) {
+        this.framePacer = framePacer;
+    }
+
+    @Override
+    public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
+        this.mediaSourceSink = mediaSourceSink;
+    }
+
+    @Override
+    public void configure(final MediaSourceConfiguration configuration) {
+        if (!(configuration instanceof H264FileMediaSourceConfiguration)) {
+            throw new IllegalArgumentException("can only use H264FileMediaSourceConfiguration");
+        }
+
+        this.configuration = (H264FileMediaSourceConfiguration) configuration;
+    }
+
+    @Override
+    public void start() throws KinesisVideoException {
+        try {
+            reader = new H264AnnexBReader(Paths.get(configuration.getFile()), configuration.getWindowSize());
+        } catch (final IOException e) {
+            throw new KinesisVideoException(e);
+        }
+
+        hasKeyFrame = false;
+        mediaSourceState = MediaSourceState.RUNNING;
+        final FramePacer pacer = framePacer != null ? framePacer : FramePacer.getDefault();
+        pacing = pacer.schedule(configuration.getFps(), FramePacer.CatchUpPolicy.CATCH_UP,
+                new FramePacer.FrameCallback() {
+                    @Override
+                    public void onFrameDue(@Nonnull final FramePacer.Pacing pacing, final long frameIndex,
+                                           final long timestamp) {
+                        putNextFrame(pacing, frameIndex, timestamp);
+                    }
+                });
+    }
+
+    @Override
+    public void stop() throws KinesisVideoException {
+        if (pacing != null) {
+            pacing.cancel();
+            pacing = null;
+        }
+
+        closeReader();
+        mediaSourceState = MediaSourceState.STOPPED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return mediaSourceState == MediaSourceState.STOPPED;
+    }
+
+    @Override
+    public void free() throws KinesisVideoException {
+        closeReader();
+    }
+
+    private void putNextFrame(final FramePacer.Pacing pacing, final long frameIndex, final long timestamp) {
+        final H264AnnexBReader reader = this.reader;
+        if (reader == null) {
+            // Stopped while the frame was due
+            return;
+        }
+
+        final ByteBuffer data;
+        try {
+            data = readAccessUnit(reader);
+        } catch (final IOException e) {
+            log.error("Failed to read " + configuration.getFile(), e);
+            pacing.cancel();
+            return;
+        }
+
+        if (data == null) {
+            // End of the file
+            pacing.cancel();
+            mediaSourceState = MediaSourceState.STOPPED;
+            return;
+        }
+
+        try {
+            updateCodecPrivateData(reader);
+            final long frameTimestamp = pacing.toWallClock(timestamp);
+            mediaSourceSink.onFrame(new KinesisVideoFrame(
+                    (int) frameIndex,
+                    reader.isKeyFrame() ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                    frameTimestamp,
+                    frameTimestamp,
+                    pacing.getFrameDuration(),
+                    data));
+        } catch (final KinesisVideoException e) {
+            log.error("Failed to put frame with Exception", e);
+        }
+    }
+
+    /**
+     * Reads the next access unit, from the first key frame on and from the start again at the end of the file
+     * when looping
+     */
+    private ByteBuffer readAccessUnit(final H264AnnexBReader reader) throws IOException {
+        boolean rewound = false;
+        while (true) {
+            final ByteBuffer data = reader.next();
+            if (data == null) {
+                if (!configuration.isLoop() || rewound) {
+                    return null;
+                }
+
+                reader.rewind();
+                rewound = true;
+                continue;
+            }
+
+            hasKeyFrame |= reader.isKeyFrame();
+            if (hasKeyFrame) {
+                return data;
+            }
+        }
+    }
+
+    private void updateCodecPrivateData(final H264AnnexBReader reader) throws KinesisVideoException {
+        if (!reader.isKeyFrame()) {
+            return;
+        }
+
+        final byte[] latest = reader.getCodecPrivateData();
+        if (latest != null && !Arrays.equals(latest, codecPrivateData)) {
+            codecPrivateData = latest;
+            mediaSourceSink.onCodecPrivateData(latest);
+        }
+    }
+
+    private void closeReader() {
+        final H264AnnexBReader reader = this.reader;
+        if (reader != null) {
+            this.reader = null;
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                log.warn("Failed to close " + configuration.getFile(), e);
+            }
+        }
+    }
+}
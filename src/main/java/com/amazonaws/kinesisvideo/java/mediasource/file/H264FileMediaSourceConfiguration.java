@@ -0,0 +1,173 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.producer.StreamInfo;
+import com.amazonaws.kinesisvideo.producer.Tag;
+
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_SECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_AN_HOUR;
+
+/**
+ * Configuration of {@link H264FileMediaSource}
+ */
+public class H264FileMediaSourceConfiguration implements MediaSourceConfiguration {
+
+    private static final String MEDIA_SOURCE_TYPE = "H264FileMediaSource";
+    private static final String MEDIA_SOURCE_DESCRIPTION = "Replays an H.264 Annex-B elementary stream file";
+
+    private final int fps;
+    private final String file;
+    private final boolean loop;
+    private final int windowSize;
+
+    public H264FileMediaSourceConfiguration(final Builder builder) {
+        this.fps = builder.fps;
+        this.file = builder.file;
+        this.loop = builder.loop;
+        this.windowSize = builder.windowSize;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public boolean isLoop() {
+        return loop;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    @Override
+    public String getMediaSourceType() {
+        return MEDIA_SOURCE_TYPE;
+    }
+
+    @Override
+    public String getMediaSourceDescription() {
+        return MEDIA_SOURCE_DESCRIPTION;
+    }
+
+    public static class Builder implements MediaSourceConfiguration.Builder<H264FileMediaSourceConfiguration> {
+        private int fps;
+        private String file;
+        private boolean loop = true;
+        private int windowSize = H264AnnexBReader.DEFAULT_WINDOW_SIZE;
+
+        public Builder fps(final int fps) {
+            this.fps = fps;
+            if (fps <= 0) {
+                throw new IllegalArgumentException("Fps should not be negative or zero.");
+            }
+            return this;
+        }
+
+        public Builder file(final String file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * Whether the file is replayed from the start once it ends, true by default
+         */
+        public Builder loop(final boolean loop) {
+            this.loop = loop;
+            return this;
+        }
+
+        /**
+         * Size of the memory-mapped window of the file, which must hold the largest access unit. 64 MB by default.
+         */
+        public Builder windowSize(final int windowSize) {
+            this.windowSize = windowSize;
+            if (windowSize <= 0) {
+                throw new IllegalArgumentException("Window size should not be negative or zero.");
+            }
+            return this;
+        }
+
+        @Override
+        public H264FileMediaSourceConfiguration build() {
+            return new H264FileMediaSourceConfiguration(this);
+        }
+    }
+
+    private static final boolean NOT_ADAPTIVE = false;
+    private static final boolean KEYFRAME_FRAGMENTATION = true;
+    private static final String NO_KMS_KEY_ID = null;
+    private static final int VERSION_ZERO = 0;
+    private static final long MAX_LATENCY_ZERO = 0L;
+    private static final long RETENTION_ONE_HOUR = 1L * HUNDREDS_OF_NANOS_IN_AN_HOUR;
+    private static final boolean REQUEST_FRAGMENT_ACKS = true;
+    private static final boolean RECOVER_ON_FAILURE = true;
+    private static final long DEFAULT_GOP_DURATION = 2000L * HUNDREDS_OF_NANOS_IN_A_SECOND;
+    private static final int DEFAULT_BITRATE = 2_000_000;
+    private static final int DEFAULT_TIMESCALE = 10_000;
+    private static final boolean USE_FRAME_TIMECODES = true;
+    private static final boolean ABSOLUTE_TIMECODES = true;
+    private static final boolean RECALCULATE_METRICS = true;
+    private static final byte[] NO_CODEC_PRIVATE_DATA = null;
+
+    /**
+     * Default buffer duration for a stream
+     */
+    public static final long DEFAULT_BUFFER_DURATION_IN_SECONDS = 40;
+
+    /**
+     * Default replay duration for a stream
+     */
+    public static final long DEFAULT_REPLAY_DURATION_IN_SECONDS = 20;
+
+    /**
+     * Default connection staleness detection duration.
+     */
+    public static final long DEFAULT_STALENESS_DURATION_IN_SECONDS = 20;
+
+    public StreamInfo toStreamInfo(final String streamName) {
+        return new StreamInfo(VERSION_ZERO,
+                streamName,
+                StreamInfo.StreamingType.STREAMING_TYPE_REALTIME,
+                "video/h264",
+                NO_KMS_KEY_ID,
+                RETENTION_ONE_HOUR,
+                NOT_ADAPTIVE,
+                MAX_LATENCY_ZERO,
+                DEFAULT_GOP_DURATION * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
+                KEYFRAME_FRAGMENTATION,
+                USE_FRAME_TIMECODES,
+                ABSOLUTE_TIMECODES,
+                REQUEST_FRAGMENT_ACKS,
+                RECOVER_ON_FAILURE,
+                "V_MPEG4/ISO/AVC",
+                "kinesis_video",
+                DEFAULT_BITRATE,
+                fps,
+                DEFAULT_BUFFER_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_REPLAY_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_STALENESS_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_TIMESCALE,
+                RECALCULATE_METRICS,
+                /*
+                 * The source sets the codec private data built from the SPS and PPS of the file
+                 */
+                NO_CODEC_PRIVATE_DATA,
+                getTags(),
+                StreamInfo.NalAdaptationFlags.NAL_ADAPTATION_ANNEXB_NALS);
+    }
+
+    private static Tag[] getTags() {
+        final List<Tag> tagList = new ArrayList<>();
+        tagList.add(new Tag("device", "Test Device"));
+        tagList.add(new Tag("stream", "Test Stream"));
+        return tagList.toArray(new Tag[0]);
+    }
+}
@@ -5,12 +5,14 @@ import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
 import com.amazonaws.kinesisvideo.mediasource.OnFrameDataAvailable;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 /**
@@ -18,10 +20,8 @@ import java.nio.ByteBuffer;
  * a series of H264 frames.
  */
 public class ImageFileMediaSource implements MediaSource {
-    private static final long HUNDREDS_OF_NANOS_IN_MS = 10 * 1000;
     private static final int FRAME_FLAG_KEY_FRAME = 1;
     private static final int FRAME_FLAG_NONE = 0;
-    private static final long FRAME_DURATION_20_MS = 20L;
     private static final int FRAGMENT_DURATION_SECONDS = 2;
     private final Log log = LogFactory.getLog(ImageFileMediaSource.class);
 
@@ -29,6 +29,7 @@ public class ImageFileMediaSource implements MediaSource {
     private MediaSourceState mediaSourceState;
     private MediaSourceSink mediaSourceSink;
     private ImageFrameSource imageFrameSource;
+    private FramePacer framePacer;
     private int frameIndex;
 
     @Override
@@ -41,6 +42,11 @@ public class ImageFileMediaSource implements MediaSource {
         return imageFileMediaSourceConfiguration;
     }
 
+    @Override
+    public void setFramePacer(@Nonnull final FramePacer framePacer) {
+        this.framePacer = framePacer;
+    }
+
     @Override
     public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
         this.mediaSourceSink = mediaSourceSink;
@@ -59,7 +65,13 @@ public class ImageFileMediaSource implements MediaSource {
     @Override
     public void start() throws KinesisVideoException {
         mediaSourceState = MediaSourceState.RUNNING;
-        imageFrameSource = new ImageFrameSource(imageFileMediaSourceConfiguration);
+        try {
+            imageFrameSource = new ImageFrameSource(imageFileMediaSourceConfiguration,
+                    framePacer != null ? framePacer : FramePacer.getDefault());
+        } catch (final IOException e) {
+            throw new KinesisVideoException(e);
+        }
+
         imageFrameSource.onBytesAvailable(createKinesisVideoFrameAndPushToProducer());
         imageFrameSource.start();
     }
@@ -86,9 +98,10 @@ public class ImageFileMediaSource implements MediaSource {
     private OnFrameDataAvailable createKinesisVideoFrameAndPushToProducer() {
         return new OnFrameDataAvailable() {
             @Override
-            public void onFrameDataAvailable(final ByteBuffer data) {
-                final long currentTimeMs = System.currentTimeMillis();
-
+            public void onFrameDataAvailable(final ByteBuffer data, final long index, final long timestamp,
+                                             final long duration) {
+                // The index of the paced frames skips the late ones
+                frameIndex = (int) index;
                 final int flags = isKeyFrame()
                         ? FRAME_FLAG_KEY_FRAME
                         : FRAME_FLAG_NONE;
@@ -96,9 +109,9 @@ public class ImageFileMediaSource implements MediaSource {
                 final KinesisVideoFrame frame = new KinesisVideoFrame(
                         frameIndex++,
                         flags,
-                        currentTimeMs * HUNDREDS_OF_NANOS_IN_MS,
-                        currentTimeMs * HUNDREDS_OF_NANOS_IN_MS,
-                        FRAME_DURATION_20_MS * HUNDREDS_OF_NANOS_IN_MS,
+                        timestamp,
+                        timestamp,
+                        duration,
                         data);
 
                 if (frame.getSize() == 0) {
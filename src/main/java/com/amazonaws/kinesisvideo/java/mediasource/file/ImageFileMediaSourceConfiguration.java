@@ -18,6 +18,8 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
     private final String filenameFormat;
     private final int startFileIndex;
     private final int endFileIndex;
+    private final long maxResidentFrameBytes;
+    private final FrameFileCache frameFileCache;
 
     public ImageFileMediaSourceConfiguration(final Builder builder) {
         this.fps = builder.fps;
@@ -25,6 +27,8 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         this.filenameFormat = builder.filenameFormat;
         this.startFileIndex = builder.startFileIndex;
         this.endFileIndex = builder.endFileIndex;
+        this.maxResidentFrameBytes = builder.maxResidentFrameBytes;
+        this.frameFileCache = builder.frameFileCache;
     }
 
     public int getFps() {
@@ -47,6 +51,14 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         return endFileIndex;
     }
 
+    public long getMaxResidentFrameBytes() {
+        return maxResidentFrameBytes;
+    }
+
+    public FrameFileCache getFrameFileCache() {
+        return frameFileCache;
+    }
+
     @Override
     public String getMediaSourceType() {
         return null;
@@ -63,6 +75,8 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
         private String filenameFormat;
         private int startFileIndex;
         private int endFileIndex;
+        private long maxResidentFrameBytes = FrameFileCache.DEFAULT_MAX_RESIDENT_BYTES;
+        private FrameFileCache frameFileCache;
 
         public Builder fps(final int fps) {
             this.fps = fps;
@@ -92,6 +106,27 @@ public class ImageFileMediaSourceConfiguration implements MediaSourceConfigurati
             return this;
         }
 
+        /**
+         * Limit of the frame data the source keeps resident. The files are preloaded when they fit, otherwise
+         * memory-mapped on demand. 64 MB by default.
+         */
+        public Builder maxResidentFrameBytes(final long maxResidentFrameBytes) {
+            this.maxResidentFrameBytes = maxResidentFrameBytes;
+            if (maxResidentFrameBytes <= 0) {
+                throw new IllegalArgumentException("Resident frame size should not be negative or zero.");
+            }
+            return this;
+        }
+
+        /**
+         * Cache of the frame files shared with other sources replaying the same files. By default each source
+         * loads its own.
+         */
+        public Builder frameFileCache(final FrameFileCache frameFileCache) {
+            this.frameFileCache = frameFileCache;
+            return this;
+        }
+
         @Override
         public ImageFileMediaSourceConfiguration build() {
             return new ImageFileMediaSourceConfiguration(this);
@@ -1,106 +1,86 @@
 package com.amazonaws.kinesisvideo.java.mediasource.file;
 
-import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
 import com.amazonaws.kinesisvideo.mediasource.OnFrameDataAvailable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import javax.annotation.Nonnull;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.Duration;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
- * Frame source backed by local image files.
+ * Frame source backed by local image files. The frames are paced by a {@link FramePacer} and the late ones are
+ * skipped like with a live camera.
  */
 @NotThreadSafe
 public class ImageFrameSource {
     public static final int DISCRETENESS_HZ = 25;
-    private final ExecutorService executor = Executors.newFixedThreadPool(1);
+    private final FramePacer framePacer;
     private final int fps;
     private final ImageFileMediaSourceConfiguration configuration;
 
-    private final int totalFiles;
+    private final FrameFileCache frameFileCache;
     private OnFrameDataAvailable onFrameDataAvailable;
-    private boolean isRunning = false;
-    private long frameCounter;
+    private FramePacer.Pacing pacing;
     private final Log log = LogFactory.getLog(ImageFrameSource.class);
 
-    public ImageFrameSource(final ImageFileMediaSourceConfiguration configuration) {
-        this.configuration = configuration;
-        this.totalFiles = getTotalFiles(configuration.getStartFileIndex(), configuration.getEndFileIndex());
-        this.fps = configuration.getFps();
+    public ImageFrameSource(final ImageFileMediaSourceConfiguration configuration) throws IOException {
+        this(configuration, FramePacer.getDefault());
     }
 
-    private int getTotalFiles(final int startIndex, final int endIndex) {
-        Preconditions.checkState(endIndex >= startIndex);
-        return endIndex - startIndex + 1;
+    public ImageFrameSource(final ImageFileMediaSourceConfiguration configuration,
+                            @Nonnull final FramePacer framePacer) throws IOException {
+        this.configuration = configuration;
+        this.framePacer = framePacer;
+        this.frameFileCache = configuration.getFrameFileCache() != null
+                ? configuration.getFrameFileCache()
+                : new FrameFileCache(configuration, configuration.getMaxResidentFrameBytes());
+        this.fps = configuration.getFps();
     }
 
     public void start() {
-        if (isRunning) {
+        if (pacing != null) {
             throw new IllegalStateException("Frame source is already running");
         }
 
-        isRunning = true;
-        startFrameGenerator();
+        pacing = framePacer.schedule(fps, FramePacer.CatchUpPolicy.SKIP, new FramePacer.FrameCallback() {
+            @Override
+            public void onFrameDue(@Nonnull final FramePacer.Pacing pacing, final long frameIndex,
+                                   final long timestamp) {
+                generateFrameAndNotifyListener(pacing, frameIndex, timestamp);
+            }
+        });
     }
 
     public void stop() {
-        isRunning = false;
-        stopFrameGenerator();
+        if (pacing != null) {
+            pacing.cancel();
+            pacing = null;
+        }
     }
 
     public void onBytesAvailable(final OnFrameDataAvailable onFrameDataAvailable) {
         this.onFrameDataAvailable = onFrameDataAvailable;
     }
 
-    private void startFrameGenerator() {
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                generateFrameAndNotifyListener();
-            }
-        });
-    }
-
-    private void generateFrameAndNotifyListener() {
-        while (isRunning) {
-            if (onFrameDataAvailable != null) {
-                onFrameDataAvailable.onFrameDataAvailable(createKinesisVideoFrameFromImage(frameCounter));
-            }
-
-            frameCounter++;
-            try {
-                Thread.sleep(Duration.ofSeconds(1L).toMillis() / fps);
-            } catch (final InterruptedException e) {
-                log.error("Frame interval wait interrupted by Exception ", e);
-            }
+    private void generateFrameAndNotifyListener(final FramePacer.Pacing pacing, final long frameIndex,
+                                                final long timestamp) {
+        final ByteBuffer frameData = createKinesisVideoFrameFromImage(frameIndex);
+        if (onFrameDataAvailable != null && frameData != null) {
+            onFrameDataAvailable.onFrameDataAvailable(frameData, frameIndex, pacing.toWallClock(timestamp),
+                    pacing.getFrameDuration());
         }
     }
 
     private ByteBuffer createKinesisVideoFrameFromImage(final long index) {
-        final String filename = String.format(
-                configuration.getFilenameFormat(),
-                index % totalFiles + configuration.getStartFileIndex());
-        final Path path = Paths.get(configuration.getDir() + filename);
-
         try {
-            final byte[] bytes = Files.readAllBytes(path);
-            return ByteBuffer.wrap(bytes);
+            return frameFileCache.getFrame(index);
         } catch (final IOException e) {
             log.error("Read file failed with Exception ", e);
         }
 
         return null;
     }
-
-    private void stopFrameGenerator() {
-
-    }
 }
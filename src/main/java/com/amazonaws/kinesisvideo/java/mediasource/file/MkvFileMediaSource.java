@@ -0,0 +1,222 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.client.mkv.MkvBlockReader;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_SECOND;
+
+/**
+ * MediaSource replaying the frames of an MKV file, e.g. a recording of a stream, through the producer.
+ * <p>
+ * The SimpleBlocks of the file are read by a {@link MkvBlockReader} and put as frames with their original
+ * timecodes, unless rebased, and key frame, discardable and invisible flags. The codec private data of the track
+ * is set before its first frame and again when it changes. The frames are replayed either at the pace of their
+ * timecodes or as fast as the stream takes them, on a thread of the source, and the frame data is read into pooled
+ * direct buffers released once the frame has been put.
+ */
+public class MkvFileMediaSource implements MediaSource {
+    private static final long NANOS_IN_A_TIME_UNIT = 100;
+
+    private final Log log = LogFactory.getLog(MkvFileMediaSource.class);
+
+    private MkvFileMediaSourceConfiguration configuration;
+    private MediaSourceState mediaSourceState;
+    private MediaSourceSink mediaSourceSink;
+    private FrameBufferPool frameBufferPool;
+    private Thread replayThread;
+    private volatile boolean isRunning;
+
+    @Override
+    public MediaSourceState getMediaSourceState() {
+        return mediaSourceState;
+    }
+
+    @Override
+    public MediaSourceConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
+        this.mediaSourceSink = mediaSourceSink;
+    }
+
+    @Override
+    public void configure(final MediaSourceConfiguration configuration) {
+        if (!(configuration instanceof MkvFileMediaSourceConfiguration)) {
+            throw new IllegalArgumentException("can only use MkvFileMediaSourceConfiguration");
+        }
+
+        this.configuration = (MkvFileMediaSourceConfiguration) configuration;
+        this.frameBufferPool = this.configuration.getFrameBufferPool() != null
+                ? this.configuration.getFrameBufferPool()
+                : new FrameBufferPool();
+    }
+
+    @Override
+    public synchronized void start() throws KinesisVideoException {
+        if (isRunning) {
+            throw new IllegalStateException("Media source is already running");
+        }
+
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(Paths.get(configuration.getFile()), StandardOpenOption.READ);
+        } catch (final IOException e) {
+            throw new KinesisVideoException(e);
+        }
+
+        isRunning = true;
+        mediaSourceState = MediaSourceState.RUNNING;
+        replayThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replay(channel);
+            }
+        }, "MkvFileMediaSource-" + Paths.get(configuration.getFile()).getFileName());
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    @Override
+    public synchronized void stop() throws KinesisVideoException {
+        isRunning = false;
+        if (replayThread != null) {
+            // Wakes it up from waiting for the next frame
+            LockSupport.unpark(replayThread);
+            replayThread = null;
+        }
+
+        mediaSourceState = MediaSourceState.STOPPED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return mediaSourceState == MediaSourceState.STOPPED;
+    }
+
+    @Override
+    public void free() throws KinesisVideoException {
+    }
+
+    private void replay(final FileChannel channel) {
+        try {
+            final MkvBlockReader reader = new MkvBlockReader(channel, frameBufferPool);
+            final MkvBlockReader.Block block = new MkvBlockReader.Block();
+            final long startTimeInNanos = System.nanoTime();
+            final long startTime = System.currentTimeMillis() * HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+            long trackNumber = configuration.getTrackNumber();
+            long firstTimecode = -1;
+            byte[] codecPrivateData = null;
+            int frameIndex = 0;
+            while (isRunning && reader.readBlock(block)) {
+                try {
+                    final MkvBlockReader.Track track = block.getTrack();
+                    if (trackNumber == 0) {
+                        trackNumber = track.getNumber();
+                    }
+
+                    if (track.getNumber() != trackNumber) {
+                        continue;
+                    }
+
+                    if (firstTimecode < 0) {
+                        firstTimecode = block.getTimecode();
+                    }
+
+                    final long sinceFirstFrame = block.getTimecode() - firstTimecode;
+                    if (configuration.getReplayMode() == MkvFileMediaSourceConfiguration.ReplayMode.REAL_TIME
+                            && !awaitDeadline(startTimeInNanos + sinceFirstFrame * NANOS_IN_A_TIME_UNIT)) {
+                        break;
+                    }
+
+                    if (track.getCodecPrivateData() != null && track.getCodecPrivateData() != codecPrivateData) {
+                        codecPrivateData = track.getCodecPrivateData();
+                        mediaSourceSink.onCodecPrivateData(codecPrivateData);
+                    }
+
+                    final long timestamp = configuration.isRebaseTimecodes()
+                            ? startTime + sinceFirstFrame
+                            : block.getTimecode();
+                    mediaSourceSink.onFrame(new KinesisVideoFrame(
+                            frameIndex++,
+                            flagsOf(block),
+                            timestamp,
+                            timestamp,
+                            durationOf(track),
+                            block.getData()));
+                } catch (final KinesisVideoException e) {
+                    log.error("Failed to put frame with Exception", e);
+                } finally {
+                    // The frame has been put
+                    frameBufferPool.release(block.getData());
+                }
+            }
+        } catch (final EOFException e) {
+            log.warn(configuration.getFile() + " ends in the middle of an element");
+        } catch (final IOException e) {
+            log.error("Failed to read " + configuration.getFile(), e);
+        } finally {
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                log.warn("Failed to close " + configuration.getFile(), e);
+            }
+
+            mediaSourceState = MediaSourceState.STOPPED;
+        }
+    }
+
+    /**
+     * @return false if stopped while waiting
+     */
+    private boolean awaitDeadline(final long deadline) {
+        long wait;
+        while (isRunning && (wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+        }
+
+        return isRunning;
+    }
+
+    private static int flagsOf(final MkvBlockReader.Block block) {
+        int flags = FrameFlags.FRAME_FLAG_NONE;
+        if (block.isKeyFrame()) {
+            flags |= FrameFlags.FRAME_FLAG_KEY_FRAME;
+        }
+
+        if (block.isDiscardable()) {
+            flags |= FrameFlags.FRAME_FLAG_DISCARDABLE_FRAME;
+        }
+
+        if (block.isInvisible()) {
+            flags |= FrameFlags.FRAME_FLAG_INVISIBLE_FRAME;
+        }
+
+        return flags;
+    }
+
+    private long durationOf(final MkvBlockReader.Track track) {
+        return track.getDefaultDurationInNanos() > 0
+                ? track.getDefaultDurationInNanos() / NANOS_IN_A_TIME_UNIT
+                : HUNDREDS_OF_NANOS_IN_A_SECOND / configuration.getFps();
+    }
+}
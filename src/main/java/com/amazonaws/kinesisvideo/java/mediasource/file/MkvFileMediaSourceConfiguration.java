@@ -0,0 +1,254 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+import com.amazonaws.kinesisvideo.producer.StreamInfo;
+import com.amazonaws.kinesisvideo.producer.Tag;
+
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_SECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_AN_HOUR;
+
+/**
+ * Configuration of {@link MkvFileMediaSource}
+ */
+public class MkvFileMediaSourceConfiguration implements MediaSourceConfiguration {
+
+    private static final String MEDIA_SOURCE_TYPE = "MkvFileMediaSource";
+    private static final String MEDIA_SOURCE_DESCRIPTION = "Replays the frames of an MKV file";
+    private static final int DEFAULT_FPS = 25;
+
+    /**
+     * How fast the frames are replayed
+     */
+    public enum ReplayMode {
+        /**
+         * At the pace of their timecodes
+         */
+        REAL_TIME,
+        /**
+         * As fast as the stream takes them
+         */
+        AS_FAST_AS_POSSIBLE
+    }
+
+    private final String file;
+    private final ReplayMode replayMode;
+    private final long trackNumber;
+    private final boolean rebaseTimecodes;
+    private final int fps;
+    private final String contentType;
+    private final String codecId;
+    private final FrameBufferPool frameBufferPool;
+
+    public MkvFileMediaSourceConfiguration(final Builder builder) {
+        this.file = builder.file;
+        this.replayMode = builder.replayMode;
+        this.trackNumber = builder.trackNumber;
+        this.rebaseTimecodes = builder.rebaseTimecodes;
+        this.fps = builder.fps;
+        this.contentType = builder.contentType;
+        this.codecId = builder.codecId;
+        this.frameBufferPool = builder.frameBufferPool;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public ReplayMode getReplayMode() {
+        return replayMode;
+    }
+
+    public long getTrackNumber() {
+        return trackNumber;
+    }
+
+    public boolean isRebaseTimecodes() {
+        return rebaseTimecodes;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getCodecId() {
+        return codecId;
+    }
+
+    public FrameBufferPool getFrameBufferPool() {
+        return frameBufferPool;
+    }
+
+    @Override
+    public String getMediaSourceType() {
+        return MEDIA_SOURCE_TYPE;
+    }
+
+    @Override
+    public String getMediaSourceDescription() {
+        return MEDIA_SOURCE_DESCRIPTION;
+    }
+
+    public static class Builder implements MediaSourceConfiguration.Builder<MkvFileMediaSourceConfiguration> {
+        private String file;
+        private ReplayMode replayMode = ReplayMode.REAL_TIME;
+        private long trackNumber;
+        private boolean rebaseTimecodes;
+        private int fps = DEFAULT_FPS;
+        private String contentType = "video/h264";
+        private String codecId = "V_MPEG4/ISO/AVC";
+        private FrameBufferPool frameBufferPool;
+
+        public Builder file(final String file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * How fast the frames are replayed, {@link ReplayMode#REAL_TIME} by default
+         */
+        public Builder replayMode(final ReplayMode replayMode) {
+            if (replayMode == null) {
+                throw new IllegalArgumentException("Replay mode should not be null.");
+            }
+            this.replayMode = replayMode;
+            return this;
+        }
+
+        /**
+         * Number of the track to replay. 0, the default, replays the track of the first block.
+         */
+        public Builder trackNumber(final long trackNumber) {
+            if (trackNumber < 0) {
+                throw new IllegalArgumentException("Track number should not be negative.");
+            }
+            this.trackNumber = trackNumber;
+            return this;
+        }
+
+        /**
+         * Shifts the timecodes so that the first frame is at the time the source starts, keeping their spacing.
+         * By default the frames keep their original timecodes.
+         */
+        public Builder rebaseTimecodes(final boolean rebaseTimecodes) {
+            this.rebaseTimecodes = rebaseTimecodes;
+            return this;
+        }
+
+        /**
+         * Frame rate of the stream, which also sets the duration of the frames when the track has no default
+         * duration. 25 by default.
+         */
+        public Builder fps(final int fps) {
+            this.fps = fps;
+            if (fps <= 0) {
+                throw new IllegalArgumentException("Fps should not be negative or zero.");
+            }
+            return this;
+        }
+
+        /**
+         * Content type and MKV codec id of the track, H.264 by default
+         */
+        public Builder codec(final String contentType, final String codecId) {
+            this.contentType = contentType;
+            this.codecId = codecId;
+            return this;
+        }
+
+        /**
+         * Pool of the buffers the frames are read into, shared with other sources. By default each source has
+         * its own.
+         */
+        public Builder frameBufferPool(final FrameBufferPool frameBufferPool) {
+            this.frameBufferPool = frameBufferPool;
+            return this;
+        }
+
+        @Override
+        public MkvFileMediaSourceConfiguration build() {
+            return new MkvFileMediaSourceConfiguration(this);
+        }
+    }
+
+    private static final boolean NOT_ADAPTIVE = false;
+    private static final boolean KEYFRAME_FRAGMENTATION = true;
+    private static final String NO_KMS_KEY_ID = null;
+    private static final int VERSION_ZERO = 0;
+    private static final long MAX_LATENCY_ZERO = 0L;
+    private static final long RETENTION_ONE_HOUR = 1L * HUNDREDS_OF_NANOS_IN_AN_HOUR;
+    private static final boolean REQUEST_FRAGMENT_ACKS = true;
+    private static final boolean RECOVER_ON_FAILURE = true;
+    private static final long DEFAULT_GOP_DURATION = 2000L * HUNDREDS_OF_NANOS_IN_A_SECOND;
+    private static final int DEFAULT_BITRATE = 2_000_000;
+    private static final int DEFAULT_TIMESCALE = 10_000;
+    private static final boolean USE_FRAME_TIMECODES = true;
+    private static final boolean ABSOLUTE_TIMECODES = true;
+    private static final boolean RECALCULATE_METRICS = true;
+    private static final byte[] NO_CODEC_PRIVATE_DATA = null;
+
+    /**
+     * Default buffer duration for a stream
+     */
+    public static final long DEFAULT_BUFFER_DURATION_IN_SECONDS = 40;
+
+    /**
+     * Default replay duration for a stream
+     */
+    public static final long DEFAULT_REPLAY_DURATION_IN_SECONDS = 20;
+
+    /**
+     * Default connection staleness detection duration.
+     */
+    public static final long DEFAULT_STALENESS_DURATION_IN_SECONDS = 20;
+
+    public StreamInfo toStreamInfo(final String streamName) {
+        return new StreamInfo(VERSION_ZERO,
+                streamName,
+                StreamInfo.StreamingType.STREAMING_TYPE_REALTIME,
+                contentType,
+                NO_KMS_KEY_ID,
+                RETENTION_ONE_HOUR,
+                NOT_ADAPTIVE,
+                MAX_LATENCY_ZERO,
+                DEFAULT_GOP_DURATION * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
+                KEYFRAME_FRAGMENTATION,
+                USE_FRAME_TIMECODES,
+                ABSOLUTE_TIMECODES,
+                REQUEST_FRAGMENT_ACKS,
+                RECOVER_ON_FAILURE,
+                codecId,
+                "kinesis_video",
+                DEFAULT_BITRATE,
+                fps,
+                DEFAULT_BUFFER_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_REPLAY_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_STALENESS_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_TIMESCALE,
+                RECALCULATE_METRICS,
+                /*
+                 * The source sets the codec private data of the track
+                 */
+                NO_CODEC_PRIVATE_DATA,
+                getTags(),
+                /*
+                 * The blocks and the codec private data are already in the MKV format
+                 */
+                StreamInfo.NalAdaptationFlags.NAL_ADAPTATION_FLAG_NONE);
+    }
+
+    private static Tag[] getTags() {
+        final List<Tag> tagList = new ArrayList<>();
+        tagList.add(new Tag("device", "Test Device"));
+        tagList.add(new Tag("stream", "Test Stream"));
+        return tagList.toArray(new Tag[0]);
+    }
+}
@@ -0,0 +1,264 @@
+package com.amazonaws.kinesisvideo.java.mediasource.rtp;
+
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reassembles the H.264 access units of an RTP stream, RFC 6184.
+ * <p>
+ * The packets, in sequence order, carry single NAL units, STAP-A aggregates of several NAL units or FU-A fragments
+ * of one. Their NAL units are written with 4 byte start codes into a pooled buffer until the marker bit or a new RTP
+ * timestamp ends the access unit. An access unit missing a packet is dropped along with the following ones up to
+ * the next IDR access unit, which don't decode without it.
+ */
+@NotThreadSafe
+final class H264RtpDepacketizer {
+    static final int NAL_TYPE_IDR_SLICE = 5;
+    static final int NAL_TYPE_SPS = 7;
+    static final int NAL_TYPE_PPS = 8;
+    static final int NAL_TYPE_STAP_A = 24;
+    static final int NAL_TYPE_FU_A = 28;
+    static final int NAL_TYPE_MASK = 0x1f;
+
+    private static final int INITIAL_ACCESS_UNIT_SIZE = 64 * 1024;
+    private static final byte[] START_CODE = { 0, 0, 0, 1 };
+    private static final int FU_START = 0x80;
+    private static final int FU_END = 0x40;
+    private static final int NAL_HEADER_FORBIDDEN_AND_NRI = 0xe0;
+    private static final int STAP_A_LENGTH_SIZE = 2;
+
+    /**
+     * Receives the access units
+     */
+    interface Output {
+        /**
+         * @param accessUnit Annex-B access unit in a buffer of the pool, to release once used
+         * @param rtpTimestamp RTP timestamp of the access unit
+         * @param isKeyFrame whether the access unit has an IDR slice
+         */
+        void onAccessUnit(@Nonnull ByteBuffer accessUnit, long rtpTimestamp, boolean isKeyFrame);
+    }
+
+    private final FrameBufferPool mBufferPool;
+    private final Output mOutput;
+    private ByteBuffer mAccessUnit;
+    private long mTimestamp;
+    private boolean mHasIdrSlice;
+    private boolean mIsCorrupted;
+    private boolean mIsInFragment;
+    private boolean mIsWaitingForKeyFrame = true;
+    private int mNalUnitStart;
+    private byte[] mSps;
+    private byte[] mPps;
+    private long mDroppedAccessUnits;
+
+    H264RtpDepacketizer(@Nonnull final FrameBufferPool bufferPool, @Nonnull final Output output) {
+        mBufferPool = bufferPool;
+        mOutput = output;
+    }
+
+    /**
+     * @param packet next packet in sequence order
+     */
+    void add(@Nonnull final RtpPacket packet) {
+        if (mAccessUnit != null && packet.getTimestamp() != mTimestamp) {
+            // The marker bit of the previous access unit was lost
+            finishAccessUnit();
+        }
+
+        if (mAccessUnit == null) {
+            mAccessUnit = mBufferPool.acquire(INITIAL_ACCESS_UNIT_SIZE);
+            mAccessUnit.clear();
+            mTimestamp = packet.getTimestamp();
+            mHasIdrSlice = false;
+            mIsCorrupted = false;
+            mIsInFragment = false;
+        }
+
+        final ByteBuffer buffer = packet.getBuffer();
+        final int offset = packet.getPayloadOffset();
+        final int length = packet.getPayloadLength();
+        if (length > 0) {
+            final int type = buffer.get(offset) & NAL_TYPE_MASK;
+            if (type > 0 && type < NAL_TYPE_STAP_A) {
+                addNalUnit(buffer, offset, length);
+            } else if (type == NAL_TYPE_STAP_A) {
+                addAggregate(buffer, offset + 1, offset + length);
+            } else if (type == NAL_TYPE_FU_A) {
+                addFragment(buffer, offset, length);
+            } else {
+                // STAP-B, MTAP and FU-B are only used in the interleaved mode
+                mIsCorrupted = true;
+            }
+        }
+
+        if (packet.isMarker()) {
+            finishAccessUnit();
+        }
+    }
+
+    /**
+     * Reports lost packets, the access unit being reassembled is incomplete
+     */
+    void onLoss() {
+        if (mAccessUnit != null) {
+            mIsCorrupted = true;
+        } else {
+            // The lost packet may have started the next access unit
+            mIsWaitingForKeyFrame = true;
+        }
+    }
+
+    /**
+     * Releases the access unit being reassembled
+     */
+    void reset() {
+        if (mAccessUnit != null) {
+            mBufferPool.release(mAccessUnit);
+            mAccessUnit = null;
+        }
+
+        mIsWaitingForKeyFrame = true;
+    }
+
+    @Nullable
+    byte[] getSps() {
+        return mSps;
+    }
+
+    @Nullable
+    byte[] getPps() {
+        return mPps;
+    }
+
+    long getDroppedAccessUnitCount() {
+        return mDroppedAccessUnits;
+    }
+
+    private void addNalUnit(final ByteBuffer buffer, final int offset, final int length) {
+        mIsInFragment = false;
+        startNalUnit();
+        append(buffer, offset, length);
+        endNalUnit();
+    }
+
+    private void addAggregate(final ByteBuffer buffer, final int from, final int to) {
+        int offset = from;
+        while (offset + STAP_A_LENGTH_SIZE <= to) {
+            final int length = buffer.getShort(offset) & 0xffff;
+            offset += STAP_A_LENGTH_SIZE;
+            if (length == 0 || offset + length > to) {
+                mIsCorrupted = true;
+                return;
+            }
+
+            addNalUnit(buffer, offset, length);
+            offset += length;
+        }
+    }
+
+    private void addFragment(final ByteBuffer buffer, final int offset, final int length) {
+        if (length < 2) {
+            mIsCorrupted = true;
+            return;
+        }
+
+        final int indicator = buffer.get(offset) & 0xff;
+        final int header = buffer.get(offset + 1) & 0xff;
+        if ((header & FU_START) != 0) {
+            startNalUnit();
+            ensureRemaining(1);
+            mAccessUnit.put((byte) ((indicator & NAL_HEADER_FORBIDDEN_AND_NRI) | (header & NAL_TYPE_MASK)));
+            mIsInFragment = true;
+        } else if (!mIsInFragment) {
+            // The first fragments were lost
+            mIsCorrupted = true;
+            return;
+        }
+
+        append(buffer, offset + 2, length - 2);
+        if ((header & FU_END) != 0) {
+            mIsInFragment = false;
+            endNalUnit();
+        }
+    }
+
+    private void startNalUnit() {
+        ensureRemaining(START_CODE.length);
+        mAccessUnit.put(START_CODE);
+        mNalUnitStart = mAccessUnit.position();
+    }
+
+    private void endNalUnit() {
+        final int type = mAccessUnit.get(mNalUnitStart) & NAL_TYPE_MASK;
+        if (type == NAL_TYPE_IDR_SLICE) {
+            mHasIdrSlice = true;
+        } else if (type == NAL_TYPE_SPS) {
+            mSps = copyNalUnit(mSps);
+        } else if (type == NAL_TYPE_PPS) {
+            mPps = copyNalUnit(mPps);
+        }
+    }
+
+    /**
+     * @return The current NAL unit, or the previous copy when it is the same
+     */
+    private byte[] copyNalUnit(@Nullable final byte[] previous) {
+        final byte[] nalUnit = new byte[mAccessUnit.position() - mNalUnitStart];
+        for (int i = 0; i < nalUnit.length; i++) {
+            nalUnit[i] = mAccessUnit.get(mNalUnitStart + i);
+        }
+
+        return Arrays.equals(nalUnit, previous) ? previous : nalUnit;
+    }
+
+    private void append(final ByteBuffer buffer, final int offset, final int length) {
+        ensureRemaining(length);
+        final ByteBuffer source = buffer.duplicate();
+        source.limit(offset + length);
+        source.position(offset);
+        mAccessUnit.put(source);
+    }
+
+    private void ensureRemaining(final int length) {
+        if (mAccessUnit.remaining() >= length) {
+            return;
+        }
+
+        final ByteBuffer larger = mBufferPool.acquire(Math.max(2 * mAccessUnit.capacity(),
+                mAccessUnit.position() + length));
+        larger.clear();
+        mAccessUnit.flip();
+        larger.put(mAccessUnit);
+        mBufferPool.release(mAccessUnit);
+        mAccessUnit = larger;
+    }
+
+    private void finishAccessUnit() {
+        final ByteBuffer accessUnit = mAccessUnit;
+        mAccessUnit = null;
+        accessUnit.flip();
+
+        final boolean isComplete = !mIsCorrupted && !mIsInFragment && accessUnit.hasRemaining();
+        if (isComplete && mHasIdrSlice) {
+            mIsWaitingForKeyFrame = false;
+        }
+
+        if (!isComplete || mIsWaitingForKeyFrame) {
+            if (!isComplete) {
+                mIsWaitingForKeyFrame = true;
+            }
+
+            mDroppedAccessUnits++;
+            mBufferPool.release(accessUnit);
+            return;
+        }
+
+        mOutput.onAccessUnit(accessUnit, mTimestamp, mHasIdrSlice);
+    }
+}
@@ -0,0 +1,173 @@
+package com.amazonaws.kinesisvideo.java.mediasource.rtp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Puts the RTP packets of a stream back in sequence order.
+ * <p>
+ * The packets are held in a ring indexed by their sequence number and handed over as soon as they are next in
+ * sequence. A missing packet is waited for until the packets after it have been held for the maximum delay or fill
+ * the ring, then it is reported lost. Late and duplicate packets are dropped.
+ */
+@NotThreadSafe
+final class RtpJitterBuffer {
+    private static final int SEQUENCE_NUMBER_MASK = 0xffff;
+
+    /**
+     * Receives the packets in order
+     */
+    interface Output {
+        /**
+         * @param packet next packet in sequence, to release once used
+         */
+        void onPacket(@Nonnull RtpPacket packet);
+
+        /**
+         * @param lostPackets number of packets skipped
+         */
+        void onLoss(int lostPackets);
+
+        /**
+         * @param packet late or duplicate packet to release
+         */
+        void onDiscarded(@Nonnull RtpPacket packet);
+    }
+
+    private final RtpPacket[] mPackets;
+    private final int mMask;
+    private final long mMaxDelayInNanos;
+    private final Output mOutput;
+    private boolean mIsStarted;
+    private int mNextSequenceNumber;
+    private int mHeldPackets;
+    private long mGapSince;
+    private long mLostPackets;
+
+    /**
+     * @param capacity number of packets held, rounded up to a power of two
+     * @param maxDelayInNanos time a missing packet is waited for
+     * @param output where the packets go in order
+     */
+    RtpJitterBuffer(final int capacity, final long maxDelayInNanos, @Nonnull final Output output) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mPackets = new RtpPacket[size];
+        mMask = size - 1;
+        mMaxDelayInNanos = maxDelayInNanos;
+        mOutput = output;
+    }
+
+    /**
+     * @param packet packet received
+     * @param now {@link System#nanoTime()} of the reception
+     */
+    void add(@Nonnull final RtpPacket packet, final long now) {
+        final int sequenceNumber = packet.getSequenceNumber();
+        if (!mIsStarted) {
+            mIsStarted = true;
+            mNextSequenceNumber = sequenceNumber;
+        }
+
+        // Signed distance in the 16 bit sequence number space
+        int distance = (short) (sequenceNumber - mNextSequenceNumber);
+        if (distance < -mPackets.length && mHeldPackets == 0) {
+            // Too far behind to be late, the sender has started again
+            mNextSequenceNumber = sequenceNumber;
+            distance = 0;
+        } else if (distance < 0) {
+            mOutput.onDiscarded(packet);
+            return;
+        }
+
+        // Makes room by giving up on the oldest missing packets
+        while (distance >= mPackets.length) {
+            if (mHeldPackets == 0) {
+                // Nothing to wait for, e.g. after a burst of losses
+                lose(distance);
+                mNextSequenceNumber = sequenceNumber;
+                distance = 0;
+                break;
+            }
+
+            skip();
+            distance--;
+        }
+
+        if (mPackets[sequenceNumber & mMask] != null) {
+            mOutput.onDiscarded(packet);
+            return;
+        }
+
+        mPackets[sequenceNumber & mMask] = packet;
+        mHeldPackets++;
+        if (distance > 0 && mHeldPackets == 1) {
+            mGapSince = now;
+        }
+
+        drain();
+    }
+
+    /**
+     * Reports the missing packets waited for longer than the maximum delay
+     *
+     * @param now {@link System#nanoTime()}
+     */
+    void onTick(final long now) {
+        while (mHeldPackets > 0 && now - mGapSince >= mMaxDelayInNanos) {
+            while (mPackets[mNextSequenceNumber & mMask] == null) {
+                skip();
+            }
+
+            // The next gap is waited for from now
+            mGapSince = now;
+            drain();
+        }
+    }
+
+    /**
+     * Forgets the sequence, e.g. when the source restarts with another SSRC
+     */
+    void reset() {
+        for (int i = 0; i < mPackets.length; i++) {
+            if (mPackets[i] != null) {
+                mOutput.onDiscarded(mPackets[i]);
+                mPackets[i] = null;
+            }
+        }
+
+        mHeldPackets = 0;
+        mIsStarted = false;
+    }
+
+    long getLostPacketCount() {
+        return mLostPackets;
+    }
+
+    private void drain() {
+        RtpPacket packet;
+        while ((packet = mPackets[mNextSequenceNumber & mMask]) != null) {
+            mPackets[mNextSequenceNumber & mMask] = null;
+            mHeldPackets--;
+            mNextSequenceNumber = (mNextSequenceNumber + 1) & SEQUENCE_NUMBER_MASK;
+            mOutput.onPacket(packet);
+        }
+    }
+
+    private void skip() {
+        final RtpPacket packet = mPackets[mNextSequenceNumber & mMask];
+        if (packet != null) {
+            mPackets[mNextSequenceNumber & mMask] = null;
+            mHeldPackets--;
+            mOutput.onPacket(packet);
+        } else {
+            lose(1);
+        }
+
+        mNextSequenceNumber = (mNextSequenceNumber + 1) & SEQUENCE_NUMBER_MASK;
+    }
+
+    private void lose(final int packets) {
+        mLostPackets += packets;
+        mOutput.onLoss(packets);
+    }
+}
@@ -0,0 +1,277 @@
+package com.amazonaws.kinesisvideo.java.mediasource.rtp;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.java.mediasource.file.H264AnnexBReader;
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_SECOND;
+
+/**
+ * MediaSource receiving an H.264 RTP stream over UDP, e.g. from a camera, RFC 6184.
+ * <p>
+ * The packets are received by an {@link RtpReceiver} shared with other sources, put back in order by a jitter
+ * buffer and reassembled into Annex-B access units from their single NAL unit, STAP-A and FU-A payloads. The RTP
+ * timestamps are unwrapped and mapped onto the wall clock at the first frame, so the frames keep the timing of the
+ * camera, and the access units with an IDR slice are key frames. The codec private data is built from the SPS and
+ * PPS of the stream and updated when they change. The access units missing a packet are dropped up to the next key
+ * frame. A new SSRC, when the camera restarts, continues the timeline of the previous one.
+ * <p>
+ * The frames are put on the thread of the receiver, from pooled direct buffers released once the frame is put.
+ */
+public class RtpMediaSource implements MediaSource {
+    private final Log log = LogFactory.getLog(RtpMediaSource.class);
+
+    private RtpMediaSourceConfiguration configuration;
+    private MediaSourceState mediaSourceState;
+    private MediaSourceSink mediaSourceSink;
+    private RtpReceiver receiver;
+    private FrameBufferPool frameBufferPool;
+    private DatagramChannel channel;
+    private int localPort;
+
+    @Override
+    public MediaSourceState getMediaSourceState() {
+        return mediaSourceState;
+    }
+
+    @Override
+    public MediaSourceConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
+        this.mediaSourceSink = mediaSourceSink;
+    }
+
+    @Override
+    public void configure(final MediaSourceConfiguration configuration) {
+        if (!(configuration instanceof RtpMediaSourceConfiguration)) {
+            throw new IllegalArgumentException("can only use RtpMediaSourceConfiguration");
+        }
+
+        this.configuration = (RtpMediaSourceConfiguration) configuration;
+        this.receiver = this.configuration.getReceiver() != null
+                ? this.configuration.getReceiver()
+                : RtpReceiver.getDefault();
+        this.frameBufferPool = this.configuration.getFrameBufferPool() != null
+                ? this.configuration.getFrameBufferPool()
+                : new FrameBufferPool();
+    }
+
+    @Override
+    public synchronized void start() throws KinesisVideoException {
+        if (channel != null) {
+            throw new IllegalStateException("Media source is already running");
+        }
+
+        final InetSocketAddress address = configuration.getBindAddress() != null
+                ? new InetSocketAddress(configuration.getBindAddress(), configuration.getPort())
+                : new InetSocketAddress(configuration.getPort());
+        DatagramChannel channel = null;
+        try {
+            channel = DatagramChannel.open();
+            if (configuration.getReceiveBufferSize() > 0) {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, configuration.getReceiveBufferSize());
+            }
+
+            channel.bind(address);
+            channel.configureBlocking(false);
+            localPort = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            receiver.register(channel, new Session());
+        } catch (final IOException e) {
+            closeQuietly(channel);
+            throw new KinesisVideoException(e);
+        }
+
+        this.channel = channel;
+        mediaSourceState = MediaSourceState.RUNNING;
+    }
+
+    @Override
+    public synchronized void stop() throws KinesisVideoException {
+        if (channel != null) {
+            // The receiver closes the channel and releases the buffers of the session
+            receiver.unregister(channel);
+            channel = null;
+        }
+
+        mediaSourceState = MediaSourceState.STOPPED;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return mediaSourceState == MediaSourceState.STOPPED;
+    }
+
+    @Override
+    public void free() throws KinesisVideoException {
+    }
+
+    /**
+     * @return UDP port the stream is received on once started, e.g. when the configured port is ephemeral
+     */
+    public int getLocalPort() {
+        return localPort;
+    }
+
+    private void closeQuietly(final DatagramChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                log.warn("Failed to close the RTP channel", e);
+            }
+        }
+    }
+
+    /**
+     * State of the stream received on a channel, used on the thread of the receiver only
+     */
+    private final class Session implements RtpReceiver.Session, RtpJitterBuffer.Output, H264RtpDepacketizer.Output {
+        private final FrameBufferPool packetBufferPool = receiver.getBufferPool();
+        private final RtpJitterBuffer jitterBuffer = new RtpJitterBuffer(configuration.getJitterBufferPackets(),
+                TimeUnit.MILLISECONDS.toNanos(configuration.getJitterBufferDelayMillis()),
+                this);
+        private final H264RtpDepacketizer depacketizer = new H264RtpDepacketizer(frameBufferPool, this);
+        private final long defaultFrameDuration = HUNDREDS_OF_NANOS_IN_A_SECOND / configuration.getFps();
+        private boolean hasSsrc;
+        private long ssrc;
+        private boolean hasTimeline;
+        private long timelineBase;
+        private long extendedRtpTimestamp;
+        private long lastRtpTimestamp;
+        private long lastFrameTimestamp;
+        private long lastFrameDuration = defaultFrameDuration;
+        private int frameIndex;
+        private byte[] codecPrivateData;
+
+        @Override
+        public void onPacket(@Nonnull final RtpPacket packet, final long now) {
+            final int payloadType = configuration.getPayloadType();
+            if (payloadType != RtpMediaSourceConfiguration.ANY_PAYLOAD_TYPE
+                    && packet.getPayloadType() != payloadType) {
+                packetBufferPool.release(packet.getBuffer());
+                return;
+            }
+
+            if (hasSsrc && packet.getSsrc() != ssrc) {
+                log.info("RTP stream restarted with SSRC " + packet.getSsrc());
+                jitterBuffer.reset();
+                depacketizer.reset();
+                // The RTP timestamps of the new SSRC start at random
+                hasTimeline = false;
+            }
+
+            hasSsrc = true;
+            ssrc = packet.getSsrc();
+            jitterBuffer.add(packet, now);
+        }
+
+        @Override
+        public void onTick(final long now) {
+            jitterBuffer.onTick(now);
+        }
+
+        @Override
+        public void onClosed() {
+            jitterBuffer.reset();
+            depacketizer.reset();
+        }
+
+        @Override
+        public void onPacket(@Nonnull final RtpPacket packet) {
+            try {
+                depacketizer.add(packet);
+            } finally {
+                packetBufferPool.release(packet.getBuffer());
+            }
+        }
+
+        @Override
+        public void onLoss(final int lostPackets) {
+            depacketizer.onLoss();
+        }
+
+        @Override
+        public void onDiscarded(@Nonnull final RtpPacket packet) {
+            packetBufferPool.release(packet.getBuffer());
+        }
+
+        @Override
+        public void onAccessUnit(@Nonnull final ByteBuffer accessUnit, final long rtpTimestamp,
+                                 final boolean isKeyFrame) {
+            try {
+                final long timestamp = toFrameTimestamp(rtpTimestamp);
+                if (frameIndex > 0 && timestamp > lastFrameTimestamp) {
+                    lastFrameDuration = timestamp - lastFrameTimestamp;
+                }
+
+                lastFrameTimestamp = timestamp;
+                if (isKeyFrame) {
+                    updateCodecPrivateData();
+                }
+
+                mediaSourceSink.onFrame(new KinesisVideoFrame(
+                        frameIndex++,
+                        isKeyFrame ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                        timestamp,
+                        timestamp,
+                        lastFrameDuration,
+                        accessUnit));
+            } catch (final KinesisVideoException e) {
+                log.error("Failed to put frame with Exception", e);
+            } finally {
+                frameBufferPool.release(accessUnit);
+            }
+        }
+
+        /**
+         * Maps the 32 bit RTP timestamp onto the wall clock in hundreds of nanos
+         */
+        private long toFrameTimestamp(final long rtpTimestamp) {
+            if (!hasTimeline) {
+                hasTimeline = true;
+                extendedRtpTimestamp = 0;
+                timelineBase = frameIndex == 0
+                        ? System.currentTimeMillis() * HUNDREDS_OF_NANOS_IN_A_MILLISECOND
+                        : lastFrameTimestamp + lastFrameDuration;
+            } else {
+                // Signed distance, the timestamps wrap around and go back with B-frames
+                extendedRtpTimestamp += (int) (rtpTimestamp - lastRtpTimestamp);
+            }
+
+            lastRtpTimestamp = rtpTimestamp;
+            final int clockRate = configuration.getClockRate();
+            return timelineBase
+                    + extendedRtpTimestamp / clockRate * HUNDREDS_OF_NANOS_IN_A_SECOND
+                    + extendedRtpTimestamp % clockRate * HUNDREDS_OF_NANOS_IN_A_SECOND / clockRate;
+        }
+
+        private void updateCodecPrivateData() throws KinesisVideoException {
+            final byte[] latest = H264AnnexBReader.toCodecPrivateData(depacketizer.getSps(), depacketizer.getPps());
+            if (latest != null && !Arrays.equals(latest, codecPrivateData)) {
+                codecPrivateData = latest;
+                mediaSourceSink.onCodecPrivateData(latest);
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.amazonaws.kinesisvideo.java.mediasource.rtp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+import com.amazonaws.kinesisvideo.producer.StreamInfo;
+import com.amazonaws.kinesisvideo.producer.Tag;
+
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_SECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_AN_HOUR;
+
+/**
+ * Configuration of {@link RtpMediaSource}
+ */
+public class RtpMediaSourceConfiguration implements MediaSourceConfiguration {
+
+    private static final String MEDIA_SOURCE_TYPE = "RtpMediaSource";
+    private static final String MEDIA_SOURCE_DESCRIPTION = "Receives an H.264 RTP stream over UDP";
+    private static final int DEFAULT_FPS = 30;
+    private static final int DEFAULT_CLOCK_RATE = 90000;
+    private static final int DEFAULT_JITTER_BUFFER_PACKETS = 256;
+    private static final int DEFAULT_JITTER_BUFFER_DELAY_IN_MILLIS = 50;
+
+    /**
+     * Payload type accepting any
+     */
+    public static final int ANY_PAYLOAD_TYPE = -1;
+
+    private final int port;
+    private final String bindAddress;
+    private final int clockRate;
+    private final int fps;
+    private final int jitterBufferPackets;
+    private final int jitterBufferDelayMillis;
+    private final int receiveBufferSize;
+    private final int payloadType;
+    private final RtpReceiver receiver;
+    private final FrameBufferPool frameBufferPool;
+
+    public RtpMediaSourceConfiguration(final Builder builder) {
+        this.port = builder.port;
+        this.bindAddress = builder.bindAddress;
+        this.clockRate = builder.clockRate;
+        this.fps = builder.fps;
+        this.jitterBufferPackets = builder.jitterBufferPackets;
+        this.jitterBufferDelayMillis = builder.jitterBufferDelayMillis;
+        this.receiveBufferSize = builder.receiveBufferSize;
+        this.payloadType = builder.payloadType;
+        this.receiver = builder.receiver;
+        this.frameBufferPool = builder.frameBufferPool;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    public int getClockRate() {
+        return clockRate;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public int getJitterBufferPackets() {
+        return jitterBufferPackets;
+    }
+
+    public int getJitterBufferDelayMillis() {
+        return jitterBufferDelayMillis;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public int getPayloadType() {
+        return payloadType;
+    }
+
+    public RtpReceiver getReceiver() {
+        return receiver;
+    }
+
+    public FrameBufferPool getFrameBufferPool() {
+        return frameBufferPool;
+    }
+
+    @Override
+    public String getMediaSourceType() {
+        return MEDIA_SOURCE_TYPE;
+    }
+
+    @Override
+    public String getMediaSourceDescription() {
+        return MEDIA_SOURCE_DESCRIPTION;
+    }
+
+    public static class Builder implements MediaSourceConfiguration.Builder<RtpMediaSourceConfiguration> {
+        private int port;
+        private String bindAddress;
+        private int clockRate = DEFAULT_CLOCK_RATE;
+        private int fps = DEFAULT_FPS;
+        private int jitterBufferPackets = DEFAULT_JITTER_BUFFER_PACKETS;
+        private int jitterBufferDelayMillis = DEFAULT_JITTER_BUFFER_DELAY_IN_MILLIS;
+        private int receiveBufferSize;
+        private int payloadType = ANY_PAYLOAD_TYPE;
+        private RtpReceiver receiver;
+        private FrameBufferPool frameBufferPool;
+
+        /**
+         * UDP port the stream is received on, 0 by default for an ephemeral port
+         */
+        public Builder port(final int port) {
+            this.port = port;
+            if (port < 0 || port > 0xffff) {
+                throw new IllegalArgumentException("Port should be between 0 and 65535.");
+            }
+            return this;
+        }
+
+        /**
+         * Local address the port is bound to, all the addresses by default
+         */
+        public Builder bindAddress(final String bindAddress) {
+            this.bindAddress = bindAddress;
+            return this;
+        }
+
+        /**
+         * Rate of the RTP timestamps, 90 kHz by default as for all video
+         */
+        public Builder clockRate(final int clockRate) {
+            this.clockRate = clockRate;
+            if (clockRate <= 0) {
+                throw new IllegalArgumentException("Clock rate should not be negative or zero.");
+            }
+            return this;
+        }
+
+        /**
+         * Expected frame rate, used for the duration of the first frame and the stream info. 30 by default.
+         */
+        public Builder fps(final int fps) {
+            this.fps = fps;
+            if (fps <= 0) {
+                throw new IllegalArgumentException("Fps should not be negative or zero.");
+            }
+            return this;
+        }
+
+        /**
+         * Number of the packets held to put them back in order, 256 by default
+         */
+        public Builder jitterBufferPackets(final int jitterBufferPackets) {
+            this.jitterBufferPackets = jitterBufferPackets;
+            if (jitterBufferPackets <= 0) {
+                throw new IllegalArgumentException("Jitter buffer packets should not be negative or zero.");
+            }
+            return this;
+        }
+
+        /**
+         * Time a missing packet is waited for before it is taken as lost, 50 ms by default
+         */
+        public Builder jitterBufferDelayMillis(final int jitterBufferDelayMillis) {
+            this.jitterBufferDelayMillis = jitterBufferDelayMillis;
+            if (jitterBufferDelayMillis < 0) {
+                throw new IllegalArgumentException("Jitter buffer delay should not be negative.");
+            }
+            return this;
+        }
+
+        /**
+         * Size of the socket receive buffer, the system default when 0. High bit rate streams need a few MB to
+         * absorb the bursts of the key frames.
+         */
+        public Builder receiveBufferSize(final int receiveBufferSize) {
+            this.receiveBufferSize = receiveBufferSize;
+            if (receiveBufferSize < 0) {
+                throw new IllegalArgumentException("Receive buffer size should not be negative.");
+            }
+            return this;
+        }
+
+        /**
+         * Dynamic payload type of the H.264 packets, the other packets are dropped. Any by default.
+         */
+        public Builder payloadType(final int payloadType) {
+            this.payloadType = payloadType;
+            if (payloadType < ANY_PAYLOAD_TYPE || payloadType > 0x7f) {
+                throw new IllegalArgumentException("Payload type should be between 0 and 127.");
+            }
+            return this;
+        }
+
+        /**
+         * Receiver serving the stream along with others, {@link RtpReceiver#getDefault()} by default
+         */
+        public Builder receiver(final RtpReceiver receiver) {
+            this.receiver = receiver;
+            return this;
+        }
+
+        /**
+         * Pool of the frame buffers, shared with other sources to bound the memory, a pool of the source by default
+         */
+        public Builder frameBufferPool(final FrameBufferPool frameBufferPool) {
+            this.frameBufferPool = frameBufferPool;
+            return this;
+        }
+
+        @Override
+        public RtpMediaSourceConfiguration build() {
+            return new RtpMediaSourceConfiguration(this);
+        }
+    }
+
+    private static final boolean NOT_ADAPTIVE = false;
+    private static final boolean KEYFRAME_FRAGMENTATION = true;
+    private static final String NO_KMS_KEY_ID = null;
+    private static final int VERSION_ZERO = 0;
+    private static final long MAX_LATENCY_ZERO = 0L;
+    private static final long RETENTION_ONE_HOUR = 1L * HUNDREDS_OF_NANOS_IN_AN_HOUR;
+    private static final boolean REQUEST_FRAGMENT_ACKS = true;
+    private static final boolean RECOVER_ON_FAILURE = true;
+    private static final long DEFAULT_GOP_DURATION = 2000L * HUNDREDS_OF_NANOS_IN_A_SECOND;
+    private static final int DEFAULT_BITRATE = 2_000_000;
+    private static final int DEFAULT_TIMESCALE = 10_000;
+    private static final boolean USE_FRAME_TIMECODES = true;
+    private static final boolean ABSOLUTE_TIMECODES = true;
+    private static final boolean RECALCULATE_METRICS = true;
+    private static final byte[] NO_CODEC_PRIVATE_DATA = null;
+
+    /**
+     * Default buffer duration for a stream
+     */
+    public static final long DEFAULT_BUFFER_DURATION_IN_SECONDS = 40;
+
+    /**
+     * Default replay duration for a stream
+     */
+    public static final long DEFAULT_REPLAY_DURATION_IN_SECONDS = 20;
+
+    /**
+     * Default connection staleness detection duration.
+     */
+    public static final long DEFAULT_STALENESS_DURATION_IN_SECONDS = 20;
+
+    public StreamInfo toStreamInfo(final String streamName) {
+        return new StreamInfo(VERSION_ZERO,
+                streamName,
+                StreamInfo.StreamingType.STREAMING_TYPE_REALTIME,
+                "video/h264",
+                NO_KMS_KEY_ID,
+                RETENTION_ONE_HOUR,
+                NOT_ADAPTIVE,
+                MAX_LATENCY_ZERO,
+                DEFAULT_GOP_DURATION * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
+                KEYFRAME_FRAGMENTATION,
+                USE_FRAME_TIMECODES,
+                ABSOLUTE_TIMECODES,
+                REQUEST_FRAGMENT_ACKS,
+                RECOVER_ON_FAILURE,
+                "V_MPEG4/ISO/AVC",
+                "kinesis_video",
+                DEFAULT_BITRATE,
+                fps,
+                DEFAULT_BUFFER_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_REPLAY_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_STALENESS_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
+                DEFAULT_TIMESCALE,
+                RECALCULATE_METRICS,
+                /*
+                 * The source sets the codec private data built from the SPS and PPS of the stream
+                 */
+                NO_CODEC_PRIVATE_DATA,
+                getTags(),
+                StreamInfo.NalAdaptationFlags.NAL_ADAPTATION_ANNEXB_NALS);
+    }
+
+    private static Tag[] getTags() {
+        final List<Tag> tagList = new ArrayList<>();
+        tagList.add(new Tag("device", "Test Device"));
+        tagList.add(new Tag("stream", "Test Stream"));
+        return tagList.toArray(new Tag[0]);
+    }
+}
@@ -0,0 +1,107 @@
+package com.amazonaws.kinesisvideo.java.mediasource.rtp;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * An RTP packet received in a pooled buffer, RFC 3550
+ */
+final class RtpPacket {
+    static final int HEADER_SIZE = 12;
+
+    private static final int VERSION = 2;
+    private static final int CSRC_SIZE = 4;
+    private static final int EXTENSION_HEADER_SIZE = 4;
+    private static final int EXTENSION_WORD_SIZE = 4;
+
+    private final ByteBuffer mBuffer;
+    private final int mSequenceNumber;
+    private final long mTimestamp;
+    private final long mSsrc;
+    private final int mPayloadType;
+    private final boolean mMarker;
+    private final int mPayloadOffset;
+    private final int mPayloadLength;
+
+    private RtpPacket(@Nonnull final ByteBuffer buffer, final int payloadOffset, final int payloadLength) {
+        mBuffer = buffer;
+        mSequenceNumber = buffer.getShort(2) & 0xffff;
+        mTimestamp = buffer.getInt(4) & 0xffffffffL;
+        mSsrc = buffer.getInt(8) & 0xffffffffL;
+        mPayloadType = buffer.get(1) & 0x7f;
+        mMarker = (buffer.get(1) & 0x80) != 0;
+        mPayloadOffset = payloadOffset;
+        mPayloadLength = payloadLength;
+    }
+
+    /**
+     * Parses the packet between position 0 and the limit of the buffer
+     *
+     * @return The packet or null if the buffer is not a valid RTP packet
+     */
+    @Nullable
+    static RtpPacket parse(@Nonnull final ByteBuffer buffer) {
+        final int length = buffer.limit();
+        if (length < HEADER_SIZE || (buffer.get(0) & 0xc0) >> 6 != VERSION) {
+            return null;
+        }
+
+        final int first = buffer.get(0) & 0xff;
+        int offset = HEADER_SIZE + (first & 0x0f) * CSRC_SIZE;
+        if ((first & 0x10) != 0) {
+            if (offset + EXTENSION_HEADER_SIZE > length) {
+                return null;
+            }
+
+            offset += EXTENSION_HEADER_SIZE + (buffer.getShort(offset + 2) & 0xffff) * EXTENSION_WORD_SIZE;
+        }
+
+        int end = length;
+        if ((first & 0x20) != 0) {
+            end -= buffer.get(length - 1) & 0xff;
+        }
+
+        if (offset > end) {
+            return null;
+        }
+
+        return new RtpPacket(buffer, offset, end - offset);
+    }
+
+    /**
+     * @return Buffer of the whole packet, acquired from the pool of the receiver
+     */
+    @Nonnull
+    ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    int getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
+    long getTimestamp() {
+        return mTimestamp;
+    }
+
+    long getSsrc() {
+        return mSsrc;
+    }
+
+    int getPayloadType() {
+        return mPayloadType;
+    }
+
+    boolean isMarker() {
+        return mMarker;
+    }
+
+    int getPayloadOffset() {
+        return mPayloadOffset;
+    }
+
+    int getPayloadLength() {
+        return mPayloadLength;
+    }
+}
@@ -0,0 +1,302 @@
+package com.amazonaws.kinesisvideo.java.mediasource.rtp;
+
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+
+/**
+ * Receives the RTP packets of many sources on one thread.
+ * <p>
+ * The UDP channels of the sources are registered with one selector and read into a single direct buffer, then each
+ * packet is copied into a buffer of a pool, so the receiver serves many cameras without a thread or allocation per
+ * packet. The sessions of the channels are called on the thread of the receiver only, with the packets and with a
+ * tick about every {@link #TICK_IN_MILLIS} to report the packets waited for too long.
+ */
+@ThreadSafe
+public final class RtpReceiver implements Closeable {
+    /**
+     * Period of the ticks of the sessions
+     */
+    public static final long TICK_IN_MILLIS = 10;
+
+    /**
+     * Default number of the free packet buffers kept
+     */
+    public static final int DEFAULT_MAX_FREE_BUFFERS = 1024;
+
+    private static final int MAX_DATAGRAM_SIZE = 64 * 1024;
+    private static final long TICK_IN_NANOS = TICK_IN_MILLIS * 1000 * 1000;
+
+    private static RtpReceiver sDefault;
+
+    /**
+     * Receives the packets of a channel on the thread of the receiver
+     */
+    interface Session {
+        /**
+         * @param packet packet received, to release to the pool of the receiver once used
+         * @param now {@link System#nanoTime()} of the reception
+         */
+        void onPacket(@Nonnull RtpPacket packet, long now);
+
+        /**
+         * @param now {@link System#nanoTime()}
+         */
+        void onTick(long now);
+
+        /**
+         * Called once the channel is unregistered and closed
+         */
+        void onClosed();
+    }
+
+    private final Log log = LogFactory.getLog(RtpReceiver.class);
+    private final FrameBufferPool mBufferPool;
+    private final ByteBuffer mReadBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+    private final ConcurrentLinkedQueue<Runnable> mPendingTasks = new ConcurrentLinkedQueue<Runnable>();
+    private final List<Session> mSessions = new ArrayList<Session>();
+    private Selector mSelector;
+    private Thread mThread;
+    private volatile boolean mIsClosed;
+
+    public RtpReceiver() {
+        this(new FrameBufferPool(DEFAULT_MAX_FREE_BUFFERS));
+    }
+
+    /**
+     * @param bufferPool pool of the packet buffers
+     */
+    public RtpReceiver(@Nonnull final FrameBufferPool bufferPool) {
+        mBufferPool = checkNotNull(bufferPool);
+    }
+
+    /**
+     * @return The receiver shared by the sources not configured with one, its thread is a daemon
+     */
+    @Nonnull
+    public static synchronized RtpReceiver getDefault() {
+        if (sDefault == null) {
+            sDefault = new RtpReceiver();
+        }
+
+        return sDefault;
+    }
+
+    /**
+     * @return Pool the packet buffers are released to
+     */
+    @Nonnull
+    FrameBufferPool getBufferPool() {
+        return mBufferPool;
+    }
+
+    /**
+     * Starts receiving the packets of a non-blocking channel
+     */
+    void register(@Nonnull final DatagramChannel channel, @Nonnull final Session session) throws IOException {
+        checkNotNull(channel);
+        checkNotNull(session);
+        final Selector selector = start();
+        mPendingTasks.add(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, session);
+                    mSessions.add(session);
+                } catch (final IOException e) {
+                    log.error("Failed to register the RTP channel", e);
+                    closeChannel(channel, session);
+                }
+            }
+        });
+        selector.wakeup();
+    }
+
+    /**
+     * Stops receiving the packets of a channel and closes it, then calls {@link Session#onClosed()}
+     */
+    void unregister(@Nonnull final DatagramChannel channel) {
+        checkNotNull(channel);
+        final Selector selector = mSelector;
+        if (selector == null || mIsClosed) {
+            return;
+        }
+
+        mPendingTasks.add(new Runnable() {
+            @Override
+            public void run() {
+                final SelectionKey key = channel.keyFor(selector);
+                if (key != null) {
+                    final Session session = (Session) key.attachment();
+                    key.cancel();
+                    mSessions.remove(session);
+                    closeChannel(channel, session);
+                }
+            }
+        });
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the thread of the receiver and closes the channels registered
+     */
+    @Override
+    public void close() {
+        final Thread thread;
+        synchronized (this) {
+            mIsClosed = true;
+            thread = mThread;
+            if (mSelector != null) {
+                mSelector.wakeup();
+            }
+        }
+
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized Selector start() throws IOException {
+        checkState(!mIsClosed, "RTP receiver is closed");
+        if (mSelector == null) {
+            mSelector = Selector.open();
+            mThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    receive();
+                }
+            }, "RtpReceiver");
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+
+        return mSelector;
+    }
+
+    private void receive() {
+        final Selector selector = mSelector;
+        long nextTick = System.nanoTime() + TICK_IN_NANOS;
+        try {
+            while (!mIsClosed) {
+                selector.select(TICK_IN_MILLIS);
+                runPendingTasks();
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        read(key);
+                    }
+                }
+
+                final long now = System.nanoTime();
+                if (now - nextTick >= 0) {
+                    nextTick = now + TICK_IN_NANOS;
+                    for (int i = 0; i < mSessions.size(); i++) {
+                        tick(mSessions.get(i), now);
+                    }
+                }
+            }
+        } catch (final IOException | ClosedSelectorException e) {
+            log.error("RTP receiver failed", e);
+        } finally {
+            runPendingTasks();
+            for (final SelectionKey key : selector.keys()) {
+                closeChannel(key.channel(), (Session) key.attachment());
+            }
+
+            mSessions.clear();
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                log.warn("Failed to close the selector", e);
+            }
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = mPendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void read(final SelectionKey key) {
+        final DatagramChannel channel = (DatagramChannel) key.channel();
+        final Session session = (Session) key.attachment();
+        while (true) {
+            mReadBuffer.clear();
+            try {
+                if (channel.receive(mReadBuffer) == null) {
+                    return;
+                }
+            } catch (final IOException e) {
+                log.warn("Failed to receive an RTP packet", e);
+                return;
+            }
+
+            final long now = System.nanoTime();
+            mReadBuffer.flip();
+            final ByteBuffer buffer = mBufferPool.acquire(mReadBuffer.remaining());
+            buffer.put(mReadBuffer);
+            buffer.flip();
+
+            final RtpPacket packet = RtpPacket.parse(buffer);
+            if (packet == null) {
+                mBufferPool.release(buffer);
+                continue;
+            }
+
+            try {
+                session.onPacket(packet, now);
+            } catch (final RuntimeException e) {
+                log.error("Failed to handle an RTP packet", e);
+            }
+        }
+    }
+
+    private void tick(final Session session, final long now) {
+        try {
+            session.onTick(now);
+        } catch (final RuntimeException e) {
+            log.error("Failed to handle the RTP tick", e);
+        }
+    }
+
+    private void closeChannel(final Channel channel, final Session session) {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            log.warn("Failed to close the RTP channel", e);
+        }
+
+        try {
+            session.onClosed();
+        } catch (final RuntimeException e) {
+            log.error("Failed to close the RTP session", e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.amazonaws.kinesisvideo.load;
+
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFragmentAck;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.streaming.DefaultStreamCallbacks;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Measures the time from putting the key frame which starts a fragment to the PERSISTED ack of the fragment.
+ * <p>
+ * The fragment acks carry the timecode of the fragment, which is the timestamp of its key frame when the stream
+ * uses absolute timecodes, so the key frames are remembered by timestamp until their ack arrives. Fragments of
+ * streams with relative timecodes can't be matched and are only counted.
+ */
+final class AckLatencyTracker extends DefaultStreamCallbacks {
+    // Key frames whose ack didn't arrive in that time are given up on to bound the map
+    private static final long PENDING_TIMEOUT_IN_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final LatencyRecorder mRecorder;
+    private final Map<Long, Long> mPendingKeyFrames = new ConcurrentHashMap<Long, Long>();
+    private final AtomicLong mPersistedAcks = new AtomicLong();
+    private final AtomicLong mUnmatchedAcks = new AtomicLong();
+    private final AtomicLong mErrorAcks = new AtomicLong();
+    private final AtomicLong mStreamErrors = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mDroppedFragments = new AtomicLong();
+
+    AckLatencyTracker(@Nonnull final LatencyRecorder recorder) {
+        mRecorder = checkNotNull(recorder);
+    }
+
+    /**
+     * Remembers when the key frame with the timestamp in hundreds of nanos has been put
+     */
+    void onKeyFrame(final long timestamp, final long putTimeInNanos) {
+        mPendingKeyFrames.put(timestamp, putTimeInNanos);
+    }
+
+    /**
+     * Records a PERSISTED ack which has been matched with its fragment by the caller
+     */
+    void onPersistedAck(final long latencyInMillis) {
+        mPersistedAcks.incrementAndGet();
+        mRecorder.record(latencyInMillis);
+    }
+
+    void onErrorAck() {
+        mErrorAcks.incrementAndGet();
+    }
+
+    @Override
+    public void fragmentAckReceived(@Nonnull final KinesisVideoFragmentAck fragmentAck) throws ProducerException {
+        switch (fragmentAck.getAckType().getIntType()) {
+            case FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED:
+                final Long putTime = mPendingKeyFrames.remove(fragmentAck.getTimestamp());
+                if (putTime == null) {
+                    mPersistedAcks.incrementAndGet();
+                    mUnmatchedAcks.incrementAndGet();
+                } else {
+                    onPersistedAck(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - putTime));
+                }
+
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_ERROR:
+                onErrorAck();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void streamErrorReport(final long frameTimecode, final long statusCode) throws ProducerException {
+        mStreamErrors.incrementAndGet();
+    }
+
+    @Override
+    public void droppedFrameReport(final long frameTimecode) throws ProducerException {
+        mDroppedFrames.incrementAndGet();
+    }
+
+    @Override
+    public void droppedFragmentReport(final long fragmentTimecode) throws ProducerException {
+        mDroppedFragments.incrementAndGet();
+    }
+
+    /**
+     * Forgets the key frames which have been waiting for their ack for too long
+     */
+    void expirePendingKeyFrames() {
+        final long now = System.nanoTime();
+        final Iterator<Long> iterator = mPendingKeyFrames.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next() > PENDING_TIMEOUT_IN_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    long getPersistedAcks() {
+        return mPersistedAcks.get();
+    }
+
+    long getUnmatchedAcks() {
+        return mUnmatchedAcks.get();
+    }
+
+    long getErrorAcks() {
+        return mErrorAcks.get();
+    }
+
+    long getStreamErrors() {
+        return mStreamErrors.get();
+    }
+
+    long getDroppedFrames() {
+        return mDroppedFrames.get();
+    }
+
+    long getDroppedFragments() {
+        return mDroppedFragments.get();
+    }
+}
@@ -0,0 +1,161 @@
+package com.amazonaws.kinesisvideo.load;
+
+import com.amazonaws.kinesisvideo.client.PutMediaClient;
+import com.amazonaws.kinesisvideo.client.mkv.fake.FakeMkvGenerator;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.google.common.io.CountingInputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Streams an endless {@link FakeMkvGenerator} stream of the profile bit rate, frame rate and GOP through a
+ * {@link PutMediaClient}.
+ * <p>
+ * This bypasses the native producer so it measures the upload path alone. The generated frames are paced by the
+ * wall clock and the clusters carry the wall clock time of their key frame as their absolute timecode, which the
+ * acks echo back.
+ */
+final class FakeMkvUploader {
+    private static final String PUT_MEDIA_PATH = "/putMedia";
+    private static final String ABSOLUTE_TIMECODES = "ABSOLUTE";
+    private static final int ACK_BUFFER_SIZE = 4096;
+    private static final int RECEIVE_TIMEOUT_IN_MILLIS = 30000;
+    private static final Pattern ACK_PATTERN =
+            Pattern.compile("\"EventType\":\"(\\w+)\",\"FragmentTimecode\":(\\d+)");
+
+    private final String mStreamName;
+    private final String mEndpoint;
+    private final LoadProfile mProfile;
+    private final LoadStatistics mStatistics;
+    private final Log mLog;
+    private PutMediaClient mClient;
+    private CountingInputStream mMkvStream;
+    private volatile boolean mEnded;
+    private volatile Exception mFailure;
+
+    FakeMkvUploader(@Nonnull final String streamName,
+                    @Nonnull final String endpoint,
+                    @Nonnull final LoadProfile profile,
+                    @Nonnull final LoadStatistics statistics,
+                    @Nonnull final Log log) {
+        mStreamName = checkNotNull(streamName);
+        mEndpoint = checkNotNull(endpoint);
+        mProfile = checkNotNull(profile);
+        mStatistics = checkNotNull(statistics);
+        mLog = checkNotNull(log);
+    }
+
+    void start() {
+        final FakeMkvGenerator generator = FakeMkvGenerator.builder()
+                .bitRateKbps(mProfile.getBitRateKbps())
+                .fps(mProfile.getFps())
+                .gopFrames(mProfile.getGopFrames())
+                .wallClockPacing(true)
+                .build();
+        mMkvStream = new CountingInputStream(generator.openStream());
+        mClient = PutMediaClient.builder()
+                .putMediaDestinationUri(URI.create(mEndpoint + PUT_MEDIA_PATH))
+                .streamName(mStreamName)
+                .timestamp(System.currentTimeMillis())
+                .fragmentTimecodeType(ABSOLUTE_TIMECODES)
+                .mkvStream(new FilterInputStream(mMkvStream) {
+                    @Override
+                    public int read(@Nonnull final byte[] buffer, final int offset, final int length)
+                            throws IOException {
+                        return mEnded ? -1 : super.read(buffer, offset, length);
+                    }
+
+                    @Override
+                    public int available() throws IOException {
+                        return mEnded ? 0 : super.available();
+                    }
+                })
+                .receiveTimeout(RECEIVE_TIMEOUT_IN_MILLIS)
+                .receiveAcks(new Consumer<InputStream>() {
+                    @Override
+                    public void accept(final InputStream inputStream) {
+                        readAcks(inputStream);
+                    }
+                })
+                .receiveCompletion(new Consumer<Exception>() {
+                    @Override
+                    public void accept(@Nullable final Exception exception) {
+                        mFailure = exception;
+                    }
+                })
+                .log(mLog)
+                .build();
+        mClient.putMediaInBackground();
+    }
+
+    /**
+     * Ends the stream so that the upload finishes while the acks of the fragments sent so far keep coming
+     */
+    void endOfStream() {
+        mEnded = true;
+    }
+
+    void stop() {
+        if (mClient == null) {
+            return;
+        }
+
+        try {
+            mClient.close();
+        } catch (final IOException e) {
+            mLog.exception(e, "Closing the upload of stream %s failed", mStreamName);
+        }
+
+        mStatistics.addBytesPut(mMkvStream.getCount());
+    }
+
+    @Nullable
+    Exception getFailure() {
+        return mFailure;
+    }
+
+    private void readAcks(@Nonnull final InputStream inputStream) {
+        final byte[] buffer = new byte[ACK_BUFFER_SIZE];
+        final StringBuilder pending = new StringBuilder();
+        try {
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                pending.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
+
+                // Only look at the complete ack objects
+                final int end = pending.lastIndexOf("}");
+                if (end < 0) {
+                    continue;
+                }
+
+                final Matcher matcher = ACK_PATTERN.matcher(pending.substring(0, end + 1));
+                pending.delete(0, end + 1);
+                while (matcher.find()) {
+                    onAck(matcher.group(1), Long.parseLong(matcher.group(2)));
+                }
+            }
+        } catch (final IOException e) {
+            // The connection is closed when the run stops
+            mLog.debug("Reading the acks of stream %s stopped: %s", mStreamName, e);
+        }
+    }
+
+    private void onAck(@Nonnull final String eventType, final long fragmentTimecode) {
+        if ("PERSISTED".equals(eventType)) {
+            mStatistics.getAckTracker().onPersistedAck(System.currentTimeMillis() - fragmentTimecode);
+        } else if ("ERROR".equals(eventType)) {
+            mStatistics.getAckTracker().onErrorAck();
+        }
+    }
+}
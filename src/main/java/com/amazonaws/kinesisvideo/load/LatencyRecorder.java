@@ -0,0 +1,92 @@
+package com.amazonaws.kinesisvideo.load;
+
+import java.util.Arrays;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+
+/**
+ * Keeps the latency samples of a load run for the percentiles of the report.
+ * <p>
+ * Every sample is kept up to {@link #MAX_SAMPLES}, after which reservoir sampling keeps a uniform subset so that
+ * long runs stay bounded in memory. The samples are in whatever unit the caller records them in.
+ */
+public final class LatencyRecorder {
+    static final int MAX_SAMPLES = 1 << 20;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Guarded by this
+    private long[] mSamples = new long[INITIAL_CAPACITY];
+    private int mSize;
+    private long mCount;
+    private long mSum;
+    private long mMax;
+    private long mRandomState = 0x2545F4914F6CDD1DL;
+
+    public synchronized void record(final long value) {
+        mCount++;
+        mSum += value;
+        mMax = Math.max(mMax, value);
+
+        if (mSize < MAX_SAMPLES) {
+            if (mSize == mSamples.length) {
+                mSamples = Arrays.copyOf(mSamples, Math.min(2 * mSamples.length, MAX_SAMPLES));
+            }
+
+            mSamples[mSize++] = value;
+            return;
+        }
+
+        final long slot = nextRandom() % mCount;
+        if (slot < MAX_SAMPLES) {
+            mSamples[(int) slot] = value;
+        }
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the nearest-rank percentile of the samples or 0 when there are none
+     */
+    public long getPercentile(final double percentile) {
+        return getPercentiles(percentile)[0];
+    }
+
+    /**
+     * Same as {@link #getPercentile(double)} for several percentiles, sorting the samples once
+     */
+    public synchronized long[] getPercentiles(final double... percentiles) {
+        final long[] sorted = Arrays.copyOf(mSamples, mSize);
+        Arrays.sort(sorted);
+
+        final long[] values = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            checkArgument(percentiles[i] >= 0 && percentiles[i] <= 100, "percentile should be between 0 and 100");
+            if (sorted.length > 0) {
+                final int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length);
+                values[i] = sorted[Math.max(rank, 1) - 1];
+            }
+        }
+
+        return values;
+    }
+
+    // xorshift, positive values only
+    private long nextRandom() {
+        mRandomState ^= mRandomState << 13;
+        mRandomState ^= mRandomState >>> 7;
+        mRandomState ^= mRandomState << 17;
+        return mRandomState & Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,371 @@
+package com.amazonaws.kinesisvideo.load;
+
+import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentials;
+import com.amazonaws.kinesisvideo.auth.StaticCredentialsProvider;
+import com.amazonaws.kinesisvideo.client.KinesisVideoClient;
+import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.java.client.KinesisVideoJavaClientFactory;
+import com.amazonaws.kinesisvideo.java.logging.SysOutLogChannel;
+import com.amazonaws.kinesisvideo.java.mediasource.file.ImageFileMediaSource;
+import com.amazonaws.kinesisvideo.java.mediasource.file.FrameFileCache;
+import com.amazonaws.kinesisvideo.java.mediasource.file.ImageFileMediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.mediasource.bytes.BytesMediaSource;
+import com.amazonaws.kinesisvideo.mediasource.bytes.BytesMediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.mediasource.bytes.SyntheticMediaSource;
+import com.amazonaws.kinesisvideo.mediasource.bytes.SyntheticMediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.producer.DeviceInfo;
+import com.amazonaws.kinesisvideo.producer.StorageInfo;
+import com.amazonaws.kinesisvideo.service.local.LocalKinesisVideoServer;
+import com.amazonaws.kinesisvideo.service.local.LocalStream;
+import com.amazonaws.kinesisvideo.storage.DefaultStorageCallbacks;
+import com.amazonaws.kinesisvideo.util.ProducerStreamUtil;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+
+/**
+ * Runs a number of synthetic streams through the SDK against a {@link LocalKinesisVideoServer} and reports how
+ * the process copes with them.
+ * <p>
+ * The {@link LoadSourceType#BYTES}, {@link LoadSourceType#SYNTHETIC} and {@link LoadSourceType#IMAGE_FILES} streams
+ * go through the whole producer stack, media source to native client to PutMedia, so they need the native library
+ * to be loaded. The {@link LoadSourceType#FAKE_MKV} streams only exercise the upload path. The report covers the
+ * putFrame latency, the key frame to PERSISTED ack latency, the upload throughput seen by the endpoint and the CPU,
+ * heap, GC and thread usage of the process over the run.
+ */
+public final class LoadHarness {
+    private static final int DEVICE_VERSION = 0;
+    private static final String DEVICE_NAME = "load-harness";
+    private static final int SPILL_RATIO_90_PERCENT = 90;
+    private static final long MIN_STORAGE_SIZE = 64L * 1024 * 1024;
+    private static final String STORAGE_PATH = "/tmp";
+    private static final int NUMBER_OF_THREADS_IN_POOL = 2;
+    private static final String LOCAL_ACCESS_KEY = "local-access-key";
+    private static final String LOCAL_SECRET_KEY = "local-secret-key";
+    private static final long PROGRESS_INTERVAL_IN_MILLIS = 1000L;
+
+    private final Builder mBuilder;
+    private final Log mLog;
+
+    private LoadHarness(@Nonnull final Builder builder) {
+        mBuilder = builder;
+        mLog = builder.mLog;
+    }
+
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs the streams of all of the profiles for the configured duration
+     *
+     * @return the report of the run, also written to the report file when there is one
+     */
+    @Nonnull
+    public LoadReport run() throws KinesisVideoException, IOException {
+        final LocalKinesisVideoServer server = mBuilder.mServer;
+        final LoadStatistics statistics = new LoadStatistics();
+        final ResourceSampler sampler = new ResourceSampler(mBuilder.mSampleIntervalInMillis);
+        final List<LocalStream> streams = new ArrayList<LocalStream>();
+        final List<FakeMkvUploader> uploaders = new ArrayList<FakeMkvUploader>();
+        final List<String> streamNames = new ArrayList<String>();
+        final List<MediaSource> mediaSources = new ArrayList<MediaSource>();
+
+        for (final LoadProfile profile : mBuilder.mProfiles) {
+            // The image file streams of a profile replay the same frames from memory
+            final ImageFileMediaSourceConfiguration imageFileConfiguration =
+                    profile.getSourceType() == LoadSourceType.IMAGE_FILES
+                            ? createImageFileConfiguration(profile)
+                            : null;
+            for (int i = 0; i < profile.getStreamCount(); i++) {
+                final String streamName = profile.getStreamName(i);
+                final LocalStream stream = server.getStream(streamName);
+                streams.add(stream == null ? server.createStream(streamName) : stream);
+
+                if (profile.getSourceType() == LoadSourceType.FAKE_MKV) {
+                    uploaders.add(new FakeMkvUploader(streamName, server.getEndpoint(), profile, statistics, mLog));
+                } else {
+                    streamNames.add(streamName);
+                    mediaSources.add(new MeasuredMediaSource(createMediaSource(profile, imageFileConfiguration),
+                            statistics));
+                }
+            }
+        }
+
+        KinesisVideoClient client = null;
+        ScheduledExecutorService executor = null;
+        if (!mediaSources.isEmpty()) {
+            executor = Executors.newScheduledThreadPool(NUMBER_OF_THREADS_IN_POOL);
+            client = KinesisVideoJavaClientFactory.createKinesisVideoClient(createConfiguration(server),
+                    createDeviceInfo(),
+                    executor,
+                    statistics.getAckTracker());
+            for (int i = 0; i < mediaSources.size(); i++) {
+                client.registerMediaSource(streamNames.get(i), mediaSources.get(i));
+            }
+        }
+
+        mLog.info("Starting the load run of %d streams for %d seconds", streams.size(),
+                mBuilder.mDurationInSeconds);
+        sampler.start();
+        final long startTime = System.currentTimeMillis();
+        final long durationInMillis;
+        try {
+            if (client != null) {
+                client.startAllMediaSources();
+            }
+
+            for (final FakeMkvUploader uploader : uploaders) {
+                uploader.start();
+            }
+
+            awaitRunEnd(startTime, statistics);
+        } finally {
+            durationInMillis = System.currentTimeMillis() - startTime;
+            stop(client, executor, uploaders);
+            sampler.stop();
+        }
+
+        final LoadReport report = new LoadReport(mBuilder.mProfiles, durationInMillis, statistics, streams, sampler);
+        mLog.info("Load run report:\n%s", report);
+        if (mBuilder.mReportFile != null) {
+            report.writeTo(mBuilder.mReportFile);
+        }
+
+        return report;
+    }
+
+    private void awaitRunEnd(final long startTime, @Nonnull final LoadStatistics statistics) {
+        final long endTime = startTime + TimeUnit.SECONDS.toMillis(mBuilder.mDurationInSeconds);
+        try {
+            long now;
+            while ((now = System.currentTimeMillis()) < endTime) {
+                Thread.sleep(Math.min(PROGRESS_INTERVAL_IN_MILLIS, endTime - now));
+                statistics.getAckTracker().expirePendingKeyFrames();
+                mLog.debug("Load run: %d frames, %d bytes, %d persisted acks",
+                        statistics.getFramesPut(), statistics.getBytesPut(),
+                        statistics.getAckTracker().getPersistedAcks());
+            }
+        } catch (final InterruptedException e) {
+            mLog.warn("Load run interrupted, stopping early");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the sources and gives the acks in flight the drain time before shutting everything down
+     */
+    private void stop(final KinesisVideoClient client,
+                      final ScheduledExecutorService executor,
+                      @Nonnull final List<FakeMkvUploader> uploaders) {
+        if (client != null) {
+            try {
+                client.stopAllMediaSources();
+            } catch (final KinesisVideoException e) {
+                mLog.exception(e, "Stopping the media sources failed");
+            }
+        }
+
+        for (final FakeMkvUploader uploader : uploaders) {
+            uploader.endOfStream();
+        }
+
+        try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(mBuilder.mDrainTimeInSeconds));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (final FakeMkvUploader uploader : uploaders) {
+            uploader.stop();
+            if (uploader.getFailure() != null) {
+                mLog.warn("Upload failed during the load run: %s", uploader.getFailure());
+            }
+        }
+
+        if (client != null) {
+            try {
+                client.free();
+            } catch (final KinesisVideoException e) {
+                mLog.exception(e, "Freeing the client failed");
+            }
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Nonnull
+    private static ImageFileMediaSourceConfiguration createImageFileConfiguration(
+            @Nonnull final LoadProfile profile) throws IOException {
+        final ImageFileMediaSourceConfiguration.Builder builder = new ImageFileMediaSourceConfiguration.Builder()
+                .fps(profile.getFps())
+                .dir(profile.getImageDirectory())
+                .filenameFormat(profile.getImageFilenameFormat())
+                .startFileIndex(profile.getImageStartIndex())
+                .endFileIndex(profile.getImageEndIndex());
+        return builder
+                .frameFileCache(new FrameFileCache(builder.build(), FrameFileCache.DEFAULT_MAX_RESIDENT_BYTES))
+                .build();
+    }
+
+    @Nonnull
+    private static MediaSource createMediaSource(
+            @Nonnull final LoadProfile profile,
+            @Nullable final ImageFileMediaSourceConfiguration imageFileConfiguration) {
+        if (imageFileConfiguration != null) {
+            final ImageFileMediaSource mediaSource = new ImageFileMediaSource();
+            mediaSource.configure(imageFileConfiguration);
+            return mediaSource;
+        }
+
+        if (profile.getSourceType() == LoadSourceType.SYNTHETIC) {
+            final SyntheticMediaSource mediaSource = new SyntheticMediaSource();
+            mediaSource.configure(new SyntheticMediaSourceConfiguration.Builder()
+                    .withFps(profile.getFps())
+                    .withBitRate(profile.getBitRateKbps() * 1024)
+                    .withGopLength(profile.getGopFrames())
+                    .build());
+            return mediaSource;
+        }
+
+        final BytesMediaSource mediaSource = new BytesMediaSource();
+        mediaSource.configure(new BytesMediaSourceConfiguration.Builder()
+                .withFps(profile.getFps())
+                .withFrameSize(profile.getFrameSize())
+                .withKeyFrameInterval(profile.getGopFrames())
+                .build());
+        return mediaSource;
+    }
+
+    @Nonnull
+    private KinesisVideoClientConfiguration createConfiguration(@Nonnull final LocalKinesisVideoServer server) {
+        return KinesisVideoClientConfiguration.builder()
+                .withRegion(mBuilder.mRegion)
+                .withEndpoint(server.getEndpoint())
+                .withCredentialsProvider(new StaticCredentialsProvider(
+                        new KinesisVideoCredentials(LOCAL_ACCESS_KEY, LOCAL_SECRET_KEY)))
+                .withLogChannel(new SysOutLogChannel())
+                .withStorageCallbacks(new DefaultStorageCallbacks())
+                .build();
+    }
+
+    /**
+     * A device with room for all of the producer streams and their buffer duration
+     */
+    @Nonnull
+    private DeviceInfo createDeviceInfo() {
+        int streamCount = 0;
+        long bytesPerSecond = 0;
+        for (final LoadProfile profile : mBuilder.mProfiles) {
+            if (profile.getSourceType() != LoadSourceType.FAKE_MKV) {
+                streamCount += profile.getStreamCount();
+                bytesPerSecond += (long) profile.getStreamCount() * profile.getBitRateKbps() * 1024 / Byte.SIZE;
+            }
+        }
+
+        final long storageSize = Math.max(MIN_STORAGE_SIZE,
+                2 * bytesPerSecond * ProducerStreamUtil.DEFAULT_BUFFER_DURATION_IN_SECONDS);
+        return new DeviceInfo(DEVICE_VERSION,
+                DEVICE_NAME,
+                new StorageInfo(0,
+                        StorageInfo.DeviceStorageType.DEVICE_STORAGE_TYPE_IN_MEM,
+                        storageSize,
+                        SPILL_RATIO_90_PERCENT,
+                        STORAGE_PATH),
+                streamCount,
+                null);
+    }
+
+    public static final class Builder {
+        private static final long DEFAULT_DURATION_IN_SECONDS = 60L;
+        private static final long DEFAULT_DRAIN_TIME_IN_SECONDS = 5L;
+        private static final long DEFAULT_SAMPLE_INTERVAL_IN_MILLIS = 1000L;
+
+        private final List<LoadProfile> mProfiles = new ArrayList<LoadProfile>();
+        private LocalKinesisVideoServer mServer;
+        private String mRegion = "us-west-2";
+        private long mDurationInSeconds = DEFAULT_DURATION_IN_SECONDS;
+        private long mDrainTimeInSeconds = DEFAULT_DRAIN_TIME_IN_SECONDS;
+        private long mSampleIntervalInMillis = DEFAULT_SAMPLE_INTERVAL_IN_MILLIS;
+        private File mReportFile;
+        private Log mLog = new Log(Log.SYSTEM_OUT);
+
+        private Builder() {
+        }
+
+        /**
+         * The started local endpoint to stream to
+         */
+        public Builder server(@Nonnull final LocalKinesisVideoServer server) {
+            mServer = checkNotNull(server);
+            return this;
+        }
+
+        public Builder profile(@Nonnull final LoadProfile profile) {
+            mProfiles.add(checkNotNull(profile));
+            return this;
+        }
+
+        public Builder region(@Nonnull final String region) {
+            mRegion = checkNotNull(region);
+            return this;
+        }
+
+        public Builder durationInSeconds(final long durationInSeconds) {
+            checkArgument(durationInSeconds > 0, "duration should be positive");
+            mDurationInSeconds = durationInSeconds;
+            return this;
+        }
+
+        /**
+         * Time given to the acks in flight once the sources have been stopped, 5 seconds by default
+         */
+        public Builder drainTimeInSeconds(final long drainTimeInSeconds) {
+            checkArgument(drainTimeInSeconds >= 0, "drain time should not be negative");
+            mDrainTimeInSeconds = drainTimeInSeconds;
+            return this;
+        }
+
+        /**
+         * How often the CPU, heap and thread usage is sampled, every second by default
+         */
+        public Builder sampleIntervalInMillis(final long sampleIntervalInMillis) {
+            checkArgument(sampleIntervalInMillis > 0, "sample interval should be positive");
+            mSampleIntervalInMillis = sampleIntervalInMillis;
+            return this;
+        }
+
+        public Builder reportFile(@Nonnull final File reportFile) {
+            mReportFile = checkNotNull(reportFile);
+            return this;
+        }
+
+        public Builder log(@Nonnull final Log log) {
+            mLog = checkNotNull(log);
+            return this;
+        }
+
+        public LoadHarness build() {
+            checkState(mServer != null, "local server is required");
+            checkState(!mProfiles.isEmpty(), "at least one profile is required");
+            return new LoadHarness(this);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.amazonaws.kinesisvideo.load;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * A group of identical streams of a load run
+ */
+public final class LoadProfile {
+    private final LoadSourceType mSourceType;
+    private final String mStreamNamePrefix;
+    private final int mStreamCount;
+    private final int mBitRateKbps;
+    private final int mFps;
+    private final int mGopFrames;
+    private final String mImageDirectory;
+    private final String mImageFilenameFormat;
+    private final int mImageStartIndex;
+    private final int mImageEndIndex;
+
+    private LoadProfile(@Nonnull final Builder builder) {
+        mSourceType = builder.mSourceType;
+        mStreamNamePrefix = builder.mStreamNamePrefix == null
+                ? "load-" + builder.mSourceType.name().toLowerCase(Locale.US)
+                : builder.mStreamNamePrefix;
+        mStreamCount = builder.mStreamCount;
+        mBitRateKbps = builder.mBitRateKbps;
+        mFps = builder.mFps;
+        mGopFrames = builder.mGopFrames;
+        mImageDirectory = builder.mImageDirectory;
+        mImageFilenameFormat = builder.mImageFilenameFormat;
+        mImageStartIndex = builder.mImageStartIndex;
+        mImageEndIndex = builder.mImageEndIndex;
+    }
+
+    @Nonnull
+    public static Builder builder(@Nonnull final LoadSourceType sourceType) {
+        return new Builder(sourceType);
+    }
+
+    @Nonnull
+    public LoadSourceType getSourceType() {
+        return mSourceType;
+    }
+
+    @Nonnull
+    public String getStreamName(final int index) {
+        return mStreamNamePrefix + "-" + index;
+    }
+
+    public int getStreamCount() {
+        return mStreamCount;
+    }
+
+    public int getBitRateKbps() {
+        return mBitRateKbps;
+    }
+
+    public int getFps() {
+        return mFps;
+    }
+
+    public int getGopFrames() {
+        return mGopFrames;
+    }
+
+    /**
+     * Size of the frames which make up the bit rate at the frame rate
+     */
+    public int getFrameSize() {
+        return Math.max(1, mBitRateKbps * 1024 / Byte.SIZE / mFps);
+    }
+
+    @Nonnull
+    public String getImageDirectory() {
+        return mImageDirectory;
+    }
+
+    @Nonnull
+    public String getImageFilenameFormat() {
+        return mImageFilenameFormat;
+    }
+
+    public int getImageStartIndex() {
+        return mImageStartIndex;
+    }
+
+    public int getImageEndIndex() {
+        return mImageEndIndex;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d x %s at %d kbps, %d fps, %d frame GOP",
+                mStreamCount, mSourceType, mBitRateKbps, mFps, mGopFrames);
+    }
+
+    public static final class Builder {
+        private static final int DEFAULT_BIT_RATE_KBPS = 2048;
+        private static final int DEFAULT_FPS = 30;
+        private static final int DEFAULT_GOP_FRAMES = 60;
+        private static final String DEFAULT_IMAGE_DIRECTORY = "src/main/resources/data/h264/";
+        private static final String DEFAULT_IMAGE_FILENAME_FORMAT = "frame-%03d.h264";
+        private static final int DEFAULT_IMAGE_START_INDEX = 1;
+        private static final int DEFAULT_IMAGE_END_INDEX = 444;
+
+        private final LoadSourceType mSourceType;
+        private String mStreamNamePrefix;
+        private int mStreamCount = 1;
+        private int mBitRateKbps = DEFAULT_BIT_RATE_KBPS;
+        private int mFps = DEFAULT_FPS;
+        private int mGopFrames = DEFAULT_GOP_FRAMES;
+        private String mImageDirectory = DEFAULT_IMAGE_DIRECTORY;
+        private String mImageFilenameFormat = DEFAULT_IMAGE_FILENAME_FORMAT;
+        private int mImageStartIndex = DEFAULT_IMAGE_START_INDEX;
+        private int mImageEndIndex = DEFAULT_IMAGE_END_INDEX;
+
+        private Builder(@Nonnull final LoadSourceType sourceType) {
+            mSourceType = checkNotNull(sourceType);
+        }
+
+        /**
+         * Streams are named with the prefix and their index, load-[source type] by default
+         */
+        public Builder streamNamePrefix(@Nonnull final String streamNamePrefix) {
+            mStreamNamePrefix = checkNotNull(streamNamePrefix);
+            return this;
+        }
+
+        public Builder streamCount(final int streamCount) {
+            checkArgument(streamCount > 0, "stream count should be positive");
+            mStreamCount = streamCount;
+            return this;
+        }
+
+        /**
+         * Bit rate of every stream, ignored by {@link LoadSourceType#IMAGE_FILES}
+         */
+        public Builder bitRateKbps(final int bitRateKbps) {
+            checkArgument(bitRateKbps > 0, "bit rate should be positive");
+            mBitRateKbps = bitRateKbps;
+            return this;
+        }
+
+        public Builder fps(final int fps) {
+            checkArgument(fps > 0, "frame rate should be positive");
+            mFps = fps;
+            return this;
+        }
+
+        /**
+         * Frames from one key frame to the next, ignored by {@link LoadSourceType#IMAGE_FILES}
+         */
+        public Builder gopFrames(final int gopFrames) {
+            checkArgument(gopFrames > 0, "GOP should be positive");
+            mGopFrames = gopFrames;
+            return this;
+        }
+
+        /**
+         * H.264 frame files of {@link LoadSourceType#IMAGE_FILES}, the sample frames of the repository by default
+         */
+        public Builder imageFiles(@Nonnull final String directory,
+                                  @Nonnull final String filenameFormat,
+                                  final int startIndex,
+                                  final int endIndex) {
+            checkArgument(startIndex <= endIndex, "start index should not be after the end index");
+            mImageDirectory = checkNotNull(directory);
+            mImageFilenameFormat = checkNotNull(filenameFormat);
+            mImageStartIndex = startIndex;
+            mImageEndIndex = endIndex;
+            return this;
+        }
+
+        public LoadProfile build() {
+            return new LoadProfile(this);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.amazonaws.kinesisvideo.load;
+
+import com.amazonaws.kinesisvideo.service.local.LocalStream;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Summary of a load run.
+ * <p>
+ * The text form has one {@code name: value} line per figure so that the reports of two runs can be compared line
+ * by line. The putFrame latencies are in microseconds and the ack latencies in milliseconds.
+ */
+public final class LoadReport {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static final double BITS_IN_A_KILOBIT = 1024.0;
+    private static final double BYTES_IN_A_MEGABYTE = 1024.0 * 1024.0;
+
+    private final List<String> mProfiles = new ArrayList<String>();
+    private final int mStreamCount;
+    private final double mDurationInSeconds;
+    private final long mFramesPut;
+    private final long mBytesPut;
+    private final long mPutFrameFailures;
+    private final double mPutFrameMean;
+    private final long[] mPutFramePercentiles;
+    private final long mPutFrameMax;
+    private final long mBytesReceived;
+    private final long mFragmentsPersisted;
+    private final long mPersistedAcks;
+    private final long mUnmatchedAcks;
+    private final long mErrorAcks;
+    private final long mStreamErrors;
+    private final long mDroppedFrames;
+    private final long mDroppedFragments;
+    private final double mAckMean;
+    private final long[] mAckPercentiles;
+    private final long mAckMax;
+    private final double mAverageCpuPercent;
+    private final double mMaxCpuPercent;
+    private final double mAverageThreadCount;
+    private final int mPeakThreadCount;
+    private final long mMaxHeapUsed;
+    private final long mGcCount;
+    private final long mGcTimeInMillis;
+
+    LoadReport(@Nonnull final List<LoadProfile> profiles,
+               final long durationInMillis,
+               @Nonnull final LoadStatistics statistics,
+               @Nonnull final List<LocalStream> streams,
+               @Nonnull final ResourceSampler sampler) {
+        int streamCount = 0;
+        for (final LoadProfile profile : profiles) {
+            mProfiles.add(profile.toString());
+            streamCount += profile.getStreamCount();
+        }
+
+        mStreamCount = streamCount;
+        mDurationInSeconds = durationInMillis / 1000.0;
+        mFramesPut = statistics.getFramesPut();
+        mBytesPut = statistics.getBytesPut();
+        mPutFrameFailures = statistics.getPutFrameFailures();
+        mPutFrameMean = statistics.getPutFrameLatency().getMean();
+        mPutFramePercentiles = statistics.getPutFrameLatency().getPercentiles(PERCENTILES);
+        mPutFrameMax = statistics.getPutFrameLatency().getMax();
+
+        long bytesReceived = 0;
+        long fragmentsPersisted = 0;
+        for (final LocalStream stream : streams) {
+            bytesReceived += stream.getBytesReceived();
+            fragmentsPersisted += stream.getFragmentsPersisted();
+        }
+
+        mBytesReceived = bytesReceived;
+        mFragmentsPersisted = fragmentsPersisted;
+
+        final AckLatencyTracker acks = statistics.getAckTracker();
+        mPersistedAcks = acks.getPersistedAcks();
+        mUnmatchedAcks = acks.getUnmatchedAcks();
+        mErrorAcks = acks.getErrorAcks();
+        mStreamErrors = acks.getStreamErrors();
+        mDroppedFrames = acks.getDroppedFrames();
+        mDroppedFragments = acks.getDroppedFragments();
+        mAckMean = statistics.getAckLatency().getMean();
+        mAckPercentiles = statistics.getAckLatency().getPercentiles(PERCENTILES);
+        mAckMax = statistics.getAckLatency().getMax();
+
+        mAverageCpuPercent = sampler.getAverageCpuPercent();
+        mMaxCpuPercent = sampler.getMaxCpuPercent();
+        mAverageThreadCount = sampler.getAverageThreadCount();
+        mPeakThreadCount = sampler.getPeakThreadCount();
+        mMaxHeapUsed = sampler.getMaxHeapUsed();
+        mGcCount = sampler.getGcCount();
+        mGcTimeInMillis = sampler.getGcTimeInMillis();
+    }
+
+    @Nonnull
+    public List<String> getProfiles() {
+        return Collections.unmodifiableList(mProfiles);
+    }
+
+    public int getStreamCount() {
+        return mStreamCount;
+    }
+
+    public double getDurationInSeconds() {
+        return mDurationInSeconds;
+    }
+
+    public long getFramesPut() {
+        return mFramesPut;
+    }
+
+    public long getPutFrameFailures() {
+        return mPutFrameFailures;
+    }
+
+    /**
+     * putFrame latency percentile in microseconds, for one of 50, 90, 99 and 99.9
+     */
+    public long getPutFrameLatencyPercentile(final double percentile) {
+        return mPutFramePercentiles[indexOf(percentile)];
+    }
+
+    /**
+     * Bytes received by the local endpoint over all of the streams
+     */
+    public long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    /**
+     * Upload throughput over all of the streams as seen by the local endpoint
+     */
+    public double getUploadKbps() {
+        return mDurationInSeconds == 0 ? 0 : mBytesReceived * Byte.SIZE / BITS_IN_A_KILOBIT / mDurationInSeconds;
+    }
+
+    public long getPersistedAcks() {
+        return mPersistedAcks;
+    }
+
+    public long getErrorAcks() {
+        return mErrorAcks;
+    }
+
+    /**
+     * Key frame to PERSISTED ack latency percentile in milliseconds, for one of 50, 90, 99 and 99.9
+     */
+    public long getAckLatencyPercentile(final double percentile) {
+        return mAckPercentiles[indexOf(percentile)];
+    }
+
+    public double getAverageCpuPercent() {
+        return mAverageCpuPercent;
+    }
+
+    public int getPeakThreadCount() {
+        return mPeakThreadCount;
+    }
+
+    public long getGcCount() {
+        return mGcCount;
+    }
+
+    public long getGcTimeInMillis() {
+        return mGcTimeInMillis;
+    }
+
+    /**
+     * Writes the text form of the report to the file
+     */
+    public void writeTo(@Nonnull final File file) throws IOException {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            writer.write(toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (final String profile : mProfiles) {
+            line(builder, "profile", profile);
+        }
+
+        line(builder, "streams", mStreamCount);
+        line(builder, "duration.seconds", format("%.1f", mDurationInSeconds));
+        line(builder, "frames.put", mFramesPut);
+        line(builder, "frames.failed", mPutFrameFailures);
+        line(builder, "frames.dropped", mDroppedFrames);
+        line(builder, "bytes.put", mBytesPut);
+        line(builder, "putframe.latency.us.mean", format("%.1f", mPutFrameMean));
+        percentileLines(builder, "putframe.latency.us", mPutFramePercentiles);
+        line(builder, "putframe.latency.us.max", mPutFrameMax);
+        line(builder, "upload.bytes", mBytesReceived);
+        line(builder, "upload.kbps", format("%.1f", getUploadKbps()));
+        line(builder, "upload.kbps.per.stream", format("%.1f", mStreamCount == 0 ? 0 : getUploadKbps() / mStreamCount));
+        line(builder, "fragments.persisted", mFragmentsPersisted);
+        line(builder, "fragments.dropped", mDroppedFragments);
+        line(builder, "acks.persisted", mPersistedAcks);
+        line(builder, "acks.unmatched", mUnmatchedAcks);
+        line(builder, "acks.error", mErrorAcks);
+        line(builder, "stream.errors", mStreamErrors);
+        line(builder, "ack.latency.ms.mean", format("%.1f", mAckMean));
+        percentileLines(builder, "ack.latency.ms", mAckPercentiles);
+        line(builder, "ack.latency.ms.max", mAckMax);
+        line(builder, "cpu.percent.mean", format("%.1f", mAverageCpuPercent));
+        line(builder, "cpu.percent.max", format("%.1f", mMaxCpuPercent));
+        line(builder, "threads.mean", format("%.1f", mAverageThreadCount));
+        line(builder, "threads.peak", mPeakThreadCount);
+        line(builder, "heap.used.mb.max", format("%.1f", mMaxHeapUsed / BYTES_IN_A_MEGABYTE));
+        line(builder, "gc.count", mGcCount);
+        line(builder, "gc.time.ms", mGcTimeInMillis);
+        return builder.toString();
+    }
+
+    private static void percentileLines(@Nonnull final StringBuilder builder,
+                                        @Nonnull final String name,
+                                        @Nonnull final long[] values) {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            line(builder, name + "." + PERCENTILE_NAMES[i], values[i]);
+        }
+    }
+
+    private static void line(@Nonnull final StringBuilder builder,
+                             @Nonnull final String name,
+                             @Nonnull final Object value) {
+        builder.append(name).append(": ").append(value).append('\n');
+    }
+
+    @Nonnull
+    private static String format(@Nonnull final String template, @Nonnull final Object... args) {
+        return String.format(Locale.US, template, args);
+    }
+
+    private static int indexOf(final double percentile) {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            if (PERCENTILES[i] == percentile) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("Percentile " + percentile + " is not reported");
+    }
+}
@@ -0,0 +1,28 @@
+package com.amazonaws.kinesisvideo.load;
+
+/**
+ * Where the media of the streams of a {@link LoadProfile} comes from
+ */
+public enum LoadSourceType {
+    /**
+     * {@code BytesMediaSource} frames of the profile bit rate through the producer client
+     */
+    BYTES,
+
+    /**
+     * {@code SyntheticMediaSource} frames of the profile bit rate and GOP through the producer client, sized like the
+     * output of an encoder
+     */
+    SYNTHETIC,
+
+    /**
+     * The sample H.264 frames of {@code ImageFileMediaSource} through the producer client. Their bit rate and GOP
+     * are those of the files, one key frame every second
+     */
+    IMAGE_FILES,
+
+    /**
+     * An endless {@code FakeMkvGenerator} stream uploaded with {@code PutMediaClient}, bypassing the producer client
+     */
+    FAKE_MKV
+}
@@ -0,0 +1,58 @@
+package com.amazonaws.kinesisvideo.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency samples shared by all of the streams of a load run
+ */
+final class LoadStatistics {
+    private final LatencyRecorder mPutFrameLatency = new LatencyRecorder();
+    private final LatencyRecorder mAckLatency = new LatencyRecorder();
+    private final AckLatencyTracker mAckTracker = new AckLatencyTracker(mAckLatency);
+    private final AtomicLong mFramesPut = new AtomicLong();
+    private final AtomicLong mBytesPut = new AtomicLong();
+    private final AtomicLong mPutFrameFailures = new AtomicLong();
+
+    /**
+     * putFrame latency in microseconds
+     */
+    LatencyRecorder getPutFrameLatency() {
+        return mPutFrameLatency;
+    }
+
+    /**
+     * Key frame to PERSISTED ack latency in milliseconds
+     */
+    LatencyRecorder getAckLatency() {
+        return mAckLatency;
+    }
+
+    AckLatencyTracker getAckTracker() {
+        return mAckTracker;
+    }
+
+    void onFramePut(final int size) {
+        mFramesPut.incrementAndGet();
+        mBytesPut.addAndGet(size);
+    }
+
+    void addBytesPut(final long bytes) {
+        mBytesPut.addAndGet(bytes);
+    }
+
+    void onPutFrameFailure() {
+        mPutFrameFailures.incrementAndGet();
+    }
+
+    long getFramesPut() {
+        return mFramesPut.get();
+    }
+
+    long getBytesPut() {
+        return mBytesPut.get();
+    }
+
+    long getPutFrameFailures() {
+        return mPutFrameFailures.get();
+    }
+}
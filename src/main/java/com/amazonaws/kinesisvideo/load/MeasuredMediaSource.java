@@ -0,0 +1,110 @@
+package com.amazonaws.kinesisvideo.load;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Media source wrapper timing the frames its source puts into the producer stream.
+ * <p>
+ * The sink given by the client is wrapped so that every putFrame is timed and every key frame is handed to the
+ * {@link AckLatencyTracker} to be matched with the ack of its fragment.
+ */
+final class MeasuredMediaSource implements MediaSource {
+    private static final int FRAME_FLAG_KEY_FRAME = 1;
+
+    private final MediaSource mMediaSource;
+    private final LoadStatistics mStatistics;
+
+    MeasuredMediaSource(@Nonnull final MediaSource mediaSource, @Nonnull final LoadStatistics statistics) {
+        mMediaSource = checkNotNull(mediaSource);
+        mStatistics = checkNotNull(statistics);
+    }
+
+    @Override
+    public MediaSourceState getMediaSourceState() {
+        return mMediaSource.getMediaSourceState();
+    }
+
+    @Override
+    public MediaSourceConfiguration getConfiguration() {
+        return mMediaSource.getConfiguration();
+    }
+
+    @Override
+    public void setFramePacer(@Nonnull final FramePacer framePacer) {
+        mMediaSource.setFramePacer(framePacer);
+    }
+
+    @Override
+    public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
+        mMediaSource.initialize(new MeasuredSink(mediaSourceSink));
+    }
+
+    @Override
+    public void configure(final MediaSourceConfiguration configuration) {
+        mMediaSource.configure(configuration);
+    }
+
+    @Override
+    public void start() throws KinesisVideoException {
+        mMediaSource.start();
+    }
+
+    @Override
+    public void stop() throws KinesisVideoException {
+        mMediaSource.stop();
+    }
+
+    @Override
+    public boolean isStopped() {
+        return mMediaSource.isStopped();
+    }
+
+    @Override
+    public void free() throws KinesisVideoException {
+        mMediaSource.free();
+    }
+
+    private final class MeasuredSink implements MediaSourceSink {
+        private final MediaSourceSink mSink;
+
+        private MeasuredSink(@Nonnull final MediaSourceSink sink) {
+            mSink = checkNotNull(sink);
+        }
+
+        @Override
+        public void onFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) throws KinesisVideoException {
+            final int size = kinesisVideoFrame.getSize();
+            final long start = System.nanoTime();
+            if ((kinesisVideoFrame.getFlags() & FRAME_FLAG_KEY_FRAME) != 0) {
+                mStatistics.getAckTracker().onKeyFrame(kinesisVideoFrame.getPresentationTs(), start);
+            }
+
+            try {
+                mSink.onFrame(kinesisVideoFrame);
+            } catch (final KinesisVideoException e) {
+                mStatistics.onPutFrameFailure();
+                throw e;
+            }
+
+            mStatistics.getPutFrameLatency().record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            mStatistics.onFramePut(size);
+        }
+
+        @Override
+        public void onCodecPrivateData(@Nullable final byte[] codecPrivateData) throws KinesisVideoException {
+            mSink.onCodecPrivateData(codecPrivateData);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.amazonaws.kinesisvideo.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the CPU, heap and thread usage of the process during a load run and the GC activity over it.
+ * <p>
+ * The CPU usage is the process CPU time over the wall time of each interval, spread over all of the processors,
+ * so 100% means all of them were busy. It's only available on JVMs exposing the process CPU time.
+ */
+final class ResourceSampler {
+    private static final long NO_CPU_TIME = -1L;
+
+    private final long mIntervalInMillis;
+    private final OperatingSystemMXBean mOperatingSystem = ManagementFactory.getOperatingSystemMXBean();
+    private final ThreadMXBean mThreads = ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean mMemory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> mCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private ScheduledExecutorService mExecutor;
+
+    // Guarded by this
+    private long mLastCpuTime;
+    private long mLastSampleTime;
+    private int mSamples;
+    private double mCpuSum;
+    private double mCpuMax;
+    private long mThreadSum;
+    private int mThreadMax;
+    private long mHeapUsedMax;
+    private long mStartGcCount;
+    private long mStartGcTime;
+    private long mGcCount;
+    private long mGcTime;
+
+    ResourceSampler(final long intervalInMillis) {
+        mIntervalInMillis = intervalInMillis;
+    }
+
+    synchronized void start() {
+        mThreads.resetPeakThreadCount();
+        mLastCpuTime = getProcessCpuTime();
+        mLastSampleTime = System.nanoTime();
+        mStartGcCount = sumCollectors(true);
+        mStartGcTime = sumCollectors(false);
+
+        mExecutor = Executors.newScheduledThreadPool(1);
+        mExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, mIntervalInMillis, mIntervalInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        mExecutor.shutdownNow();
+        synchronized (this) {
+            mGcCount = sumCollectors(true) - mStartGcCount;
+            mGcTime = sumCollectors(false) - mStartGcTime;
+        }
+    }
+
+    synchronized void sample() {
+        final long now = System.nanoTime();
+        final long cpuTime = getProcessCpuTime();
+        if (cpuTime != NO_CPU_TIME && now > mLastSampleTime) {
+            final double cpu = 100.0 * (cpuTime - mLastCpuTime)
+                    / (now - mLastSampleTime) / mOperatingSystem.getAvailableProcessors();
+            mCpuSum += cpu;
+            mCpuMax = Math.max(mCpuMax, cpu);
+        }
+
+        final int threads = mThreads.getThreadCount();
+        mThreadSum += threads;
+        mThreadMax = Math.max(mThreadMax, threads);
+        mHeapUsedMax = Math.max(mHeapUsedMax, mMemory.getHeapMemoryUsage().getUsed());
+        mLastCpuTime = cpuTime;
+        mLastSampleTime = now;
+        mSamples++;
+    }
+
+    synchronized double getAverageCpuPercent() {
+        return mSamples == 0 ? 0 : mCpuSum / mSamples;
+    }
+
+    synchronized double getMaxCpuPercent() {
+        return mCpuMax;
+    }
+
+    synchronized double getAverageThreadCount() {
+        return mSamples == 0 ? 0 : (double) mThreadSum / mSamples;
+    }
+
+    synchronized int getPeakThreadCount() {
+        return Math.max(mThreadMax, mThreads.getPeakThreadCount());
+    }
+
+    synchronized long getMaxHeapUsed() {
+        return mHeapUsedMax;
+    }
+
+    /**
+     * Collections over the run, available once stopped
+     */
+    synchronized long getGcCount() {
+        return mGcCount;
+    }
+
+    /**
+     * Collection time in milliseconds over the run, available once stopped
+     */
+    synchronized long getGcTimeInMillis() {
+        return mGcTime;
+    }
+
+    private long sumCollectors(final boolean count) {
+        long sum = 0;
+        for (final GarbageCollectorMXBean collector : mCollectors) {
+            final long value = count ? collector.getCollectionCount() : collector.getCollectionTime();
+            if (value > 0) {
+                sum += value;
+            }
+        }
+
+        return sum;
+    }
+
+    private long getProcessCpuTime() {
+        if (mOperatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) mOperatingSystem).getProcessCpuTime();
+        }
+
+        return NO_CPU_TIME;
+    }
+}
@@ -0,0 +1,326 @@
+package com.amazonaws.kinesisvideo.mediasource;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+
+/**
+ * Sink handing the frames of one media source to several sinks, typically the {@link ProducerStreamSink}s of the
+ * streams the same capture is published to.
+ * <p>
+ * A frame is copied once into a buffer of a {@link FrameBufferPool} shared by all of the targets and returned to the
+ * pool when the last target has put it. Every target has its own queue and thread, so a slow stream only holds up
+ * itself: when its queue is full it drops frames up to the next key frame, the others carry on. The codec private
+ * data is passed to every target in order with the frames, and to the targets added later before their first frame.
+ */
+@ThreadSafe
+public final class FanOutMediaSink implements MediaSourceSink, Closeable {
+    /**
+     * Default number of frames queued per target, two seconds of 30fps video
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 60;
+
+    private static final Log LOG = new Log(Log.SYSTEM_OUT);
+
+    private final FrameBufferPool mBufferPool;
+    private final int mQueueCapacity;
+    private final CopyOnWriteArrayList<Target> mTargets = new CopyOnWriteArrayList<Target>();
+    private final Object mCodecPrivateDataLock = new Object();
+    private final AtomicInteger mTargetCount = new AtomicInteger();
+    private boolean mHasCodecPrivateData;
+    private byte[] mCodecPrivateData;
+    private volatile boolean mClosed;
+
+    public FanOutMediaSink() {
+        this(new FrameBufferPool(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param bufferPool pool of the buffers the frames are shared in
+     * @param queueCapacity number of frames queued per target before it drops frames
+     */
+    public FanOutMediaSink(@Nonnull final FrameBufferPool bufferPool, final int queueCapacity) {
+        checkArgument(queueCapacity > 0, "Queue capacity must be positive");
+        mBufferPool = checkNotNull(bufferPool);
+        mQueueCapacity = queueCapacity;
+    }
+
+    /**
+     * Starts handing the frames to a sink, from the next key frame on
+     *
+     * @param sink sink to hand the frames to
+     * @return Handle of the target
+     */
+    @Nonnull
+    public Target addTarget(@Nonnull final MediaSourceSink sink) {
+        checkNotNull(sink);
+        checkState(!mClosed, "Fan out sink is closed");
+        final Target target = new Target(sink, "FanOutMediaSink-" + mTargetCount.incrementAndGet());
+        synchronized (mCodecPrivateDataLock) {
+            if (mHasCodecPrivateData) {
+                target.enqueue(new Entry(mCodecPrivateData));
+            }
+
+            mTargets.add(target);
+        }
+
+        target.mThread.start();
+        return target;
+    }
+
+    @Override
+    public void onFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) throws KinesisVideoException {
+        checkNotNull(kinesisVideoFrame);
+        if (mClosed || mTargets.isEmpty()) {
+            return;
+        }
+
+        final ByteBuffer data = kinesisVideoFrame.getReadOnlyData();
+        final ByteBuffer buffer = mBufferPool.acquire(data.remaining());
+        buffer.put(data);
+        buffer.flip();
+
+        // The source holds a reference until the frame has been queued for every target
+        final SharedFrame sharedFrame = new SharedFrame(buffer);
+        for (final Target target : mTargets) {
+            target.offer(kinesisVideoFrame, sharedFrame);
+        }
+
+        sharedFrame.release();
+    }
+
+    @Override
+    public void onCodecPrivateData(@Nullable final byte[] codecPrivateData) throws KinesisVideoException {
+        synchronized (mCodecPrivateDataLock) {
+            mHasCodecPrivateData = true;
+            mCodecPrivateData = codecPrivateData;
+            for (final Target target : mTargets) {
+                target.enqueue(new Entry(codecPrivateData));
+            }
+        }
+    }
+
+    /**
+     * Stops handing the frames to the targets. The frames still queued are dropped.
+     */
+    @Override
+    public void close() {
+        mClosed = true;
+        for (final Target target : mTargets) {
+            target.remove();
+        }
+    }
+
+    /**
+     * A sink the frames are handed to
+     */
+    public final class Target {
+        private final MediaSourceSink mSink;
+        private final Thread mThread;
+        private final LinkedBlockingQueue<Entry> mQueue = new LinkedBlockingQueue<Entry>();
+        private final AtomicInteger mQueuedFrames = new AtomicInteger();
+        private final AtomicLong mDroppedFrames = new AtomicLong();
+        private final AtomicLong mFailedFrames = new AtomicLong();
+        private volatile boolean mEnabled = true;
+        private volatile boolean mRemoved;
+
+        // Only touched by the thread of the source
+        private boolean mWaitingForKeyFrame = true;
+
+        private Target(@Nonnull final MediaSourceSink sink, @Nonnull final String name) {
+            mSink = sink;
+            mThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, name);
+            mThread.setDaemon(true);
+        }
+
+        /**
+         * Pauses or resumes handing the frames to the target. A resumed target starts again from a key frame.
+         */
+        public void setEnabled(final boolean enabled) {
+            mEnabled = enabled;
+        }
+
+        /**
+         * Stops handing the frames to the target and drops the ones still queued
+         */
+        public void remove() {
+            mRemoved = true;
+            mTargets.remove(this);
+            mThread.interrupt();
+        }
+
+        /**
+         * @return Number of frames dropped because the target was behind, including the delta frames up to the
+         * next key frame
+         */
+        public long getDroppedFrameCount() {
+            return mDroppedFrames.get();
+        }
+
+        /**
+         * @return Number of frames the sink failed to take
+         */
+        public long getFailedFrameCount() {
+            return mFailedFrames.get();
+        }
+
+        /**
+         * @return Number of frames waiting for the sink
+         */
+        public int getQueuedFrameCount() {
+            return mQueuedFrames.get();
+        }
+
+        private void offer(@Nonnull final KinesisVideoFrame frame, @Nonnull final SharedFrame sharedFrame) {
+            if (!mEnabled) {
+                mWaitingForKeyFrame = true;
+                return;
+            }
+
+            final boolean isKeyFrame = (frame.getFlags() & FrameFlags.FRAME_FLAG_KEY_FRAME) != 0;
+            if (mQueuedFrames.get() >= mQueueCapacity) {
+                // The delta frames up to the next key frame are useless without this one
+                mWaitingForKeyFrame = true;
+                mDroppedFrames.incrementAndGet();
+                return;
+            }
+
+            if (mWaitingForKeyFrame && !isKeyFrame) {
+                mDroppedFrames.incrementAndGet();
+                return;
+            }
+
+            mWaitingForKeyFrame = false;
+            sharedFrame.retain();
+            mQueuedFrames.incrementAndGet();
+            enqueue(new Entry(new KinesisVideoFrame(frame.getIndex(),
+                    frame.getFlags(),
+                    frame.getDecodingTs(),
+                    frame.getPresentationTs(),
+                    frame.getDuration(),
+                    sharedFrame.mBuffer.duplicate()), sharedFrame));
+        }
+
+        private void enqueue(@Nonnull final Entry entry) {
+            mQueue.add(entry);
+            if (mRemoved) {
+                // Removed meanwhile, its thread may be gone
+                discardQueue();
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!mRemoved) {
+                    final Entry entry = mQueue.take();
+                    if (entry.mSharedFrame == null) {
+                        putCodecPrivateData(entry.mCodecPrivateData);
+                        continue;
+                    }
+
+                    try {
+                        putFrame(entry.mFrame);
+                    } finally {
+                        mQueuedFrames.decrementAndGet();
+                        entry.mSharedFrame.release();
+                    }
+                }
+            } catch (final InterruptedException e) {
+                // Removed
+            } finally {
+                discardQueue();
+            }
+        }
+
+        private void putFrame(@Nonnull final KinesisVideoFrame frame) {
+            try {
+                mSink.onFrame(frame);
+            } catch (final KinesisVideoException e) {
+                mFailedFrames.incrementAndGet();
+                LOG.exception(e, "%s failed to put frame %d", mThread.getName(), frame.getIndex());
+            }
+        }
+
+        private void putCodecPrivateData(@Nullable final byte[] codecPrivateData) {
+            try {
+                mSink.onCodecPrivateData(codecPrivateData);
+            } catch (final KinesisVideoException e) {
+                LOG.exception(e, "%s failed to set the codec private data", mThread.getName());
+            }
+        }
+
+        private void discardQueue() {
+            Entry entry;
+            while ((entry = mQueue.poll()) != null) {
+                if (entry.mSharedFrame != null) {
+                    mQueuedFrames.decrementAndGet();
+                    entry.mSharedFrame.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * A frame or a codec private data change queued for a target
+     */
+    private static final class Entry {
+        private final KinesisVideoFrame mFrame;
+        private final SharedFrame mSharedFrame;
+        private final byte[] mCodecPrivateData;
+
+        private Entry(@Nonnull final KinesisVideoFrame frame, @Nonnull final SharedFrame sharedFrame) {
+            mFrame = frame;
+            mSharedFrame = sharedFrame;
+            mCodecPrivateData = null;
+        }
+
+        private Entry(@Nullable final byte[] codecPrivateData) {
+            mFrame = null;
+            mSharedFrame = null;
+            mCodecPrivateData = codecPrivateData;
+        }
+    }
+
+    /**
+     * Frame data referenced by the targets it is queued for
+     */
+    private final class SharedFrame {
+        private final ByteBuffer mBuffer;
+        private final AtomicInteger mReferences = new AtomicInteger(1);
+
+        private SharedFrame(@Nonnull final ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        private void retain() {
+            mReferences.incrementAndGet();
+        }
+
+        private void release() {
+            if (mReferences.decrementAndGet() == 0) {
+                mBufferPool.release(mBuffer);
+            }
+        }
+    }
+}
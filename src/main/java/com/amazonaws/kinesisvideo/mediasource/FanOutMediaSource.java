@@ -0,0 +1,185 @@
+package com.amazonaws.kinesisvideo.mediasource;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+
+/**
+ * Publishes one media source, e.g. a camera, to several streams without running it once per stream.
+ * <p>
+ * Each stream is registered with the client with a branch of its own:
+ * <pre>
+ *     final FanOutMediaSource fanOut = new FanOutMediaSource(cameraMediaSource);
+ *     client.registerMediaSource("stream", fanOut.newBranch());
+ *     client.registerMediaSource("archive", fanOut.newBranch(longRetentionConfiguration));
+ *     client.startAllMediaSources();
+ * </pre>
+ * The source runs while any of the branches is started and its frames go through a {@link FanOutMediaSink} to the
+ * started branches. The streams are created from the configuration of the branch, that of the source by default.
+ */
+@ThreadSafe
+public class FanOutMediaSource {
+    private final MediaSource mMediaSource;
+    private final FanOutMediaSink mSink;
+    private boolean mIsInitialized;
+    private int mBranches;
+    private int mStartedBranches;
+
+    public FanOutMediaSource(@Nonnull final MediaSource mediaSource) {
+        this(mediaSource, new FanOutMediaSink());
+    }
+
+    /**
+     * @param mediaSource source of the frames, not registered with the client
+     * @param sink sink handing the frames of the source to the branches
+     */
+    public FanOutMediaSource(@Nonnull final MediaSource mediaSource, @Nonnull final FanOutMediaSink sink) {
+        mMediaSource = checkNotNull(mediaSource);
+        mSink = checkNotNull(sink);
+    }
+
+    /**
+     * @return A branch for a stream created from the configuration of the source
+     */
+    @Nonnull
+    public MediaSource newBranch() {
+        return newBranch(null);
+    }
+
+    /**
+     * @param configuration configuration the stream of the branch is created from, that of the source if null
+     * @return A branch for a stream
+     */
+    @Nonnull
+    public synchronized MediaSource newBranch(@Nullable final MediaSourceConfiguration configuration) {
+        mBranches++;
+        return new Branch(configuration);
+    }
+
+    private synchronized FanOutMediaSink.Target attach(@Nullable final FramePacer framePacer,
+                                                       @Nonnull final MediaSourceSink sink)
+            throws KinesisVideoException {
+        if (!mIsInitialized) {
+            // The source falls back to the default pacer itself
+            if (framePacer != null) {
+                mMediaSource.setFramePacer(framePacer);
+            }
+
+            mMediaSource.initialize(mSink);
+            mIsInitialized = true;
+        }
+
+        return mSink.addTarget(sink);
+    }
+
+    private synchronized void onBranchStarted() throws KinesisVideoException {
+        if (mStartedBranches++ == 0) {
+            mMediaSource.start();
+        }
+    }
+
+    private synchronized void onBranchStopped() throws KinesisVideoException {
+        if (--mStartedBranches == 0) {
+            mMediaSource.stop();
+        }
+    }
+
+    private synchronized void onBranchFreed() throws KinesisVideoException {
+        if (--mBranches == 0) {
+            mSink.close();
+            mMediaSource.free();
+        }
+    }
+
+    private final class Branch implements MediaSource {
+        private MediaSourceConfiguration mConfiguration;
+        private FramePacer mFramePacer;
+        private FanOutMediaSink.Target mTarget;
+        private MediaSourceState mMediaSourceState;
+        private boolean mIsFreed;
+
+        private Branch(@Nullable final MediaSourceConfiguration configuration) {
+            mConfiguration = configuration;
+        }
+
+        @Override
+        public MediaSourceState getMediaSourceState() {
+            return mMediaSourceState;
+        }
+
+        @Override
+        public MediaSourceConfiguration getConfiguration() {
+            return mConfiguration != null ? mConfiguration : mMediaSource.getConfiguration();
+        }
+
+        @Override
+        public void setFramePacer(@Nonnull final FramePacer framePacer) {
+            mFramePacer = checkNotNull(framePacer);
+        }
+
+        @Override
+        public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
+            checkState(mTarget == null, "Branch is already initialized");
+            mTarget = attach(mFramePacer, checkNotNull(mediaSourceSink));
+            mTarget.setEnabled(false);
+        }
+
+        @Override
+        public void configure(final MediaSourceConfiguration configuration) {
+            mConfiguration = configuration;
+        }
+
+        @Override
+        public synchronized void start() throws KinesisVideoException {
+            checkState(mTarget != null, "Branch must be initialized first");
+            if (mMediaSourceState == MediaSourceState.RUNNING) {
+                return;
+            }
+
+            mTarget.setEnabled(true);
+            mMediaSourceState = MediaSourceState.RUNNING;
+            onBranchStarted();
+        }
+
+        @Override
+        public synchronized void stop() throws KinesisVideoException {
+            if (mMediaSourceState != MediaSourceState.RUNNING) {
+                mMediaSourceState = MediaSourceState.STOPPED;
+                return;
+            }
+
+            mTarget.setEnabled(false);
+            mMediaSourceState = MediaSourceState.STOPPED;
+            onBranchStopped();
+        }
+
+        @Override
+        public boolean isStopped() {
+            return mMediaSourceState == MediaSourceState.STOPPED;
+        }
+
+        @Override
+        public synchronized void free() throws KinesisVideoException {
+            if (mIsFreed) {
+                return;
+            }
+
+            mIsFreed = true;
+            stop();
+            if (mTarget != null) {
+                mTarget.remove();
+            }
+
+            onBranchFreed();
+        }
+    }
+}
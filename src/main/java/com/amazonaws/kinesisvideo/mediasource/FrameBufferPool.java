@@ -0,0 +1,119 @@
+package com.amazonaws.kinesisvideo.mediasource;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Pool of the direct buffers the media sources read their frames into.
+ * <p>
+ * The buffers are allocated in power of two sizes from {@link #MIN_BUFFER_SIZE} and a few of each size are kept
+ * when released, so a source reading frames of similar sizes stops allocating once warmed up. The buffers are
+ * direct so the producer hands them to the native code without copying them.
+ * <p>
+ * A frame buffer can be released once the frame has been put, putFrame doesn't keep a reference to it.
+ */
+@ThreadSafe
+public final class FrameBufferPool {
+    /**
+     * Size of the smallest buffers
+     */
+    public static final int MIN_BUFFER_SIZE = 4096;
+
+    /**
+     * Default number of the free buffers kept per size
+     */
+    public static final int DEFAULT_MAX_FREE_BUFFERS = 8;
+
+    private static final int MIN_SIZE_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    private static final int SIZE_CLASSES = Integer.SIZE - 1 - MIN_SIZE_SHIFT;
+
+    private final int mMaxFreeBuffers;
+    private final ArrayDeque<ByteBuffer>[] mFreeBuffers;
+    private final AtomicLong mAllocatedCount = new AtomicLong();
+
+    public FrameBufferPool() {
+        this(DEFAULT_MAX_FREE_BUFFERS);
+    }
+
+    /**
+     * @param maxFreeBuffers number of the free buffers kept per size
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public FrameBufferPool(final int maxFreeBuffers) {
+        checkArgument(maxFreeBuffers >= 0, "Number of free buffers must not be negative");
+        mMaxFreeBuffers = maxFreeBuffers;
+        mFreeBuffers = new ArrayDeque[SIZE_CLASSES];
+        for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+            mFreeBuffers[sizeClass] = new ArrayDeque<ByteBuffer>();
+        }
+    }
+
+    /**
+     * Returns a buffer of at least the given size
+     *
+     * @param size number of bytes needed
+     * @return Direct buffer with the position at 0 and the limit at the size
+     */
+    @Nonnull
+    public ByteBuffer acquire(final int size) {
+        checkArgument(size >= 0, "Size must not be negative");
+        final int sizeClass = sizeClassOf(size);
+        checkArgument(sizeClass < SIZE_CLASSES, "Size is too large");
+
+        ByteBuffer buffer;
+        final ArrayDeque<ByteBuffer> freeBuffers = mFreeBuffers[sizeClass];
+        synchronized (freeBuffers) {
+            buffer = freeBuffers.pollFirst();
+        }
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(MIN_BUFFER_SIZE << sizeClass);
+            mAllocatedCount.incrementAndGet();
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer acquired from the pool. The buffers of other origins are ignored.
+     *
+     * @param buffer buffer not used any more
+     */
+    public void release(@Nonnull final ByteBuffer buffer) {
+        checkNotNull(buffer);
+        final int capacity = buffer.capacity();
+        if (!buffer.isDirect() || capacity < MIN_BUFFER_SIZE || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+
+        final ArrayDeque<ByteBuffer> freeBuffers = mFreeBuffers[sizeClassOf(capacity)];
+        synchronized (freeBuffers) {
+            if (freeBuffers.size() < mMaxFreeBuffers) {
+                freeBuffers.addFirst(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return Number of the buffers allocated by the pool so far
+     */
+    public long getAllocatedCount() {
+        return mAllocatedCount.get();
+    }
+
+    private static int sizeClassOf(final int size) {
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+    }
+}
@@ -0,0 +1,375 @@
+package com.amazonaws.kinesisvideo.mediasource;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.metrics.Gauge;
+import com.amazonaws.kinesisvideo.metrics.MetricNames;
+import com.amazonaws.kinesisvideo.metrics.MetricsRegistry;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_SECOND;
+
+/**
+ * Paces the frames of many media sources from a few timer threads.
+ * <p>
+ * The deadline of the n-th frame of a source is computed from the {@link System#nanoTime()} the source was
+ * scheduled at, rather than by sleeping the frame interval after each frame, so the time spent producing the
+ * frames and the wake-up latency don't accumulate into drift. A source which falls behind either skips to the
+ * latest due frame or catches up on the missed frames, see {@link CatchUpPolicy}. The sources are spread over
+ * the timer threads, each of which waits for the earliest deadline of its sources and calls them on time.
+ * <p>
+ * The frame timestamps are derived from the frame index, so they are monotonic and spaced by the frame duration.
+ * {@link Pacing#toWallClock(long)} maps them to the wall clock at the time the source was scheduled.
+ * <p>
+ * The callbacks run on the timer threads and delay the other sources of their thread while they run. A callback
+ * still running when the next frame of its source is due counts as an overrun, see {@link #getOverrunCount()}.
+ * <p>
+ * The client owns a pacer for the media sources registered with it, so any number of sources runs on a bounded
+ * number of threads. {@link #registerMetrics(MetricsRegistry)} exposes the number of the active sources and their
+ * overruns and skipped frames.
+ */
+public final class FramePacer implements Closeable {
+    /**
+     * Default number of the timer threads
+     */
+    public static final int DEFAULT_TIMER_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static final long NANOS_IN_A_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final Log LOG = new Log(Log.SYSTEM_OUT);
+
+    /**
+     * What a source does about the frames which were due while it was late
+     */
+    public enum CatchUpPolicy {
+        /**
+         * Skip them and continue with the latest due frame, like a live camera
+         */
+        SKIP,
+        /**
+         * Produce them back to back until the source is on time again
+         */
+        CATCH_UP
+    }
+
+    /**
+     * Produces the frames of a paced source
+     */
+    public interface FrameCallback {
+        /**
+         * Called when a frame is due
+         *
+         * @param pacing pacing of the source
+         * @param frameIndex index of the frame since the source was scheduled
+         * @param timestamp timestamp of the frame since the source was scheduled in 100ns
+         */
+        void onFrameDue(@Nonnull Pacing pacing, long frameIndex, long timestamp);
+    }
+
+    /**
+     * Handle of a paced source
+     */
+    public final class Pacing {
+        private final int mFps;
+        private final CatchUpPolicy mCatchUpPolicy;
+        private final FrameCallback mCallback;
+        private final Timer mTimer;
+        private final long mStartTime;
+        private final long mWallClockAnchor;
+        private final AtomicLong mSkippedFrames = new AtomicLong();
+        private volatile boolean mCancelled;
+
+        // Only touched by the timer thread after scheduling
+        private long mNextFrame;
+        private long mDeadline;
+
+        private Pacing(final int fps, @Nonnull final CatchUpPolicy catchUpPolicy,
+                       @Nonnull final FrameCallback callback, @Nonnull final Timer timer) {
+            mFps = fps;
+            mCatchUpPolicy = catchUpPolicy;
+            mCallback = callback;
+            mTimer = timer;
+            mStartTime = System.nanoTime();
+            mWallClockAnchor = System.currentTimeMillis() * HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+            mDeadline = mStartTime;
+        }
+
+        public int getFps() {
+            return mFps;
+        }
+
+        /**
+         * @return Duration of a frame in 100ns
+         */
+        public long getFrameDuration() {
+            return HUNDREDS_OF_NANOS_IN_A_SECOND / mFps;
+        }
+
+        /**
+         * @return Number of the frames skipped because the source was late
+         */
+        public long getSkippedFrames() {
+            return mSkippedFrames.get();
+        }
+
+        /**
+         * Maps a frame timestamp to the wall clock
+         *
+         * @param timestamp timestamp of a frame since the source was scheduled in 100ns
+         * @return Time since the epoch in 100ns
+         */
+        public long toWallClock(final long timestamp) {
+            return mWallClockAnchor + timestamp;
+        }
+
+        /**
+         * Stops pacing the source. A frame being produced at the time completes.
+         */
+        public void cancel() {
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+
+                mCancelled = true;
+            }
+
+            mActiveSources.decrementAndGet();
+            mTimer.remove(this);
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        private void fire() {
+            final long due = (System.nanoTime() - mStartTime) * mFps / NANOS_IN_A_SECOND;
+            if (mCatchUpPolicy == CatchUpPolicy.SKIP && due > mNextFrame) {
+                mSkippedFrames.addAndGet(due - mNextFrame);
+                mTotalSkippedFrames.addAndGet(due - mNextFrame);
+                mNextFrame = due;
+            }
+
+            final long frameIndex = mNextFrame++;
+            mDeadline = mStartTime + mNextFrame * NANOS_IN_A_SECOND / mFps;
+            try {
+                mCallback.onFrameDue(this, frameIndex, frameIndex * HUNDREDS_OF_NANOS_IN_A_SECOND / mFps);
+            } catch (final RuntimeException e) {
+                LOG.exception(e, "Frame callback failed for frame %d", frameIndex);
+            }
+
+            if (System.nanoTime() > mDeadline) {
+                mOverruns.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Calls the sources it paces at their deadlines
+     */
+    private final class Timer implements Runnable {
+        private final ReentrantLock mLock = new ReentrantLock();
+        private final Condition mDeadlineChanged = mLock.newCondition();
+        private final PriorityQueue<Pacing> mQueue = new PriorityQueue<Pacing>(16, new Comparator<Pacing>() {
+            @Override
+            public int compare(final Pacing first, final Pacing second) {
+                return Long.signum(first.mDeadline - second.mDeadline);
+            }
+        });
+
+        void add(@Nonnull final Pacing pacing) {
+            mLock.lock();
+            try {
+                mQueue.add(pacing);
+                if (mQueue.peek() == pacing) {
+                    mDeadlineChanged.signal();
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        void remove(@Nonnull final Pacing pacing) {
+            mLock.lock();
+            try {
+                mQueue.remove(pacing);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        void wakeUp() {
+            mLock.lock();
+            try {
+                mDeadlineChanged.signal();
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            mLock.lock();
+            try {
+                while (!mClosed) {
+                    final Pacing pacing = mQueue.peek();
+                    if (pacing == null) {
+                        mDeadlineChanged.await();
+                        continue;
+                    }
+
+                    final long wait = pacing.mDeadline - System.nanoTime();
+                    if (wait > 0) {
+                        mDeadlineChanged.awaitNanos(wait);
+                        continue;
+                    }
+
+                    mQueue.poll();
+                    mLock.unlock();
+                    try {
+                        pacing.fire();
+                    } finally {
+                        mLock.lock();
+                    }
+
+                    if (!pacing.mCancelled) {
+                        mQueue.add(pacing);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Lazily created pacer shared by the sources which aren't given one
+     */
+    private static final class DefaultHolder {
+        static final FramePacer INSTANCE = new FramePacer(DEFAULT_TIMER_THREADS, "KinesisVideoFramePacer");
+    }
+
+    private final Timer[] mTimers;
+    private final AtomicInteger mNextTimer = new AtomicInteger();
+    private final AtomicInteger mActiveSources = new AtomicInteger();
+    private final AtomicLong mOverruns = new AtomicLong();
+    private final AtomicLong mTotalSkippedFrames = new AtomicLong();
+    private volatile boolean mClosed;
+
+    /**
+     * Creates a pacer and starts its daemon timer threads
+     *
+     * @param timerThreads number of the timer threads
+     * @param name prefix of the names of the timer threads
+     */
+    public FramePacer(final int timerThreads, @Nonnull final String name) {
+        checkArgument(timerThreads > 0, "Number of timer threads must be positive");
+        checkNotNull(name);
+        mTimers = new Timer[timerThreads];
+        for (int i = 0; i < timerThreads; i++) {
+            mTimers[i] = new Timer();
+            final Thread thread = new Thread(mTimers[i], name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return The pacer shared by the sources which aren't given one
+     */
+    @Nonnull
+    public static FramePacer getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Starts pacing a source. Its first frame is due immediately.
+     *
+     * @param fps frames per second
+     * @param catchUpPolicy what to do about the frames due while the source was late
+     * @param callback producer of the frames
+     * @return Handle to cancel the pacing with
+     */
+    @Nonnull
+    public Pacing schedule(final int fps, @Nonnull final CatchUpPolicy catchUpPolicy,
+                           @Nonnull final FrameCallback callback) {
+        checkArgument(fps > 0, "Fps must be positive");
+        checkState(!mClosed, "Frame pacer is closed");
+        final Timer timer = mTimers[(mNextTimer.getAndIncrement() & Integer.MAX_VALUE) % mTimers.length];
+        final Pacing pacing = new Pacing(fps, checkNotNull(catchUpPolicy), checkNotNull(callback), timer);
+        mActiveSources.incrementAndGet();
+        timer.add(pacing);
+        return pacing;
+    }
+
+    /**
+     * @return Number of the sources being paced
+     */
+    public int getActiveSources() {
+        return mActiveSources.get();
+    }
+
+    /**
+     * @return Number of the frames produced after the next frame of their source was due
+     */
+    public long getOverrunCount() {
+        return mOverruns.get();
+    }
+
+    /**
+     * @return Number of the frames skipped by all the sources because they were late
+     */
+    public long getSkippedFrameCount() {
+        return mTotalSkippedFrames.get();
+    }
+
+    /**
+     * Registers the gauges of the active sources, the overruns and the skipped frames
+     *
+     * @param registry registry of the owner of the pacer
+     */
+    public void registerMetrics(@Nonnull final MetricsRegistry registry) {
+        registry.gauge(MetricNames.MEDIA_SOURCES_ACTIVE, new Gauge() {
+            @Override
+            public long getValue() {
+                return getActiveSources();
+            }
+        });
+        registry.gauge(MetricNames.MEDIA_SOURCE_OVERRUNS, new Gauge() {
+            @Override
+            public long getValue() {
+                return getOverrunCount();
+            }
+        });
+        registry.gauge(MetricNames.MEDIA_SOURCE_SKIPPED_FRAMES, new Gauge() {
+            @Override
+            public long getValue() {
+                return getSkippedFrameCount();
+            }
+        });
+    }
+
+    /**
+     * Stops the timer threads. The sources aren't called any more.
+     */
+    @Override
+    public void close() {
+        mClosed = true;
+        for (final Timer timer : mTimers) {
+            timer.wakeUp();
+        }
+    }
+}
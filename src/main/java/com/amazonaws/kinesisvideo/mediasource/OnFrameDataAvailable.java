@@ -9,4 +9,17 @@ public interface OnFrameDataAvailable {
     default void onFrameDataAvailable(final ByteBuffer data, boolean isKeyFrame) {
 
     }
+
+    /**
+     * Frame data produced at the pace of a {@link FramePacer}
+     *
+     * @param data frame data
+     * @param frameIndex index of the frame since the source started
+     * @param timestamp wall clock timestamp of the frame in 100ns, monotonic and spaced by the frame duration
+     * @param duration duration of the frame in 100ns
+     */
+    default void onFrameDataAvailable(final ByteBuffer data, final long frameIndex, final long timestamp,
+                                      final long duration) {
+        onFrameDataAvailable(data);
+    }
 }
@@ -2,6 +2,7 @@ package com.amazonaws.kinesisvideo.mediasource;
 
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.metrics.FrameTracer;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoProducerStream;
 
@@ -32,6 +33,11 @@ public class ProducerStreamSink implements MediaSourceSink {
     @Override
     public void onFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) throws KinesisVideoException {
         checkNotNull(kinesisVideoFrame);
+        final FrameTracer frameTracer = producerStream.getFrameTracer();
+        if (frameTracer != null) {
+            frameTracer.onSink(System.nanoTime());
+        }
+
         producerStream.putFrame(kinesisVideoFrame);
     }
 
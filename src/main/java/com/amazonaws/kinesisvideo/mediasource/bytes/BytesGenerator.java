@@ -1,36 +1,36 @@
 package com.amazonaws.kinesisvideo.mediasource.bytes;
 
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
 import com.amazonaws.kinesisvideo.mediasource.OnFrameDataAvailable;
-import com.amazonaws.kinesisvideo.stream.throttling.DiscreteTimePeriodsThrottler;
 
+import javax.annotation.Nonnull;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class BytesGenerator {
-    private static final int DISCRETENESS_10HZ = 10;
     private static final int MAX_FRAME_SIZE_BYTES_1024 = 1024;
+    private static final int NUMBER_OF_FRAME_BUFFERS = 6;
 
     private OnFrameDataAvailable onFrameDataAvailable;
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(1);
-    private final DiscreteTimePeriodsThrottler throttler;
-    private final byte[][] framesData = new byte[][]{
-            new byte[MAX_FRAME_SIZE_BYTES_1024],
-            new byte[MAX_FRAME_SIZE_BYTES_1024],
-            new byte[MAX_FRAME_SIZE_BYTES_1024],
-            new byte[MAX_FRAME_SIZE_BYTES_1024],
-            new byte[MAX_FRAME_SIZE_BYTES_1024],
-            new byte[MAX_FRAME_SIZE_BYTES_1024]
-    };
+    private final FramePacer framePacer;
+    private final int fps;
+    private final byte[][] framesData;
 
-    private volatile boolean isRunning;
-    private int frameCounter;
+    private FramePacer.Pacing pacing;
 
     public BytesGenerator(final int fps) {
-        frameCounter = 0;
-        throttler = new DiscreteTimePeriodsThrottler(fps, DISCRETENESS_10HZ);
+        this(fps, MAX_FRAME_SIZE_BYTES_1024);
+    }
+
+    public BytesGenerator(final int fps, final int frameSize) {
+        this(fps, frameSize, FramePacer.getDefault());
+    }
+
+    public BytesGenerator(final int fps, final int frameSize, @Nonnull final FramePacer framePacer) {
+        this.fps = fps;
+        this.framePacer = framePacer;
+        framesData = new byte[NUMBER_OF_FRAME_BUFFERS][frameSize];
     }
 
     public void onFrameDataAvailable(final OnFrameDataAvailable onFrameDataAvailable) {
@@ -38,47 +38,41 @@ public class BytesGenerator {
     }
 
     public synchronized void start() {
-        if (isRunning) {
+        if (pacing != null) {
             throw new IllegalStateException("should stop previous generator before starting the new one");
         }
 
-        isRunning = true;
-
-        startGeneratorInBackground();
-    }
-
-    public synchronized void stop() {
-        isRunning = false;
-    }
-
-    private void startGeneratorInBackground() {
-        executor.execute(new Runnable() {
+        // Late frames are skipped so the generator never bursts above its frame rate
+        pacing = framePacer.schedule(fps, FramePacer.CatchUpPolicy.SKIP, new FramePacer.FrameCallback() {
             @Override
-            public void run() {
-                generateBytesAndNotifyListener();
+            public void onFrameDue(@Nonnull final FramePacer.Pacing pacing, final long frameIndex,
+                                   final long timestamp) {
+                generateBytesAndNotifyListener(pacing, frameIndex, timestamp);
             }
         });
     }
 
-    private void generateBytesAndNotifyListener() {
-        while (isRunning) {
-            fillArrayWithDigitsOfFramesCounter();
-
-            if (onFrameDataAvailable != null) {
-                onFrameDataAvailable
-                        .onFrameDataAvailable(ByteBuffer.wrap(framesData[frameCounter % framesData.length]));
-            }
+    public synchronized void stop() {
+        if (pacing != null) {
+            pacing.cancel();
+            pacing = null;
+        }
+    }
 
-            frameCounter++;
+    private void generateBytesAndNotifyListener(final FramePacer.Pacing pacing, final long frameCounter,
+                                                final long timestamp) {
+        final byte[] frameData = framesData[(int) (frameCounter % framesData.length)];
+        fillArrayWithDigitsOfFramesCounter(frameData, frameCounter);
 
-            throttler.throttle();
+        if (onFrameDataAvailable != null) {
+            onFrameDataAvailable.onFrameDataAvailable(ByteBuffer.wrap(frameData), frameCounter,
+                    pacing.toWallClock(timestamp), pacing.getFrameDuration());
         }
     }
 
-    private void fillArrayWithDigitsOfFramesCounter() {
+    private static void fillArrayWithDigitsOfFramesCounter(final byte[] frameData, final long frameCounter) {
         final String counterString = String.valueOf(frameCounter) + "|";
         final byte[] counterBytes = counterString.getBytes(StandardCharsets.US_ASCII);
-        final byte[] frameData = this.framesData[frameCounter % this.framesData.length];
 
         for (int i = 0; i < frameData.length; i++) {
             frameData[i] = counterBytes[i % counterBytes.length];
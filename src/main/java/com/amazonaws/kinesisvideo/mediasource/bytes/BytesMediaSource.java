@@ -5,6 +5,7 @@ import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
 import com.amazonaws.kinesisvideo.mediasource.OnFrameDataAvailable;
 import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
 
@@ -13,18 +14,15 @@ import java.nio.ByteBuffer;
 
 public class BytesMediaSource implements MediaSource {
     private static final String TAG = "BytesMediaSource";
-    private static final long HUNDREDS_OF_NANOS_IN_MS = 10 * 1000;
-    private static final int KEY_FRAME_EVERY_60_FRAMES = 60;
     private static final int FRAME_FLAG_KEY_FRAME = 1;
     private static final int FRAME_FLAG_NONE = 0;
-    private static final long DEFAULT_FRAME_DURATION_33MS = 33L;
 
     private BytesMediaSourceConfiguration configuration;
     private MediaSourceState mediaSourceState;
     private MediaSourceSink mediaSourceSink;
     private BytesGenerator bytesGenerator;
+    private FramePacer framePacer;
     private int frameIndex;
-    private long lastTimestampMillis;
 
 
     @Override
@@ -37,6 +35,11 @@ public class BytesMediaSource implements MediaSource {
         return configuration;
     }
 
+    @Override
+    public void setFramePacer(@Nonnull final FramePacer framePacer) {
+        this.framePacer = framePacer;
+    }
+
     @Override
     public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
         this.mediaSourceSink = mediaSourceSink;
@@ -54,7 +57,8 @@ public class BytesMediaSource implements MediaSource {
     @Override
     public void start() throws KinesisVideoException {
         mediaSourceState = MediaSourceState.RUNNING;
-        bytesGenerator = new BytesGenerator(configuration.getFps());
+        bytesGenerator = new BytesGenerator(configuration.getFps(), configuration.getFrameSize(),
+                framePacer != null ? framePacer : FramePacer.getDefault());
         bytesGenerator.onFrameDataAvailable(createFrameAndPushToProducer());
         bytesGenerator.start();
     }
@@ -62,14 +66,11 @@ public class BytesMediaSource implements MediaSource {
     private OnFrameDataAvailable createFrameAndPushToProducer() {
         return new OnFrameDataAvailable() {
             @Override
-            public void onFrameDataAvailable(final ByteBuffer data) {
-                final long currentTimeMs = System.currentTimeMillis();
-                final long decodingTs = currentTimeMs * HUNDREDS_OF_NANOS_IN_MS;
-                final long presentationTs = currentTimeMs * HUNDREDS_OF_NANOS_IN_MS;
-                final long msSinceLastFrame = currentTimeMs - lastTimestampMillis;
-                final long frameDuration = lastTimestampMillis == 0
-                        ? DEFAULT_FRAME_DURATION_33MS * HUNDREDS_OF_NANOS_IN_MS
-                        : msSinceLastFrame * HUNDREDS_OF_NANOS_IN_MS / 2;
+            public void onFrameDataAvailable(final ByteBuffer data, final long generatedFrameIndex,
+                                             final long timestamp, final long frameDuration) {
+                // The timestamps come from the pacer, spaced by the frame duration even if the generator is late
+                final long decodingTs = timestamp;
+                final long presentationTs = timestamp;
 
                 final int flags = isKeyFrame()
                         ? FRAME_FLAG_KEY_FRAME
@@ -89,14 +90,13 @@ public class BytesMediaSource implements MediaSource {
                     return;
                 }
 
-                lastTimestampMillis = currentTimeMs;
                 submitFrameOnUIThread(frame);
             }
         };
     }
 
     private boolean isKeyFrame() {
-        return frameIndex % KEY_FRAME_EVERY_60_FRAMES == 0;
+        return frameIndex % configuration.getKeyFrameInterval() == 0;
     }
 
     private void submitFrameOnUIThread(final KinesisVideoFrame frame) {
@@ -7,12 +7,16 @@ public class BytesMediaSourceConfiguration implements MediaSourceConfiguration {
     private static final String MEDIA_SOURCE_TYPE = "BytesMediaSource";
     private static final String MEDIA_SOURCE_DESCRIPTION = "Generates bytes in specific "
             + "configuration. Useful for debugging";
+    private static final int DEFAULT_FRAME_SIZE_BYTES = 1024;
+    private static final int DEFAULT_KEY_FRAME_INTERVAL = 60;
 
     public static class Builder
             implements MediaSourceConfiguration.Builder<BytesMediaSourceConfiguration> {
 
         private int fps;
         private long retentionPeriodInHours;
+        private int frameSize = DEFAULT_FRAME_SIZE_BYTES;
+        private int keyFrameInterval = DEFAULT_KEY_FRAME_INTERVAL;
 
         public Builder withFps(final int fps) {
             this.fps = fps;
@@ -24,6 +28,28 @@ public class BytesMediaSourceConfiguration implements MediaSourceConfiguration {
             return this;
         }
 
+        /**
+         * Size of every generated frame in bytes, 1KB by default
+         */
+        public Builder withFrameSize(final int frameSize) {
+            if (frameSize <= 0) {
+                throw new IllegalArgumentException("Frame size should be positive.");
+            }
+            this.frameSize = frameSize;
+            return this;
+        }
+
+        /**
+         * Number of frames from one key frame to the next, 60 by default
+         */
+        public Builder withKeyFrameInterval(final int keyFrameInterval) {
+            if (keyFrameInterval <= 0) {
+                throw new IllegalArgumentException("Key frame interval should be positive.");
+            }
+            this.keyFrameInterval = keyFrameInterval;
+            return this;
+        }
+
         @Override
         public BytesMediaSourceConfiguration build() {
             return new BytesMediaSourceConfiguration(this);
@@ -44,6 +70,21 @@ public class BytesMediaSourceConfiguration implements MediaSourceConfiguration {
         return mBuilder.retentionPeriodInHours;
     }
 
+    public int getFrameSize() {
+        return mBuilder.frameSize;
+    }
+
+    public int getKeyFrameInterval() {
+        return mBuilder.keyFrameInterval;
+    }
+
+    /**
+     * Bit rate produced by the generator at the configured frame rate
+     */
+    public int getBitRate() {
+        return mBuilder.frameSize * Byte.SIZE * mBuilder.fps;
+    }
+
     @Override
     public String getMediaSourceType() {
         return MEDIA_SOURCE_TYPE;
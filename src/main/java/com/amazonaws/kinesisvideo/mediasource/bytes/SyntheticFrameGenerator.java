@@ -0,0 +1,118 @@
+package com.amazonaws.kinesisvideo.mediasource.bytes;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Frames of a synthetic encoder output, sized like those of a real camera.
+ * <p>
+ * A pattern of a few GOPs is laid out once: each GOP starts with a key frame {@code keyFrameSizeRatio} times the size
+ * of the delta frames, every size varies around its mean by the configured variation, and the sizes are scaled so
+ * the pattern has exactly the configured bit rate. The frame data are slices of a single direct buffer of random
+ * bytes, prepared up front, so getting a frame neither allocates nor copies.
+ */
+@NotThreadSafe
+public class SyntheticFrameGenerator {
+    /**
+     * GOPs in the pattern the frames repeat
+     */
+    static final int PATTERN_GOPS = 8;
+
+    // The frames start at random offsets in the first bytes of the payload so consecutive frames differ
+    private static final int OFFSET_SPAN = 4096;
+
+    // A frame is never smaller than this fraction of the mean size of its kind
+    private static final double MIN_SIZE_FACTOR = 0.1;
+
+    private final int mGopLength;
+    private final int[] mFrameSizes;
+    private final ByteBuffer[] mFrames;
+    private final long mPatternBytes;
+
+    public SyntheticFrameGenerator(@Nonnull final SyntheticMediaSourceConfiguration configuration) {
+        mGopLength = configuration.getGopLength();
+        final int patternLength = mGopLength * PATTERN_GOPS;
+        final Random random = new Random(configuration.getSeed());
+
+        final double meanFrameSize = (double) configuration.getBitRate() / Byte.SIZE / configuration.getFps();
+        final double ratio = configuration.getKeyFrameSizeRatio();
+        final double deltaFrameSize = meanFrameSize * mGopLength / (ratio + mGopLength - 1);
+        final double keyFrameSize = deltaFrameSize * ratio;
+
+        final double[] sizes = new double[patternLength];
+        double total = 0;
+        for (int frame = 0; frame < patternLength; frame++) {
+            final double mean = isKeyFrame(frame) ? keyFrameSize : deltaFrameSize;
+            final double factor = 1 + configuration.getFrameSizeVariation() * random.nextGaussian();
+            sizes[frame] = mean * Math.max(MIN_SIZE_FACTOR, factor);
+            total += sizes[frame];
+        }
+
+        // Scaled back to the bit rate the variation moved the pattern away from
+        final double scale = meanFrameSize * patternLength / total;
+        mFrameSizes = new int[patternLength];
+        int maxFrameSize = 0;
+        long patternBytes = 0;
+        for (int frame = 0; frame < patternLength; frame++) {
+            mFrameSizes[frame] = Math.max(1, (int) Math.round(sizes[frame] * scale));
+            maxFrameSize = Math.max(maxFrameSize, mFrameSizes[frame]);
+            patternBytes += mFrameSizes[frame];
+        }
+
+        mPatternBytes = patternBytes;
+
+        final byte[] bytes = new byte[maxFrameSize + OFFSET_SPAN];
+        random.nextBytes(bytes);
+        final ByteBuffer payload = ByteBuffer.allocateDirect(bytes.length);
+        payload.put(bytes);
+
+        mFrames = new ByteBuffer[patternLength];
+        for (int frame = 0; frame < patternLength; frame++) {
+            final int offset = random.nextInt(OFFSET_SPAN);
+            payload.limit(offset + mFrameSizes[frame]);
+            payload.position(offset);
+            mFrames[frame] = payload.slice();
+        }
+    }
+
+    public boolean isKeyFrame(final long frameNumber) {
+        return frameNumber % mGopLength == 0;
+    }
+
+    /**
+     * Returns the data of a frame. The buffer is shared by the frames at the same place in the pattern and must not
+     * be written to.
+     *
+     * @param frameNumber number of the frame since the first one
+     * @return Direct buffer with the frame data between its position and its limit
+     */
+    @Nonnull
+    public ByteBuffer getFrame(final long frameNumber) {
+        final ByteBuffer frame = mFrames[(int) (frameNumber % mFrames.length)];
+        frame.clear();
+        return frame;
+    }
+
+    /**
+     * @return Size of a frame in bytes
+     */
+    public int getFrameSize(final long frameNumber) {
+        return mFrameSizes[(int) (frameNumber % mFrameSizes.length)];
+    }
+
+    /**
+     * @return Number of frames after which the frames repeat
+     */
+    public int getPatternLength() {
+        return mFrames.length;
+    }
+
+    /**
+     * @return Bytes of a whole pattern, the bit rate over its duration
+     */
+    public long getPatternBytes() {
+        return mPatternBytes;
+    }
+}
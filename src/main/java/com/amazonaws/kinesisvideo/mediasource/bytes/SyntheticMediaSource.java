@@ -0,0 +1,136 @@
+package com.amazonaws.kinesisvideo.mediasource.bytes;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSource;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceState;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.mediasource.FramePacer;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Media source for load tests putting the frames of a {@link SyntheticFrameGenerator} at the configured frame rate,
+ * optionally in bursts. The frames are prepared when the source is configured, so the source costs no more than
+ * the putFrame calls and never limits a benchmark.
+ */
+public class SyntheticMediaSource implements MediaSource {
+    private final Log log = LogFactory.getLog(SyntheticMediaSource.class);
+    private final AtomicLong failedFrames = new AtomicLong();
+    private SyntheticMediaSourceConfiguration configuration;
+    private SyntheticFrameGenerator frameGenerator;
+    private MediaSourceState mediaSourceState;
+    private MediaSourceSink mediaSourceSink;
+    private FramePacer framePacer;
+    private FramePacer.Pacing pacing;
+
+    // Only touched by the timer thread of the pacing
+    private long frameNumber;
+    private long[] burstTimestamps;
+    private int burstFrames;
+
+    @Override
+    public MediaSourceState getMediaSourceState() {
+        return mediaSourceState;
+    }
+
+    @Override
+    public MediaSourceConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public void setFramePacer(@Nonnull final FramePacer framePacer) {
+        this.framePacer = framePacer;
+    }
+
+    @Override
+    public void initialize(@Nonnull final MediaSourceSink mediaSourceSink) throws KinesisVideoException {
+        this.mediaSourceSink = mediaSourceSink;
+    }
+
+    @Override
+    public void configure(final MediaSourceConfiguration configuration) {
+        if (!(configuration instanceof SyntheticMediaSourceConfiguration)) {
+            throw new IllegalArgumentException("can only use SyntheticMediaSourceConfiguration");
+        }
+
+        this.configuration = (SyntheticMediaSourceConfiguration) configuration;
+        frameGenerator = new SyntheticFrameGenerator(this.configuration);
+        burstTimestamps = new long[this.configuration.getBurstSize()];
+    }
+
+    @Override
+    public synchronized void start() throws KinesisVideoException {
+        if (pacing != null) {
+            throw new IllegalStateException("Media source is already running");
+        }
+
+        mediaSourceState = MediaSourceState.RUNNING;
+        burstFrames = 0;
+        // Late frames are skipped so the source never goes above its bit rate
+        final FramePacer pacer = framePacer != null ? framePacer : FramePacer.getDefault();
+        pacing = pacer.schedule(configuration.getFps(), FramePacer.CatchUpPolicy.SKIP,
+                new FramePacer.FrameCallback() {
+                    @Override
+                    public void onFrameDue(@Nonnull final FramePacer.Pacing pacing, final long frameIndex,
+                                           final long timestamp) {
+                        burstTimestamps[burstFrames++] = pacing.toWallClock(timestamp);
+                        if (burstFrames == burstTimestamps.length) {
+                            putBurst(pacing.getFrameDuration());
+                        }
+                    }
+                });
+    }
+
+    private void putBurst(final long frameDuration) {
+        for (int i = 0; i < burstFrames; i++) {
+            final long timestamp = burstTimestamps[i];
+            final int flags = frameGenerator.isKeyFrame(frameNumber)
+                    ? FrameFlags.FRAME_FLAG_KEY_FRAME
+                    : FrameFlags.FRAME_FLAG_NONE;
+            try {
+                mediaSourceSink.onFrame(new KinesisVideoFrame((int) frameNumber, flags, timestamp, timestamp,
+                        frameDuration, frameGenerator.getFrame(frameNumber)));
+            } catch (final KinesisVideoException e) {
+                // The frame is dropped like an encoder output nobody took, the next ones carry on
+                failedFrames.incrementAndGet();
+                log.error("Failed to put frame with Exception", e);
+            }
+
+            frameNumber++;
+        }
+
+        burstFrames = 0;
+    }
+
+    @Override
+    public synchronized void stop() throws KinesisVideoException {
+        if (pacing != null) {
+            pacing.cancel();
+            pacing = null;
+        }
+
+        mediaSourceState = MediaSourceState.STOPPED;
+    }
+
+    /**
+     * @return Number of frames the sink failed to take
+     */
+    public long getFailedFrameCount() {
+        return failedFrames.get();
+    }
+
+    @Override
+    public boolean isStopped() {
+        return mediaSourceState == MediaSourceState.STOPPED;
+    }
+
+    @Override
+    public void free() throws KinesisVideoException { }
+}
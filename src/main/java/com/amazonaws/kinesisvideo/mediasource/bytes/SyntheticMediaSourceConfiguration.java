@@ -0,0 +1,164 @@
+package com.amazonaws.kinesisvideo.mediasource.bytes;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
+
+public class SyntheticMediaSourceConfiguration implements MediaSourceConfiguration {
+
+    private static final String MEDIA_SOURCE_TYPE = "SyntheticMediaSource";
+    private static final String MEDIA_SOURCE_DESCRIPTION = "Generates frames sized like those of a camera. "
+            + "Useful for load testing";
+    private static final int DEFAULT_FPS = 30;
+    private static final int DEFAULT_BIT_RATE = 4_000_000;
+    private static final int DEFAULT_GOP_LENGTH = 60;
+    private static final double DEFAULT_KEY_FRAME_SIZE_RATIO = 8.0;
+    private static final double DEFAULT_FRAME_SIZE_VARIATION = 0.2;
+    private static final int DEFAULT_BURST_SIZE = 1;
+    private static final long DEFAULT_SEED = 0x5EEDL;
+
+    public static class Builder
+            implements MediaSourceConfiguration.Builder<SyntheticMediaSourceConfiguration> {
+
+        private int fps = DEFAULT_FPS;
+        private long retentionPeriodInHours;
+        private int bitRate = DEFAULT_BIT_RATE;
+        private int gopLength = DEFAULT_GOP_LENGTH;
+        private double keyFrameSizeRatio = DEFAULT_KEY_FRAME_SIZE_RATIO;
+        private double frameSizeVariation = DEFAULT_FRAME_SIZE_VARIATION;
+        private int burstSize = DEFAULT_BURST_SIZE;
+        private long seed = DEFAULT_SEED;
+
+        /**
+         * Frame rate, 30 by default
+         */
+        public Builder withFps(final int fps) {
+            if (fps <= 0) {
+                throw new IllegalArgumentException("Fps should be positive.");
+            }
+            this.fps = fps;
+            return this;
+        }
+
+        public Builder withRetentionPeriodInHours(final long retentionPeriodInHours) {
+            this.retentionPeriodInHours = retentionPeriodInHours;
+            return this;
+        }
+
+        /**
+         * Average bit rate of the frames in bits per second, 4Mbps by default
+         */
+        public Builder withBitRate(final int bitRate) {
+            if (bitRate <= 0) {
+                throw new IllegalArgumentException("Bit rate should be positive.");
+            }
+            this.bitRate = bitRate;
+            return this;
+        }
+
+        /**
+         * Number of frames from one key frame to the next, 60 by default
+         */
+        public Builder withGopLength(final int gopLength) {
+            if (gopLength <= 0) {
+                throw new IllegalArgumentException("GOP length should be positive.");
+            }
+            this.gopLength = gopLength;
+            return this;
+        }
+
+        /**
+         * Size of the key frames over the size of the delta frames, 8 by default
+         */
+        public Builder withKeyFrameSizeRatio(final double keyFrameSizeRatio) {
+            if (keyFrameSizeRatio < 1.0) {
+                throw new IllegalArgumentException("Key frames should not be smaller than the delta frames.");
+            }
+            this.keyFrameSizeRatio = keyFrameSizeRatio;
+            return this;
+        }
+
+        /**
+         * Standard deviation of the frame sizes relative to the mean size of their kind, 0.2 by default.
+         * 0 makes all of the key frames and all of the delta frames the same size.
+         */
+        public Builder withFrameSizeVariation(final double frameSizeVariation) {
+            if (frameSizeVariation < 0.0) {
+                throw new IllegalArgumentException("Frame size variation should not be negative.");
+            }
+            this.frameSizeVariation = frameSizeVariation;
+            return this;
+        }
+
+        /**
+         * Number of frames handed over together, like an encoder or a network delivering them in bursts. The frames
+         * keep their timestamps, the burst comes when its last frame is due. 1, no bursts, by default.
+         */
+        public Builder withBurstSize(final int burstSize) {
+            if (burstSize <= 0) {
+                throw new IllegalArgumentException("Burst size should be positive.");
+            }
+            this.burstSize = burstSize;
+            return this;
+        }
+
+        /**
+         * Seed of the frame sizes and data, so that runs are repeatable
+         */
+        public Builder withSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        @Override
+        public SyntheticMediaSourceConfiguration build() {
+            return new SyntheticMediaSourceConfiguration(this);
+        }
+    }
+
+    private final Builder mBuilder;
+
+    public SyntheticMediaSourceConfiguration(final Builder builder) {
+        mBuilder = builder;
+    }
+
+    public int getFps() {
+        return mBuilder.fps;
+    }
+
+    public long getRetentionPeriodInHours() {
+        return mBuilder.retentionPeriodInHours;
+    }
+
+    public int getBitRate() {
+        return mBuilder.bitRate;
+    }
+
+    public int getGopLength() {
+        return mBuilder.gopLength;
+    }
+
+    public double getKeyFrameSizeRatio() {
+        return mBuilder.keyFrameSizeRatio;
+    }
+
+    public double getFrameSizeVariation() {
+        return mBuilder.frameSizeVariation;
+    }
+
+    public int getBurstSize() {
+        return mBuilder.burstSize;
+    }
+
+    public long getSeed() {
+        return mBuilder.seed;
+    }
+
+    @Override
+    public String getMediaSourceType() {
+        return MEDIA_SOURCE_TYPE;
+    }
+
+    @Override
+    public String getMediaSourceDescription() {
+        return MEDIA_SOURCE_DESCRIPTION;
+    }
+}
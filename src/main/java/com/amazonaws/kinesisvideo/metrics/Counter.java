@@ -0,0 +1,22 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic lock-free counter
+ */
+public final class Counter {
+    private final AtomicLong mCount = new AtomicLong();
+
+    public void increment() {
+        mCount.incrementAndGet();
+    }
+
+    public void add(final long delta) {
+        mCount.addAndGet(delta);
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+}
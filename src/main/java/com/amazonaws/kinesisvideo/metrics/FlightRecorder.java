@@ -0,0 +1,287 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Always-on record of the latest events of a stream for the post-mortem of its errors.
+ * <p>
+ * Each event is written as a fixed size binary record into a ring allocated off the heap, so recording costs a
+ * sequence increment and a few absolute buffer writes and neither allocates nor formats. {@link #dump()} decodes
+ * the records still in the ring into a timeline, oldest first.
+ * <p>
+ * The events are recorded from the putFrame, upload and callback threads without locking. The sequence of each
+ * record is kept apart from the ring and published with a release write once the record is written, so the dump
+ * only decodes complete records. The dump is best effort: the records being overwritten while it runs are skipped.
+ */
+public final class FlightRecorder {
+    /**
+     * Default number of the events kept
+     */
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    /**
+     * Recorded events
+     */
+    public enum Event {
+        PUT_FRAME,
+        PUT_FRAME_FAILED,
+        DATA_AVAILABLE,
+        SESSION_START,
+        SESSION_END,
+        STREAM_TERMINATED,
+        ACK,
+        DROPPED_FRAME,
+        DROPPED_FRAGMENT,
+        STALE_FRAGMENT,
+        STREAM_ERROR,
+        LATENCY_PRESSURE,
+        CONNECTION_STALE,
+        BUFFER_UNDERFLOW
+    }
+
+    private static final Event[] EVENTS = Event.values();
+    private static final String[] ACK_TYPES = { "UNDEFINED", "BUFFERING", "RECEIVED", "PERSISTED", "ERROR", "IDLE" };
+
+    // Record layout
+    private static final int TIME = 0;
+    private static final int EVENT = 8;
+    private static final int FLAGS = 10;
+    private static final int VALUE = 12;
+    private static final int FIRST = 16;
+    private static final int SECOND = 24;
+    private static final int THIRD = 32;
+    private static final int RECORD_SIZE = 40;
+    private static final long IN_PROGRESS = -1;
+
+    private final ByteBuffer mRecords;
+    private final AtomicLongArray mSequences;
+    private final int mMask;
+    private final AtomicLong mNextSequence = new AtomicLong();
+    private final long mStartTimeInMillis;
+    private final long mStartTimeInNanos;
+
+    /**
+     * @param capacity number of the latest events kept, a power of two
+     */
+    public FlightRecorder(final int capacity) {
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "Capacity must be a power of two");
+        mMask = capacity - 1;
+        mRecords = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+        mSequences = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            mSequences.set(slot, IN_PROGRESS);
+        }
+
+        mStartTimeInMillis = System.currentTimeMillis();
+        mStartTimeInNanos = System.nanoTime();
+    }
+
+    /**
+     * @return Number of the events recorded so far, including the overwritten ones
+     */
+    public long getEventCount() {
+        return mNextSequence.get();
+    }
+
+    /**
+     * Records a frame put into the stream
+     *
+     * @param size size of the frame data in bytes
+     * @param flags {@link com.amazonaws.kinesisvideo.producer.FrameFlags} of the frame
+     * @param presentationTs presentation timestamp in 100ns
+     * @param decodingTs decoding timestamp in 100ns
+     * @param duration duration of the frame in 100ns
+     */
+    public void onPutFrame(final int size, final int flags, final long presentationTs, final long decodingTs,
+                           final long duration) {
+        record(Event.PUT_FRAME, flags, size, presentationTs, decodingTs, duration);
+    }
+
+    /**
+     * Records a putFrame the native producer failed
+     */
+    public void onPutFrameFailed(final long presentationTs, final int statusCode) {
+        record(Event.PUT_FRAME_FAILED, 0, statusCode, presentationTs, 0, 0);
+    }
+
+    /**
+     * Records a data available notification of an upload session
+     */
+    public void onDataAvailable(final long uploadHandle, final long duration, final long availableSize) {
+        record(Event.DATA_AVAILABLE, 0, 0, uploadHandle, duration, availableSize);
+    }
+
+    public void onSessionStart(final long uploadHandle) {
+        record(Event.SESSION_START, 0, 0, uploadHandle, 0, 0);
+    }
+
+    public void onSessionEnd(final long uploadHandle) {
+        record(Event.SESSION_END, 0, 0, uploadHandle, 0, 0);
+    }
+
+    public void onStreamTerminated(final long uploadHandle, final int statusCode) {
+        record(Event.STREAM_TERMINATED, 0, statusCode, uploadHandle, 0, 0);
+    }
+
+    /**
+     * Records a fragment ack
+     *
+     * @param ackType {@link com.amazonaws.kinesisvideo.producer.FragmentAckType} int type of the ack
+     * @param timecode fragment timecode of the ack in 100ns
+     * @param result service call result of the ERROR acks
+     */
+    public void onAck(final int ackType, final long timecode, final int result) {
+        record(Event.ACK, ackType, result, timecode, 0, 0);
+    }
+
+    public void onDroppedFrame(final long timecode) {
+        record(Event.DROPPED_FRAME, 0, 0, timecode, 0, 0);
+    }
+
+    public void onDroppedFragment(final long timecode) {
+        record(Event.DROPPED_FRAGMENT, 0, 0, timecode, 0, 0);
+    }
+
+    public void onStaleFragment(final long timecode, final long ackWaitDuration) {
+        record(Event.STALE_FRAGMENT, 0, 0, timecode, ackWaitDuration, 0);
+    }
+
+    public void onStreamError(final long timecode, final long statusCode) {
+        record(Event.STREAM_ERROR, 0, 0, timecode, statusCode, 0);
+    }
+
+    public void onLatencyPressure(final long duration) {
+        record(Event.LATENCY_PRESSURE, 0, 0, duration, 0, 0);
+    }
+
+    public void onConnectionStale(final long lastAckDuration) {
+        record(Event.CONNECTION_STALE, 0, 0, lastAckDuration, 0, 0);
+    }
+
+    public void onBufferUnderflow() {
+        record(Event.BUFFER_UNDERFLOW, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Decodes the events in the ring, oldest first, one per line with the time of the event, the milliseconds
+     * since the previous one and the fields of the event. The timestamps are in 100ns.
+     */
+    @Nonnull
+    public String dump() {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        final StringBuilder builder = new StringBuilder();
+        final long next = mNextSequence.get();
+        long previousTime = 0;
+        for (long sequence = Math.max(0, next - mMask - 1); sequence < next; sequence++) {
+            final int slot = slotOf(sequence);
+            if (mSequences.get(slot) != sequence) {
+                continue;
+            }
+
+            final int record = slot * RECORD_SIZE;
+
+            final long time = mRecords.getLong(record + TIME);
+            final int event = mRecords.getShort(record + EVENT);
+            final int flags = mRecords.getShort(record + FLAGS);
+            final int value = mRecords.getInt(record + VALUE);
+            final long first = mRecords.getLong(record + FIRST);
+            final long second = mRecords.getLong(record + SECOND);
+            final long third = mRecords.getLong(record + THIRD);
+            if (mSequences.get(slot) != sequence || event < 0 || event >= EVENTS.length) {
+                // Overwritten while reading
+                continue;
+            }
+
+            builder.append(dateFormat.format(new Date(mStartTimeInMillis
+                    + TimeUnit.NANOSECONDS.toMillis(time - mStartTimeInNanos))));
+            builder.append(String.format(Locale.US, " %+10.3f ",
+                    previousTime == 0 ? 0 : (time - previousTime) / 1000000.0));
+            builder.append(EVENTS[event].name()).append(' ');
+            appendFields(builder, EVENTS[event], flags, value, first, second, third);
+            builder.append('\n');
+            previousTime = time;
+        }
+
+        return builder.toString();
+    }
+
+    private static void appendFields(final StringBuilder builder, final Event event, final int flags,
+                                     final int value, final long first, final long second, final long third) {
+        switch (event) {
+            case PUT_FRAME:
+                builder.append(String.format(Locale.US, "size=%d flags=%d pts=%d dts=%d duration=%d",
+                        value, flags, first, second, third));
+                break;
+            case PUT_FRAME_FAILED:
+                builder.append(String.format(Locale.US, "pts=%d status=0x%08x", first, value));
+                break;
+            case DATA_AVAILABLE:
+                builder.append(String.format(Locale.US, "uploadHandle=%d duration=%d size=%d",
+                        first, second, third));
+                break;
+            case SESSION_START:
+            case SESSION_END:
+                builder.append(String.format(Locale.US, "uploadHandle=%d", first));
+                break;
+            case STREAM_TERMINATED:
+                builder.append(String.format(Locale.US, "uploadHandle=%d status=0x%08x", first, value));
+                break;
+            case ACK:
+                builder.append(String.format(Locale.US, "type=%s timecode=%d result=%d",
+                        flags >= 0 && flags < ACK_TYPES.length ? ACK_TYPES[flags] : String.valueOf(flags),
+                        first, value));
+                break;
+            case DROPPED_FRAME:
+            case DROPPED_FRAGMENT:
+                builder.append(String.format(Locale.US, "timecode=%d", first));
+                break;
+            case STALE_FRAGMENT:
+                builder.append(String.format(Locale.US, "timecode=%d ackWaitDuration=%d", first, second));
+                break;
+            case STREAM_ERROR:
+                builder.append(String.format(Locale.US, "timecode=%d status=0x%08x", first, second));
+                break;
+            case LATENCY_PRESSURE:
+                builder.append(String.format(Locale.US, "duration=%d", first));
+                break;
+            case CONNECTION_STALE:
+                builder.append(String.format(Locale.US, "lastAckDuration=%d", first));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void record(@Nonnull final Event event, final int flags, final int value, final long first,
+                        final long second, final long third) {
+        checkNotNull(event);
+        final long sequence = mNextSequence.getAndIncrement();
+        final int slot = slotOf(sequence);
+        final int record = slot * RECORD_SIZE;
+        mSequences.set(slot, IN_PROGRESS);
+        mRecords.putLong(record + TIME, System.nanoTime());
+        mRecords.putShort(record + EVENT, (short) event.ordinal());
+        mRecords.putShort(record + FLAGS, (short) flags);
+        mRecords.putInt(record + VALUE, value);
+        mRecords.putLong(record + FIRST, first);
+        mRecords.putLong(record + SECOND, second);
+        mRecords.putLong(record + THIRD, third);
+        mSequences.lazySet(slot, sequence);
+    }
+
+    private int slotOf(final long sequence) {
+        return (int) (sequence & mMask);
+    }
+}
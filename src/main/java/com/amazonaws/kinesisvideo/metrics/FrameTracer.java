@@ -0,0 +1,260 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.NANOS_IN_A_TIME_UNIT;
+
+/**
+ * Sampled tracing of the frames of a stream through the stages of the pipeline, see {@link TraceStage}.
+ * <p>
+ * One in every sample interval frames is traced. Its stages are stamped with {@link System#nanoTime()} into a
+ * lock-free ring of the latest traces and the time from the previous stamped stage is recorded in the
+ * {@code trace_<stage>_us} histograms of the stream, which the metrics exporters expose as the per-stage latency
+ * breakdown. {@link #dump()} prints the traces still in the ring. The frames which aren't sampled only pay for
+ * an increment.
+ * <p>
+ * The tracing is best effort: a stage stamped while its trace is being overwritten is lost. The upload stages
+ * assume a single upload reader per stream at a time. The ack stages are only stamped for the key frames as
+ * the acks carry the timecode of the fragment they start.
+ */
+public final class FrameTracer {
+    /**
+     * Default number of the traces kept
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Sequence returned for the frames which aren't traced
+     */
+    public static final long NOT_TRACED = -1;
+
+    private static final TraceStage[] STAGES = TraceStage.values();
+    private static final int SEQUENCE = 0;
+    private static final int TIMECODE = 1;
+    private static final int FLAGS = 2;
+    private static final int FIRST_STAGE = 3;
+    private static final int RECORD_SIZE = FIRST_STAGE + STAGES.length;
+    private static final long IN_PROGRESS = -1;
+    private static final long KEY_FRAME = 1;
+    private static final long MAX_SOURCE_LAG_IN_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final int mSampleInterval;
+    private final int mMask;
+    private final AtomicLongArray mRecords;
+    private final LatencyHistogram[] mStageLatencies = new LatencyHistogram[STAGES.length];
+    private final AtomicLong mFrames = new AtomicLong();
+    private final AtomicLong mNextSequence = new AtomicLong();
+    private final AtomicLong mSinkTime = new AtomicLong();
+
+    // Only touched by the upload reader
+    private volatile long mReadCursor;
+    private volatile long mWriteCursor;
+
+    /**
+     * @param registry registry of the stream to record the stage latencies in
+     * @param sampleInterval one in how many frames is traced
+     * @param capacity number of the latest traces kept, a power of two
+     */
+    public FrameTracer(@Nonnull final MetricsRegistry registry, final int sampleInterval, final int capacity) {
+        checkNotNull(registry);
+        checkArgument(sampleInterval > 0, "Sample interval must be positive");
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "Capacity must be a power of two");
+        mSampleInterval = sampleInterval;
+        mMask = capacity - 1;
+        mRecords = new AtomicLongArray(capacity * RECORD_SIZE);
+        for (int stage = 1; stage < STAGES.length; stage++) {
+            mStageLatencies[stage] = registry.histogram("trace_" + STAGES[stage].getName() + "_us");
+        }
+    }
+
+    public int getSampleInterval() {
+        return mSampleInterval;
+    }
+
+    /**
+     * Remembers the time the next frame was handed to the sink
+     */
+    public void onSink(final long time) {
+        mSinkTime.set(time);
+    }
+
+    /**
+     * Starts tracing the frame if it is sampled. Stamps the source, sink and putFrame start stages.
+     *
+     * @param timecode presentation timestamp of the frame in 100ns
+     * @param keyFrame whether the frame is a key frame
+     * @param wallClockTime the current time since the epoch in 100ns
+     * @param time {@link System#nanoTime()} now
+     * @return the sequence of the trace or {@link #NOT_TRACED}
+     */
+    public long beginFrame(final long timecode, final boolean keyFrame, final long wallClockTime, final long time) {
+        final long sinkTime = mSinkTime.getAndSet(0);
+        if (mFrames.getAndIncrement() % mSampleInterval != 0) {
+            return NOT_TRACED;
+        }
+
+        final long sequence = mNextSequence.getAndIncrement();
+        final int record = recordOf(sequence);
+        mRecords.set(record + SEQUENCE, IN_PROGRESS);
+        mRecords.set(record + TIMECODE, timecode);
+        mRecords.set(record + FLAGS, keyFrame ? KEY_FRAME : 0);
+        for (int stage = 0; stage < STAGES.length; stage++) {
+            mRecords.set(record + FIRST_STAGE + stage, 0);
+        }
+
+        mRecords.set(record + SEQUENCE, sequence);
+
+        // The timestamps of the live sources are their capture time
+        final long sourceLag = (wallClockTime - timecode) * NANOS_IN_A_TIME_UNIT;
+        if (sourceLag >= 0 && sourceLag < MAX_SOURCE_LAG_IN_NANOS) {
+            stamp(sequence, TraceStage.SOURCE, (sinkTime != 0 ? sinkTime : time) - sourceLag);
+        }
+
+        if (sinkTime != 0) {
+            stamp(sequence, TraceStage.SINK, sinkTime);
+        }
+
+        stamp(sequence, TraceStage.PUT_FRAME_START, time);
+        return sequence;
+    }
+
+    /**
+     * Stamps a stage of a trace once. Ignored if the trace has been overwritten.
+     */
+    public void stamp(final long sequence, @Nonnull final TraceStage stage, final long time) {
+        if (sequence == NOT_TRACED) {
+            return;
+        }
+
+        final int record = recordOf(sequence);
+        if (mRecords.get(record + SEQUENCE) != sequence
+                || !mRecords.compareAndSet(record + FIRST_STAGE + stage.ordinal(), 0, time)) {
+            return;
+        }
+
+        for (int previous = stage.ordinal() - 1; previous >= 0; previous--) {
+            final long previousTime = mRecords.get(record + FIRST_STAGE + previous);
+            if (previousTime != 0) {
+                mStageLatencies[stage.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(time - previousTime));
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Whether there are traced frames the upload reader hasn't read yet
+     */
+    public boolean hasPendingReads() {
+        return mReadCursor < mNextSequence.get();
+    }
+
+    /**
+     * Stamps the upload read stage of the traced frames before the read position
+     *
+     * @param readTimecode timecode of the read position in 100ns
+     * @param time {@link System#nanoTime()} now
+     */
+    public void onUploadRead(final long readTimecode, final long time) {
+        final long next = mNextSequence.get();
+        long cursor = Math.max(mReadCursor, next - mMask - 1);
+        while (cursor < next) {
+            final int record = recordOf(cursor);
+            final long sequence = mRecords.get(record + SEQUENCE);
+            if (sequence == IN_PROGRESS || sequence == cursor && mRecords.get(record + TIMECODE) >= readTimecode) {
+                break;
+            }
+
+            stamp(cursor, TraceStage.UPLOAD_READ, time);
+            cursor++;
+        }
+
+        mReadCursor = cursor;
+    }
+
+    /**
+     * Stamps the socket write stage of the read traced frames as the reader asks for more data
+     *
+     * @param time {@link System#nanoTime()} now
+     */
+    public void onReadRequested(final long time) {
+        final long readCursor = mReadCursor;
+        for (long cursor = Math.max(mWriteCursor, readCursor - mMask - 1); cursor < readCursor; cursor++) {
+            stamp(cursor, TraceStage.SOCKET_WRITE, time);
+        }
+
+        mWriteCursor = readCursor;
+    }
+
+    /**
+     * Stamps an ack stage of the traced key frame starting the acked fragment
+     *
+     * @param stage {@link TraceStage#ACK_BUFFERING}, {@link TraceStage#ACK_RECEIVED} or
+     *              {@link TraceStage#ACK_PERSISTED}
+     * @param timecode fragment timecode of the ack in 100ns
+     * @param time {@link System#nanoTime()} now
+     */
+    public void onAck(@Nonnull final TraceStage stage, final long timecode, final long time) {
+        // The acks carry the timecode in milliseconds
+        final long key = timecode / HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+        final long next = mNextSequence.get();
+        for (long sequence = next - 1; sequence >= 0 && sequence >= next - mMask - 1; sequence--) {
+            final int record = recordOf(sequence);
+            if (mRecords.get(record + SEQUENCE) == sequence
+                    && mRecords.get(record + FLAGS) == KEY_FRAME
+                    && mRecords.get(record + TIMECODE) / HUNDREDS_OF_NANOS_IN_A_MILLISECOND == key) {
+                stamp(sequence, stage, time);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Prints the traces in the ring, oldest first, one per line with the stages in microseconds since the
+     * start of putFrame. The stages which haven't been stamped are printed as -.
+     */
+    @Nonnull
+    public String dump() {
+        final StringBuilder builder = new StringBuilder("sequence timecode key");
+        for (final TraceStage stage : STAGES) {
+            builder.append(' ').append(stage.getName());
+        }
+
+        builder.append('\n');
+        final long next = mNextSequence.get();
+        for (long sequence = Math.max(0, next - mMask - 1); sequence < next; sequence++) {
+            final int record = recordOf(sequence);
+            if (mRecords.get(record + SEQUENCE) != sequence) {
+                continue;
+            }
+
+            final long start = mRecords.get(record + FIRST_STAGE + TraceStage.PUT_FRAME_START.ordinal());
+            builder.append(sequence)
+                    .append(' ').append(mRecords.get(record + TIMECODE))
+                    .append(' ').append(mRecords.get(record + FLAGS) == KEY_FRAME);
+            for (int stage = 0; stage < STAGES.length; stage++) {
+                final long time = mRecords.get(record + FIRST_STAGE + stage);
+                builder.append(' ');
+                if (time == 0) {
+                    builder.append('-');
+                } else {
+                    builder.append(String.format(Locale.US, "%.1f", (time - start) / 1000.0));
+                }
+            }
+
+            builder.append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private int recordOf(final long sequence) {
+        return (int) (sequence & mMask) * RECORD_SIZE;
+    }
+}
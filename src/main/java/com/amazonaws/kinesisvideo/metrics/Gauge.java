@@ -0,0 +1,10 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+/**
+ * Value read when the metrics are reported, e.g. the available storage.
+ * <p>
+ * NOTE: Gauges are read on the reporting threads so they must be thread safe and cheap.
+ */
+public interface Gauge {
+    long getValue();
+}
@@ -0,0 +1,194 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Exposes metrics registries as MBeans named after the registry and its parents, e.g.
+ * {@code com.amazonaws.kinesisvideo:type=Stream,client="device",name="my-stream"}.
+ * <p>
+ * Every counter and gauge is an attribute of the same name. Histograms are exposed as the _count, _mean,
+ * _p50, _p90, _p99 and _max attributes. The attributes are read from the live metrics on every request.
+ * Failing to register a registry is logged and does not affect the client.
+ */
+public final class JmxMetricsExporter implements Closeable {
+    public static final String DOMAIN = "com.amazonaws.kinesisvideo";
+
+    private final MBeanServer mServer;
+    private final Log mLog;
+    private final Map<MetricsRegistry, ObjectName> mRegistered = new ConcurrentHashMap<MetricsRegistry, ObjectName>();
+
+    public JmxMetricsExporter(@Nonnull final Log log) {
+        this(ManagementFactory.getPlatformMBeanServer(), log);
+    }
+
+    public JmxMetricsExporter(@Nonnull final MBeanServer server, @Nonnull final Log log) {
+        mServer = checkNotNull(server);
+        mLog = checkNotNull(log);
+    }
+
+    public void register(@Nonnull final MetricsRegistry registry) {
+        checkNotNull(registry);
+        try {
+            final ObjectName objectName = objectNameOf(registry);
+            mServer.registerMBean(new RegistryMBean(registry), objectName);
+            mRegistered.put(registry, objectName);
+        } catch (final JMException e) {
+            mLog.exception(e, "Registering the metrics of %s %s with JMX failed", registry.getType(),
+                    registry.getName());
+        }
+    }
+
+    public void unregister(@Nonnull final MetricsRegistry registry) {
+        final ObjectName objectName = mRegistered.remove(checkNotNull(registry));
+        if (objectName == null) {
+            return;
+        }
+
+        try {
+            mServer.unregisterMBean(objectName);
+        } catch (final JMException e) {
+            mLog.exception(e, "Unregistering %s from JMX failed", objectName);
+        }
+    }
+
+    /**
+     * Unregisters all the registries
+     */
+    @Override
+    public void close() {
+        for (final MetricsRegistry registry : new ArrayList<MetricsRegistry>(mRegistered.keySet())) {
+            unregister(registry);
+        }
+    }
+
+    @Nonnull
+    private static ObjectName objectNameOf(@Nonnull final MetricsRegistry registry) throws JMException {
+        final Hashtable<String, String> properties = new Hashtable<String, String>();
+        properties.put("type", registry.getType());
+        properties.put("name", ObjectName.quote(registry.getName()));
+        for (MetricsRegistry parent = registry.getParent(); parent != null; parent = parent.getParent()) {
+            properties.put(parent.getType().toLowerCase(Locale.US), ObjectName.quote(parent.getName()));
+        }
+
+        return new ObjectName(DOMAIN, properties);
+    }
+
+    /**
+     * Reads the current values of the metrics of one registry
+     */
+    private static final class AttributeCollector implements MetricsReporter {
+        private final Map<String, Object> mAttributes = new LinkedHashMap<String, Object>();
+
+        @Override
+        public void reportCounter(@Nonnull final MetricsRegistry registry, @Nonnull final String name,
+                                  final long count) {
+            mAttributes.put(name, count);
+        }
+
+        @Override
+        public void reportGauge(@Nonnull final MetricsRegistry registry, @Nonnull final String name,
+                                final long value) {
+            mAttributes.put(name, value);
+        }
+
+        @Override
+        public void reportHistogram(@Nonnull final MetricsRegistry registry,
+                                    @Nonnull final String name,
+                                    @Nonnull final LatencyHistogram histogram) {
+            mAttributes.put(name + "_count", histogram.getCount());
+            mAttributes.put(name + "_mean", histogram.getMean());
+            mAttributes.put(name + "_p50", histogram.getPercentile(50));
+            mAttributes.put(name + "_p90", histogram.getPercentile(90));
+            mAttributes.put(name + "_p99", histogram.getPercentile(99));
+            mAttributes.put(name + "_max", histogram.getMax());
+        }
+    }
+
+    private static final class RegistryMBean implements DynamicMBean {
+        private final MetricsRegistry mRegistry;
+
+        RegistryMBean(@Nonnull final MetricsRegistry registry) {
+            mRegistry = registry;
+        }
+
+        @Override
+        public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+            final Object value = collect().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(final String[] attributes) {
+            final Map<String, Object> values = collect();
+            final AttributeList list = new AttributeList();
+            for (final String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+
+            return list;
+        }
+
+        @Override
+        public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(final AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+            for (final Map.Entry<String, Object> value : collect().entrySet()) {
+                attributes.add(new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(),
+                        value.getKey(), true, false, false));
+            }
+
+            return new MBeanInfo(RegistryMBean.class.getName(),
+                    mRegistry.getType() + " metrics of " + mRegistry.getName(),
+                    attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                    null, null, null);
+        }
+
+        private Map<String, Object> collect() {
+            final AttributeCollector collector = new AttributeCollector();
+            mRegistry.report(collector);
+            return collector.mAttributes;
+        }
+    }
+}
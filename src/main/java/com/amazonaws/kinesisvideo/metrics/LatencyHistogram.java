@@ -0,0 +1,112 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+
+/**
+ * Lock-free histogram of latencies or any other non-negative values.
+ * <p>
+ * The values are counted in log-linear buckets: every power of two is split into 8 buckets so the percentiles
+ * are within 12.5% of the recorded values. Recording takes a few atomic increments and never allocates.
+ * The percentiles are read without stopping the writers so they might miss the values being recorded meanwhile.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    private static final double PERCENT = 100.0;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     */
+    public void record(final long value) {
+        final long sanitized = Math.max(0, value);
+        mBuckets.incrementAndGet(bucketOf(sanitized));
+        mCount.incrementAndGet();
+        mSum.addAndGet(sanitized);
+
+        long max = mMax.get();
+        while (sanitized > max && !mMax.compareAndSet(max, sanitized)) {
+            max = mMax.get();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getSum() {
+        return mSum.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * @return Mean of the recorded values or 0 if there are none
+     */
+    public double getMean() {
+        final long count = mCount.get();
+        return count == 0 ? 0 : (double) mSum.get() / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile, capped by the largest recorded value.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return The percentile or 0 if there are no values
+     */
+    public long getPercentile(final double percentile) {
+        checkArgument(percentile >= 0 && percentile <= PERCENT, "Percentile must be between 0 and 100");
+
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            total += mBuckets.get(bucket);
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / PERCENT * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += mBuckets.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), mMax.get());
+            }
+        }
+
+        return mMax.get();
+    }
+
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+
+        final int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKET_COUNT;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        final long lowerBound = (SUB_BUCKET_COUNT + subBucket) * width;
+        return lowerBound > Long.MAX_VALUE - width ? Long.MAX_VALUE : lowerBound + width - 1;
+    }
+}
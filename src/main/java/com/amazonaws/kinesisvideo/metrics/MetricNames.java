@@ -0,0 +1,49 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+/**
+ * Names of the metrics the producer client and streams record
+ */
+public final class MetricNames {
+    /* client gauges read from the sampled native metrics */
+    public static final String STORAGE_SIZE_BYTES = "storage_size_bytes";
+    public static final String STORAGE_AVAILABLE_BYTES = "storage_available_bytes";
+    public static final String STORAGE_ALLOCATED_BYTES = "storage_allocated_bytes";
+    public static final String TOTAL_FRAME_RATE = "total_frame_rate";
+    public static final String TOTAL_TRANSFER_RATE_BYTES_PER_SECOND = "total_transfer_rate_bytes_per_second";
+
+    /* client gauges of the media source pacer */
+    public static final String MEDIA_SOURCES_ACTIVE = "media_sources_active";
+    public static final String MEDIA_SOURCE_OVERRUNS = "media_source_overruns";
+    public static final String MEDIA_SOURCE_SKIPPED_FRAMES = "media_source_skipped_frames";
+
+    /* stream metrics */
+    public static final String PUT_FRAME_LATENCY_US = "put_frame_latency_us";
+    public static final String FRAMES_PUT_TOTAL = "frames_put_total";
+    public static final String FRAME_BYTES_PUT_TOTAL = "frame_bytes_put_total";
+    public static final String BYTES_UPLOADED_TOTAL = "bytes_uploaded_total";
+    public static final String UPLOAD_SESSIONS_TOTAL = "upload_sessions_total";
+    public static final String ACKS_BUFFERING_TOTAL = "acks_buffering_total";
+    public static final String ACKS_RECEIVED_TOTAL = "acks_received_total";
+    public static final String ACKS_PERSISTED_TOTAL = "acks_persisted_total";
+    public static final String ACKS_ERROR_TOTAL = "acks_error_total";
+    public static final String ACKS_IDLE_TOTAL = "acks_idle_total";
+    public static final String DROPPED_FRAMES_TOTAL = "dropped_frames_total";
+    public static final String DROPPED_FRAGMENTS_TOTAL = "dropped_fragments_total";
+    public static final String STREAM_ERRORS_TOTAL = "stream_errors_total";
+    public static final String FRAGMENT_BUFFERING_LATENCY_MS = "fragment_buffering_latency_ms";
+    public static final String FRAGMENT_RECEIVED_LATENCY_MS = "fragment_received_latency_ms";
+    public static final String FRAGMENT_PERSISTED_LATENCY_MS = "fragment_persisted_latency_ms";
+    public static final String UNMATCHED_ACKS_TOTAL = "unmatched_acks_total";
+    public static final String STALE_FRAGMENTS_TOTAL = "stale_fragments_total";
+    public static final String FRAMES_PUT_PER_SECOND = "frames_put_per_second";
+    public static final String FRAME_BYTES_PUT_PER_SECOND = "frame_bytes_put_per_second";
+    public static final String BYTES_UPLOADED_PER_SECOND = "bytes_uploaded_per_second";
+    public static final String CURRENT_VIEW_DURATION_MS = "current_view_duration_ms";
+    public static final String CURRENT_VIEW_SIZE_BYTES = "current_view_size_bytes";
+    public static final String CURRENT_FRAME_RATE = "current_frame_rate";
+    public static final String CURRENT_TRANSFER_RATE_BYTES_PER_SECOND = "current_transfer_rate_bytes_per_second";
+
+    private MetricNames() {
+        throw new UnsupportedOperationException();
+    }
+}
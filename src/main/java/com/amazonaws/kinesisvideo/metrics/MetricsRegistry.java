@@ -0,0 +1,150 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Named counters, gauges and latency histograms of a client or a stream.
+ * <p>
+ * The metrics are looked up once and kept by the code updating them, so updating a metric never touches the
+ * registry. The registries form a tree of a client and its streams which the reporters walk.
+ */
+public final class MetricsRegistry {
+    public static final String CLIENT = "Client";
+    public static final String STREAM = "Stream";
+
+    private final String mType;
+    private final String mName;
+    private final MetricsRegistry mParent;
+    private final ConcurrentMap<String, Counter> mCounters = new ConcurrentHashMap<String, Counter>();
+    private final ConcurrentMap<String, Gauge> mGauges = new ConcurrentHashMap<String, Gauge>();
+    private final ConcurrentMap<String, LatencyHistogram> mHistograms =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+    private final List<MetricsRegistry> mChildren = new CopyOnWriteArrayList<MetricsRegistry>();
+
+    public MetricsRegistry(@Nonnull final String type, @Nonnull final String name) {
+        this(type, name, null);
+    }
+
+    private MetricsRegistry(@Nonnull final String type,
+                            @Nonnull final String name,
+                            @Nullable final MetricsRegistry parent) {
+        mType = checkNotNull(type);
+        mName = checkNotNull(name);
+        mParent = parent;
+    }
+
+    /**
+     * @return Kind of the measured object, e.g. {@link #CLIENT} or {@link #STREAM}
+     */
+    @Nonnull
+    public String getType() {
+        return mType;
+    }
+
+    /**
+     * @return Name of the measured object, e.g. the device or stream name
+     */
+    @Nonnull
+    public String getName() {
+        return mName;
+    }
+
+    @Nullable
+    public MetricsRegistry getParent() {
+        return mParent;
+    }
+
+    /**
+     * Returns the counter of the given name, creating it on the first call
+     */
+    @Nonnull
+    public Counter counter(@Nonnull final String name) {
+        final Counter counter = mCounters.get(checkNotNull(name));
+        if (counter != null) {
+            return counter;
+        }
+
+        final Counter newCounter = new Counter();
+        final Counter existing = mCounters.putIfAbsent(name, newCounter);
+        return existing == null ? newCounter : existing;
+    }
+
+    /**
+     * Returns the histogram of the given name, creating it on the first call
+     */
+    @Nonnull
+    public LatencyHistogram histogram(@Nonnull final String name) {
+        final LatencyHistogram histogram = mHistograms.get(checkNotNull(name));
+        if (histogram != null) {
+            return histogram;
+        }
+
+        final LatencyHistogram newHistogram = new LatencyHistogram();
+        final LatencyHistogram existing = mHistograms.putIfAbsent(name, newHistogram);
+        return existing == null ? newHistogram : existing;
+    }
+
+    /**
+     * Registers a gauge replacing the one of the same name if any
+     */
+    public void gauge(@Nonnull final String name, @Nonnull final Gauge gauge) {
+        mGauges.put(checkNotNull(name), checkNotNull(gauge));
+    }
+
+    /**
+     * Creates the registry of an object owned by this one, e.g. of a stream of a client
+     */
+    @Nonnull
+    public MetricsRegistry createChild(@Nonnull final String type, @Nonnull final String name) {
+        final MetricsRegistry child = new MetricsRegistry(type, name, this);
+        mChildren.add(child);
+        return child;
+    }
+
+    public void removeChild(@Nonnull final MetricsRegistry child) {
+        mChildren.remove(child);
+    }
+
+    @Nonnull
+    public List<MetricsRegistry> getChildren() {
+        return Collections.unmodifiableList(mChildren);
+    }
+
+    /**
+     * Reports the metrics of this registry in the order of their names
+     */
+    public void report(@Nonnull final MetricsReporter reporter) {
+        for (final Map.Entry<String, Counter> counter : new TreeMap<String, Counter>(mCounters).entrySet()) {
+            reporter.reportCounter(this, counter.getKey(), counter.getValue().getCount());
+        }
+
+        for (final Map.Entry<String, Gauge> gauge : new TreeMap<String, Gauge>(mGauges).entrySet()) {
+            reporter.reportGauge(this, gauge.getKey(), gauge.getValue().getValue());
+        }
+
+        for (final Map.Entry<String, LatencyHistogram> histogram
+                : new TreeMap<String, LatencyHistogram>(mHistograms).entrySet()) {
+            reporter.reportHistogram(this, histogram.getKey(), histogram.getValue());
+        }
+    }
+
+    /**
+     * Reports the metrics of this registry and then of all of its children
+     */
+    public void reportAll(@Nonnull final MetricsReporter reporter) {
+        report(reporter);
+        for (final MetricsRegistry child : mChildren) {
+            child.reportAll(reporter);
+        }
+    }
+}
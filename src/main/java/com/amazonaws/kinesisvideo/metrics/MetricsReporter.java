@@ -0,0 +1,18 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the metrics of the registries walked by {@link MetricsRegistry#report(MetricsReporter)}.
+ * <p>
+ * Implement this to publish the metrics to a monitoring system. {@link TextMetricsExporter} writes them as text.
+ */
+public interface MetricsReporter {
+    void reportCounter(@Nonnull MetricsRegistry registry, @Nonnull String name, long count);
+
+    void reportGauge(@Nonnull MetricsRegistry registry, @Nonnull String name, long value);
+
+    void reportHistogram(@Nonnull MetricsRegistry registry,
+                         @Nonnull String name,
+                         @Nonnull LatencyHistogram histogram);
+}
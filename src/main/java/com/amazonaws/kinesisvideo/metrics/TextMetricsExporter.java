@@ -0,0 +1,103 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Writes the metrics in the Prometheus text exposition format, one sample per line, e.g.
+ * <pre>
+ * kinesisvideo_frames_put_total{client="device",stream="my-stream"} 1200
+ * kinesisvideo_put_frame_latency_us{client="device",stream="my-stream",quantile="0.99"} 95
+ * </pre>
+ * The labels name the registry and its parents. Histograms are written as summaries with the 50th, 90th and
+ * 99th percentiles, the count, the sum and the max.
+ */
+public final class TextMetricsExporter implements MetricsReporter {
+    private static final String PREFIX = "kinesisvideo_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final double PERCENT = 100.0;
+
+    private final StringBuilder mBuilder;
+
+    public TextMetricsExporter() {
+        this(new StringBuilder());
+    }
+
+    public TextMetricsExporter(@Nonnull final StringBuilder builder) {
+        mBuilder = checkNotNull(builder);
+    }
+
+    /**
+     * @return The text of the registry and all of its children
+     */
+    @Nonnull
+    public static String export(@Nonnull final MetricsRegistry registry) {
+        final TextMetricsExporter exporter = new TextMetricsExporter();
+        registry.reportAll(exporter);
+        return exporter.toString();
+    }
+
+    @Override
+    public void reportCounter(@Nonnull final MetricsRegistry registry, @Nonnull final String name, final long count) {
+        appendSample(registry, name, null, count);
+    }
+
+    @Override
+    public void reportGauge(@Nonnull final MetricsRegistry registry, @Nonnull final String name, final long value) {
+        appendSample(registry, name, null, value);
+    }
+
+    @Override
+    public void reportHistogram(@Nonnull final MetricsRegistry registry,
+                                @Nonnull final String name,
+                                @Nonnull final LatencyHistogram histogram) {
+        for (final double quantile : QUANTILES) {
+            appendSample(registry, name, String.valueOf(quantile), histogram.getPercentile(quantile * PERCENT));
+        }
+
+        appendSample(registry, name + "_count", null, histogram.getCount());
+        appendSample(registry, name + "_sum", null, histogram.getSum());
+        appendSample(registry, name + "_max", null, histogram.getMax());
+    }
+
+    @Override
+    public String toString() {
+        return mBuilder.toString();
+    }
+
+    private void appendSample(@Nonnull final MetricsRegistry registry,
+                              @Nonnull final String name,
+                              final String quantile,
+                              final long value) {
+        mBuilder.append(PREFIX).append(name).append('{');
+        appendLabels(registry);
+        if (quantile != null) {
+            mBuilder.append(",quantile=\"").append(quantile).append('"');
+        }
+
+        mBuilder.append("} ").append(value).append('\n');
+    }
+
+    private void appendLabels(@Nonnull final MetricsRegistry registry) {
+        if (registry.getParent() != null) {
+            appendLabels(registry.getParent());
+            mBuilder.append(',');
+        }
+
+        mBuilder.append(registry.getType().toLowerCase(Locale.US)).append("=\"");
+        for (int i = 0; i < registry.getName().length(); i++) {
+            final char c = registry.getName().charAt(i);
+            if (c == '\\' || c == '"') {
+                mBuilder.append('\\').append(c);
+            } else if (c == '\n') {
+                mBuilder.append("\\n");
+            } else {
+                mBuilder.append(c);
+            }
+        }
+
+        mBuilder.append('"');
+    }
+}
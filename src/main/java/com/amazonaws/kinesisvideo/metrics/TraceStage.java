@@ -0,0 +1,59 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Stages of the pipeline a traced frame goes through, in order
+ */
+public enum TraceStage {
+    /**
+     * The media source timestamped the frame. Derived from the presentation timestamp, only for wall clock ones.
+     */
+    SOURCE("source"),
+    /**
+     * The media source handed the frame to the producer stream sink
+     */
+    SINK("sink"),
+    /**
+     * The frame is passed to the native putFrame
+     */
+    PUT_FRAME_START("put_frame_start"),
+    /**
+     * The native putFrame returned
+     */
+    PUT_FRAME_END("put_frame_end"),
+    /**
+     * The upload reader read past the start of the frame after it waited in the content store
+     */
+    UPLOAD_READ("upload_read"),
+    /**
+     * The upload reader came back for more data after writing the read data to the socket
+     */
+    SOCKET_WRITE("socket_write"),
+    /**
+     * The BUFFERING ack of the fragment started by the frame arrived
+     */
+    ACK_BUFFERING("ack_buffering"),
+    /**
+     * The RECEIVED ack of the fragment started by the frame arrived
+     */
+    ACK_RECEIVED("ack_received"),
+    /**
+     * The PERSISTED ack of the fragment started by the frame arrived
+     */
+    ACK_PERSISTED("ack_persisted");
+
+    private final String mName;
+
+    TraceStage(@Nonnull final String name) {
+        mName = name;
+    }
+
+    /**
+     * @return Name of the stage used in the metric names
+     */
+    @Nonnull
+    public String getName() {
+        return mName;
+    }
+}
@@ -78,13 +78,17 @@ public class KinesisVideoFrame {
         return mData.remaining();
     }
 
+    /**
+     * @return The frame data, copied into a direct buffer when it is on the heap. The frame data is left unchanged.
+     */
     @Nonnull
     public ByteBuffer getData() {
         ByteBuffer byteBuffer = mData;
         try {
             if (mData.hasArray()) {
                 byteBuffer = ByteBuffer.allocateDirect(mData.remaining());
-                byteBuffer.put(mData);
+                byteBuffer.put(mData.duplicate());
+                byteBuffer.flip();
             }
         } catch(final Exception e) {
             // Some Android implementations throw when accessing hasArray() API. We will ignore it
@@ -92,4 +96,12 @@ public class KinesisVideoFrame {
 
         return byteBuffer;
     }
+
+    /**
+     * @return Read-only view of the frame data, not copied whether it is on the heap or direct
+     */
+    @Nonnull
+    public ByteBuffer getReadOnlyData() {
+        return mData.asReadOnlyBuffer();
+    }
 }
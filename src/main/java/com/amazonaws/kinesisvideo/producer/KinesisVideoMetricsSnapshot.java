@@ -0,0 +1,104 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Immutable metrics of the client and of all of its streams taken at once by the metrics sampler.
+ *
+ * The snapshots are published as a whole so the client and stream values of a snapshot are consistent with
+ * each other. {@link #EMPTY} is returned until the first sample is taken.
+ */
+public final class KinesisVideoMetricsSnapshot {
+    /**
+     * Snapshot with no streams and all the values 0
+     */
+    public static final KinesisVideoMetricsSnapshot EMPTY = new KinesisVideoMetricsSnapshot(0,
+            new KinesisVideoMetrics(),
+            Collections.<String, KinesisVideoStreamMetricsSnapshot>emptyMap());
+
+    private final long sampleTimeNanos;
+    private final long contentStoreSize;
+    private final long contentStoreAvailableSize;
+    private final long contentStoreAllocatedSize;
+    private final long totalContentViewSize;
+    private final long totalFrameRate;
+    private final long totalTransferRate;
+    private final Map<String, KinesisVideoStreamMetricsSnapshot> streamMetrics;
+
+    /**
+     * Creates the snapshot of the client
+     *
+     * @param sampleTimeNanos {@link System#nanoTime()} of the sample
+     * @param metrics native metrics of the client, copied
+     * @param streamMetrics snapshots of the streams by the stream name, copied
+     */
+    public KinesisVideoMetricsSnapshot(final long sampleTimeNanos,
+                                       @Nonnull final KinesisVideoMetrics metrics,
+                                       @Nonnull final Map<String, KinesisVideoStreamMetricsSnapshot> streamMetrics) {
+        this.sampleTimeNanos = sampleTimeNanos;
+        this.contentStoreSize = metrics.getContentStoreSize();
+        this.contentStoreAvailableSize = metrics.getContentStoreAvailableSize();
+        this.contentStoreAllocatedSize = metrics.getContentStoreAllocatedSize();
+        this.totalContentViewSize = metrics.getTotalContentViewSize();
+        this.totalFrameRate = metrics.getTotalFrameRate();
+        this.totalTransferRate = metrics.getTotalTransferRate();
+        this.streamMetrics = Collections.unmodifiableMap(
+                new LinkedHashMap<String, KinesisVideoStreamMetricsSnapshot>(checkNotNull(streamMetrics)));
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} of the sample or 0 for {@link #EMPTY}
+     */
+    public long getSampleTimeNanos() {
+        return sampleTimeNanos;
+    }
+
+    public long getContentStoreSize() {
+        return contentStoreSize;
+    }
+
+    public long getContentStoreAvailableSize() {
+        return contentStoreAvailableSize;
+    }
+
+    public long getContentStoreAllocatedSize() {
+        return contentStoreAllocatedSize;
+    }
+
+    public long getTotalContentViewSize() {
+        return totalContentViewSize;
+    }
+
+    public long getTotalFrameRate() {
+        return totalFrameRate;
+    }
+
+    /**
+     * Returns the total transfer rate for all streams in bytes per second
+     */
+    public long getTotalTransferRate() {
+        return totalTransferRate;
+    }
+
+    /**
+     * Returns the snapshots of all the streams by the stream name
+     */
+    @Nonnull
+    public Map<String, KinesisVideoStreamMetricsSnapshot> getStreamMetrics() {
+        return streamMetrics;
+    }
+
+    /**
+     * Returns the snapshot of the stream or null if the stream was created after the sample
+     */
+    @Nullable
+    public KinesisVideoStreamMetricsSnapshot getStreamMetrics(@Nonnull final String streamName) {
+        return streamMetrics.get(streamName);
+    }
+}
@@ -1,5 +1,7 @@
 package com.amazonaws.kinesisvideo.producer;
 
+import com.amazonaws.kinesisvideo.metrics.MetricsRegistry;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -165,4 +167,16 @@ public interface KinesisVideoProducer {
     @Nonnull
     KinesisVideoMetrics getMetrics()
             throws ProducerException;
+
+    /**
+     * Returns the client and stream metrics of the latest periodic sample. Doesn't call into the native producer.
+     */
+    @Nonnull
+    KinesisVideoMetricsSnapshot getMetricsSnapshot();
+
+    /**
+     * Returns the registry of the client metrics. The registries of the streams are its children.
+     */
+    @Nonnull
+    MetricsRegistry getMetricsRegistry();
 }
\ No newline at end of file
@@ -1,6 +1,12 @@
 package com.amazonaws.kinesisvideo.producer;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import com.amazonaws.kinesisvideo.metrics.FlightRecorder;
+import com.amazonaws.kinesisvideo.metrics.FrameTracer;
+import com.amazonaws.kinesisvideo.metrics.MetricsRegistry;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -37,6 +43,20 @@ public interface KinesisVideoProducerStream extends StreamCallbacks {
     @Nonnull
     InputStream getDataStream(final long uploadHandle) throws ProducerException;
 
+    /**
+     * Returns a channel view of the upload session data.
+     *
+     * The returned channel is backed by the same reader as {@link #getDataStream(long)} for the upload handle
+     * so the caller should use one or the other, not both. Reading into a heap {@link ByteBuffer} fills the
+     * buffer's backing array directly without an intermediate copy.
+     *
+     * @param uploadHandle Client stream upload handle.
+     * @return {@link ReadableByteChannel} for retrieving the data
+     * @throws ProducerException
+     */
+    @Nonnull
+    ReadableByteChannel getDataChannel(final long uploadHandle) throws ProducerException;
+
     /**
      * Get stream data from the buffer.
      *
@@ -53,6 +73,20 @@ public interface KinesisVideoProducerStream extends StreamCallbacks {
     void getStreamData(final @Nonnull byte[] fillBuffer, int offset, int length, @Nonnull final ReadResult readResult)
             throws ProducerException;
 
+    /**
+     * Get stream data from the buffer into the remaining space of the byte buffer.
+     *
+     * The buffer position is advanced by the number of bytes read.
+     *
+     * @param fillBuffer
+     *         The buffer to fill
+     * @param readResult
+     *         The result of the read
+     * @throws ProducerException
+     */
+    void getStreamData(final @Nonnull ByteBuffer fillBuffer, @Nonnull final ReadResult readResult)
+            throws ProducerException;
+
     /**
      * Puts a frame into the stream.
      */
@@ -115,4 +149,36 @@ public interface KinesisVideoProducerStream extends StreamCallbacks {
      */
     @Nonnull
     KinesisVideoStreamMetrics getMetrics() throws ProducerException;
+
+    /**
+     * Returns the stream metrics of the latest periodic sample. Doesn't call into the native producer.
+     * @return Sampled stream metrics or null if the stream hasn't been sampled yet
+     */
+    @Nullable
+    KinesisVideoStreamMetricsSnapshot getMetricsSnapshot();
+
+    /**
+     * Returns the metrics describing how the stream data is being drained by the reader threads.
+     * @return Stream read metrics
+     */
+    @Nonnull
+    KinesisVideoStreamReadMetrics getReadMetrics();
+
+    /**
+     * Returns the registry of the stream metrics
+     */
+    @Nonnull
+    MetricsRegistry getMetricsRegistry();
+
+    /**
+     * Returns the tracer of the sampled frames or null if the tracing is disabled
+     */
+    @Nullable
+    FrameTracer getFrameTracer();
+
+    /**
+     * Returns the recorder of the latest events of the stream or null if it is disabled
+     */
+    @Nullable
+    FlightRecorder getFlightRecorder();
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+
+/**
+ * Immutable metrics of a stream taken by the metrics sampler.
+ *
+ * The native metrics are copied from {@link KinesisVideoStreamMetrics}. The frame and byte totals are counted by
+ * the Java stream and the rates per second are derived from their change since the previous sample.
+ */
+public final class KinesisVideoStreamMetricsSnapshot {
+    private static final double NANOS_IN_A_SECOND = 1000000000.0;
+
+    private final String streamName;
+    private final long currentViewDuration;
+    private final long overallViewDuration;
+    private final long currentViewSize;
+    private final long overallViewSize;
+    private final double currentFrameRate;
+    private final long currentTransferRate;
+    private final long framesPut;
+    private final long frameBytesPut;
+    private final long bytesUploaded;
+    private final double framesPutPerSecond;
+    private final double frameBytesPutPerSecond;
+    private final double bytesUploadedPerSecond;
+
+    /**
+     * Creates the snapshot of the stream
+     *
+     * @param streamName name of the stream
+     * @param streamMetrics native metrics of the stream, copied
+     * @param framesPut frames put since the stream was created
+     * @param frameBytesPut frame bytes put since the stream was created
+     * @param bytesUploaded bytes read for the upload since the stream was created
+     * @param previous snapshot of the previous sample or null if this is the first one
+     * @param elapsedNanos time since the previous sample
+     */
+    public KinesisVideoStreamMetricsSnapshot(@Nonnull final String streamName,
+                                             @Nonnull final KinesisVideoStreamMetrics streamMetrics,
+                                             final long framesPut,
+                                             final long frameBytesPut,
+                                             final long bytesUploaded,
+                                             @Nullable final KinesisVideoStreamMetricsSnapshot previous,
+                                             final long elapsedNanos) {
+        this.streamName = checkNotNull(streamName);
+        this.currentViewDuration = streamMetrics.getCurrentViewDurationInTimeUnits();
+        this.overallViewDuration = streamMetrics.getOverallViewDurationInTimeUnits();
+        this.currentViewSize = streamMetrics.getCurrentViewSize();
+        this.overallViewSize = streamMetrics.getOverallViewSize();
+        this.currentFrameRate = streamMetrics.getCurrentFrameRate();
+        this.currentTransferRate = streamMetrics.getCurrentTransferRate();
+        this.framesPut = framesPut;
+        this.frameBytesPut = frameBytesPut;
+        this.bytesUploaded = bytesUploaded;
+
+        if (previous == null || elapsedNanos <= 0) {
+            this.framesPutPerSecond = 0;
+            this.frameBytesPutPerSecond = 0;
+            this.bytesUploadedPerSecond = 0;
+        } else {
+            this.framesPutPerSecond = ratePerSecond(framesPut - previous.framesPut, elapsedNanos);
+            this.frameBytesPutPerSecond = ratePerSecond(frameBytesPut - previous.frameBytesPut, elapsedNanos);
+            this.bytesUploadedPerSecond = ratePerSecond(bytesUploaded - previous.bytesUploaded, elapsedNanos);
+        }
+    }
+
+    private static double ratePerSecond(final long delta, final long elapsedNanos) {
+        return delta * NANOS_IN_A_SECOND / elapsedNanos;
+    }
+
+    @Nonnull
+    public String getStreamName() {
+        return streamName;
+    }
+
+    /**
+     * Returns the duration from current to head in 100ns
+     */
+    public long getCurrentViewDurationInTimeUnits() {
+        return currentViewDuration;
+    }
+
+    public long getCurrentViewDurationInMillis() {
+        return currentViewDuration / HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+    }
+
+    /**
+     * Returns the entire content view duration in 100ns
+     */
+    public long getOverallViewDurationInTimeUnits() {
+        return overallViewDuration;
+    }
+
+    public long getOverallViewDurationInMillis() {
+        return overallViewDuration / HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+    }
+
+    public long getCurrentViewSize() {
+        return currentViewSize;
+    }
+
+    public long getOverallViewSize() {
+        return overallViewSize;
+    }
+
+    /**
+     * Returns the frame rate measured by the native producer
+     */
+    public double getCurrentFrameRate() {
+        return currentFrameRate;
+    }
+
+    /**
+     * Returns the transfer rate in bytes per second measured by the native producer
+     */
+    public long getCurrentTransferRate() {
+        return currentTransferRate;
+    }
+
+    public long getFramesPut() {
+        return framesPut;
+    }
+
+    public long getFrameBytesPut() {
+        return frameBytesPut;
+    }
+
+    public long getBytesUploaded() {
+        return bytesUploaded;
+    }
+
+    /**
+     * Returns the frames put per second since the previous sample
+     */
+    public double getFramesPutPerSecond() {
+        return framesPutPerSecond;
+    }
+
+    /**
+     * Returns the frame bytes put per second since the previous sample
+     */
+    public double getFrameBytesPutPerSecond() {
+        return frameBytesPutPerSecond;
+    }
+
+    /**
+     * Returns the bytes read for the upload per second since the previous sample
+     */
+    public double getBytesUploadedPerSecond() {
+        return bytesUploadedPerSecond;
+    }
+}
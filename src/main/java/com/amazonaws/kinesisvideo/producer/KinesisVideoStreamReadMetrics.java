@@ -0,0 +1,80 @@
+package com.amazonaws.kinesisvideo.producer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing how efficiently the stream data is being drained from the native producer.
+ *
+ * NOTE: The counters are updated on the reader threads without taking any locks and are accumulated
+ * across all of the upload handles of the stream.
+ */
+public class KinesisVideoStreamReadMetrics {
+    private static final double BYTES_IN_A_MEGABYTE = 1024.0 * 1024.0;
+
+    private final AtomicLong readCalls = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong wakeups = new AtomicLong();
+    private final long startTimeNanos = System.nanoTime();
+
+    /**
+     * Records a single read call into the native producer
+     *
+     * @param readBytes number of bytes returned by the call
+     */
+    public void recordRead(final int readBytes) {
+        readCalls.incrementAndGet();
+        if (readBytes > 0) {
+            bytesRead.addAndGet(readBytes);
+        }
+    }
+
+    /**
+     * Records a reader thread being woken up after waiting for the data availability notification
+     */
+    public void recordWakeup() {
+        wakeups.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of read calls made into the native producer
+     * @return number of native read calls
+     */
+    public long getReadCalls() {
+        return readCalls.get();
+    }
+
+    /**
+     * Returns the total number of bytes read from the native producer
+     * @return bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Returns the number of times a reader thread has been woken up from the idle wait
+     * @return number of wakeups
+     */
+    public long getWakeups() {
+        return wakeups.get();
+    }
+
+    /**
+     * Returns the average number of native read calls it took to drain a megabyte of the stream data
+     * @return reads per megabyte or 0 if nothing has been read yet
+     */
+    public double getReadsPerMegabyte() {
+        final long bytes = bytesRead.get();
+        return bytes == 0 ? 0 : readCalls.get() * BYTES_IN_A_MEGABYTE / bytes;
+    }
+
+    /**
+     * Returns the average number of reader wakeups per second since the metrics were created
+     * @return wakeups per second
+     */
+    public double getWakeupsPerSecond() {
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos);
+        return elapsedMillis == 0 ? 0 : wakeups.get() * 1000.0 / elapsedMillis;
+    }
+}
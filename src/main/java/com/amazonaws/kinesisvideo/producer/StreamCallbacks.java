@@ -53,6 +53,16 @@ public interface StreamCallbacks
      */
     void droppedFragmentReport(long fragmentTimecode) throws ProducerException;
 
+    /**
+     * Reports a fragment whose PERSISTED ACK hasn't been received within the connection staleness duration.
+     * Reported once per fragment, ignored by default.
+     * @param fragmentTimecode Fragment time code of the stale fragment.
+     * @param ackWaitDuration The duration since the first frame of the fragment was put in 100ns.
+     * @throws ProducerException
+     */
+    default void staleFragmentReport(long fragmentTimecode, long ackWaitDuration) throws ProducerException {
+    }
+
     /**
      * Reports an error for the stream. The client should terminate the connection
      * as the inlet host would have/has already terminated the connection.
@@ -0,0 +1,239 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.metrics.Counter;
+import com.amazonaws.kinesisvideo.metrics.LatencyHistogram;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.NANOS_IN_A_TIME_UNIT;
+
+/**
+ * Measures the time from putting the first frame of a fragment to its BUFFERING, RECEIVED and PERSISTED acks.
+ *
+ * The put times are kept by the fragment timecode in a ring of primitive arrays so tracking doesn't allocate.
+ * The acks carry the fragment timecode in milliseconds, so the fragments are matched on the millisecond of
+ * their timecode. The acks of a stream arrive in order, so a PERSISTED ack also resolves the older fragments
+ * which didn't get one, e.g. key frames which didn't start a fragment. A fragment left unresolved for longer
+ * than the stale timeout is reported once by {@link #pollStaleFragments(long)}. The ring only remembers the
+ * latest fragments and the acks of the overwritten ones are counted as unmatched.
+ */
+final class FragmentLatencyTracker {
+    /**
+     * Default number of the fragments remembered
+     */
+    static final int DEFAULT_CAPACITY = 256;
+
+    private static final int ACKED_BUFFERING = 1;
+    private static final int ACKED_RECEIVED = 1 << 1;
+    private static final int ACKED_PERSISTED = 1 << 2;
+    private static final int RESOLVED = 1 << 3;
+    private static final int REPORTED_STALE = 1 << 4;
+
+    /**
+     * A fragment which hasn't been persisted within the stale timeout
+     */
+    static final class StaleFragment {
+        private final long mTimecode;
+        private final long mAckWaitDuration;
+
+        StaleFragment(final long timecode, final long ackWaitDuration) {
+            mTimecode = timecode;
+            mAckWaitDuration = ackWaitDuration;
+        }
+
+        /**
+         * @return Timecode of the fragment in 100ns
+         */
+        long getTimecode() {
+            return mTimecode;
+        }
+
+        /**
+         * @return Time since the fragment was put in 100ns
+         */
+        long getAckWaitDuration() {
+            return mAckWaitDuration;
+        }
+    }
+
+    private final long[] mTimecodes;
+    private final long[] mKeys;
+    private final long[] mPutTimes;
+    private final int[] mStates;
+    private final int mMask;
+    private final long mStaleTimeoutInNanos;
+    private final LatencyHistogram mBufferingLatency;
+    private final LatencyHistogram mReceivedLatency;
+    private final LatencyHistogram mPersistedLatency;
+    private final Counter mUnmatchedAcks;
+
+    // Guarded by this. Sequence numbers of the next fragment and of the oldest one which might still go stale.
+    private long mNextSequence;
+    private long mOldestPendingSequence;
+
+    /**
+     * @param capacity number of the latest fragments remembered, a power of two
+     * @param staleTimeoutInNanos time after which a fragment which hasn't been persisted is reported stale
+     */
+    FragmentLatencyTracker(final int capacity,
+                           final long staleTimeoutInNanos,
+                           @Nonnull final LatencyHistogram bufferingLatency,
+                           @Nonnull final LatencyHistogram receivedLatency,
+                           @Nonnull final LatencyHistogram persistedLatency,
+                           @Nonnull final Counter unmatchedAcks) {
+        Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1,
+                "Capacity must be a power of two");
+        Preconditions.checkArgument(staleTimeoutInNanos > 0, "Stale timeout must be positive");
+        mTimecodes = new long[capacity];
+        mKeys = new long[capacity];
+        mPutTimes = new long[capacity];
+        mStates = new int[capacity];
+        mMask = capacity - 1;
+        mStaleTimeoutInNanos = staleTimeoutInNanos;
+        mBufferingLatency = Preconditions.checkNotNull(bufferingLatency);
+        mReceivedLatency = Preconditions.checkNotNull(receivedLatency);
+        mPersistedLatency = Preconditions.checkNotNull(persistedLatency);
+        mUnmatchedAcks = Preconditions.checkNotNull(unmatchedAcks);
+    }
+
+    /**
+     * Remembers the put time of the first frame of a fragment
+     *
+     * @param timecode fragment timecode in 100ns
+     * @param putTimeInNanos {@link System#nanoTime()} of the put
+     */
+    synchronized void onFragmentStart(final long timecode, final long putTimeInNanos) {
+        final int slot = (int) (mNextSequence & mMask);
+        mTimecodes[slot] = timecode;
+        mKeys[slot] = keyOf(timecode);
+        mPutTimes[slot] = putTimeInNanos;
+        mStates[slot] = 0;
+        mNextSequence++;
+
+        // The overwritten fragment can't go stale any more
+        mOldestPendingSequence = Math.max(mOldestPendingSequence, mNextSequence - mTimecodes.length);
+    }
+
+    /**
+     * Records the latency of an ack of a remembered fragment. Each ack type is recorded once per fragment.
+     *
+     * @param ackType {@link FragmentAckType} int type of the ack
+     * @param timecode fragment timecode of the ack in 100ns
+     * @param ackTimeInNanos {@link System#nanoTime()} of the ack
+     */
+    synchronized void onAck(final int ackType, final long timecode, final long ackTimeInNanos) {
+        final int flag;
+        final LatencyHistogram histogram;
+        switch (ackType) {
+            case FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING:
+                flag = ACKED_BUFFERING;
+                histogram = mBufferingLatency;
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED:
+                flag = ACKED_RECEIVED;
+                histogram = mReceivedLatency;
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED:
+                flag = ACKED_PERSISTED;
+                histogram = mPersistedLatency;
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_ERROR:
+                resolve(timecode);
+                return;
+            default:
+                return;
+        }
+
+        final long sequence = find(timecode);
+        if (sequence < 0) {
+            mUnmatchedAcks.increment();
+            return;
+        }
+
+        final int slot = (int) (sequence & mMask);
+        if ((mStates[slot] & flag) == 0) {
+            mStates[slot] |= flag;
+            histogram.record(TimeUnit.NANOSECONDS.toMillis(ackTimeInNanos - mPutTimes[slot]));
+        }
+
+        if (flag == ACKED_PERSISTED) {
+            // The fragment and the older ones won't be acked any more
+            for (long older = Math.max(mOldestPendingSequence, mNextSequence - mTimecodes.length);
+                 older <= sequence; older++) {
+                mStates[(int) (older & mMask)] |= RESOLVED;
+            }
+
+            mOldestPendingSequence = Math.max(mOldestPendingSequence, sequence + 1);
+        }
+    }
+
+    /**
+     * Stops waiting for the acks of a fragment which has been dropped or failed
+     *
+     * @param timecode fragment timecode in 100ns
+     */
+    synchronized void resolve(final long timecode) {
+        final long sequence = find(timecode);
+        if (sequence >= 0) {
+            mStates[(int) (sequence & mMask)] |= RESOLVED;
+        }
+    }
+
+    /**
+     * Returns the fragments which haven't been persisted within the stale timeout and haven't been returned yet.
+     * Doesn't allocate unless there are some.
+     *
+     * @param nowInNanos {@link System#nanoTime()} now
+     */
+    @Nonnull
+    synchronized List<StaleFragment> pollStaleFragments(final long nowInNanos) {
+        List<StaleFragment> staleFragments = Collections.emptyList();
+        while (mOldestPendingSequence < mNextSequence) {
+            final int slot = (int) (mOldestPendingSequence & mMask);
+            if ((mStates[slot] & (RESOLVED | REPORTED_STALE)) == 0) {
+                final long age = nowInNanos - mPutTimes[slot];
+                if (age < mStaleTimeoutInNanos) {
+                    // The younger fragments can't be stale either
+                    break;
+                }
+
+                if (staleFragments.isEmpty()) {
+                    staleFragments = new ArrayList<StaleFragment>();
+                }
+
+                mStates[slot] |= REPORTED_STALE;
+                staleFragments.add(new StaleFragment(mTimecodes[slot], age / NANOS_IN_A_TIME_UNIT));
+            }
+
+            mOldestPendingSequence++;
+        }
+
+        return staleFragments;
+    }
+
+    /**
+     * @return Sequence of the latest remembered fragment with the timecode or -1
+     */
+    private long find(final long timecode) {
+        final long key = keyOf(timecode);
+        final long oldest = Math.max(0, mNextSequence - mTimecodes.length);
+        for (long sequence = mNextSequence - 1; sequence >= oldest; sequence--) {
+            if (mKeys[(int) (sequence & mMask)] == key) {
+                return sequence;
+            }
+        }
+
+        return -1;
+    }
+
+    private static long keyOf(final long timecode) {
+        return timecode / HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+    }
+}
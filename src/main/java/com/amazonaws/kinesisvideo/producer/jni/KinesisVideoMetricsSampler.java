@@ -0,0 +1,151 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoMetricsSnapshot;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoStreamMetricsSnapshot;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically takes a snapshot of the metrics of the native client and of all of its streams.
+ *
+ * Sampling takes the producer lock once per tick instead of on the frame path. The latest snapshot is
+ * immutable and published through a volatile field so the readers never block the sampler or each other.
+ * The streams are checked for the stale fragments on the same tick.
+ */
+public final class KinesisVideoMetricsSampler implements Closeable {
+    /**
+     * Default sampling interval
+     */
+    public static final long DEFAULT_SAMPLING_INTERVAL_IN_MILLIS = 1000;
+
+    private static final String THREAD_NAME = "KinesisVideoMetricsSampler";
+
+    private final NativeKinesisVideoProducerJni mKinesisVideoProducerJni;
+    private final Log mLog;
+    private final long mIntervalInMillis;
+    private volatile KinesisVideoMetricsSnapshot mSnapshot = KinesisVideoMetricsSnapshot.EMPTY;
+    private ScheduledExecutorService mExecutor;
+
+    public KinesisVideoMetricsSampler(@Nonnull final NativeKinesisVideoProducerJni kinesisVideoProducerJni,
+                                      @Nonnull final Log log,
+                                      final long intervalInMillis) {
+        Preconditions.checkArgument(intervalInMillis > 0, "Sampling interval must be positive");
+        mKinesisVideoProducerJni = Preconditions.checkNotNull(kinesisVideoProducerJni);
+        mLog = Preconditions.checkNotNull(log);
+        mIntervalInMillis = intervalInMillis;
+    }
+
+    /**
+     * Takes the first sample right away and then one every interval on a daemon thread. Idempotent.
+     */
+    public synchronized void start() {
+        if (mExecutor != null) {
+            return;
+        }
+
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull final Runnable runnable) {
+                final Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        mExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, 0, mIntervalInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling. The last snapshot stays available.
+     */
+    @Override
+    public synchronized void close() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the latest snapshot or {@link KinesisVideoMetricsSnapshot#EMPTY} before the first sample
+     */
+    @Nonnull
+    public KinesisVideoMetricsSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    public long getIntervalInMillis() {
+        return mIntervalInMillis;
+    }
+
+    /**
+     * Takes a sample now. Called on the sampler thread.
+     */
+    void sample() {
+        if (!mKinesisVideoProducerJni.isInitialized()) {
+            return;
+        }
+
+        try {
+            mSnapshot = mKinesisVideoProducerJni.sampleMetrics(mSnapshot);
+            logSnapshot(mSnapshot);
+            // The acks stop when the stream stalls, along with the frames checked for them in putFrame
+            mKinesisVideoProducerJni.reportStaleFragments();
+        } catch (final ProducerException e) {
+            mLog.exception(e, "Sampling the Kinesis Video client and stream metrics failed");
+        } catch (final RuntimeException e) {
+            // A failure must not cancel the next samples
+            mLog.exception(e, "Sampling the Kinesis Video client and stream metrics failed");
+        }
+    }
+
+    private void logSnapshot(@Nonnull final KinesisVideoMetricsSnapshot snapshot) {
+        mLog.debug("Kinesis Video client metrics"
+                        + "\n\t>> Overall storage size: %s"
+                        + "\n\t>> Available storage size: %s"
+                        + "\n\t>> Allocated storage size: %s"
+                        + "\n\t>> Total view allocation size: %s"
+                        + "\n\t>> Total streams frame rate: %s"
+                        + "\n\t>> Total streams transfer rate: %s",
+                snapshot.getContentStoreSize(),
+                snapshot.getContentStoreAvailableSize(),
+                snapshot.getContentStoreAllocatedSize(),
+                snapshot.getTotalContentViewSize(),
+                snapshot.getTotalFrameRate(),
+                snapshot.getTotalTransferRate());
+
+        for (final KinesisVideoStreamMetricsSnapshot streamSnapshot : snapshot.getStreamMetrics().values()) {
+            mLog.debug("Kinesis Video stream %s metrics"
+                            + "\n\t>> Current view duration: %s"
+                            + "\n\t>> Overall view duration: %s"
+                            + "\n\t>> Current view size: %s"
+                            + "\n\t>> Overall view size: %s"
+                            + "\n\t>> Current frame rate: %s"
+                            + "\n\t>> Current transfer rate: %s"
+                            + "\n\t>> Frames put per second: %.2f"
+                            + "\n\t>> Bytes uploaded per second: %.2f",
+                    streamSnapshot.getStreamName(),
+                    streamSnapshot.getCurrentViewDurationInTimeUnits(),
+                    streamSnapshot.getOverallViewDurationInTimeUnits(),
+                    streamSnapshot.getCurrentViewSize(),
+                    streamSnapshot.getOverallViewSize(),
+                    streamSnapshot.getCurrentFrameRate(),
+                    streamSnapshot.getCurrentTransferRate(),
+                    streamSnapshot.getFramesPutPerSecond(),
+                    streamSnapshot.getBytesUploadedPerSecond());
+        }
+    }
+}
@@ -3,13 +3,22 @@ package com.amazonaws.kinesisvideo.producer.jni;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.logging.LogLevel;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.metrics.FlightRecorder;
+import com.amazonaws.kinesisvideo.metrics.FrameTracer;
+import com.amazonaws.kinesisvideo.metrics.Gauge;
+import com.amazonaws.kinesisvideo.metrics.MetricNames;
+import com.amazonaws.kinesisvideo.metrics.MetricsRegistry;
 import com.amazonaws.kinesisvideo.producer.*;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +54,11 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
      */
     private static final String EXPECTED_LIBRARY_VERSION = "1.5";
 
+    /**
+     * Name of the metrics registry of the producers created without one
+     */
+    private static final String DEFAULT_METRICS_REGISTRY_NAME = "KinesisVideoProducer";
+
     /**
      * The manifest handle will be set after call to parse()
      */
@@ -115,6 +129,37 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
      */
     private final KinesisVideoMetrics mKinesisVideoMetrics;
 
+    /**
+     * Metrics of the client. The registries of the streams are its children.
+     */
+    private final MetricsRegistry mMetricsRegistry;
+
+    /**
+     * Interval of the metrics sampler
+     */
+    private long mMetricsSamplingIntervalInMillis = KinesisVideoMetricsSampler.DEFAULT_SAMPLING_INTERVAL_IN_MILLIS;
+
+    /**
+     * Samples the client and stream metrics while the client is created
+     */
+    private volatile KinesisVideoMetricsSampler mMetricsSampler;
+
+    /**
+     * One in how many frames of the streams is traced or 0 when the tracing is disabled
+     */
+    private int mFrameTraceSampleInterval = 0;
+
+    /**
+     * Number of the latest events of each stream recorded or 0 when the recording is disabled
+     */
+    private int mFlightRecorderCapacity = FlightRecorder.DEFAULT_CAPACITY;
+
+    /**
+     * Staging array used when reading stream data into a direct {@link ByteBuffer}. The native layer
+     * only fills Java arrays so direct buffers are staged through this array. Guarded by mSyncObject.
+     */
+    private byte[] mDirectReadBuffer = new byte[0];
+
     /**
      * Public constructor.
      * @param authCallbacks Authentication callbacks
@@ -165,6 +210,52 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
                                          final @Nonnull ServiceCallbacks serviceCallbacks,
                                          final @Nonnull Log log,
                                          final @Nonnull CountDownLatch readyLatch) throws ProducerException {
+        this(authCallbacks,
+                storageCallbacks,
+                serviceCallbacks,
+                log,
+                readyLatch,
+                new MetricsRegistry(MetricsRegistry.CLIENT, DEFAULT_METRICS_REGISTRY_NAME));
+    }
+
+    /**
+     * Public constructor
+     * @param authCallbacks Authentication callbacks
+     * @param storageCallbacks Storage callbacks
+     * @param serviceCallbacks Service call callbacks
+     * @param log Log object to use for logging
+     * @param metricsRegistry Registry to record the client metrics in
+     * @throws ProducerException
+     */
+    public NativeKinesisVideoProducerJni(final @Nonnull AuthCallbacks authCallbacks,
+                                         final @Nonnull StorageCallbacks storageCallbacks,
+                                         final @Nonnull ServiceCallbacks serviceCallbacks,
+                                         final @Nonnull Log log,
+                                         final @Nonnull MetricsRegistry metricsRegistry) throws ProducerException {
+        this(authCallbacks,
+                storageCallbacks,
+                serviceCallbacks,
+                log,
+                new CountDownLatch(1),
+                metricsRegistry);
+    }
+
+    /**
+     * Public constructor
+     * @param authCallbacks Authentication callbacks
+     * @param storageCallbacks Storage callbacks
+     * @param serviceCallbacks Service call callbacks
+     * @param log Log objet to use for logging
+     * @param readyLatch Ready latch for synch creation
+     * @param metricsRegistry Registry to record the client metrics in
+     * @throws ProducerException
+     */
+    public NativeKinesisVideoProducerJni(final @Nonnull AuthCallbacks authCallbacks,
+                                         final @Nonnull StorageCallbacks storageCallbacks,
+                                         final @Nonnull ServiceCallbacks serviceCallbacks,
+                                         final @Nonnull Log log,
+                                         final @Nonnull CountDownLatch readyLatch,
+                                         final @Nonnull MetricsRegistry metricsRegistry) throws ProducerException {
         mLog = Preconditions.checkNotNull(log);
         mAuthCallbacks = Preconditions.checkNotNull(authCallbacks);
         mStorageCallbacks = Preconditions.checkNotNull(storageCallbacks);
@@ -173,6 +264,8 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         mLibraryLoader = new NativeLibraryLoader(mLog);
         mServiceCallbacks.initialize(this);
         mKinesisVideoMetrics = new KinesisVideoMetrics();
+        mMetricsRegistry = Preconditions.checkNotNull(metricsRegistry);
+        registerGauges();
     }
 
     @Override
@@ -224,6 +317,8 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
             }
 
             mClientHandle = createKinesisVideoClient(deviceInfo);
+            mMetricsSampler = new KinesisVideoMetricsSampler(this, mLog, mMetricsSamplingIntervalInMillis);
+            mMetricsSampler.start();
         }
     }
 
@@ -283,6 +378,146 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         }
     }
 
+    @Nonnull
+    @Override
+    public MetricsRegistry getMetricsRegistry() {
+        return mMetricsRegistry;
+    }
+
+    @Nonnull
+    @Override
+    public KinesisVideoMetricsSnapshot getMetricsSnapshot() {
+        final KinesisVideoMetricsSampler metricsSampler = mMetricsSampler;
+        return metricsSampler == null ? KinesisVideoMetricsSnapshot.EMPTY : metricsSampler.getSnapshot();
+    }
+
+    /**
+     * Sets the interval of sampling the client and stream metrics. Must be called before creating the client.
+     *
+     * @param intervalInMillis sampling interval in milliseconds
+     */
+    public void setMetricsSamplingInterval(final long intervalInMillis) {
+        Preconditions.checkArgument(intervalInMillis > 0, "Sampling interval must be positive");
+        synchronized (mSyncObject) {
+            Preconditions.checkState(mClientHandle == INVALID_CLIENT_HANDLE_VALUE, "Already created");
+            mMetricsSamplingIntervalInMillis = intervalInMillis;
+        }
+    }
+
+    /**
+     * Enables the sampled tracing of the frames of the streams created afterwards, see {@link FrameTracer}
+     *
+     * @param sampleInterval one in how many frames is traced or 0 to disable the tracing
+     */
+    public void setFrameTraceSampleInterval(final int sampleInterval) {
+        Preconditions.checkArgument(sampleInterval >= 0, "Sample interval must not be negative");
+        synchronized (mSyncObject) {
+            mFrameTraceSampleInterval = sampleInterval;
+        }
+    }
+
+    /**
+     * Sets the number of the latest events recorded by each stream created afterwards, see {@link FlightRecorder}
+     *
+     * @param capacity number of the events, a power of two, or 0 to disable the recording
+     */
+    public void setFlightRecorderCapacity(final int capacity) {
+        Preconditions.checkArgument(capacity == 0 || capacity > 0 && Integer.bitCount(capacity) == 1,
+                "Capacity must be a power of two or 0");
+        synchronized (mSyncObject) {
+            mFlightRecorderCapacity = capacity;
+        }
+    }
+
+    /**
+     * Takes the metrics of the client and of all of its streams under a single acquisition of the client lock
+     *
+     * @param previous the previous snapshot to derive the rates from
+     * @return the new snapshot or the previous one if the client has been freed meanwhile
+     * @throws ProducerException
+     */
+    @Nonnull
+    KinesisVideoMetricsSnapshot sampleMetrics(@Nonnull final KinesisVideoMetricsSnapshot previous)
+            throws ProducerException
+    {
+        synchronized (mSyncObject) {
+            if (mClientHandle == INVALID_CLIENT_HANDLE_VALUE) {
+                return previous;
+            }
+
+            final long now = System.nanoTime();
+            final long elapsedNanos = previous.getSampleTimeNanos() == 0 ? 0 : now - previous.getSampleTimeNanos();
+            getKinesisVideoMetrics(mClientHandle, mKinesisVideoMetrics);
+
+            final Map<String, KinesisVideoStreamMetricsSnapshot> streamMetrics =
+                    new LinkedHashMap<String, KinesisVideoStreamMetricsSnapshot>();
+            for (final KinesisVideoProducerStream stream : mStreamMap.values()) {
+                final NativeKinesisVideoProducerStream nativeStream = (NativeKinesisVideoProducerStream) stream;
+                final KinesisVideoStreamMetricsSnapshot streamSnapshot = nativeStream.sampleMetrics(
+                        previous.getStreamMetrics(nativeStream.getStreamName()), elapsedNanos);
+                streamMetrics.put(streamSnapshot.getStreamName(), streamSnapshot);
+            }
+
+            return new KinesisVideoMetricsSnapshot(now, mKinesisVideoMetrics, streamMetrics);
+        }
+    }
+
+    /**
+     * Reports the fragments of all the streams which haven't been persisted within the stale timeout. The streams
+     * are called outside of the client lock as the reports reach the stream callbacks.
+     *
+     * @throws ProducerException
+     */
+    void reportStaleFragments() throws ProducerException
+    {
+        final List<KinesisVideoProducerStream> streams;
+        synchronized (mSyncObject) {
+            streams = new ArrayList<KinesisVideoProducerStream>(mStreamMap.values());
+        }
+
+        final long now = System.nanoTime();
+        for (final KinesisVideoProducerStream stream : streams) {
+            ((NativeKinesisVideoProducerStream) stream).reportStaleFragments(now);
+        }
+    }
+
+    /**
+     * Registers the gauges of the client-wide native metrics. They are read from the latest sampled snapshot
+     * and read as 0 before the first sample.
+     */
+    private void registerGauges() {
+        mMetricsRegistry.gauge(MetricNames.STORAGE_SIZE_BYTES, new Gauge() {
+            @Override
+            public long getValue() {
+                return getMetricsSnapshot().getContentStoreSize();
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.STORAGE_AVAILABLE_BYTES, new Gauge() {
+            @Override
+            public long getValue() {
+                return getMetricsSnapshot().getContentStoreAvailableSize();
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.STORAGE_ALLOCATED_BYTES, new Gauge() {
+            @Override
+            public long getValue() {
+                return getMetricsSnapshot().getContentStoreAllocatedSize();
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.TOTAL_FRAME_RATE, new Gauge() {
+            @Override
+            public long getValue() {
+                return getMetricsSnapshot().getTotalFrameRate();
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.TOTAL_TRANSFER_RATE_BYTES_PER_SECOND, new Gauge() {
+            @Override
+            public long getValue() {
+                return getMetricsSnapshot().getTotalTransferRate();
+            }
+        });
+    }
+
     /**
      * Frees the underlying Kinesis Video object. This call is prompt and will terminate the ongoing transmission and
      * drop the buffers.
@@ -293,6 +528,7 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
     {
         Preconditions.checkState(isInitialized());
         synchronized (mSyncObject) {
+            mMetricsSampler.close();
             freeKinesisVideoClient(mClientHandle);
             mClientHandle = INVALID_CLIENT_HANDLE_VALUE;
         }
@@ -316,11 +552,19 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         synchronized (mSyncObject) {
             // Create the native stream
             final long streamHandle = createKinesisVideoStream(mClientHandle, streamInfo);
+            final MetricsRegistry streamMetricsRegistry =
+                    mMetricsRegistry.createChild(MetricsRegistry.STREAM, streamInfo.getName());
             final KinesisVideoProducerStream kinesisVideoProducerStream = new NativeKinesisVideoProducerStream(this,
                     streamInfo,
                     streamHandle,
                     mLog,
-                    streamCallbacks);
+                    streamCallbacks,
+                    streamMetricsRegistry,
+                    mFrameTraceSampleInterval == 0
+                            ? null
+                            : new FrameTracer(streamMetricsRegistry, mFrameTraceSampleInterval,
+                                    FrameTracer.DEFAULT_CAPACITY),
+                    mFlightRecorderCapacity == 0 ? null : new FlightRecorder(mFlightRecorderCapacity));
 
             // Insert into the maps
             mKinesisVideoHandleMap.put(streamHandle, kinesisVideoProducerStream);
@@ -499,6 +743,46 @@ public class NativeKinesisVideoProducerJni implements KinesisVideoProducer {
         }
     }
 
+    /**
+     * Get stream data from the buffer into the remaining space of the byte buffer.
+     *
+     * NOTE: Heap buffers are filled in place through their backing array. Direct buffers are staged
+     * through a reusable array as the native layer only fills Java arrays.
+     *
+     * @param streamHandle     the handle of the stream
+     * @param fillBuffer    The buffer to fill. The position is advanced by the number of bytes read.
+     * @param readResult    The read result to fill in
+     * @throws ProducerException
+     */
+    public void getStreamData(final long streamHandle,
+                              final @Nonnull ByteBuffer fillBuffer,
+                              final @Nonnull ReadResult readResult) throws ProducerException
+    {
+        Preconditions.checkState(isInitialized());
+        Preconditions.checkNotNull(fillBuffer);
+        Preconditions.checkNotNull(readResult);
+
+        final int position = fillBuffer.position();
+        final int length = fillBuffer.remaining();
+
+        synchronized (mSyncObject) {
+            if (fillBuffer.hasArray()) {
+                getKinesisVideoStreamData(mClientHandle, streamHandle, fillBuffer.array(),
+                        fillBuffer.arrayOffset() + position, length, readResult);
+                fillBuffer.position(position + Math.max(0, readResult.getReadBytes()));
+            } else {
+                if (mDirectReadBuffer.length < length) {
+                    mDirectReadBuffer = new byte[length];
+                }
+
+                getKinesisVideoStreamData(mClientHandle, streamHandle, mDirectReadBuffer, 0, length, readResult);
+                if (readResult.getReadBytes() > 0) {
+                    fillBuffer.put(mDirectReadBuffer, 0, readResult.getReadBytes());
+                }
+            }
+        }
+    }
+
     /**
      * Stream format has changed. Currently, only supporting Codec Private Data
      *
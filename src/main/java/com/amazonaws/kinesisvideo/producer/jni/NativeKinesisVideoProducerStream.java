@@ -1,13 +1,25 @@
 package com.amazonaws.kinesisvideo.producer.jni;
 
 import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.LogLevel;
 import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
+import com.amazonaws.kinesisvideo.metrics.Counter;
+import com.amazonaws.kinesisvideo.metrics.FlightRecorder;
+import com.amazonaws.kinesisvideo.metrics.FrameTracer;
+import com.amazonaws.kinesisvideo.metrics.Gauge;
+import com.amazonaws.kinesisvideo.metrics.LatencyHistogram;
+import com.amazonaws.kinesisvideo.metrics.MetricNames;
+import com.amazonaws.kinesisvideo.metrics.MetricsRegistry;
+import com.amazonaws.kinesisvideo.metrics.TraceStage;
 import com.amazonaws.kinesisvideo.producer.*;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -19,7 +31,18 @@ import java.util.concurrent.TimeUnit;
  */
 public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStream
 {
-    private class NativeDataInputStream extends InputStream {
+    /**
+     * Time after which a fragment without the PERSISTED ack is reported stale when the stream doesn't set
+     * the connection staleness duration
+     */
+    private static final long DEFAULT_STALE_FRAGMENT_TIMEOUT_IN_NANOS = TimeUnit.SECONDS.toNanos(20);
+
+    /**
+     * Minimum time between the flight recorder dumps logged on the stream errors
+     */
+    private static final long FLIGHT_RECORDER_DUMP_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private class NativeDataInputStream extends InputStream implements ReadableByteChannel {
         /**
          * Whether the stream has been closed
          */
@@ -32,9 +55,22 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         private final ReadResult mReadResult;
         final long mUploadHandle;
 
+        /**
+         * Metrics read when tracing, kept per reader as the readers run concurrently
+         */
+        private final KinesisVideoStreamMetrics mTraceStreamMetrics;
+
+        /**
+         * Cached wrapper for the last array passed into the byte array read so the
+         * steady-state read loop doesn't allocate.
+         */
+        private byte[] mWrappedArray;
+        private ByteBuffer mWrappedBuffer;
+
         public NativeDataInputStream(final long uploadHandle) {
             mUploadHandle = uploadHandle;
             mReadResult = new ReadResult();
+            mTraceStreamMetrics = new KinesisVideoStreamMetrics();
         }
 
         @Override
@@ -48,20 +84,41 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
                 final int off,
                 final int len)
                 throws IOException {
+            if (b != mWrappedArray) {
+                mWrappedArray = b;
+                mWrappedBuffer = ByteBuffer.wrap(b);
+            }
+
+            mWrappedBuffer.limit(off + len);
+            mWrappedBuffer.position(off);
+
+            return read(mWrappedBuffer);
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            if (mFrameTracer != null) {
+                // The previously read data has been written out
+                mFrameTracer.onReadRequested(System.nanoTime());
+            }
+
             if (mStreamClosed) {
                 mLog.warn("Stream %s with uploadHandle %d has been closed", mStreamInfo.getName(), mUploadHandle);
             }
 
             // Read from the KinesisVideo Producer
-            // NOTE: This implementation is a blocking call and the blocking
-            // is handled by simply spin-locking until the data is available.
+            // NOTE: This implementation is a blocking call. The reader only parks on the monitor
+            // when there is no data known to be pending. Otherwise, the reported available size
+            // is drained into the destination buffer in as few native calls as possible.
             int bytesRead = -1;
 
             while (!mStreamClosed) {
+                final long availableSize;
                 synchronized (mMonitor) {
                     while (!mDataAvailable) {
                         try {
                             mMonitor.wait();
+                            mReadMetrics.recordWakeup();
                         } catch (final InterruptedException e) {
                             mLog.exception(e, "Waiting for the data availability with uploadHandle %d"
                                     + "threw an interrupted exception. Continuing...", mUploadHandle);
@@ -72,57 +129,41 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
                     mDataAvailable = false;
                     if (mStreamClosed) {
                         // Indicate the EOS
-                        bytesRead = -1;
                         mLog.debug("Being notified to close stream %s with uploadHandle %d",
                                 mStreamInfo.getName(), mUploadHandle);
-                        return bytesRead;
+                        return -1;
                     }
+
+                    availableSize = mAvailableDataSize;
                 }
 
                 try {
-                    mKinesisVideoProducerJni.getStreamData(mStreamHandle, b, off, len, mReadResult);
-                    bytesRead = mReadResult.getReadBytes();
-
-                    if (mReadResult.isEndOfStream()) {
-                        if (mReadResult.getUploadHandle() == mUploadHandle) {
-                            // EOS for current session
-                            mLog.info("Received end-of-stream indicator for %s, uploadHandle %d",
-                                    mStreamInfo.getName(), mUploadHandle);
-
-                            // Set the flag so the stream is not valid any longer
-                            mStreamClosed = true;
-
-                            if (0 == bytesRead) {
-                                // Indicate the EOS
-                                bytesRead = -1;
-                            }
-                        } else {
-                            mLog.debug("Found end of stream for stream %s on uploadHandle %d for previous uploadHandle %d",
-                                    mStreamInfo.getName(), mUploadHandle, mReadResult.getUploadHandle());
-                            notifyEndOfStream(mReadResult.getUploadHandle());
-                        }
+                    bytesRead = drain(dst, availableSize);
+                    if (bytesRead > 0 && mFrameTracer != null && mFrameTracer.hasPendingReads()) {
+                        traceUploadRead(mTraceStreamMetrics);
                     }
+                } catch (final ProducerException e) {
+                    mLog.exception(e, "Reader threw an exception");
+                    throw new IOException(e);
+                }
 
-                    synchronized (mMonitor) {
-                        if (bytesRead != 0) {
-                            // Got some bytes - break from the loop.
-                            // Make sure we don't await again if we still have some data
-                            if (bytesRead != -1 && mAvailableDataSize - bytesRead > 0) {
+                if (bytesRead != 0) {
+                    if (bytesRead > 0) {
+                        synchronized (mMonitor) {
+                            // Make sure we don't await again if we still have some data.
+                            // A completely filled buffer means there might be more than was reported.
+                            mAvailableDataSize = Math.max(0, mAvailableDataSize - bytesRead);
+                            if (mAvailableDataSize > 0 || !dst.hasRemaining()) {
                                 mDataAvailable = true;
                             }
-
-                            break;
                         }
                     }
-                } catch (final ProducerException e) {
-                    mLog.exception(e, "Reader threw an exception");
-                    throw new IOException(e);
+
+                    // Got some bytes or the EOS - break from the loop.
+                    break;
                 }
             }
 
-            mLog.debug("Streamed %d bytes for stream %s with uploadHandle %d", bytesRead, mStreamInfo.getName(),
-                    mUploadHandle);
-
             if (-1 == bytesRead) {
                 mLog.debug("Closing stream %s with uploadHandle %d", mStreamInfo.getName(), mUploadHandle);
             }
@@ -130,6 +171,65 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
             return bytesRead;
         }
 
+        /**
+         * Drains up to the available size into the buffer without returning to the monitor in between
+         * the native calls. The first call is always made as the reported size might be stale.
+         *
+         * @return Number of bytes read or -1 on the EOS for the current upload handle
+         */
+        private int drain(final ByteBuffer dst, final long availableSize) throws ProducerException {
+            int totalBytesRead = 0;
+            do {
+                mKinesisVideoProducerJni.getStreamData(mStreamHandle, dst, mReadResult);
+                final int bytesRead = mReadResult.getReadBytes();
+                mReadMetrics.recordRead(bytesRead);
+                if (bytesRead > 0) {
+                    mBytesUploaded.add(bytesRead);
+                }
+                totalBytesRead += bytesRead;
+
+                if (mReadResult.isEndOfStream()) {
+                    if (mReadResult.getUploadHandle() == mUploadHandle) {
+                        // EOS for current session
+                        mLog.info("Received end-of-stream indicator for %s, uploadHandle %d",
+                                mStreamInfo.getName(), mUploadHandle);
+
+                        // Set the flag so the stream is not valid any longer
+                        mStreamClosed = true;
+
+                        if (0 == totalBytesRead) {
+                            // Indicate the EOS
+                            return -1;
+                        }
+                    } else {
+                        mLog.debug("Found end of stream for stream %s on uploadHandle %d for previous uploadHandle %d",
+                                mStreamInfo.getName(), mUploadHandle, mReadResult.getUploadHandle());
+                        notifyEndOfStream(mReadResult.getUploadHandle());
+                    }
+
+                    break;
+                }
+
+                if (bytesRead == 0) {
+                    break;
+                }
+            } while (dst.hasRemaining() && totalBytesRead < availableSize);
+
+            return totalBytesRead;
+        }
+
+        @Override
+        public int available() {
+            synchronized (mMonitor) {
+                return (int) Math.min(Integer.MAX_VALUE, mAvailableDataSize);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !mStreamClosed;
+        }
+
         @Override
         public int read(final byte[] b)
                 throws IOException
@@ -152,12 +252,12 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
             // Unblock the awaiting reading code block
             synchronized (mMonitor) {
                 mAvailableDataSize = availableSize;
-                mLog.debug("Data availability notification. Upload handle: %d, Size: %d, Duration %d ",
-                        mUploadHandle, availableSize, duration);
-
-                mDataAvailable = true;
 
-                mMonitor.notify();
+                // The reader only parks while the flag is cleared so there is nobody to wake up otherwise
+                if (!mDataAvailable) {
+                    mDataAvailable = true;
+                    mMonitor.notify();
+                }
             }
         }
 
@@ -179,13 +279,47 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     private final CountDownLatch mStoppedLatch;
     private final Log mLog;
     private final KinesisVideoStreamMetrics mStreamMetrics;
+    private final KinesisVideoStreamMetrics mSampledStreamMetrics;
     private final Map<Long, NativeDataInputStream> mInputStreamMap;
-
+    private final KinesisVideoStreamReadMetrics mReadMetrics;
+    private final MetricsRegistry mMetricsRegistry;
+    private final LatencyHistogram mPutFrameLatency;
+    private final Counter mFramesPut;
+    private final Counter mFrameBytesPut;
+    private final Counter mBytesUploaded;
+    private final Counter mUploadSessions;
+    private final Counter[] mAcksByType;
+    private final Counter mDroppedFrames;
+    private final Counter mDroppedFragments;
+    private final Counter mStreamErrors;
+    private final Counter mStaleFragments;
+    private final FragmentLatencyTracker mFragmentLatencyTracker;
+    private final FrameTracer mFrameTracer;
+    private final FlightRecorder mFlightRecorder;
+
+    /**
+     * End timecode of the latest frame put, kept while tracing
+     */
+    private volatile long mHeadTimecode;
+
+    /**
+     * Time of the latest flight recorder dump logged on a stream error
+     */
+    private volatile long mFlightRecorderDumpTime;
+
+    /**
+     * @param metricsRegistry Registry of the stream metrics, usually a child of the client registry
+     * @param frameTracer     Optional tracer of the sampled frames, no frames are traced without it
+     * @param flightRecorder  Optional recorder of the latest stream events, nothing is recorded without it
+     */
     public NativeKinesisVideoProducerStream(final @Nonnull NativeKinesisVideoProducerJni kinesisVideoProducerJni,
                                             final @Nonnull StreamInfo streamInfo,
                                             final long streamHandle,
                                             final @Nonnull Log log,
-                                            final @Nullable StreamCallbacks streamCallbacks) {
+                                            final @Nullable StreamCallbacks streamCallbacks,
+                                            final @Nonnull MetricsRegistry metricsRegistry,
+                                            final @Nullable FrameTracer frameTracer,
+                                            final @Nullable FlightRecorder flightRecorder) {
         mKinesisVideoProducerJni = Preconditions.checkNotNull(kinesisVideoProducerJni);
         mStreamInfo = Preconditions.checkNotNull(streamInfo);
         Preconditions.checkState(streamHandle != NativeKinesisVideoProducerJni.INVALID_STREAM_HANDLE_VALUE);
@@ -195,16 +329,168 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         mStoppedLatch = new CountDownLatch(1);
         mLog = Preconditions.checkNotNull(log);
         mStreamMetrics = new KinesisVideoStreamMetrics();
+        mSampledStreamMetrics = new KinesisVideoStreamMetrics();
+        mFrameTracer = frameTracer;
+        mFlightRecorder = flightRecorder;
         mInputStreamMap = new HashMap<Long, NativeDataInputStream>();
+        mReadMetrics = new KinesisVideoStreamReadMetrics();
+
+        mMetricsRegistry = Preconditions.checkNotNull(metricsRegistry);
+        mPutFrameLatency = mMetricsRegistry.histogram(MetricNames.PUT_FRAME_LATENCY_US);
+        mFramesPut = mMetricsRegistry.counter(MetricNames.FRAMES_PUT_TOTAL);
+        mFrameBytesPut = mMetricsRegistry.counter(MetricNames.FRAME_BYTES_PUT_TOTAL);
+        mBytesUploaded = mMetricsRegistry.counter(MetricNames.BYTES_UPLOADED_TOTAL);
+        mUploadSessions = mMetricsRegistry.counter(MetricNames.UPLOAD_SESSIONS_TOTAL);
+        mAcksByType = new Counter[FragmentAckType.FRAGMENT_ACK_TYPE_IDLE + 1];
+        mAcksByType[FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING] =
+                mMetricsRegistry.counter(MetricNames.ACKS_BUFFERING_TOTAL);
+        mAcksByType[FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED] =
+                mMetricsRegistry.counter(MetricNames.ACKS_RECEIVED_TOTAL);
+        mAcksByType[FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED] =
+                mMetricsRegistry.counter(MetricNames.ACKS_PERSISTED_TOTAL);
+        mAcksByType[FragmentAckType.FRAGMENT_ACK_TYPE_ERROR] = mMetricsRegistry.counter(MetricNames.ACKS_ERROR_TOTAL);
+        mAcksByType[FragmentAckType.FRAGMENT_ACK_TYPE_IDLE] = mMetricsRegistry.counter(MetricNames.ACKS_IDLE_TOTAL);
+        mDroppedFrames = mMetricsRegistry.counter(MetricNames.DROPPED_FRAMES_TOTAL);
+        mDroppedFragments = mMetricsRegistry.counter(MetricNames.DROPPED_FRAGMENTS_TOTAL);
+        mStreamErrors = mMetricsRegistry.counter(MetricNames.STREAM_ERRORS_TOTAL);
+        mStaleFragments = mMetricsRegistry.counter(MetricNames.STALE_FRAGMENTS_TOTAL);
+        mFragmentLatencyTracker = new FragmentLatencyTracker(FragmentLatencyTracker.DEFAULT_CAPACITY,
+                streamInfo.getConnectionStalenessDuration() > 0
+                        ? streamInfo.getConnectionStalenessDuration() * Time.NANOS_IN_A_TIME_UNIT
+                        : DEFAULT_STALE_FRAGMENT_TIMEOUT_IN_NANOS,
+                mMetricsRegistry.histogram(MetricNames.FRAGMENT_BUFFERING_LATENCY_MS),
+                mMetricsRegistry.histogram(MetricNames.FRAGMENT_RECEIVED_LATENCY_MS),
+                mMetricsRegistry.histogram(MetricNames.FRAGMENT_PERSISTED_LATENCY_MS),
+                mMetricsRegistry.counter(MetricNames.UNMATCHED_ACKS_TOTAL));
+        registerGauges();
+    }
+
+    /**
+     * Registers the gauges of the stream metrics. They are read from the latest snapshot of the metrics sampler
+     * and read as 0 before the stream is first sampled.
+     */
+    private void registerGauges() {
+        mMetricsRegistry.gauge(MetricNames.CURRENT_VIEW_DURATION_MS, new Gauge() {
+            @Override
+            public long getValue() {
+                final KinesisVideoStreamMetricsSnapshot snapshot = getMetricsSnapshot();
+                return snapshot == null ? 0 : snapshot.getCurrentViewDurationInMillis();
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.CURRENT_VIEW_SIZE_BYTES, new Gauge() {
+            @Override
+            public long getValue() {
+                final KinesisVideoStreamMetricsSnapshot snapshot = getMetricsSnapshot();
+                return snapshot == null ? 0 : snapshot.getCurrentViewSize();
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.CURRENT_FRAME_RATE, new Gauge() {
+            @Override
+            public long getValue() {
+                final KinesisVideoStreamMetricsSnapshot snapshot = getMetricsSnapshot();
+                return snapshot == null ? 0 : Math.round(snapshot.getCurrentFrameRate());
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.CURRENT_TRANSFER_RATE_BYTES_PER_SECOND, new Gauge() {
+            @Override
+            public long getValue() {
+                final KinesisVideoStreamMetricsSnapshot snapshot = getMetricsSnapshot();
+                return snapshot == null ? 0 : snapshot.getCurrentTransferRate();
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.FRAMES_PUT_PER_SECOND, new Gauge() {
+            @Override
+            public long getValue() {
+                final KinesisVideoStreamMetricsSnapshot snapshot = getMetricsSnapshot();
+                return snapshot == null ? 0 : Math.round(snapshot.getFramesPutPerSecond());
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.FRAME_BYTES_PUT_PER_SECOND, new Gauge() {
+            @Override
+            public long getValue() {
+                final KinesisVideoStreamMetricsSnapshot snapshot = getMetricsSnapshot();
+                return snapshot == null ? 0 : Math.round(snapshot.getFrameBytesPutPerSecond());
+            }
+        });
+        mMetricsRegistry.gauge(MetricNames.BYTES_UPLOADED_PER_SECOND, new Gauge() {
+            @Override
+            public long getValue() {
+                final KinesisVideoStreamMetricsSnapshot snapshot = getMetricsSnapshot();
+                return snapshot == null ? 0 : Math.round(snapshot.getBytesUploadedPerSecond());
+            }
+        });
+    }
+
+    /**
+     * Returns the tracer of the sampled frames or null if the tracing is disabled
+     */
+    @Nullable
+    @Override
+    public FrameTracer getFrameTracer() {
+        return mFrameTracer;
+    }
+
+    /**
+     * Returns the recorder of the latest events of the stream or null if it is disabled
+     */
+    @Nullable
+    @Override
+    public FlightRecorder getFlightRecorder() {
+        return mFlightRecorder;
+    }
+
+    /**
+     * Returns the latest sampled metrics of the stream or null if it hasn't been sampled yet
+     */
+    @Nullable
+    @Override
+    public KinesisVideoStreamMetricsSnapshot getMetricsSnapshot() {
+        return mKinesisVideoProducerJni.getMetricsSnapshot().getStreamMetrics(mStreamInfo.getName());
+    }
+
+    /**
+     * Takes the snapshot of the stream metrics. Called by the producer while holding its lock.
+     *
+     * @param previous the previous snapshot of the stream or null if this is the first one
+     * @param elapsedNanos time since the previous snapshot
+     * @return the new snapshot
+     * @throws ProducerException
+     */
+    @Nonnull
+    KinesisVideoStreamMetricsSnapshot sampleMetrics(@Nullable final KinesisVideoStreamMetricsSnapshot previous,
+                                                    final long elapsedNanos) throws ProducerException {
+        mKinesisVideoProducerJni.getStreamMetrics(mStreamHandle, mSampledStreamMetrics);
+        return new KinesisVideoStreamMetricsSnapshot(mStreamInfo.getName(),
+                mSampledStreamMetrics,
+                mFramesPut.getCount(),
+                mFrameBytesPut.getCount(),
+                mBytesUploaded.getCount(),
+                previous,
+                elapsedNanos);
     }
 
     @Override
     public InputStream getDataStream(final long uploadHandle) throws ProducerException {
+        mUploadSessions.increment();
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onSessionStart(uploadHandle);
+        }
+
         final NativeDataInputStream inputStream = new NativeDataInputStream(uploadHandle);
         mInputStreamMap.put(uploadHandle, inputStream);
         return inputStream;
     }
 
+    @Override
+    public ReadableByteChannel getDataChannel(final long uploadHandle) throws ProducerException {
+        final NativeDataInputStream inputStream = mInputStreamMap.get(uploadHandle);
+        if (inputStream != null) {
+            return inputStream;
+        }
+
+        return (NativeDataInputStream) getDataStream(uploadHandle);
+    }
+
     @Override
     public void getStreamData(@Nonnull final byte[] fillBuffer,
                               final int offset,
@@ -213,50 +499,91 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         mKinesisVideoProducerJni.getStreamData(mStreamHandle, fillBuffer, offset, length, readResult);
     }
 
+    @Override
+    public void getStreamData(@Nonnull final ByteBuffer fillBuffer,
+                              @Nonnull final ReadResult readResult) throws ProducerException {
+        mKinesisVideoProducerJni.getStreamData(mStreamHandle, fillBuffer, readResult);
+    }
+
     @Override
     public void putFrame(@Nonnull final KinesisVideoFrame kinesisVideoFrame) throws ProducerException {
         Preconditions.checkNotNull(kinesisVideoFrame);
 
-        mLog.debug("PutFrame index: %s, pts: %s, dts: %s, duration: %s, keyFrame: %s, flags: %s",
-                kinesisVideoFrame.getIndex(),
-                kinesisVideoFrame.getPresentationTs(),
-                kinesisVideoFrame.getDecodingTs(),
-                kinesisVideoFrame.getDuration(),
-                FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags()),
-                kinesisVideoFrame.getFlags());
+        // Checked first as the arguments are boxed into an array on every frame otherwise
+        if (mLog.isLoggable(LogLevel.DEBUG)) {
+            mLog.debug("PutFrame index: %s, pts: %s, dts: %s, duration: %s, keyFrame: %s, flags: %s",
+                    kinesisVideoFrame.getIndex(),
+                    kinesisVideoFrame.getPresentationTs(),
+                    kinesisVideoFrame.getDecodingTs(),
+                    kinesisVideoFrame.getDuration(),
+                    FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags()),
+                    kinesisVideoFrame.getFlags());
+        }
+
+        final int frameSize = kinesisVideoFrame.getSize();
+        final long startTime = System.nanoTime();
+        final long traceSequence = mFrameTracer == null
+                ? FrameTracer.NOT_TRACED
+                : mFrameTracer.beginFrame(kinesisVideoFrame.getPresentationTs(),
+                        FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags()),
+                        System.currentTimeMillis() * Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
+                        startTime);
+        try {
+            mKinesisVideoProducerJni.putFrame(mStreamHandle, kinesisVideoFrame);
+        } catch (final ProducerException e) {
+            if (mFlightRecorder != null) {
+                mFlightRecorder.onPutFrameFailed(kinesisVideoFrame.getPresentationTs(), e.getStatusCode());
+            }
+
+            throw e;
+        }
+
+        final long endTime = System.nanoTime();
+        mPutFrameLatency.record(TimeUnit.NANOSECONDS.toMicros(endTime - startTime));
+        if (mFrameTracer != null) {
+            mFrameTracer.stamp(traceSequence, TraceStage.PUT_FRAME_END, endTime);
+            mHeadTimecode = kinesisVideoFrame.getPresentationTs() + kinesisVideoFrame.getDuration();
+        }
+
+        mFramesPut.increment();
+        mFrameBytesPut.add(frameSize);
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onPutFrame(frameSize,
+                    kinesisVideoFrame.getFlags(),
+                    kinesisVideoFrame.getPresentationTs(),
+                    kinesisVideoFrame.getDecodingTs(),
+                    kinesisVideoFrame.getDuration());
+        }
 
-        // Print out metrics on every key-frame
+        // Fragments start on key frames. The older fragments are checked for staleness at the same rate.
         if (FrameFlags.isKeyFrame(kinesisVideoFrame.getFlags())) {
-            final KinesisVideoMetrics kinesisVideoMetrics = mKinesisVideoProducerJni.getMetrics();
-            final KinesisVideoStreamMetrics streamMetrics = getMetrics();
-            mLog.debug("Kinesis Video client and stream metrics"
-                            + "\n\t>> Overall storage size: %s"
-                            + "\n\t>> Available storage size: %s"
-                            + "\n\t>> Allocated storage size: %s"
-                            + "\n\t>> Total view allocation size: %s"
-                            + "\n\t>> Total streams frame rate: %s"
-                            + "\n\t>> Total streams transfer rate: %s"
-                            + "\n\t>> Current view duration: %s"
-                            + "\n\t>> Overall view duration: %s"
-                            + "\n\t>> Current view size: %s"
-                            + "\n\t>> Overall view size: %s"
-                            + "\n\t>> Current frame rate: %s"
-                            + "\n\t>> Current transfer rate: %s",
-                    kinesisVideoMetrics.getContentStoreSize(),
-                    kinesisVideoMetrics.getContentStoreAvailableSize(),
-                    kinesisVideoMetrics.getContentStoreAllocatedSize(),
-                    kinesisVideoMetrics.getTotalContentViewSize(),
-                    kinesisVideoMetrics.getTotalFrameRate(),
-                    kinesisVideoMetrics.getTotalTransferRate(),
-                    streamMetrics.getCurrentViewDurationInTimeUnits(),
-                    streamMetrics.getOverallViewDurationInTimeUnits(),
-                    streamMetrics.getCurrentViewSize(),
-                    streamMetrics.getOverallViewSize(),
-                    streamMetrics.getCurrentFrameRate(),
-                    streamMetrics.getCurrentTransferRate());
-        }
-
-        mKinesisVideoProducerJni.putFrame(mStreamHandle, kinesisVideoFrame);
+            reportStaleFragments(startTime);
+            mFragmentLatencyTracker.onFragmentStart(kinesisVideoFrame.getPresentationTs(), startTime);
+        }
+    }
+
+    /**
+     * Stamps the traced frames the upload reader has read past. The read position is behind the latest frame
+     * put by the duration of the content which hasn't been read yet.
+     */
+    private void traceUploadRead(@Nonnull final KinesisVideoStreamMetrics streamMetrics) throws ProducerException {
+        mKinesisVideoProducerJni.getStreamMetrics(mStreamHandle, streamMetrics);
+        mFrameTracer.onUploadRead(mHeadTimecode - streamMetrics.getCurrentViewDurationInTimeUnits(),
+                System.nanoTime());
+    }
+
+    /**
+     * Reports the fragments which haven't been persisted within the stale timeout. Called on the key frames and
+     * by the metrics sampler, so the stale fragments are reported when the frames stop too.
+     *
+     * @param now {@link System#nanoTime()} now
+     */
+    void reportStaleFragments(final long now) throws ProducerException {
+        final List<FragmentLatencyTracker.StaleFragment> staleFragments =
+                mFragmentLatencyTracker.pollStaleFragments(now);
+        for (final FragmentLatencyTracker.StaleFragment staleFragment : staleFragments) {
+            staleFragmentReport(staleFragment.getTimecode(), staleFragment.getAckWaitDuration());
+        }
     }
 
     @Override
@@ -280,6 +607,10 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
 
     @Override
     public void streamTerminated(final long uploadHandle, final int statusCode) throws ProducerException {
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onStreamTerminated(uploadHandle, statusCode);
+        }
+
         mKinesisVideoProducerJni.streamTerminated(mStreamHandle, uploadHandle, statusCode);
     }
 
@@ -303,6 +634,18 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         return mStreamMetrics;
     }
 
+    @Nonnull
+    @Override
+    public KinesisVideoStreamReadMetrics getReadMetrics() {
+        return mReadMetrics;
+    }
+
+    @Nonnull
+    @Override
+    public MetricsRegistry getMetricsRegistry() {
+        return mMetricsRegistry;
+    }
+
     @Override
     public String getStreamName() {
         return mStreamInfo.getName();
@@ -316,6 +659,10 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Override
     public void streamUnderflowReport() throws ProducerException
     {
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onBufferUnderflow();
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.streamUnderflowReport();
         }
@@ -324,6 +671,10 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Override
     public void streamLatencyPressure(final long duration) throws ProducerException
     {
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onLatencyPressure(duration);
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.streamLatencyPressure(duration);
         }
@@ -332,6 +683,10 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Override
     public void streamConnectionStale(final long lastAckDuration) throws ProducerException
     {
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onConnectionStale(lastAckDuration);
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.streamConnectionStale(lastAckDuration);
         }
@@ -340,14 +695,49 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Override
     public void fragmentAckReceived(@Nonnull final KinesisVideoFragmentAck fragmentAck) throws ProducerException
     {
+        final int ackType = fragmentAck.getAckType().getIntType();
+        if (ackType > 0 && ackType < mAcksByType.length) {
+            mAcksByType[ackType].increment();
+        }
+
+        mFragmentLatencyTracker.onAck(ackType, fragmentAck.getTimestamp(), System.nanoTime());
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onAck(ackType, fragmentAck.getTimestamp(), fragmentAck.getResult());
+        }
+
+        if (mFrameTracer != null) {
+            traceAck(ackType, fragmentAck.getTimestamp());
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.fragmentAckReceived(fragmentAck);
         }
     }
 
+    private void traceAck(final int ackType, final long timecode) {
+        switch (ackType) {
+            case FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING:
+                mFrameTracer.onAck(TraceStage.ACK_BUFFERING, timecode, System.nanoTime());
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED:
+                mFrameTracer.onAck(TraceStage.ACK_RECEIVED, timecode, System.nanoTime());
+                break;
+            case FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED:
+                mFrameTracer.onAck(TraceStage.ACK_PERSISTED, timecode, System.nanoTime());
+                break;
+            default:
+                break;
+        }
+    }
+
     @Override
     public void droppedFrameReport(final long frameTimecode) throws ProducerException
     {
+        mDroppedFrames.increment();
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onDroppedFrame(frameTimecode);
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.droppedFrameReport(frameTimecode);
         }
@@ -356,14 +746,42 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Override
     public void droppedFragmentReport(final long fragmentTimecode) throws ProducerException
     {
+        mDroppedFragments.increment();
+        mFragmentLatencyTracker.resolve(fragmentTimecode);
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onDroppedFragment(fragmentTimecode);
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.droppedFragmentReport(fragmentTimecode);
         }
     }
 
+    @Override
+    public void staleFragmentReport(final long fragmentTimecode, final long ackWaitDuration) throws ProducerException
+    {
+        mStaleFragments.increment();
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onStaleFragment(fragmentTimecode, ackWaitDuration);
+        }
+
+        mLog.warn("Fragment %d of stream %s hasn't been persisted after %d ms", fragmentTimecode,
+                mStreamInfo.getName(), ackWaitDuration / Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND);
+
+        if (mStreamCallbacks != null) {
+            mStreamCallbacks.staleFragmentReport(fragmentTimecode, ackWaitDuration);
+        }
+    }
+
     @Override
     public void streamErrorReport(final long fragmentTimecode, final long statusCode) throws ProducerException
     {
+        mStreamErrors.increment();
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onStreamError(fragmentTimecode, statusCode);
+            dumpFlightRecorder(statusCode);
+        }
+
         if (mStreamCallbacks != null) {
             mStreamCallbacks.streamErrorReport(fragmentTimecode, statusCode);
         }
@@ -372,6 +790,10 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     @Override
     public void streamDataAvailable(final long uploadHandle, final long duration, final long availableSize) throws ProducerException
     {
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onDataAvailable(uploadHandle, duration, availableSize);
+        }
+
         // Unblock the reader thread
         final NativeDataInputStream inputStreamToNotify = mInputStreamMap.get(uploadHandle);
         if (inputStreamToNotify != null) {
@@ -401,6 +823,10 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
     public void streamClosed(final long uploadHandle) throws ProducerException
     {
         mLog.debug("Stream %s is closed", mStreamInfo.getName());
+        if (mFlightRecorder != null) {
+            mFlightRecorder.onSessionEnd(uploadHandle);
+        }
+
         // Release the stopped latch
         mStoppedLatch.countDown();
 
@@ -435,6 +861,20 @@ public class NativeKinesisVideoProducerStream implements KinesisVideoProducerStr
         }
     }
 
+    /**
+     * Logs the events leading to a stream error. The errors tend to come in bursts, so the dumps are rate limited.
+     */
+    private void dumpFlightRecorder(final long statusCode) {
+        final long now = System.nanoTime();
+        if (mFlightRecorderDumpTime != 0 && now - mFlightRecorderDumpTime < FLIGHT_RECORDER_DUMP_INTERVAL_IN_NANOS) {
+            return;
+        }
+
+        mFlightRecorderDumpTime = now;
+        mLog.error("Stream %s failed with status 0x%08x after the events%n%s", mStreamInfo.getName(), statusCode,
+                mFlightRecorder.dump());
+    }
+
     private void notifyEndOfStream(final long uploadHandle) {
         final NativeDataInputStream inputStream = mInputStreamMap.get(uploadHandle);
         if (inputStream != null) {
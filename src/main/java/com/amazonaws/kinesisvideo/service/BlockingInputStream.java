@@ -6,19 +6,29 @@ import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 /**
- * Implementation of an {@link InputStream} which blocks read operations until triggered
+ * Implementation of an {@link InputStream} which blocks read operations until triggered.
+ *
+ * The stream can also be read as a {@link ReadableByteChannel}. If the underlying stream is a channel
+ * the reads are forwarded to it directly.
  */
-public class BlockingInputStream extends InputStream {
+public class BlockingInputStream extends InputStream implements ReadableByteChannel {
     private final Object monitor;
     private final InputStream inputStream;
+    private final ReadableByteChannel channel;
     private final Log log;
     private boolean unblocked;
 
     public BlockingInputStream(@Nonnull final InputStream inputStream,
                                @Nonnull final Log log) {
         this.inputStream = Preconditions.checkNotNull(inputStream);
+        this.channel = inputStream instanceof ReadableByteChannel
+                ? (ReadableByteChannel) inputStream
+                : Channels.newChannel(inputStream);
         this.log = Preconditions.checkNotNull(log);
         this.unblocked = false;
         this.monitor = new Object();
@@ -47,6 +57,24 @@ public class BlockingInputStream extends InputStream {
         return inputStream.read(b);
     }
 
+    @Override
+    public int read(final ByteBuffer dst)
+            throws IOException {
+        await();
+        return channel.read(dst);
+    }
+
+    @Override
+    public int available()
+            throws IOException {
+        return inputStream.available();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
     @Override
     public void close()
             throws IOException {
@@ -11,6 +11,7 @@ import com.amazonaws.kinesisvideo.common.preconditions.Preconditions;
 import com.amazonaws.kinesisvideo.producer.*;
 import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
 import com.amazonaws.kinesisvideo.producer.jni.NativeKinesisVideoProducerJni;
+import com.amazonaws.kinesisvideo.service.spool.OfflineSpool;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -210,6 +211,12 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
      */
     private final KinesisVideoClientConfiguration configuration;
 
+    /**
+     * Spool used while the connectivity is lost, if configured.
+     */
+    @Nullable
+    private final OfflineSpool offlineSpool;
+
     /**
      * Implementation of the {@link KinesisVideoProducer} object.
      */
@@ -234,9 +241,14 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         this.kinesisVideoServiceClient = Preconditions.checkNotNull(kinesisVideoServiceClient);
         this.log = Preconditions.checkNotNull(log);
         this.configuration = Preconditions.checkNotNull(configuration);
+        this.offlineSpool = configuration.getOfflineSpool();
 
         this.uploadHandle = 0;
 
+        if (offlineSpool != null) {
+            offlineSpool.attach(kinesisVideoServiceClient, configuration.getCredentialsProvider());
+        }
+
         try {
             this.kinesisVideoServiceClient.initialize(configuration);
         } catch (final KinesisVideoException e) {
@@ -339,9 +351,21 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                             timeoutInMillis,
                             credentialsProvider);
                     statusCode = HTTP_OK;
+
+                    if (offlineSpool != null) {
+                        offlineSpool.cacheStreamDescription(streamName, streamDescription);
+                    }
                 } catch (final KinesisVideoException e) {
                     statusCode = getStatusCodeFromException(e);
                     log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
+
+                    // Replay the last known description while the connectivity is lost
+                    if (offlineSpool != null && OfflineSpool.isConnectivityError(e)
+                            && offlineSpool.getCachedStreamDescription(streamName) != null) {
+                        offlineSpool.goOffline();
+                        streamDescription = offlineSpool.getCachedStreamDescription(streamName);
+                        statusCode = HTTP_OK;
+                    }
                 }
 
                 try {
@@ -380,9 +404,21 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                             apiName,
                             timeoutInMillis,
                             credentialsProvider);
+
+                    if (offlineSpool != null && !isBlank(endpoint)) {
+                        offlineSpool.cacheDataEndpoint(streamName, endpoint);
+                    }
                 } catch (final KinesisVideoException e) {
                     log.error("Kinesis Video service client returned an error " + e.getMessage() + " Reporting to Kinesis Video PIC.");
                     statusCode = getStatusCodeFromException(e);
+
+                    // Replay the last known endpoint while the connectivity is lost
+                    if (offlineSpool != null && OfflineSpool.isConnectivityError(e)
+                            && offlineSpool.getCachedDataEndpoint(streamName) != null) {
+                        offlineSpool.goOffline();
+                        endpoint = offlineSpool.getCachedDataEndpoint(streamName);
+                        statusCode = HTTP_OK;
+                    }
                 }
 
                 if (statusCode != HTTP_OK && isBlank(endpoint)) {
@@ -518,17 +554,27 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
                     addOngoingStreams(dataStream, ackConsumer, completionCallback, kinesisVideoProducerStream);
 
                     // This will kick-off a long running operation
-                    kinesisVideoServiceClient.putMedia(streamName,
-                            containerType,
-                            streamStartTimeInMillis,
-                            absoluteFragmentTimes,
-                            ackRequired,
-                            dataEndpoint,
-                            timeoutInMillis,
-                            credentialsProvider,
-                            dataStream,
-                            blockingAckConsumer,
-                            completionCallback);
+                    if (offlineSpool != null && offlineSpool.isOffline()) {
+                        offlineSpool.spool(streamName,
+                                containerType,
+                                streamStartTimeInMillis,
+                                absoluteFragmentTimes,
+                                dataStream,
+                                blockingAckConsumer,
+                                completionCallback);
+                    } else {
+                        putMediaOrSpool(streamName,
+                                containerType,
+                                streamStartTimeInMillis,
+                                absoluteFragmentTimes,
+                                ackRequired,
+                                dataEndpoint,
+                                timeoutInMillis,
+                                credentialsProvider,
+                                dataStream,
+                                blockingAckConsumer,
+                                completionCallback);
+                    }
 
                     // Block until we parse the headers
                     blockingAckConsumer.awaitResponse();
@@ -759,6 +805,80 @@ public class DefaultServiceCallbacksImpl implements ServiceCallbacks {
         }
     }
 
+    /**
+     * Starts the PutMedia session falling back onto the offline spool, if configured, when the endpoint
+     * can't be reached.
+     */
+    // CHECKSTYLE:SUPPRESS:ParameterNumber
+    private void putMediaOrSpool(@Nonnull final String streamName,
+                                 @Nonnull final String containerType,
+                                 final long streamStartTimeInMillis,
+                                 final boolean absoluteFragmentTimes,
+                                 final boolean ackRequired,
+                                 @Nonnull final String dataEndpoint,
+                                 final long timeoutInMillis,
+                                 @Nullable final KinesisVideoCredentialsProvider credentialsProvider,
+                                 @Nonnull final InputStream dataStream,
+                                 @Nonnull final Consumer<InputStream> acksConsumer,
+                                 @Nonnull final Consumer<Exception> completionCallback)
+            throws KinesisVideoException {
+        if (offlineSpool == null) {
+            kinesisVideoServiceClient.putMedia(streamName,
+                    containerType,
+                    streamStartTimeInMillis,
+                    absoluteFragmentTimes,
+                    ackRequired,
+                    dataEndpoint,
+                    timeoutInMillis,
+                    credentialsProvider,
+                    dataStream,
+                    acksConsumer,
+                    completionCallback);
+            return;
+        }
+
+        // Connectivity failures of an established session go through the completion
+        final Consumer<Exception> connectivityAwareCompletion = new Consumer<Exception>() {
+            @Override
+            public void accept(@Nullable final Exception object) {
+                if (OfflineSpool.isConnectivityError(object)) {
+                    offlineSpool.goOffline();
+                }
+
+                completionCallback.accept(object);
+            }
+        };
+
+        try {
+            kinesisVideoServiceClient.putMedia(streamName,
+                    containerType,
+                    streamStartTimeInMillis,
+                    absoluteFragmentTimes,
+                    ackRequired,
+                    dataEndpoint,
+                    timeoutInMillis,
+                    credentialsProvider,
+                    dataStream,
+                    acksConsumer,
+                    connectivityAwareCompletion);
+        } catch (final RuntimeException e) {
+            if (!OfflineSpool.isConnectivityError(e)) {
+                throw e;
+            }
+
+            // Nothing has been read from the data stream yet so the session can be spooled instead
+            log.warn("Unable to connect to " + dataEndpoint + ". Spooling the session locally.");
+            offlineSpool.goOffline();
+            offlineSpool.spool(streamName,
+                    containerType,
+                    streamStartTimeInMillis,
+                    absoluteFragmentTimes,
+                    dataStream,
+                    acksConsumer,
+                    completionCallback);
+        }
+    }
+
     private void addOngoingStreams(@Nonnull final BlockingInputStream dataStream,
                                    @Nonnull final AckConsumer ackConsumer,
                                    @Nonnull final CompletionCallback completionCallback,
@@ -0,0 +1,256 @@
+package com.amazonaws.kinesisvideo.service.local;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * REST-JSON control plane API of the {@link LocalKinesisVideoServer}.
+ * <p>
+ * Errors are reported the way the service does: with the error type in the x-amzn-ErrorType header and a JSON
+ * body with the message which the AWS SDK turns into the modeled exceptions.
+ */
+final class ControlPlaneHandler implements HttpHandler {
+    static final String CREATE_STREAM_PATH = "/createStream";
+    static final String DESCRIBE_STREAM_PATH = "/describeStream";
+    static final String DELETE_STREAM_PATH = "/deleteStream";
+    static final String TAG_STREAM_PATH = "/tagStream";
+    static final String GET_DATA_ENDPOINT_PATH = "/getDataEndpoint";
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_INTERNAL_ERROR = 500;
+    private static final double MILLIS_IN_A_SECOND = 1000.0;
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String CONTENT_TYPE = "application/json";
+    private static final String ERROR_TYPE_HEADER = "x-amzn-ErrorType";
+    private static final String REQUEST_ID_HEADER = "x-amzn-RequestId";
+    private static final String RESOURCE_NOT_FOUND = "ResourceNotFoundException";
+    private static final String RESOURCE_IN_USE = "ResourceInUseException";
+    private static final String INVALID_ARGUMENT = "InvalidArgumentException";
+    private static final String INTERNAL_FAILURE = "InternalFailure";
+
+    private final LocalKinesisVideoServer mServer;
+
+    ControlPlaneHandler(@Nonnull final LocalKinesisVideoServer server) {
+        mServer = checkNotNull(server);
+    }
+
+    @Override
+    public void handle(@Nonnull final HttpExchange exchange) throws IOException {
+        try {
+            delay(mServer.getControlPlaneLatencyInMillis());
+            if (mServer.shouldFail(mServer.getControlPlaneErrorRate())) {
+                throw new ServiceError(HTTP_INTERNAL_ERROR, INTERNAL_FAILURE, "Injected failure");
+            }
+
+            final JsonObject request = readRequest(exchange);
+            final String path = exchange.getRequestURI().getPath();
+            final JsonObject response;
+            if (CREATE_STREAM_PATH.equals(path)) {
+                response = createStream(request);
+            } else if (DESCRIBE_STREAM_PATH.equals(path)) {
+                response = describeStream(request);
+            } else if (DELETE_STREAM_PATH.equals(path)) {
+                response = deleteStream(request);
+            } else if (TAG_STREAM_PATH.equals(path)) {
+                response = tagStream(request);
+            } else if (GET_DATA_ENDPOINT_PATH.equals(path)) {
+                response = getDataEndpoint(request);
+            } else {
+                throw new ServiceError(HTTP_NOT_FOUND, INVALID_ARGUMENT, "Unknown operation " + path);
+            }
+
+            respond(exchange, HTTP_OK, null, response);
+        } catch (final ServiceError e) {
+            final JsonObject body = new JsonObject();
+            body.addProperty("message", e.getMessage());
+            respond(exchange, e.mStatusCode, e.mErrorType, body);
+        } catch (final RuntimeException e) {
+            mServer.getLog().exception(e, "Local control plane call threw an exception");
+            final JsonObject body = new JsonObject();
+            body.addProperty("message", String.valueOf(e.getMessage()));
+            respond(exchange, HTTP_INTERNAL_ERROR, INTERNAL_FAILURE, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Nonnull
+    private JsonObject createStream(@Nonnull final JsonObject request) throws ServiceError {
+        final String streamName = getRequiredString(request, "StreamName");
+        final LocalStream stream = mServer.createStream(streamName,
+                getString(request, "DeviceName"),
+                getString(request, "MediaType"),
+                getString(request, "KmsKeyId"),
+                request.has("DataRetentionInHours") ? request.get("DataRetentionInHours").getAsInt() : 0);
+        if (stream == null) {
+            throw new ServiceError(HTTP_BAD_REQUEST, RESOURCE_IN_USE, "Stream " + streamName + " already exists");
+        }
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("StreamARN", stream.getStreamArn());
+        return response;
+    }
+
+    @Nonnull
+    private JsonObject describeStream(@Nonnull final JsonObject request) throws ServiceError {
+        final LocalStream stream = findStream(request);
+        final JsonObject streamInfo = new JsonObject();
+        streamInfo.addProperty("DeviceName", stream.getDeviceName());
+        streamInfo.addProperty("StreamName", stream.getStreamName());
+        streamInfo.addProperty("StreamARN", stream.getStreamArn());
+        streamInfo.addProperty("MediaType", stream.getMediaType());
+        streamInfo.addProperty("KmsKeyId", stream.getKmsKeyId());
+        streamInfo.addProperty("Version", stream.getVersion());
+        streamInfo.addProperty("Status", stream.getStatus());
+        streamInfo.addProperty("CreationTime", stream.getCreationTime() / MILLIS_IN_A_SECOND);
+        streamInfo.addProperty("DataRetentionInHours", stream.getDataRetentionInHours());
+
+        final JsonObject response = new JsonObject();
+        response.add("StreamInfo", streamInfo);
+        return response;
+    }
+
+    @Nonnull
+    private JsonObject deleteStream(@Nonnull final JsonObject request) throws ServiceError {
+        final LocalStream stream = findStream(request);
+        if (!mServer.deleteStream(stream)) {
+            throw new ServiceError(HTTP_NOT_FOUND, RESOURCE_NOT_FOUND, "Stream has been deleted already");
+        }
+
+        return new JsonObject();
+    }
+
+    @Nonnull
+    private JsonObject tagStream(@Nonnull final JsonObject request) throws ServiceError {
+        final LocalStream stream = findStream(request);
+        final Map<String, String> tags = new HashMap<String, String>();
+        if (request.has("Tags") && request.get("Tags").isJsonObject()) {
+            for (final Map.Entry<String, JsonElement> tag : request.getAsJsonObject("Tags").entrySet()) {
+                tags.put(tag.getKey(), tag.getValue().getAsString());
+            }
+        }
+
+        stream.addTags(tags);
+        return new JsonObject();
+    }
+
+    @Nonnull
+    private JsonObject getDataEndpoint(@Nonnull final JsonObject request) throws ServiceError {
+        findStream(request);
+        getRequiredString(request, "APIName");
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("DataEndpoint", mServer.getEndpoint());
+        return response;
+    }
+
+    /**
+     * Finds the stream by either its name or ARN
+     */
+    @Nonnull
+    private LocalStream findStream(@Nonnull final JsonObject request) throws ServiceError {
+        final String streamName = getString(request, "StreamName");
+        final String streamArn = getString(request, "StreamARN");
+        if (streamName == null && streamArn == null) {
+            throw new ServiceError(HTTP_BAD_REQUEST, INVALID_ARGUMENT, "Either StreamName or StreamARN is required");
+        }
+
+        final LocalStream stream = streamName != null
+                ? mServer.findStream(streamName)
+                : mServer.findStreamByArn(streamArn);
+        if (stream == null) {
+            throw new ServiceError(HTTP_NOT_FOUND, RESOURCE_NOT_FOUND,
+                    "Stream " + (streamName != null ? streamName : streamArn) + " not found");
+        }
+
+        return stream;
+    }
+
+    @Nonnull
+    private static JsonObject readRequest(@Nonnull final HttpExchange exchange) throws IOException, ServiceError {
+        try (final InputStreamReader reader =
+                     new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            final JsonElement request = new JsonParser().parse(reader);
+            return request.isJsonObject() ? request.getAsJsonObject() : new JsonObject();
+        } catch (final JsonParseException e) {
+            throw new ServiceError(HTTP_BAD_REQUEST, INVALID_ARGUMENT, "Malformed request: " + e.getMessage());
+        }
+    }
+
+    private static void respond(@Nonnull final HttpExchange exchange,
+                                final int statusCode,
+                                @Nullable final String errorType,
+                                @Nonnull final JsonObject body) throws IOException {
+        final byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, CONTENT_TYPE);
+        exchange.getResponseHeaders().set(REQUEST_ID_HEADER, Long.toHexString(System.nanoTime()));
+        if (errorType != null) {
+            exchange.getResponseHeaders().set(ERROR_TYPE_HEADER, errorType);
+        }
+
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (final OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    @Nullable
+    private static String getString(@Nonnull final JsonObject request, @Nonnull final String name) {
+        final JsonElement element = request.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    @Nonnull
+    private static String getRequiredString(@Nonnull final JsonObject request, @Nonnull final String name)
+            throws ServiceError {
+        final String value = getString(request, name);
+        if (value == null || value.isEmpty()) {
+            throw new ServiceError(HTTP_BAD_REQUEST, INVALID_ARGUMENT, name + " is required");
+        }
+
+        return value;
+    }
+
+    private static void delay(final long delayInMillis) {
+        if (delayInMillis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(delayInMillis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An error returned to the caller
+     */
+    private static final class ServiceError extends Exception {
+        private final int mStatusCode;
+        private final String mErrorType;
+
+        private ServiceError(final int statusCode, @Nonnull final String errorType, @Nonnull final String message) {
+            super(message);
+            mStatusCode = statusCode;
+            mErrorType = errorType;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.amazonaws.kinesisvideo.service.local;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottlerImpl;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+
+/**
+ * An embeddable stand-in for the Kinesis Video Streams control plane and the PutMedia endpoint listening on the
+ * loopback interface.
+ * <p>
+ * The server implements CreateStream, DescribeStream, DeleteStream, TagStream and GetDataEndpoint in the REST-JSON
+ * form the AWS SDK speaks, and a PutMedia endpoint which parses the incoming MKV clusters and streams back the
+ * BUFFERING, RECEIVED and PERSISTED acks. The latencies, the error rates and the ingestion bandwidth are
+ * configurable which allows for repeatable throughput and latency measurements without an AWS account.
+ * <p>
+ * Point the client at it with {@code KinesisVideoClientConfiguration.builder().withEndpoint(server.getEndpoint())}.
+ * GetDataEndpoint returns the same endpoint. Requests aren't authenticated.
+ */
+public final class LocalKinesisVideoServer implements Closeable {
+    private static final String ARN_FORMAT = "arn:aws:kinesisvideo:%s:000000000000:stream/%s/%d";
+    private static final String ENDPOINT_FORMAT = "http://%s:%d";
+    private static final long BITS_IN_A_KILOBIT = 1024L;
+    private static final int ACK_SCHEDULER_THREADS = 2;
+
+    private final Builder mBuilder;
+    private final Log mLog;
+    private final HttpServer mHttpServer;
+    private final ExecutorService mRequestExecutor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService mAckScheduler = Executors.newScheduledThreadPool(ACK_SCHEDULER_THREADS);
+    private final ConcurrentMap<String, LocalStream> mStreams = new ConcurrentHashMap<String, LocalStream>();
+    private final AtomicLong mFragmentNumber = new AtomicLong();
+    private final Random mRandom;
+
+    private LocalKinesisVideoServer(final Builder builder) throws IOException {
+        mBuilder = builder;
+        mLog = builder.mLog;
+        mRandom = new Random(builder.mSeed);
+        mHttpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.mPort), 0);
+        mHttpServer.setExecutor(mRequestExecutor);
+
+        final ControlPlaneHandler controlPlaneHandler = new ControlPlaneHandler(this);
+        mHttpServer.createContext(ControlPlaneHandler.CREATE_STREAM_PATH, controlPlaneHandler);
+        mHttpServer.createContext(ControlPlaneHandler.DESCRIBE_STREAM_PATH, controlPlaneHandler);
+        mHttpServer.createContext(ControlPlaneHandler.DELETE_STREAM_PATH, controlPlaneHandler);
+        mHttpServer.createContext(ControlPlaneHandler.TAG_STREAM_PATH, controlPlaneHandler);
+        mHttpServer.createContext(ControlPlaneHandler.GET_DATA_ENDPOINT_PATH, controlPlaneHandler);
+        mHttpServer.createContext(PutMediaHandler.PUT_MEDIA_PATH, new PutMediaHandler(this));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts listening. Use {@link #getEndpoint()} for the actual port when it was left to the system.
+     */
+    public LocalKinesisVideoServer start() {
+        mHttpServer.start();
+        mLog.info("Local Kinesis Video server listening on %s", getEndpoint());
+        return this;
+    }
+
+    /**
+     * The control plane and data endpoint, e.g. http://127.0.0.1:53123
+     */
+    @Nonnull
+    public String getEndpoint() {
+        final InetSocketAddress address = mHttpServer.getAddress();
+        return String.format(Locale.US, ENDPOINT_FORMAT, address.getAddress().getHostAddress(), address.getPort());
+    }
+
+    /**
+     * Creates a stream without going through the API
+     */
+    @Nonnull
+    public LocalStream createStream(@Nonnull final String streamName) {
+        createStream(streamName, null, null, null, 0);
+        return mStreams.get(streamName);
+    }
+
+    @Nullable
+    public LocalStream getStream(@Nonnull final String streamName) {
+        return mStreams.get(streamName);
+    }
+
+    @Nonnull
+    public List<LocalStream> getStreams() {
+        return new ArrayList<LocalStream>(mStreams.values());
+    }
+
+    @Override
+    public void close() {
+        mHttpServer.stop(0);
+        mAckScheduler.shutdownNow();
+        mRequestExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the new stream or null if a stream with the name exists already
+     */
+    @Nullable
+    LocalStream createStream(@Nonnull final String streamName,
+                             @Nullable final String deviceName,
+                             @Nullable final String mediaType,
+                             @Nullable final String kmsKeyId,
+                             final int dataRetentionInHours) {
+        final LocalStream stream = new LocalStream(streamName,
+                String.format(Locale.US, ARN_FORMAT, mBuilder.mRegion, streamName, System.currentTimeMillis()),
+                deviceName,
+                mediaType,
+                kmsKeyId,
+                dataRetentionInHours,
+                mBuilder.mStreamKbps == null
+                        ? null
+                        : new BandwidthThrottlerImpl(mBuilder.mStreamKbps * BITS_IN_A_KILOBIT));
+        return mStreams.putIfAbsent(streamName, stream) == null ? stream : null;
+    }
+
+    /**
+     * Looks the stream up by its name, creating it when the auto creation is enabled
+     */
+    @Nullable
+    LocalStream findStream(@Nullable final String streamName) {
+        if (streamName == null) {
+            return null;
+        }
+
+        final LocalStream stream = mStreams.get(streamName);
+        if (stream != null || !mBuilder.mAutoCreateStreams) {
+            return stream;
+        }
+
+        return createStream(streamName);
+    }
+
+    @Nullable
+    LocalStream findStreamByArn(@Nullable final String streamArn) {
+        for (final LocalStream stream : mStreams.values()) {
+            if (stream.getStreamArn().equals(streamArn)) {
+                return stream;
+            }
+        }
+
+        return null;
+    }
+
+    boolean deleteStream(@Nonnull final LocalStream stream) {
+        return mStreams.remove(stream.getStreamName(), stream);
+    }
+
+    long nextFragmentNumber() {
+        return mFragmentNumber.incrementAndGet();
+    }
+
+    /**
+     * Draws whether to inject an error
+     */
+    boolean shouldFail(final double errorRate) {
+        if (errorRate <= 0) {
+            return false;
+        }
+
+        synchronized (mRandom) {
+            return mRandom.nextDouble() < errorRate;
+        }
+    }
+
+    @Nonnull
+    ScheduledExecutorService getAckScheduler() {
+        return mAckScheduler;
+    }
+
+    @Nonnull
+    Log getLog() {
+        return mLog;
+    }
+
+    long getControlPlaneLatencyInMillis() {
+        return mBuilder.mControlPlaneLatencyInMillis;
+    }
+
+    double getControlPlaneErrorRate() {
+        return mBuilder.mControlPlaneErrorRate;
+    }
+
+    long getBufferingAckLatencyInMillis() {
+        return mBuilder.mBufferingAckLatencyInMillis;
+    }
+
+    long getReceivedAckLatencyInMillis() {
+        return mBuilder.mReceivedAckLatencyInMillis;
+    }
+
+    long getPersistedAckLatencyInMillis() {
+        return mBuilder.mPersistedAckLatencyInMillis;
+    }
+
+    double getFragmentErrorRate() {
+        return mBuilder.mFragmentErrorRate;
+    }
+
+    int getFragmentErrorId() {
+        return mBuilder.mFragmentErrorId;
+    }
+
+    public static final class Builder {
+        private int mPort;
+        private String mRegion = "us-west-2";
+        private long mControlPlaneLatencyInMillis;
+        private double mControlPlaneErrorRate;
+        private long mBufferingAckLatencyInMillis;
+        private long mReceivedAckLatencyInMillis;
+        private long mPersistedAckLatencyInMillis;
+        private double mFragmentErrorRate;
+        private int mFragmentErrorId = PutMediaHandler.INTERNAL_ERROR_ID;
+        private Long mStreamKbps;
+        private boolean mAutoCreateStreams;
+        private long mSeed;
+        private Log mLog = new Log(Log.SYSTEM_OUT);
+
+        private Builder() { }
+
+        /**
+         * Port to listen on. Defaults to 0 which picks a free port.
+         */
+        public Builder port(final int port) {
+            mPort = port;
+            return this;
+        }
+
+        /**
+         * Region used in the stream ARNs
+         */
+        public Builder region(final String region) {
+            mRegion = region;
+            return this;
+        }
+
+        /**
+         * Delay of every control plane response
+         */
+        public Builder controlPlaneLatencyInMillis(final long latencyInMillis) {
+            mControlPlaneLatencyInMillis = latencyInMillis;
+            return this;
+        }
+
+        /**
+         * Share of the control plane calls failed with an InternalFailure
+         */
+        public Builder controlPlaneErrorRate(final double errorRate) {
+            mControlPlaneErrorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Delay of the BUFFERING ack after the start of a fragment
+         */
+        public Builder bufferingAckLatencyInMillis(final long latencyInMillis) {
+            mBufferingAckLatencyInMillis = latencyInMillis;
+            return this;
+        }
+
+        /**
+         * Delay of the RECEIVED ack after the end of a fragment
+         */
+        public Builder receivedAckLatencyInMillis(final long latencyInMillis) {
+            mReceivedAckLatencyInMillis = latencyInMillis;
+            return this;
+        }
+
+        /**
+         * Delay of the PERSISTED ack after the end of a fragment
+         */
+        public Builder persistedAckLatencyInMillis(final long latencyInMillis) {
+            mPersistedAckLatencyInMillis = latencyInMillis;
+            return this;
+        }
+
+        /**
+         * Share of the fragments answered with an ERROR ack instead of the PERSISTED one. The session is ended
+         * after an error as the service does.
+         */
+        public Builder fragmentErrorRate(final double errorRate) {
+            mFragmentErrorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Error id reported in the ERROR acks, 5000 (internal error) by default
+         */
+        public Builder fragmentErrorId(final int errorId) {
+            mFragmentErrorId = errorId;
+            return this;
+        }
+
+        /**
+         * Ingestion bandwidth cap of every stream, shared by all of the sessions of the stream
+         */
+        public Builder streamKbps(final long kbps) {
+            mStreamKbps = kbps;
+            return this;
+        }
+
+        /**
+         * Creates the unknown streams on the first use instead of failing with ResourceNotFoundException
+         */
+        public Builder autoCreateStreams(final boolean autoCreateStreams) {
+            mAutoCreateStreams = autoCreateStreams;
+            return this;
+        }
+
+        /**
+         * Seed of the error injection
+         */
+        public Builder seed(final long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        public Builder log(final Log log) {
+            if (log == null) {
+                throw new NullPointerException("log");
+            }
+            mLog = log;
+            return this;
+        }
+
+        public LocalKinesisVideoServer build() throws IOException {
+            checkArgument(mControlPlaneErrorRate >= 0 && mControlPlaneErrorRate <= 1,
+                    "Error rate must be between 0 and 1");
+            checkArgument(mFragmentErrorRate >= 0 && mFragmentErrorRate <= 1, "Error rate must be between 0 and 1");
+            return new LocalKinesisVideoServer(this);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.amazonaws.kinesisvideo.service.local;
+
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * A stream hosted by the {@link LocalKinesisVideoServer} along with the counters of the data it has received.
+ */
+public final class LocalStream {
+    private static final String ACTIVE = "ACTIVE";
+
+    private final String mStreamName;
+    private final String mStreamArn;
+    private final String mDeviceName;
+    private final String mMediaType;
+    private final String mKmsKeyId;
+    private final int mDataRetentionInHours;
+    private final long mCreationTime = System.currentTimeMillis();
+    private final BandwidthThrottler mThrottler;
+    private final Map<String, String> mTags = new HashMap<String, String>();
+
+    private final AtomicLong mSessions = new AtomicLong();
+    private final AtomicLong mBytesReceived = new AtomicLong();
+    private final AtomicLong mFragmentsReceived = new AtomicLong();
+    private final AtomicLong mFragmentsPersisted = new AtomicLong();
+    private final AtomicLong mFragmentErrors = new AtomicLong();
+
+    // CHECKSTYLE:SUPPRESS:ParameterNumber
+    LocalStream(@Nonnull final String streamName,
+                @Nonnull final String streamArn,
+                @Nullable final String deviceName,
+                @Nullable final String mediaType,
+                @Nullable final String kmsKeyId,
+                final int dataRetentionInHours,
+                @Nullable final BandwidthThrottler throttler) {
+        mStreamName = checkNotNull(streamName);
+        mStreamArn = checkNotNull(streamArn);
+        mDeviceName = deviceName;
+        mMediaType = mediaType;
+        mKmsKeyId = kmsKeyId;
+        mDataRetentionInHours = dataRetentionInHours;
+        mThrottler = throttler;
+    }
+
+    @Nonnull
+    public String getStreamName() {
+        return mStreamName;
+    }
+
+    @Nonnull
+    public String getStreamArn() {
+        return mStreamArn;
+    }
+
+    @Nullable
+    public String getDeviceName() {
+        return mDeviceName;
+    }
+
+    @Nullable
+    public String getMediaType() {
+        return mMediaType;
+    }
+
+    @Nullable
+    public String getKmsKeyId() {
+        return mKmsKeyId;
+    }
+
+    public int getDataRetentionInHours() {
+        return mDataRetentionInHours;
+    }
+
+    public long getCreationTime() {
+        return mCreationTime;
+    }
+
+    @Nonnull
+    public String getStatus() {
+        return ACTIVE;
+    }
+
+    /**
+     * The version never changes as the streams can't be updated
+     */
+    @Nonnull
+    public String getVersion() {
+        return "1";
+    }
+
+    @Nonnull
+    public synchronized Map<String, String> getTags() {
+        return new HashMap<String, String>(mTags);
+    }
+
+    /**
+     * Number of PutMedia sessions accepted for the stream
+     */
+    public long getSessions() {
+        return mSessions.get();
+    }
+
+    /**
+     * MKV bytes received, including the headers
+     */
+    public long getBytesReceived() {
+        return mBytesReceived.get();
+    }
+
+    public long getFragmentsReceived() {
+        return mFragmentsReceived.get();
+    }
+
+    public long getFragmentsPersisted() {
+        return mFragmentsPersisted.get();
+    }
+
+    /**
+     * Number of the fragments answered with an ERROR ack
+     */
+    public long getFragmentErrors() {
+        return mFragmentErrors.get();
+    }
+
+    synchronized void addTags(@Nonnull final Map<String, String> tags) {
+        mTags.putAll(tags);
+    }
+
+    @Nullable
+    BandwidthThrottler getThrottler() {
+        return mThrottler;
+    }
+
+    void onSessionStarted() {
+        mSessions.incrementAndGet();
+    }
+
+    void onBytesReceived(final int bytes) {
+        mBytesReceived.addAndGet(bytes);
+    }
+
+    void onFragmentReceived() {
+        mFragmentsReceived.incrementAndGet();
+    }
+
+    void onFragmentPersisted() {
+        mFragmentsPersisted.incrementAndGet();
+    }
+
+    void onFragmentError() {
+        mFragmentErrors.incrementAndGet();
+    }
+}
@@ -0,0 +1,274 @@
+package com.amazonaws.kinesisvideo.service.local;
+
+import com.amazonaws.kinesisvideo.client.mkv.MkvBoundaries;
+import com.amazonaws.kinesisvideo.client.mkv.MkvStreamSplitter;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottledInputStream;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * PutMedia endpoint of the {@link LocalKinesisVideoServer}.
+ * <p>
+ * The chunked MKV body is split on the cluster boundaries. A BUFFERING ack is sent once the timecode of a cluster
+ * has been read, and the RECEIVED and PERSISTED (or ERROR) acks once the next cluster starts or the body ends.
+ * Every ack is delayed by its configured latency while keeping the acks of a session in order.
+ */
+final class PutMediaHandler implements HttpHandler {
+    static final String PUT_MEDIA_PATH = "/putMedia";
+    static final int INTERNAL_ERROR_ID = 5000;
+
+    private static final String STREAM_NAME_HEADER = "x-amzn-stream-name";
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int CLUSTER_PREFIX_SIZE = 32;
+    private static final long DRAIN_TIMEOUT_IN_MILLIS = 60000L;
+    private static final String BUFFERING = "BUFFERING";
+    private static final String RECEIVED = "RECEIVED";
+    private static final String PERSISTED = "PERSISTED";
+    private static final String ACK_FORMAT = "{\"EventType\":\"%s\",\"FragmentTimecode\":%d,\"FragmentNumber\":\"%d\"}";
+    private static final String ERROR_ACK_FORMAT =
+            "{\"EventType\":\"ERROR\",\"FragmentTimecode\":%d,\"FragmentNumber\":\"%d\",\"ErrorId\":%d}";
+    private static final String NOT_FOUND_BODY = "{\"message\":\"Stream not found\"}";
+
+    private final LocalKinesisVideoServer mServer;
+
+    PutMediaHandler(@Nonnull final LocalKinesisVideoServer server) {
+        mServer = checkNotNull(server);
+    }
+
+    @Override
+    public void handle(@Nonnull final HttpExchange exchange) throws IOException {
+        try {
+            final LocalStream stream = mServer.findStream(exchange.getRequestHeaders().getFirst(STREAM_NAME_HEADER));
+            if (stream == null) {
+                final byte[] body = NOT_FOUND_BODY.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("x-amzn-ErrorType", "ResourceNotFoundException");
+                exchange.sendResponseHeaders(HTTP_NOT_FOUND, body.length);
+                exchange.getResponseBody().write(body);
+                return;
+            }
+
+            stream.onSessionStarted();
+
+            // Zero length makes the response chunked so that the acks are streamed
+            exchange.sendResponseHeaders(HTTP_OK, 0);
+            new Session(stream, exchange.getResponseBody()).run(exchange.getRequestBody());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Parses the body of a single PutMedia request and streams back the acks
+     */
+    private final class Session implements MkvStreamSplitter.Listener {
+        private final LocalStream mStream;
+        private final OutputStream mAckStream;
+        private final Log mLog = mServer.getLog();
+        private final MkvStreamSplitter mSplitter = new MkvStreamSplitter();
+
+        // Guarded by this
+        private final ArrayDeque<PendingAck> mPendingAcks = new ArrayDeque<PendingAck>();
+        private long mLastAckDueTime;
+        private boolean mAckStreamBroken;
+
+        // Current fragment state
+        private boolean mFragmentOpen;
+        private boolean mBufferingAcked;
+        private long mFragmentNumber;
+        private long mFragmentTimecode;
+        private final byte[] mClusterPrefix = new byte[CLUSTER_PREFIX_SIZE];
+        private int mClusterPrefixLength;
+        private boolean mReadingTimecode;
+        private boolean mFailed;
+
+        private Session(@Nonnull final LocalStream stream, @Nonnull final OutputStream ackStream) {
+            mStream = stream;
+            mAckStream = ackStream;
+        }
+
+        private void run(@Nonnull final InputStream body) {
+            final InputStream inputStream = mStream.getThrottler() == null
+                    ? body
+                    : new BandwidthThrottledInputStream(body, mStream.getThrottler());
+            try {
+                final byte[] buffer = new byte[MkvStreamSplitter.HOLD_BACK_SIZE + READ_BUFFER_SIZE];
+                int bytesRead;
+                while (!mFailed && !isAckStreamBroken()
+                        && (bytesRead = inputStream.read(buffer, MkvStreamSplitter.HOLD_BACK_SIZE,
+                                READ_BUFFER_SIZE)) != -1) {
+                    if (bytesRead > 0) {
+                        mStream.onBytesReceived(bytesRead);
+                        mSplitter.split(buffer, MkvStreamSplitter.HOLD_BACK_SIZE, bytesRead, this);
+                    }
+                }
+
+                if (!mFailed) {
+                    mSplitter.flush(this);
+                    completeFragment();
+                }
+            } catch (final IOException e) {
+                mLog.debug("PutMedia session of stream %s ended with %s", mStream.getStreamName(), e);
+            }
+
+            awaitAcks();
+        }
+
+        @Override
+        public void onData(final byte[] buffer, final int offset, final int length) {
+            if (!mReadingTimecode) {
+                return;
+            }
+
+            final int bytesToCopy = Math.min(length, mClusterPrefix.length - mClusterPrefixLength);
+            System.arraycopy(buffer, offset, mClusterPrefix, mClusterPrefixLength, bytesToCopy);
+            mClusterPrefixLength += bytesToCopy;
+
+            final long timecode = MkvBoundaries.readClusterTimecode(mClusterPrefix, 0, mClusterPrefixLength);
+            if (timecode != MkvBoundaries.TIMECODE_INCOMPLETE || mClusterPrefixLength == mClusterPrefix.length) {
+                mFragmentTimecode = timecode;
+                mReadingTimecode = false;
+                ackBuffering();
+            }
+        }
+
+        @Override
+        public void onBoundary(final int elementId) {
+            completeFragment();
+            if (mFailed || elementId != MkvBoundaries.CLUSTER_ID) {
+                return;
+            }
+
+            mFragmentOpen = true;
+            mBufferingAcked = false;
+            mFragmentNumber = mServer.nextFragmentNumber();
+            mFragmentTimecode = MkvBoundaries.TIMECODE_NOT_FOUND;
+            mClusterPrefixLength = 0;
+            mReadingTimecode = true;
+        }
+
+        private void ackBuffering() {
+            mBufferingAcked = true;
+            scheduleAck(String.format(Locale.US, ACK_FORMAT, BUFFERING, mFragmentTimecode, mFragmentNumber),
+                    mServer.getBufferingAckLatencyInMillis(), null);
+        }
+
+        private void completeFragment() {
+            if (!mFragmentOpen) {
+                return;
+            }
+
+            mFragmentOpen = false;
+            mReadingTimecode = false;
+            if (!mBufferingAcked) {
+                ackBuffering();
+            }
+
+            mStream.onFragmentReceived();
+            scheduleAck(String.format(Locale.US, ACK_FORMAT, RECEIVED, mFragmentTimecode, mFragmentNumber),
+                    mServer.getReceivedAckLatencyInMillis(), null);
+
+            if (mServer.shouldFail(mServer.getFragmentErrorRate())) {
+                // The service ends the session after an error
+                mFailed = true;
+                mStream.onFragmentError();
+                scheduleAck(String.format(Locale.US, ERROR_ACK_FORMAT, mFragmentTimecode, mFragmentNumber,
+                        mServer.getFragmentErrorId()), mServer.getPersistedAckLatencyInMillis(), null);
+                return;
+            }
+
+            scheduleAck(String.format(Locale.US, ACK_FORMAT, PERSISTED, mFragmentTimecode, mFragmentNumber),
+                    mServer.getPersistedAckLatencyInMillis(), new Runnable() {
+                        @Override
+                        public void run() {
+                            mStream.onFragmentPersisted();
+                        }
+                    });
+        }
+
+        /**
+         * Queues the ack to be written after the latency but not before the acks queued earlier
+         */
+        private synchronized void scheduleAck(@Nonnull final String ack,
+                                              final long latencyInMillis,
+                                              final Runnable onWritten) {
+            final long dueTime = Math.max(System.currentTimeMillis() + latencyInMillis, mLastAckDueTime);
+            mLastAckDueTime = dueTime;
+            mPendingAcks.addLast(new PendingAck(ack, dueTime, onWritten));
+            mServer.getAckScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    writeDueAcks();
+                }
+            }, dueTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void writeDueAcks() {
+            final long now = System.currentTimeMillis();
+            while (!mPendingAcks.isEmpty() && mPendingAcks.peekFirst().mDueTime <= now) {
+                final PendingAck ack = mPendingAcks.pollFirst();
+                if (!mAckStreamBroken) {
+                    try {
+                        mAckStream.write(ack.mAck.getBytes(StandardCharsets.UTF_8));
+                        mAckStream.flush();
+                    } catch (final IOException e) {
+                        mLog.debug("Unable to deliver an ack on stream %s", mStream.getStreamName());
+                        mAckStreamBroken = true;
+                    }
+                }
+
+                if (!mAckStreamBroken && ack.mOnWritten != null) {
+                    ack.mOnWritten.run();
+                }
+            }
+
+            notifyAll();
+        }
+
+        private synchronized boolean isAckStreamBroken() {
+            return mAckStreamBroken;
+        }
+
+        private synchronized void awaitAcks() {
+            final long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_IN_MILLIS;
+            try {
+                while (!mPendingAcks.isEmpty() && !mAckStreamBroken) {
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        mLog.warn("Timed out delivering the acks on stream %s", mStream.getStreamName());
+                        return;
+                    }
+
+                    wait(remaining);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class PendingAck {
+        private final String mAck;
+        private final long mDueTime;
+        private final Runnable mOnWritten;
+
+        private PendingAck(@Nonnull final String ack, final long dueTime, final Runnable onWritten) {
+            mAck = ack;
+            mDueTime = dueTime;
+            mOnWritten = onWritten;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.amazonaws.kinesisvideo.service.spool;
+
+import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.producer.StreamDescription;
+import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkState;
+
+/**
+ * Store-and-forward spool which keeps the streams going while the uplink is down.
+ * <p>
+ * Once a service call fails with a connectivity error the spool switches to the offline mode. The control plane
+ * calls are then answered from the results cached while online and the PutMedia sessions are written into MKV
+ * segments on the local disk instead, acking the fragments as they are persisted so the content store of the
+ * producer doesn't fill up. The connectivity is probed periodically and when it returns the spooled segments are
+ * backfilled through several rate-limited parallel PutMedia sessions.
+ * <p>
+ * The spool is set on the client configuration and is owned by the application which needs to close it.
+ */
+public final class OfflineSpool implements Closeable {
+    private static final String PUT_MEDIA_API_NAME = "PUT_MEDIA";
+    private static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final long DEFAULT_MAX_SPOOL_SIZE = 4L * 1024 * 1024 * 1024;
+    private static final int DEFAULT_BACKFILL_SESSIONS = 2;
+    private static final long DEFAULT_BACKFILL_KBPS = 4 * 1024;
+    private static final long DEFAULT_BACKFILL_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final long DEFAULT_PROBE_INTERVAL_MILLIS = 10 * 1000;
+    private static final long DEFAULT_PROBE_TIMEOUT_MILLIS = 5 * 1000;
+    private static final int DEFAULT_MAX_SPOOL_SESSIONS = 16;
+    private static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Cached state of a stream
+     */
+    private static final class StreamState {
+        private volatile StreamDescription description;
+        private volatile String dataEndpoint;
+        private SpoolIndex index;
+    }
+
+    private final Builder builder;
+    private final Log log;
+    private final AtomicBoolean offline = new AtomicBoolean(false);
+    private final ConcurrentMap<String, StreamState> streams = new ConcurrentHashMap<String, StreamState>();
+    // The acks of a session are consumed on their own pool so a full writer pool can't starve them
+    private final ExecutorService sessionExecutor;
+    private final ExecutorService ackExecutor;
+    private final ScheduledExecutorService probeExecutor = Executors.newScheduledThreadPool(1);
+    private final SpoolBackfiller backfiller;
+    private volatile KinesisVideoServiceClient serviceClient;
+    private volatile KinesisVideoCredentialsProvider credentialsProvider;
+    private ScheduledFuture<?> probeFuture;
+
+    private OfflineSpool(final Builder builder) {
+        this.builder = builder;
+        this.log = builder.log;
+        this.sessionExecutor = Executors.newFixedThreadPool(builder.maxSpoolSessions);
+        this.ackExecutor = Executors.newFixedThreadPool(builder.maxSpoolSessions);
+        this.backfiller = new SpoolBackfiller(this, builder.backfillSessions, builder.backfillKbps,
+                builder.backfillTimeoutMillis, log);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Attaches the service client used for probing the connectivity and for backfilling.
+     *
+     * @param serviceClient Service client of the producer
+     * @param credentialsProvider Credentials for the backfill sessions
+     */
+    public void attach(@Nonnull final KinesisVideoServiceClient serviceClient,
+                       @Nullable final KinesisVideoCredentialsProvider credentialsProvider) {
+        this.serviceClient = checkNotNull(serviceClient);
+        this.credentialsProvider = credentialsProvider;
+    }
+
+    public boolean isOffline() {
+        return offline.get();
+    }
+
+    /**
+     * Switches to the offline mode. Can be called by the application as well, for example on a stale connection
+     * or latency pressure reported through the stream callbacks.
+     */
+    public void goOffline() {
+        if (!offline.compareAndSet(false, true)) {
+            return;
+        }
+
+        log.warn("Connectivity lost. Spooling the streams locally.");
+        synchronized (this) {
+            if (probeFuture == null && !probeExecutor.isShutdown()) {
+                probeFuture = probeExecutor.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        probe();
+                    }
+                }, builder.probeIntervalMillis, builder.probeIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Records the result of a successful DescribeStream call so it can be replayed while offline.
+     */
+    public void cacheStreamDescription(@Nonnull final String streamName,
+                                       @Nonnull final StreamDescription streamDescription) {
+        getStreamState(streamName).description = checkNotNull(streamDescription);
+    }
+
+    @Nullable
+    public StreamDescription getCachedStreamDescription(@Nonnull final String streamName) {
+        final StreamState state = streams.get(streamName);
+        return state == null ? null : state.description;
+    }
+
+    /**
+     * Records the result of a successful GetDataEndpoint call so it can be replayed while offline. Kicks off the
+     * backfill of any segments left in the spool for the stream.
+     */
+    public void cacheDataEndpoint(@Nonnull final String streamName, @Nonnull final String dataEndpoint) {
+        getStreamState(streamName).dataEndpoint = checkNotNull(dataEndpoint);
+        if (!isOffline()) {
+            backfill(streamName);
+        }
+    }
+
+    @Nullable
+    public String getCachedDataEndpoint(@Nonnull final String streamName) {
+        final StreamState state = streams.get(streamName);
+        return state == null ? null : state.dataEndpoint;
+    }
+
+    /**
+     * Spools a PutMedia session locally. Takes the same parameters as
+     * {@link KinesisVideoServiceClient#putMedia} and returns promptly.
+     */
+    // CHECKSTYLE:SUPPRESS:ParameterNumber
+    public void spool(@Nonnull final String streamName,
+                      @Nonnull final String containerType,
+                      final long streamStartTimeInMillis,
+                      final boolean absoluteFragmentTimes,
+                      @Nonnull final InputStream dataInputStream,
+                      @Nonnull final Consumer<InputStream> acksConsumer,
+                      @Nullable final Consumer<Exception> completionCallback) throws KinesisVideoException {
+        final SpoolIndex index;
+        try {
+            index = getIndex(streamName);
+        } catch (final IOException e) {
+            throw new KinesisVideoException(e);
+        }
+
+        sessionExecutor.execute(new SpoolSessionWriter(this,
+                index,
+                streamName,
+                containerType,
+                streamStartTimeInMillis,
+                absoluteFragmentTimes,
+                dataInputStream,
+                acksConsumer,
+                completionCallback,
+                ackExecutor,
+                builder.maxSegmentSize,
+                log));
+    }
+
+    /**
+     * Returns the segments currently in the spool for the stream in the recording order.
+     */
+    @Nonnull
+    public List<SpoolSegment> getSpooledSegments(@Nonnull final String streamName) {
+        try {
+            return getIndex(streamName).getSegments();
+        } catch (final IOException e) {
+            log.exception(e, "Loading the spool of stream %s threw an exception", streamName);
+            return new ArrayList<SpoolSegment>();
+        }
+    }
+
+    /**
+     * Stops probing and backfilling and waits for the spooling sessions to finish writing, up to the close timeout
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (probeFuture != null) {
+                probeFuture.cancel(false);
+                probeFuture = null;
+            }
+        }
+
+        probeExecutor.shutdownNow();
+        backfiller.shutdown();
+        sessionExecutor.shutdown();
+        ackExecutor.shutdown();
+        try {
+            if (!sessionExecutor.awaitTermination(builder.closeTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("Spooling sessions didn't finish in %d ms", builder.closeTimeoutMillis);
+                sessionExecutor.shutdownNow();
+                ackExecutor.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sessionExecutor.shutdownNow();
+            ackExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether the exception has been caused by the network being unreachable
+     */
+    public static boolean isConnectivityError(@Nullable final Throwable e) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof UnknownHostException
+                    || cause instanceof ConnectException
+                    || cause instanceof NoRouteToHostException
+                    || cause instanceof SocketTimeoutException) {
+                return true;
+            }
+
+            if (cause.getCause() == cause) {
+                break;
+            }
+
+            cause = cause.getCause();
+        }
+
+        return false;
+    }
+
+    /**
+     * Evicts the oldest segments of the stream while the spool is over the size limit.
+     */
+    void enforceSizeLimit(@Nonnull final String streamName, @Nonnull final SpoolIndex index) {
+        while (index.getSize() > builder.maxSpoolSize) {
+            final SpoolSegment evicted = index.evictOldest();
+            if (evicted == null) {
+                break;
+            }
+
+            log.warn("Spool of stream %s is over %d bytes. Dropped the oldest segment %s", streamName,
+                    builder.maxSpoolSize, evicted);
+        }
+    }
+
+    private void probe() {
+        final KinesisVideoServiceClient client = serviceClient;
+        if (client == null) {
+            return;
+        }
+
+        for (final String streamName : streams.keySet()) {
+            final StreamState state = streams.get(streamName);
+            if (state == null || state.dataEndpoint == null) {
+                continue;
+            }
+
+            try {
+                state.dataEndpoint = client.getDataEndpoint(streamName, PUT_MEDIA_API_NAME,
+                        builder.probeTimeoutMillis, credentialsProvider);
+            } catch (final KinesisVideoException e) {
+                if (isConnectivityError(e)) {
+                    log.debug("Connectivity probe for stream %s failed", streamName);
+                    return;
+                }
+
+                // The service is reachable even though the call has failed
+            } catch (final RuntimeException e) {
+                if (isConnectivityError(e)) {
+                    log.debug("Connectivity probe for stream %s failed", streamName);
+                    return;
+                }
+            }
+
+            goOnline();
+            return;
+        }
+    }
+
+    private void goOnline() {
+        synchronized (this) {
+            if (probeFuture != null) {
+                probeFuture.cancel(false);
+                probeFuture = null;
+            }
+        }
+
+        if (!offline.compareAndSet(true, false)) {
+            return;
+        }
+
+        log.info("Connectivity restored. Backfilling the spooled streams.");
+        for (final String streamName : streams.keySet()) {
+            backfill(streamName);
+        }
+    }
+
+    private void backfill(@Nonnull final String streamName) {
+        final KinesisVideoServiceClient client = serviceClient;
+        final StreamState state = streams.get(streamName);
+        if (client == null || state == null || state.dataEndpoint == null) {
+            return;
+        }
+
+        try {
+            backfiller.backfill(streamName, getIndex(streamName), state.dataEndpoint, client, credentialsProvider);
+        } catch (final IOException e) {
+            log.exception(e, "Loading the spool of stream %s threw an exception", streamName);
+        }
+    }
+
+    @Nonnull
+    private StreamState getStreamState(@Nonnull final String streamName) {
+        StreamState state = streams.get(streamName);
+        if (state == null) {
+            final StreamState newState = new StreamState();
+            state = streams.putIfAbsent(streamName, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+
+        return state;
+    }
+
+    @Nonnull
+    private SpoolIndex getIndex(@Nonnull final String streamName) throws IOException {
+        final StreamState state = getStreamState(streamName);
+        synchronized (state) {
+            if (state.index == null) {
+                state.index = new SpoolIndex(new File(builder.directory, streamName), log);
+            }
+
+            return state.index;
+        }
+    }
+
+    public static class Builder {
+        private File directory;
+        private long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+        private long maxSpoolSize = DEFAULT_MAX_SPOOL_SIZE;
+        private int backfillSessions = DEFAULT_BACKFILL_SESSIONS;
+        private long backfillKbps = DEFAULT_BACKFILL_KBPS;
+        private long backfillTimeoutMillis = DEFAULT_BACKFILL_TIMEOUT_MILLIS;
+        private long probeIntervalMillis = DEFAULT_PROBE_INTERVAL_MILLIS;
+        private long probeTimeoutMillis = DEFAULT_PROBE_TIMEOUT_MILLIS;
+        private int maxSpoolSessions = DEFAULT_MAX_SPOOL_SESSIONS;
+        private long closeTimeoutMillis = DEFAULT_CLOSE_TIMEOUT_MILLIS;
+        private Log log = new Log(Log.SYSTEM_OUT);
+
+        /**
+         * Root directory of the spool. Each stream is spooled into a sub-directory named after the stream.
+         */
+        public Builder directory(@Nonnull final File directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Segments are closed on the next fragment boundary after reaching the size.
+         */
+        public Builder maxSegmentSize(final long maxSegmentSize) {
+            this.maxSegmentSize = maxSegmentSize;
+            return this;
+        }
+
+        /**
+         * The oldest segments of a stream are dropped once its spool grows over the size.
+         */
+        public Builder maxSpoolSize(final long maxSpoolSize) {
+            this.maxSpoolSize = maxSpoolSize;
+            return this;
+        }
+
+        public Builder backfillSessions(final int backfillSessions) {
+            this.backfillSessions = backfillSessions;
+            return this;
+        }
+
+        /**
+         * Combined bandwidth cap of all of the backfill sessions
+         */
+        public Builder backfillKbps(final long backfillKbps) {
+            this.backfillKbps = backfillKbps;
+            return this;
+        }
+
+        public Builder backfillTimeoutMillis(final long backfillTimeoutMillis) {
+            this.backfillTimeoutMillis = backfillTimeoutMillis;
+            return this;
+        }
+
+        public Builder probeIntervalMillis(final long probeIntervalMillis) {
+            this.probeIntervalMillis = probeIntervalMillis;
+            return this;
+        }
+
+        public Builder probeTimeoutMillis(final long probeTimeoutMillis) {
+            this.probeTimeoutMillis = probeTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Number of the sessions spooled at the same time. Further sessions wait for one to finish.
+         */
+        public Builder maxSpoolSessions(final int maxSpoolSessions) {
+            this.maxSpoolSessions = maxSpoolSessions;
+            return this;
+        }
+
+        /**
+         * Time {@link OfflineSpool#close()} waits for the spooling sessions to finish writing
+         */
+        public Builder closeTimeoutMillis(final long closeTimeoutMillis) {
+            this.closeTimeoutMillis = closeTimeoutMillis;
+            return this;
+        }
+
+        public Builder log(@Nonnull final Log log) {
+            this.log = checkNotNull(log);
+            return this;
+        }
+
+        public OfflineSpool build() {
+            checkState(directory != null, "Spool directory must be set");
+            checkArgument(maxSegmentSize > 0, "Max segment size must be positive");
+            checkArgument(maxSpoolSize > 0, "Max spool size must be positive");
+            checkArgument(backfillSessions > 0, "Number of backfill sessions must be positive");
+            checkArgument(backfillKbps > 0, "Backfill bandwidth must be positive");
+            checkArgument(probeIntervalMillis > 0, "Probe interval must be positive");
+            checkArgument(maxSpoolSessions > 0, "Number of spool sessions must be positive");
+            checkArgument(closeTimeoutMillis >= 0, "Close timeout must not be negative");
+            return new OfflineSpool(this);
+        }
+    }
+}
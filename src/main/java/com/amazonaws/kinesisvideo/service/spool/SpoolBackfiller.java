@@ -0,0 +1,257 @@
+package com.amazonaws.kinesisvideo.service.spool;
+
+import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.encoding.ChunkDecoder;
+import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottledInputStream;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottler;
+import com.amazonaws.kinesisvideo.stream.throttling.BandwidthThrottlerImpl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Uploads the spooled segments through several parallel PutMedia sessions once the connectivity returns.
+ * <p>
+ * Every segment is sent as its own session with the timecode type and the producer start timestamp of the
+ * session it was recorded in so the fragments land at their original timestamps. The combined bandwidth of the
+ * sessions is capped by a shared throttler so that the live stream keeps the priority. A segment is removed from
+ * the spool only after all of its fragments have been acked as persisted.
+ */
+final class SpoolBackfiller {
+    private static final long BITS_IN_A_KILOBIT = 1024L;
+    private static final int ACK_BUFFER_SIZE = 4096;
+    private static final String PERSISTED_EVENT = "\"EventType\":\"PERSISTED\"";
+    private static final String ERROR_EVENT = "\"EventType\":\"ERROR\"";
+    private static final int HTTP_OK = 200;
+
+    private final OfflineSpool spool;
+    private final ExecutorService uploadExecutor;
+    private final BandwidthThrottler throttler;
+    private final long sessionTimeoutInMillis;
+    private final Log log;
+    private final Set<File> inFlight = Collections.synchronizedSet(new HashSet<File>());
+
+    SpoolBackfiller(@Nonnull final OfflineSpool spool,
+                    final int maxSessions,
+                    final long maxKbps,
+                    final long sessionTimeoutInMillis,
+                    @Nonnull final Log log) {
+        this.spool = checkNotNull(spool);
+        this.uploadExecutor = Executors.newFixedThreadPool(maxSessions);
+        this.throttler = new BandwidthThrottlerImpl(maxKbps * BITS_IN_A_KILOBIT);
+        this.sessionTimeoutInMillis = sessionTimeoutInMillis;
+        this.log = checkNotNull(log);
+    }
+
+    /**
+     * Queues the upload of all the segments of the stream which are not being uploaded already.
+     */
+    void backfill(@Nonnull final String streamName,
+                  @Nonnull final SpoolIndex index,
+                  @Nonnull final String dataEndpoint,
+                  @Nonnull final KinesisVideoServiceClient serviceClient,
+                  @Nullable final KinesisVideoCredentialsProvider credentialsProvider) {
+        for (final SpoolSegment segment : index.getSegments()) {
+            if (!inFlight.add(segment.getFile())) {
+                continue;
+            }
+
+            uploadExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        upload(streamName, index, segment, dataEndpoint, serviceClient, credentialsProvider);
+                    } finally {
+                        inFlight.remove(segment.getFile());
+                    }
+                }
+            });
+        }
+    }
+
+    int getSegmentsInFlight() {
+        return inFlight.size();
+    }
+
+    void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
+
+    private void upload(@Nonnull final String streamName,
+                        @Nonnull final SpoolIndex index,
+                        @Nonnull final SpoolSegment segment,
+                        @Nonnull final String dataEndpoint,
+                        @Nonnull final KinesisVideoServiceClient serviceClient,
+                        @Nullable final KinesisVideoCredentialsProvider credentialsProvider) {
+        if (spool.isOffline()) {
+            return;
+        }
+
+        log.info("Backfilling spooled segment %s for stream %s", segment, streamName);
+        final long startTime = System.currentTimeMillis();
+        final AckReader ackReader = new AckReader(segment.getFragmentCount());
+        final CompletionRecorder completion = new CompletionRecorder();
+        InputStream dataStream = null;
+        try {
+            dataStream = new BandwidthThrottledInputStream(new FileInputStream(segment.getFile()), throttler);
+            serviceClient.putMedia(streamName,
+                    segment.getContainerType(),
+                    segment.getStreamStartTimeInMillis(),
+                    segment.isAbsoluteFragmentTimes(),
+                    true,
+                    dataEndpoint,
+                    sessionTimeoutInMillis,
+                    credentialsProvider,
+                    dataStream,
+                    ackReader,
+                    completion);
+
+            if (!ackReader.await(sessionTimeoutInMillis)) {
+                log.warn("Backfilling %s timed out. Keeping it in the spool.", segment);
+            } else if (!ackReader.isSuccessful() || completion.exception != null) {
+                log.warn("Backfilling %s failed with %d of %d fragments persisted. Keeping it in the spool.",
+                        segment, ackReader.persistedCount, segment.getFragmentCount());
+            } else {
+                index.remove(segment);
+                final long duration = Math.max(1, System.currentTimeMillis() - startTime);
+                log.info("Backfilled %s in %d ms", segment, duration);
+            }
+        } catch (final IOException e) {
+            log.exception(e, "Reading spooled segment %s threw an exception", segment);
+        } catch (final KinesisVideoException e) {
+            onUploadException(e, segment);
+        } catch (final RuntimeException e) {
+            onUploadException(e, segment);
+        } finally {
+            closeQuietly(dataStream);
+        }
+    }
+
+    private void onUploadException(@Nonnull final Exception e, @Nonnull final SpoolSegment segment) {
+        if (OfflineSpool.isConnectivityError(e)) {
+            spool.goOffline();
+        }
+
+        log.exception(e, "Backfilling spooled segment %s threw an exception", segment);
+    }
+
+    private void closeQuietly(@Nullable final InputStream inputStream) {
+        if (inputStream == null) {
+            return;
+        }
+
+        try {
+            inputStream.close();
+        } catch (final IOException e) {
+            log.exception(e, "Closing spooled segment threw an exception");
+        }
+    }
+
+    /**
+     * Records the first exception reported by either side of the session
+     */
+    private static final class CompletionRecorder implements Consumer<Exception> {
+        private volatile Exception exception;
+
+        @Override
+        public void accept(@Nullable final Exception object) {
+            if (object != null && exception == null) {
+                exception = object;
+            }
+        }
+    }
+
+    /**
+     * Counts the persisted and error acks of a backfill session until all of the fragments are persisted.
+     */
+    private static final class AckReader implements Consumer<InputStream> {
+        private final int expectedFragments;
+        private final CountDownLatch doneLatch = new CountDownLatch(1);
+        private volatile int persistedCount;
+        private volatile int errorCount;
+        private volatile boolean statusOk;
+
+        private AckReader(final int expectedFragments) {
+            this.expectedFragments = expectedFragments;
+        }
+
+        @Override
+        public void accept(@Nonnull final InputStream inputStream) {
+            try {
+                statusOk = ChunkDecoder.readStatusLine(inputStream).getStatusCode() == HTTP_OK;
+                if (statusOk) {
+                    readAcks(inputStream);
+                }
+            } catch (final IOException e) {
+                // Reported through the counts
+            } catch (final RuntimeException e) {
+                // Reported through the counts
+            } finally {
+                doneLatch.countDown();
+            }
+        }
+
+        private void readAcks(@Nonnull final InputStream inputStream) throws IOException {
+            final byte[] buffer = new byte[ACK_BUFFER_SIZE];
+            final StringBuilder pending = new StringBuilder();
+            int bytesRead;
+            while (persistedCount < expectedFragments && errorCount == 0
+                    && (bytesRead = inputStream.read(buffer)) != -1) {
+                pending.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
+
+                // Only look at the complete ack objects
+                final int end = pending.lastIndexOf("}");
+                if (end < 0) {
+                    continue;
+                }
+
+                final String acks = pending.substring(0, end + 1);
+                pending.delete(0, end + 1);
+                persistedCount += countOccurrences(acks, PERSISTED_EVENT);
+                errorCount += countOccurrences(acks, ERROR_EVENT);
+            }
+        }
+
+        private boolean await(final long timeoutInMillis) {
+            try {
+                return doneLatch.await(timeoutInMillis, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private boolean isSuccessful() {
+            return statusOk && errorCount == 0 && persistedCount >= expectedFragments;
+        }
+
+        private static int countOccurrences(@Nonnull final String string, @Nonnull final String substring) {
+            int count = 0;
+            int index = string.indexOf(substring);
+            while (index >= 0) {
+                count++;
+                index = string.indexOf(substring, index + substring.length());
+            }
+
+            return count;
+        }
+    }
+}
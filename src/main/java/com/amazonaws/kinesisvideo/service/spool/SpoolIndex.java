@@ -0,0 +1,178 @@
+package com.amazonaws.kinesisvideo.service.spool;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Index of the completed segments spooled for a single stream. The index is a text file with a line per segment
+ * in the recording order which is rewritten atomically on every change.
+ */
+final class SpoolIndex {
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String INDEX_TEMP_FILE_NAME = "index.tmp";
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".mkv";
+    private static final String SEGMENT_FILE_FORMAT = SEGMENT_FILE_PREFIX + "%010d" + SEGMENT_FILE_SUFFIX;
+
+    private final File directory;
+    private final Log log;
+    private final List<SpoolSegment> segments = new ArrayList<SpoolSegment>();
+    private long nextSegmentNumber;
+
+    SpoolIndex(@Nonnull final File directory, @Nonnull final Log log) throws IOException {
+        this.directory = checkNotNull(directory);
+        this.log = checkNotNull(log);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the spool directory " + directory);
+        }
+
+        load();
+    }
+
+    @Nonnull
+    synchronized File newSegmentFile() {
+        return new File(directory, String.format(Locale.US, SEGMENT_FILE_FORMAT, nextSegmentNumber++));
+    }
+
+    synchronized void add(@Nonnull final SpoolSegment segment) {
+        segments.add(segment);
+        store();
+    }
+
+    /**
+     * Removes the segment from the index and deletes its file
+     *
+     * @return whether the segment was in the index
+     */
+    synchronized boolean remove(@Nonnull final SpoolSegment segment) {
+        if (!segments.remove(segment)) {
+            return false;
+        }
+
+        store();
+        deleteFile(segment.getFile());
+        return true;
+    }
+
+    /**
+     * Evicts the oldest segment
+     *
+     * @return the evicted segment or null if the index is empty
+     */
+    @Nullable
+    synchronized SpoolSegment evictOldest() {
+        if (segments.isEmpty()) {
+            return null;
+        }
+
+        final SpoolSegment segment = segments.remove(0);
+        store();
+        deleteFile(segment.getFile());
+        return segment;
+    }
+
+    @Nonnull
+    synchronized List<SpoolSegment> getSegments() {
+        return new ArrayList<SpoolSegment>(segments);
+    }
+
+    synchronized long getSize() {
+        long size = 0;
+        for (final SpoolSegment segment : segments) {
+            size += segment.getSize();
+        }
+
+        return size;
+    }
+
+    private void load() throws IOException {
+        // Never reuse a segment file name, including the ones left behind without an index entry
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final long number = parseSegmentNumber(file.getName());
+                if (number >= nextSegmentNumber) {
+                    nextSegmentNumber = number + 1;
+                }
+            }
+        }
+
+        final File indexFile = new File(directory, INDEX_FILE_NAME);
+        if (!indexFile.isFile()) {
+            return;
+        }
+
+        try (final BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final SpoolSegment segment = SpoolSegment.fromIndexLine(directory, line);
+                if (segment == null) {
+                    log.warn("Skipping malformed spool index entry %s", line);
+                } else if (!segment.getFile().isFile()) {
+                    log.warn("Skipping spool index entry with a missing file %s", segment.getFile());
+                } else {
+                    segments.add(segment);
+                }
+            }
+        }
+
+        log.info("Loaded %d spooled segments from %s", segments.size(), directory);
+    }
+
+    private void store() {
+        final File tempFile = new File(directory, INDEX_TEMP_FILE_NAME);
+        final File indexFile = new File(directory, INDEX_FILE_NAME);
+        try {
+            try (final Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                for (final SpoolSegment segment : segments) {
+                    writer.write(segment.toIndexLine());
+                    writer.write('\n');
+                }
+            }
+
+            try {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException e) {
+            log.exception(e, "Storing the spool index in %s threw an exception", directory);
+        }
+    }
+
+    private void deleteFile(@Nonnull final File file) {
+        if (file.exists() && !file.delete()) {
+            log.warn("Unable to delete the spooled segment %s", file);
+        }
+    }
+
+    private static long parseSegmentNumber(@Nonnull final String fileName) {
+        if (!fileName.startsWith(SEGMENT_FILE_PREFIX) || !fileName.endsWith(SEGMENT_FILE_SUFFIX)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(fileName.substring(SEGMENT_FILE_PREFIX.length(),
+                    fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.amazonaws.kinesisvideo.service.spool;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * A completed MKV segment in the offline spool along with the PutMedia session parameters needed to
+ * upload it later.
+ */
+public final class SpoolSegment {
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final int FIELD_COUNT = 8;
+
+    private final File file;
+    private final String containerType;
+    private final long streamStartTimeInMillis;
+    private final boolean absoluteFragmentTimes;
+    private final long firstFragmentTimecode;
+    private final long lastFragmentTimecode;
+    private final int fragmentCount;
+    private final long size;
+
+    // CHECKSTYLE:SUPPRESS:ParameterNumber
+    SpoolSegment(@Nonnull final File file,
+                 @Nonnull final String containerType,
+                 final long streamStartTimeInMillis,
+                 final boolean absoluteFragmentTimes,
+                 final long firstFragmentTimecode,
+                 final long lastFragmentTimecode,
+                 final int fragmentCount,
+                 final long size) {
+        this.file = checkNotNull(file);
+        this.containerType = checkNotNull(containerType);
+        this.streamStartTimeInMillis = streamStartTimeInMillis;
+        this.absoluteFragmentTimes = absoluteFragmentTimes;
+        this.firstFragmentTimecode = firstFragmentTimecode;
+        this.lastFragmentTimecode = lastFragmentTimecode;
+        this.fragmentCount = fragmentCount;
+        this.size = size;
+    }
+
+    @Nonnull
+    public File getFile() {
+        return file;
+    }
+
+    @Nonnull
+    public String getContainerType() {
+        return containerType;
+    }
+
+    /**
+     * Producer start timestamp of the session the segment was recorded in
+     */
+    public long getStreamStartTimeInMillis() {
+        return streamStartTimeInMillis;
+    }
+
+    public boolean isAbsoluteFragmentTimes() {
+        return absoluteFragmentTimes;
+    }
+
+    /**
+     * Timecode of the first fragment in the segment as found in the cluster
+     */
+    public long getFirstFragmentTimecode() {
+        return firstFragmentTimecode;
+    }
+
+    /**
+     * Timecode of the last fragment in the segment as found in the cluster
+     */
+    public long getLastFragmentTimecode() {
+        return lastFragmentTimecode;
+    }
+
+    public int getFragmentCount() {
+        return fragmentCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Nonnull
+    String toIndexLine() {
+        return String.format(Locale.US, "%s\t%s\t%d\t%b\t%d\t%d\t%d\t%d",
+                file.getName(),
+                containerType,
+                streamStartTimeInMillis,
+                absoluteFragmentTimes,
+                firstFragmentTimecode,
+                lastFragmentTimecode,
+                fragmentCount,
+                size);
+    }
+
+    @Nullable
+    static SpoolSegment fromIndexLine(@Nonnull final File directory, @Nonnull final String line) {
+        final String[] fields = line.split(FIELD_SEPARATOR);
+        if (fields.length != FIELD_COUNT) {
+            return null;
+        }
+
+        try {
+            return new SpoolSegment(new File(directory, fields[0]),
+                    fields[1],
+                    Long.parseLong(fields[2]),
+                    Boolean.parseBoolean(fields[3]),
+                    Long.parseLong(fields[4]),
+                    Long.parseLong(fields[5]),
+                    Integer.parseInt(fields[6]),
+                    Long.parseLong(fields[7]));
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s (%d fragments, %d bytes, timecodes %d - %d)",
+                file.getName(), fragmentCount, size, firstFragmentTimecode, lastFragmentTimecode);
+    }
+}
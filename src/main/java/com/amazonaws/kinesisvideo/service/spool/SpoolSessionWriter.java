@@ -0,0 +1,366 @@
+package com.amazonaws.kinesisvideo.service.spool;
+
+import com.amazonaws.kinesisvideo.client.mkv.MkvBoundaries;
+import com.amazonaws.kinesisvideo.client.mkv.MkvStreamSplitter;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Stands in for a PutMedia session while offline. The MKV data of the session is written into the spool segments
+ * and a PERSISTED ack is synthesized for every fragment once it is forced to the disk so that the content store
+ * of the producer can be trimmed.
+ * <p>
+ * The session is handed back to the network on the first fragment boundary after the connectivity returns.
+ * The data following the boundary is not acked which makes the producer resend it on the new session.
+ */
+final class SpoolSessionWriter implements Runnable, MkvStreamSplitter.Listener {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int ACK_PIPE_SIZE = 64 * 1024;
+    private static final int INITIAL_HEADER_SIZE = 1024;
+    private static final int CLUSTER_PREFIX_SIZE = 32;
+    private static final String ACK_STATUS_LINE = "HTTP/1.1 200 OK\r\n";
+    private static final String PERSISTED_ACK_FORMAT =
+            "{\"EventType\":\"PERSISTED\",\"FragmentTimecode\":%d,\"FragmentNumber\":\"%d\"}";
+
+    private final OfflineSpool spool;
+    private final SpoolIndex index;
+    private final String streamName;
+    private final String containerType;
+    private final long streamStartTimeInMillis;
+    private final boolean absoluteFragmentTimes;
+    private final InputStream dataStream;
+    private final Consumer<InputStream> acksConsumer;
+    private final Consumer<Exception> completionCallback;
+    private final ExecutorService ackExecutor;
+    private final long maxSegmentSize;
+    private final Log log;
+
+    private final MkvStreamSplitter splitter = new MkvStreamSplitter();
+    private PipedOutputStream ackOutputStream;
+    private boolean handedOver;
+
+    // Segment state
+    private File segmentFile;
+    private FileChannel segmentChannel;
+    private long segmentSize;
+    private int fragmentCount;
+    private long firstFragmentTimecode;
+    private long lastFragmentTimecode;
+
+    // MKV header of the session which is prepended to every segment but the first one
+    private byte[] header = new byte[INITIAL_HEADER_SIZE];
+    private int headerLength;
+    private boolean capturingHeader;
+
+    // Current fragment state
+    private boolean fragmentOpen;
+    private long fragmentTimecode;
+    private long fragmentNumber;
+    private final byte[] clusterPrefix = new byte[CLUSTER_PREFIX_SIZE];
+    private int clusterPrefixLength;
+    private boolean readingTimecode;
+
+    // CHECKSTYLE:SUPPRESS:ParameterNumber
+    SpoolSessionWriter(@Nonnull final OfflineSpool spool,
+                       @Nonnull final SpoolIndex index,
+                       @Nonnull final String streamName,
+                       @Nonnull final String containerType,
+                       final long streamStartTimeInMillis,
+                       final boolean absoluteFragmentTimes,
+                       @Nonnull final InputStream dataStream,
+                       @Nonnull final Consumer<InputStream> acksConsumer,
+                       @Nullable final Consumer<Exception> completionCallback,
+                       @Nonnull final ExecutorService ackExecutor,
+                       final long maxSegmentSize,
+                       @Nonnull final Log log) {
+        this.spool = checkNotNull(spool);
+        this.index = checkNotNull(index);
+        this.streamName = checkNotNull(streamName);
+        this.containerType = checkNotNull(containerType);
+        this.streamStartTimeInMillis = streamStartTimeInMillis;
+        this.absoluteFragmentTimes = absoluteFragmentTimes;
+        this.dataStream = checkNotNull(dataStream);
+        this.acksConsumer = checkNotNull(acksConsumer);
+        this.completionCallback = completionCallback;
+        this.ackExecutor = checkNotNull(ackExecutor);
+        this.maxSegmentSize = maxSegmentSize;
+        this.log = checkNotNull(log);
+    }
+
+    @Override
+    public void run() {
+        Exception storedException = null;
+        try {
+            startAcks();
+
+            log.info("Spooling stream %s locally", streamName);
+            final byte[] buffer = new byte[MkvStreamSplitter.HOLD_BACK_SIZE + READ_BUFFER_SIZE];
+            int bytesRead;
+            while (!handedOver
+                    && (bytesRead = dataStream.read(buffer, MkvStreamSplitter.HOLD_BACK_SIZE, READ_BUFFER_SIZE)) != -1) {
+                if (bytesRead > 0) {
+                    splitter.split(buffer, MkvStreamSplitter.HOLD_BACK_SIZE, bytesRead, this);
+                }
+            }
+
+            if (!handedOver) {
+                splitter.flush(this);
+            }
+
+            closeSegment();
+
+            if (handedOver) {
+                log.info("Handing stream %s over to the network", streamName);
+                storedException = new IOException("Spooling session of stream " + streamName
+                        + " is handed over to the network");
+            }
+        } catch (final IOException e) {
+            log.exception(e, "Spooling stream %s threw an exception", streamName);
+            storedException = e;
+            abortSegment();
+        } finally {
+            stopAcks();
+            if (completionCallback != null) {
+                completionCallback.accept(storedException);
+            }
+        }
+    }
+
+    @Override
+    public void onData(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (handedOver) {
+            return;
+        }
+
+        if (readingTimecode) {
+            readFragmentTimecode(buffer, offset, length);
+        }
+
+        if (capturingHeader) {
+            appendToHeader(buffer, offset, length);
+        }
+
+        if (segmentChannel == null) {
+            openSegment();
+        }
+
+        write(ByteBuffer.wrap(buffer, offset, length));
+    }
+
+    @Override
+    public void onBoundary(final int elementId) throws IOException {
+        if (handedOver) {
+            return;
+        }
+
+        completeFragment();
+
+        if (elementId == MkvBoundaries.EBML_HEADER_ID) {
+            // A new MKV stream within the session. Start a new segment so each has a single header.
+            closeSegment();
+            capturingHeader = true;
+            headerLength = 0;
+            return;
+        }
+
+        capturingHeader = false;
+        if (!spool.isOffline()) {
+            handedOver = true;
+            return;
+        }
+
+        if (segmentSize >= maxSegmentSize) {
+            closeSegment();
+        }
+
+        fragmentOpen = true;
+        fragmentTimecode = MkvBoundaries.TIMECODE_NOT_FOUND;
+        clusterPrefixLength = 0;
+        readingTimecode = true;
+    }
+
+    private void readFragmentTimecode(final byte[] buffer, final int offset, final int length) {
+        final int bytesToCopy = Math.min(length, clusterPrefix.length - clusterPrefixLength);
+        System.arraycopy(buffer, offset, clusterPrefix, clusterPrefixLength, bytesToCopy);
+        clusterPrefixLength += bytesToCopy;
+
+        final long timecode = MkvBoundaries.readClusterTimecode(clusterPrefix, 0, clusterPrefixLength);
+        if (timecode != MkvBoundaries.TIMECODE_INCOMPLETE || clusterPrefixLength == clusterPrefix.length) {
+            fragmentTimecode = timecode;
+            readingTimecode = false;
+        }
+    }
+
+    private void completeFragment() throws IOException {
+        if (!fragmentOpen) {
+            return;
+        }
+
+        fragmentOpen = false;
+        readingTimecode = false;
+        fragmentCount++;
+
+        if (fragmentTimecode < 0) {
+            log.warn("Unable to read the timecode of a fragment spooled for stream %s", streamName);
+            return;
+        }
+
+        if (fragmentCount == 1 || firstFragmentTimecode < 0) {
+            firstFragmentTimecode = fragmentTimecode;
+        }
+
+        lastFragmentTimecode = fragmentTimecode;
+
+        // Only ack once the fragment is on the disk
+        if (segmentChannel != null) {
+            segmentChannel.force(false);
+        }
+
+        writeAck(String.format(Locale.US, PERSISTED_ACK_FORMAT, fragmentTimecode, fragmentNumber++));
+    }
+
+    private void openSegment() throws IOException {
+        segmentFile = index.newSegmentFile();
+        segmentChannel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        segmentSize = 0;
+        fragmentCount = 0;
+        firstFragmentTimecode = MkvBoundaries.TIMECODE_NOT_FOUND;
+        lastFragmentTimecode = MkvBoundaries.TIMECODE_NOT_FOUND;
+
+        if (!capturingHeader && headerLength > 0) {
+            write(ByteBuffer.wrap(header, 0, headerLength));
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        completeFragment();
+
+        if (segmentChannel == null) {
+            return;
+        }
+
+        segmentChannel.force(true);
+        segmentChannel.close();
+        segmentChannel = null;
+        recordSegment();
+    }
+
+    private void abortSegment() {
+        if (segmentChannel == null) {
+            return;
+        }
+
+        try {
+            segmentChannel.close();
+        } catch (final IOException e) {
+            log.exception(e, "Closing spooled segment %s threw an exception", segmentFile);
+        }
+
+        segmentChannel = null;
+
+        // Keep whatever has been acked already. The last fragment might be incomplete.
+        recordSegment();
+    }
+
+    private void recordSegment() {
+        if (fragmentCount == 0) {
+            deleteSegmentFile();
+            return;
+        }
+
+        final SpoolSegment segment = new SpoolSegment(segmentFile,
+                containerType,
+                streamStartTimeInMillis,
+                absoluteFragmentTimes,
+                firstFragmentTimecode,
+                lastFragmentTimecode,
+                fragmentCount,
+                segmentSize);
+        index.add(segment);
+        log.info("Spooled segment %s for stream %s", segment, streamName);
+        spool.enforceSizeLimit(streamName, index);
+    }
+
+    private void deleteSegmentFile() {
+        if (!segmentFile.delete()) {
+            log.warn("Unable to delete the spooled segment %s", segmentFile);
+        }
+    }
+
+    private void write(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            segmentSize += segmentChannel.write(buffer);
+        }
+    }
+
+    private void appendToHeader(final byte[] buffer, final int offset, final int length) {
+        if (headerLength + length > header.length) {
+            final byte[] newHeader = new byte[Math.max(2 * header.length, headerLength + length)];
+            System.arraycopy(header, 0, newHeader, 0, headerLength);
+            header = newHeader;
+        }
+
+        System.arraycopy(buffer, offset, header, headerLength, length);
+        headerLength += length;
+    }
+
+    private void startAcks() throws IOException {
+        final PipedInputStream ackInputStream = new PipedInputStream(ACK_PIPE_SIZE);
+        ackOutputStream = new PipedOutputStream(ackInputStream);
+
+        // The ack consumers expect the status line of the PutMedia response first
+        ackOutputStream.write(ACK_STATUS_LINE.getBytes(StandardCharsets.UTF_8));
+        ackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acksConsumer.accept(ackInputStream);
+            }
+        });
+    }
+
+    private void writeAck(final String ack) {
+        if (ackOutputStream == null) {
+            return;
+        }
+
+        try {
+            ackOutputStream.write(ack.getBytes(StandardCharsets.UTF_8));
+            ackOutputStream.flush();
+        } catch (final IOException e) {
+            // The ack consumer has gone away. Keep spooling without acks.
+            log.debug("Unable to deliver a spooled fragment ack for stream %s", streamName);
+            ackOutputStream = null;
+        }
+    }
+
+    private void stopAcks() {
+        if (ackOutputStream == null) {
+            return;
+        }
+
+        try {
+            ackOutputStream.close();
+        } catch (final IOException e) {
+            log.exception(e, "Closing the spooled ack stream threw an exception");
+        }
+
+        ackOutputStream = null;
+    }
+}
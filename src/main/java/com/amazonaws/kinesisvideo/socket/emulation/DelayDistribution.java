@@ -0,0 +1,86 @@
+package com.amazonaws.kinesisvideo.socket.emulation;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+import java.util.Random;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+
+/**
+ * Distribution of a delay in milliseconds, sampled with the random generator of the emulated connection so
+ * that a run with the same seed sees the same delays.
+ */
+public abstract class DelayDistribution {
+    private DelayDistribution() { }
+
+    /**
+     * Samples the next delay. Never negative.
+     */
+    public abstract long nextDelayInMillis(@Nonnull Random random);
+
+    public static DelayDistribution constant(final long delayInMillis) {
+        checkArgument(delayInMillis >= 0, "Delay can't be negative");
+        return new DelayDistribution() {
+            @Override
+            public long nextDelayInMillis(@Nonnull final Random random) {
+                return delayInMillis;
+            }
+
+            @Override
+            public String toString() {
+                return String.format(Locale.US, "constant(%d ms)", delayInMillis);
+            }
+        };
+    }
+
+    public static DelayDistribution uniform(final long minDelayInMillis, final long maxDelayInMillis) {
+        checkArgument(minDelayInMillis >= 0 && maxDelayInMillis >= minDelayInMillis, "Invalid delay range");
+        return new DelayDistribution() {
+            @Override
+            public long nextDelayInMillis(@Nonnull final Random random) {
+                return minDelayInMillis + (long) (random.nextDouble() * (maxDelayInMillis - minDelayInMillis));
+            }
+
+            @Override
+            public String toString() {
+                return String.format(Locale.US, "uniform(%d - %d ms)", minDelayInMillis, maxDelayInMillis);
+            }
+        };
+    }
+
+    /**
+     * Normal distribution clipped at zero. Models the jitter around a base delay.
+     */
+    public static DelayDistribution normal(final long meanInMillis, final long standardDeviationInMillis) {
+        checkArgument(meanInMillis >= 0 && standardDeviationInMillis >= 0, "Invalid delay distribution");
+        return new DelayDistribution() {
+            @Override
+            public long nextDelayInMillis(@Nonnull final Random random) {
+                return Math.max(0, Math.round(meanInMillis + random.nextGaussian() * standardDeviationInMillis));
+            }
+
+            @Override
+            public String toString() {
+                return String.format(Locale.US, "normal(%d ms, sd %d ms)", meanInMillis, standardDeviationInMillis);
+            }
+        };
+    }
+
+    /**
+     * A fixed base delay plus an exponentially distributed tail, typical for the queueing delay on a busy link
+     */
+    public static DelayDistribution exponential(final long baseInMillis, final long meanTailInMillis) {
+        checkArgument(baseInMillis >= 0 && meanTailInMillis >= 0, "Invalid delay distribution");
+        return new DelayDistribution() {
+            @Override
+            public long nextDelayInMillis(@Nonnull final Random random) {
+                return baseInMillis + Math.round(-Math.log(1.0 - random.nextDouble()) * meanTailInMillis);
+            }
+
+            @Override
+            public String toString() {
+                return String.format(Locale.US, "exponential(%d ms + %d ms mean)", baseInMillis, meanTailInMillis);
+            }
+        };
+    }
+}
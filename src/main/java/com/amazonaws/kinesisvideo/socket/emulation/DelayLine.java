@@ -0,0 +1,215 @@
+package com.amazonaws.kinesisvideo.socket.emulation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One direction of an emulated link.
+ * <p>
+ * Segments put into the line become available to the other end once they have been serialized at the link
+ * bandwidth and have travelled for the one-way delay, plus the stall time when the segment is stalled. The
+ * segments are delivered in order so a delayed or stalled segment holds up the ones behind it. Writers block
+ * once the bytes in flight reach the window size.
+ * <p>
+ * The delays are drawn once per {@link #SEGMENT_SIZE} bytes of the stream rather than per write so that the same
+ * seed gives the same delays no matter how the writes happen to be sized.
+ */
+final class DelayLine {
+    static final int SEGMENT_SIZE = 1460;
+
+    private static final long NANOS_IN_A_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NANOS_IN_A_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BITS_IN_A_KILOBIT = 1024L;
+    private static final int BITS_IN_A_BYTE = 8;
+
+    private final NetworkConditions mConditions;
+    private final long mBitsPerSecond;
+    private final Random mRandom;
+
+    // Guarded by this
+    private final ArrayDeque<Segment> mSegments = new ArrayDeque<Segment>();
+    private long mBytesInFlight;
+    private long mLinkFreeTime;
+    private long mLastDueTime;
+    private long mOffset;
+    private long mTravelTime;
+    private boolean mEndOfStream;
+    private IOException mFailure;
+
+    DelayLine(@Nonnull final NetworkConditions conditions, final long kbps, @Nonnull final Random random) {
+        mConditions = conditions;
+        mBitsPerSecond = kbps * BITS_IN_A_KILOBIT;
+        mRandom = random;
+    }
+
+    /**
+     * Queues a copy of the bytes, blocking while the window is full
+     */
+    synchronized void put(@Nonnull final byte[] buffer, final int offset, final int length) throws IOException {
+        int position = offset;
+        final int end = offset + length;
+        while (position < end) {
+            final int segmentRemaining = SEGMENT_SIZE - (int) (mOffset % SEGMENT_SIZE);
+            final int pieceLength = Math.min(end - position, segmentRemaining);
+            putPiece(buffer, position, pieceLength);
+            position += pieceLength;
+        }
+    }
+
+    private void putPiece(@Nonnull final byte[] buffer, final int offset, final int length) throws IOException {
+        try {
+            while (mFailure == null && mBytesInFlight > 0 && mBytesInFlight + length > mConditions.getWindowSize()) {
+                wait();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the emulated window");
+        }
+
+        throwIfFailed();
+        if (mEndOfStream) {
+            throw new IOException("Emulated link has been shut down");
+        }
+
+        if (mOffset % SEGMENT_SIZE == 0) {
+            mTravelTime = mConditions.getOneWayDelay().nextDelayInMillis(mRandom) * NANOS_IN_A_MILLI;
+            if (mConditions.getStallProbability() > 0 && mRandom.nextDouble() < mConditions.getStallProbability()) {
+                mTravelTime += mConditions.getStallDuration().nextDelayInMillis(mRandom) * NANOS_IN_A_MILLI;
+            }
+        }
+
+        final long now = System.nanoTime();
+        final long serializationTime = mBitsPerSecond == 0
+                ? 0
+                : length * BITS_IN_A_BYTE * NANOS_IN_A_SECOND / mBitsPerSecond;
+        mLinkFreeTime = Math.max(now, mLinkFreeTime) + serializationTime;
+        mLastDueTime = Math.max(mLinkFreeTime + mTravelTime, mLastDueTime);
+
+        final byte[] data = new byte[length];
+        System.arraycopy(buffer, offset, data, 0, length);
+        mSegments.addLast(new Segment(data, mLastDueTime));
+        mBytesInFlight += length;
+        mOffset += length;
+        notifyAll();
+    }
+
+    /**
+     * Takes the next segment once it's due
+     *
+     * @param timeoutInMillis how long to wait, 0 to wait indefinitely
+     * @return the segment or null at the end of the stream
+     */
+    @Nullable
+    synchronized byte[] take(final int timeoutInMillis) throws IOException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis);
+        try {
+            while (true) {
+                throwIfFailed();
+                final Segment segment = mSegments.peekFirst();
+                if (segment == null && mEndOfStream) {
+                    return null;
+                }
+
+                final long now = System.nanoTime();
+                if (segment != null && segment.mDueTime <= now) {
+                    mSegments.pollFirst();
+                    mBytesInFlight -= segment.mData.length;
+                    notifyAll();
+                    return segment.mData;
+                }
+
+                if (timeoutInMillis > 0 && deadline <= now) {
+                    throw new SocketTimeoutException("Read timed out on the emulated link");
+                }
+
+                long waitTime = segment == null ? Long.MAX_VALUE : segment.mDueTime - now;
+                if (timeoutInMillis > 0) {
+                    waitTime = Math.min(waitTime, deadline - now);
+                }
+
+                if (waitTime == Long.MAX_VALUE) {
+                    wait();
+                } else {
+                    TimeUnit.NANOSECONDS.timedWait(this, waitTime);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the emulated link");
+        }
+    }
+
+    /**
+     * @return whether there is nothing in flight
+     */
+    synchronized boolean isEmpty() {
+        return mSegments.isEmpty();
+    }
+
+    /**
+     * Waits for the segments in flight to be taken
+     *
+     * @return whether the line has been drained in time
+     */
+    synchronized boolean awaitDrained(final long timeoutInMillis) {
+        final long deadline = System.currentTimeMillis() + timeoutInMillis;
+        try {
+            while (mFailure == null && !mSegments.isEmpty()) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                wait(remaining);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return mSegments.isEmpty();
+    }
+
+    /**
+     * Ends the stream once the segments in flight have been taken
+     */
+    synchronized void endOfStream() {
+        mEndOfStream = true;
+        notifyAll();
+    }
+
+    /**
+     * Fails both ends of the line dropping the segments in flight
+     */
+    synchronized void fail(@Nonnull final IOException failure) {
+        if (mFailure == null) {
+            mFailure = failure;
+        }
+
+        mSegments.clear();
+        mBytesInFlight = 0;
+        notifyAll();
+    }
+
+    private void throwIfFailed() throws IOException {
+        if (mFailure != null) {
+            throw mFailure;
+        }
+    }
+
+    private static final class Segment {
+        private final byte[] mData;
+        private final long mDueTime;
+
+        private Segment(@Nonnull final byte[] data, final long dueTime) {
+            mData = data;
+            mDueTime = dueTime;
+        }
+    }
+}
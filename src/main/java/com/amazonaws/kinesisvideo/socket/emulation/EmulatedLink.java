@@ -0,0 +1,324 @@
+package com.amazonaws.kinesisvideo.socket.emulation;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single emulated connection.
+ * <p>
+ * The bytes written to the outbound stream go through the outbound {@link DelayLine} and are forwarded to the
+ * real transport by a background task. The bytes of the real transport are pumped into the inbound line by
+ * another task and read from there. The random generator of the link is derived from the emulator seed and
+ * the connection number so every connection sees the same conditions from run to run.
+ */
+final class EmulatedLink implements Closeable {
+    private static final int RECEIVE_BUFFER_SIZE = 16 * 1024;
+    private static final long CLOSE_DRAIN_TIMEOUT_IN_MILLIS = 5000L;
+    private static final long NO_DISCONNECT = -1L;
+
+    private final int mConnectionNumber;
+    private final NetworkEmulator mEmulator;
+    private final Log mLog;
+    private final DelayLine mOutbound;
+    private final DelayLine mInbound;
+    private final long mDisconnectAfterBytes;
+    private final long mConnectDelayInMillis;
+    private final boolean mConnectFailure;
+
+    // Guarded by this
+    private Closeable mTransport;
+    private long mBytesTransferred;
+    private boolean mClosed;
+
+    private volatile int mReadTimeoutInMillis;
+    // Counted down once the forwarding task has written out the outbound line
+    private volatile CountDownLatch mForwarded;
+
+    EmulatedLink(final int connectionNumber,
+                 @Nonnull final NetworkEmulator emulator,
+                 @Nonnull final Random random) {
+        mConnectionNumber = connectionNumber;
+        mEmulator = emulator;
+        mLog = emulator.getLog();
+
+        final NetworkConditions conditions = emulator.getConditions();
+        mOutbound = new DelayLine(conditions, conditions.getUpstreamKbps(), new Random(random.nextLong()));
+        mInbound = new DelayLine(conditions, conditions.getDownstreamKbps(), new Random(random.nextLong()));
+
+        // Every draw is made regardless of the outcome to keep the sequence stable
+        final boolean disconnect = random.nextDouble() < conditions.getDisconnectProbability();
+        final long disconnectAfterBytes = conditions.getMinBytesBeforeDisconnect() + (long) (random.nextDouble()
+                * (conditions.getMaxBytesBeforeDisconnect() - conditions.getMinBytesBeforeDisconnect()));
+        mDisconnectAfterBytes = disconnect ? disconnectAfterBytes : NO_DISCONNECT;
+        mConnectFailure = random.nextDouble() < conditions.getConnectFailureProbability();
+        mConnectDelayInMillis = conditions.getOneWayDelay().nextDelayInMillis(random)
+                + conditions.getOneWayDelay().nextDelayInMillis(random);
+    }
+
+    int getConnectionNumber() {
+        return mConnectionNumber;
+    }
+
+    /**
+     * Whether the connection attempt is to be refused
+     */
+    boolean isConnectFailure() {
+        return mConnectFailure;
+    }
+
+    /**
+     * Round trip of the handshake
+     */
+    long getConnectDelayInMillis() {
+        return mConnectDelayInMillis;
+    }
+
+    void setReadTimeoutInMillis(final int readTimeoutInMillis) {
+        mReadTimeoutInMillis = readTimeoutInMillis;
+    }
+
+    int getReadTimeoutInMillis() {
+        return mReadTimeoutInMillis;
+    }
+
+    /**
+     * Sets what gets closed when the link is closed or dropped
+     */
+    synchronized void setTransport(@Nonnull final Closeable transport) {
+        mTransport = transport;
+    }
+
+    @Nonnull
+    OutputStream connectOutbound(@Nonnull final OutputStream outputStream, @Nonnull final ExecutorService executor) {
+        mForwarded = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                forward(outputStream);
+            }
+        });
+
+        return new EmulatedOutputStream();
+    }
+
+    @Nonnull
+    InputStream connectInbound(@Nonnull final InputStream inputStream, @Nonnull final ExecutorService executor) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                pump(inputStream);
+            }
+        });
+
+        return new EmulatedInputStream();
+    }
+
+    synchronized boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * Delivers the bytes in flight, like a socket with the default linger, and closes the transport
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+
+            mClosed = true;
+        }
+
+        mOutbound.endOfStream();
+        if (!awaitForwarded(CLOSE_DRAIN_TIMEOUT_IN_MILLIS)) {
+            mLog.warn("Dropped the undelivered bytes of emulated connection %d on close", mConnectionNumber);
+        }
+
+        closeTransport();
+        final SocketException closed = new SocketException("Socket closed");
+        mOutbound.fail(closed);
+        mInbound.fail(closed);
+    }
+
+    /**
+     * Drops the connection in both directions
+     */
+    private void disconnect() {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+
+            mClosed = true;
+        }
+
+        mLog.info("Network emulator dropped connection %d after %d bytes", mConnectionNumber, mDisconnectAfterBytes);
+        mEmulator.onDisconnect();
+        final SocketException reset = new SocketException("Connection reset by the network emulator");
+        mOutbound.fail(reset);
+        mInbound.fail(reset);
+        closeTransport();
+    }
+
+    /**
+     * Counts the bytes towards the disconnect and drops the connection once they reach it
+     */
+    private void transfer(@Nonnull final DelayLine line,
+                          @Nonnull final byte[] buffer,
+                          final int offset,
+                          final int length) throws IOException {
+        final boolean drop;
+        synchronized (this) {
+            mBytesTransferred += length;
+            drop = mDisconnectAfterBytes != NO_DISCONNECT && mBytesTransferred > mDisconnectAfterBytes;
+        }
+
+        if (drop) {
+            disconnect();
+        }
+
+        line.put(buffer, offset, length);
+    }
+
+    private void forward(@Nonnull final OutputStream outputStream) {
+        try {
+            byte[] segment;
+            while ((segment = mOutbound.take(0)) != null) {
+                outputStream.write(segment);
+                if (mOutbound.isEmpty()) {
+                    outputStream.flush();
+                }
+            }
+
+            outputStream.flush();
+        } catch (final IOException e) {
+            mOutbound.fail(e);
+        } finally {
+            mForwarded.countDown();
+        }
+    }
+
+    /**
+     * Waits for the bytes in flight to be written to the transport. Taking the last segment off the line isn't
+     * enough as the transport would be closed before the forwarding task has written it.
+     */
+    private boolean awaitForwarded(final long timeoutInMillis) {
+        final CountDownLatch forwarded = mForwarded;
+        if (forwarded == null) {
+            return mOutbound.awaitDrained(timeoutInMillis);
+        }
+
+        try {
+            return forwarded.await(timeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void pump(@Nonnull final InputStream inputStream) {
+        final byte[] buffer = new byte[RECEIVE_BUFFER_SIZE];
+        try {
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                transfer(mInbound, buffer, 0, bytesRead);
+            }
+
+            mInbound.endOfStream();
+        } catch (final IOException e) {
+            mInbound.fail(e);
+        }
+    }
+
+    private void closeTransport() {
+        final Closeable transport;
+        synchronized (this) {
+            transport = mTransport;
+        }
+
+        if (transport == null) {
+            return;
+        }
+
+        try {
+            transport.close();
+        } catch (final IOException e) {
+            mLog.debug("Closing emulated connection %d threw %s", mConnectionNumber, e);
+        }
+    }
+
+    private final class EmulatedOutputStream extends OutputStream {
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@Nonnull final byte[] buffer, final int offset, final int length) throws IOException {
+            transfer(mOutbound, buffer, offset, length);
+        }
+
+        @Override
+        public void close() {
+            EmulatedLink.this.close();
+        }
+    }
+
+    private final class EmulatedInputStream extends InputStream {
+        private byte[] mSegment;
+        private int mPosition;
+
+        @Override
+        public int read() throws IOException {
+            final byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(@Nonnull final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (mSegment == null || mPosition == mSegment.length) {
+                mSegment = nextSegment();
+                mPosition = 0;
+                if (mSegment == null) {
+                    return -1;
+                }
+            }
+
+            final int bytesRead = Math.min(length, mSegment.length - mPosition);
+            System.arraycopy(mSegment, mPosition, buffer, offset, bytesRead);
+            mPosition += bytesRead;
+            return bytesRead;
+        }
+
+        @Override
+        public int available() {
+            return mSegment == null ? 0 : mSegment.length - mPosition;
+        }
+
+        @Override
+        public void close() {
+            EmulatedLink.this.close();
+        }
+
+        @Nullable
+        private byte[] nextSegment() throws IOException {
+            return mInbound.take(mReadTimeoutInMillis);
+        }
+    }
+}
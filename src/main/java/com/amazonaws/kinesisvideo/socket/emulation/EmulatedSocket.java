@@ -0,0 +1,99 @@
+package com.amazonaws.kinesisvideo.socket.emulation;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A connected socket whose streams go through an {@link EmulatedLink}.
+ * <p>
+ * Only the parts used by the HTTP clients are emulated. The read timeout applies to the emulated input so the
+ * delays of the link count towards it.
+ */
+final class EmulatedSocket extends Socket {
+    private final Socket mSocket;
+    private final EmulatedLink mLink;
+    private final InputStream mInputStream;
+    private final OutputStream mOutputStream;
+
+    EmulatedSocket(@Nonnull final Socket socket,
+                   @Nonnull final EmulatedLink link,
+                   @Nonnull final ExecutorService executor) throws IOException {
+        mSocket = socket;
+        mLink = link;
+        mLink.setTransport(socket);
+        mInputStream = link.connectInbound(socket.getInputStream(), executor);
+        mOutputStream = link.connectOutbound(socket.getOutputStream(), executor);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return mInputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return mOutputStream;
+    }
+
+    @Override
+    public void setSoTimeout(final int timeout) {
+        mLink.setReadTimeoutInMillis(timeout);
+    }
+
+    @Override
+    public int getSoTimeout() {
+        return mLink.getReadTimeoutInMillis();
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return mSocket.getInetAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return mSocket.getPort();
+    }
+
+    @Override
+    public int getLocalPort() {
+        return mSocket.getLocalPort();
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return mSocket.getRemoteSocketAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+        return mSocket.getLocalSocketAddress();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mSocket.isConnected();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return mLink.isClosed() || mSocket.isClosed();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mLink.close();
+        super.close();
+    }
+
+    @Override
+    public String toString() {
+        return "EmulatedSocket[" + mLink.getConnectionNumber() + ", " + mSocket + "]";
+    }
+}
@@ -0,0 +1,184 @@
+package com.amazonaws.kinesisvideo.socket.emulation;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Conditions of an emulated network link. The defaults describe a perfect link.
+ */
+public final class NetworkConditions {
+    private final long upstreamKbps;
+    private final long downstreamKbps;
+    private final DelayDistribution oneWayDelay;
+    private final double stallProbability;
+    private final DelayDistribution stallDuration;
+    private final int windowSize;
+    private final double disconnectProbability;
+    private final long minBytesBeforeDisconnect;
+    private final long maxBytesBeforeDisconnect;
+    private final double connectFailureProbability;
+
+    private NetworkConditions(final Builder builder) {
+        this.upstreamKbps = builder.upstreamKbps;
+        this.downstreamKbps = builder.downstreamKbps;
+        this.oneWayDelay = builder.oneWayDelay;
+        this.stallProbability = builder.stallProbability;
+        this.stallDuration = builder.stallDuration;
+        this.windowSize = builder.windowSize;
+        this.disconnectProbability = builder.disconnectProbability;
+        this.minBytesBeforeDisconnect = builder.minBytesBeforeDisconnect;
+        this.maxBytesBeforeDisconnect = builder.maxBytesBeforeDisconnect;
+        this.connectFailureProbability = builder.connectFailureProbability;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Bandwidth from the client to the server, 0 for unlimited
+     */
+    public long getUpstreamKbps() {
+        return upstreamKbps;
+    }
+
+    /**
+     * Bandwidth from the server to the client, 0 for unlimited
+     */
+    public long getDownstreamKbps() {
+        return downstreamKbps;
+    }
+
+    @Nonnull
+    public DelayDistribution getOneWayDelay() {
+        return oneWayDelay;
+    }
+
+    /**
+     * Probability of a segment being lost and held up for a retransmission
+     */
+    public double getStallProbability() {
+        return stallProbability;
+    }
+
+    @Nonnull
+    public DelayDistribution getStallDuration() {
+        return stallDuration;
+    }
+
+    /**
+     * Bytes in flight in each direction after which the writes block, the equivalent of the TCP window
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Probability of a connection being dropped after a number of bytes
+     */
+    public double getDisconnectProbability() {
+        return disconnectProbability;
+    }
+
+    public long getMinBytesBeforeDisconnect() {
+        return minBytesBeforeDisconnect;
+    }
+
+    public long getMaxBytesBeforeDisconnect() {
+        return maxBytesBeforeDisconnect;
+    }
+
+    public double getConnectFailureProbability() {
+        return connectFailureProbability;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "up %d kbps, down %d kbps, delay %s, stalls %.4f x %s, window %d, "
+                        + "disconnects %.2f after %d - %d bytes, connect failures %.2f",
+                upstreamKbps, downstreamKbps, oneWayDelay, stallProbability, stallDuration, windowSize,
+                disconnectProbability, minBytesBeforeDisconnect, maxBytesBeforeDisconnect,
+                connectFailureProbability);
+    }
+
+    public static final class Builder {
+        private static final int DEFAULT_WINDOW_SIZE = 256 * 1024;
+        private static final long DEFAULT_STALL_DURATION_IN_MILLIS = 200;
+
+        private long upstreamKbps;
+        private long downstreamKbps;
+        private DelayDistribution oneWayDelay = DelayDistribution.constant(0);
+        private double stallProbability;
+        private DelayDistribution stallDuration = DelayDistribution.constant(DEFAULT_STALL_DURATION_IN_MILLIS);
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+        private double disconnectProbability;
+        private long minBytesBeforeDisconnect;
+        private long maxBytesBeforeDisconnect;
+        private double connectFailureProbability;
+
+        private Builder() { }
+
+        public Builder withUpstreamKbps(final long kbps) {
+            this.upstreamKbps = kbps;
+            return this;
+        }
+
+        public Builder withDownstreamKbps(final long kbps) {
+            this.downstreamKbps = kbps;
+            return this;
+        }
+
+        public Builder withOneWayDelay(@Nonnull final DelayDistribution delay) {
+            this.oneWayDelay = checkNotNull(delay);
+            return this;
+        }
+
+        /**
+         * Every segment is stalled with the given probability for a duration drawn from the distribution. The
+         * segments behind it are held up as well as TCP delivers in order.
+         */
+        public Builder withStalls(final double probability, @Nonnull final DelayDistribution duration) {
+            this.stallProbability = probability;
+            this.stallDuration = checkNotNull(duration);
+            return this;
+        }
+
+        public Builder withWindowSize(final int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Every connection is dropped with the given probability once it has transferred a number of bytes drawn
+         * uniformly from the range
+         */
+        public Builder withDisconnects(final double probability, final long minBytes, final long maxBytes) {
+            this.disconnectProbability = probability;
+            this.minBytesBeforeDisconnect = minBytes;
+            this.maxBytesBeforeDisconnect = maxBytes;
+            return this;
+        }
+
+        public Builder withConnectFailureProbability(final double probability) {
+            this.connectFailureProbability = probability;
+            return this;
+        }
+
+        public NetworkConditions build() {
+            checkArgument(upstreamKbps >= 0 && downstreamKbps >= 0, "Bandwidth can't be negative");
+            checkArgument(windowSize > 0, "Window size must be positive");
+            checkArgument(isProbability(stallProbability) && isProbability(disconnectProbability)
+                    && isProbability(connectFailureProbability), "Probabilities must be between 0 and 1");
+            checkArgument(minBytesBeforeDisconnect >= 0 && maxBytesBeforeDisconnect >= minBytesBeforeDisconnect,
+                    "Invalid disconnect range");
+            return new NetworkConditions(this);
+        }
+
+        private static boolean isProbability(final double value) {
+            return value >= 0 && value <= 1;
+        }
+    }
+}
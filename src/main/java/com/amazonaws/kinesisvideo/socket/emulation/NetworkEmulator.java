@@ -0,0 +1,153 @@
+package com.amazonaws.kinesisvideo.socket.emulation;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.socket.SocketFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Emulates a network with the given {@link NetworkConditions} between the client and the server for reproducible
+ * upload performance and recovery tests.
+ * <p>
+ * Connections made through {@link #getSocketFactory()} get the configured bandwidth, one-way delays, stalls,
+ * refused connects and forced disconnects. Pass the factory to {@code PutMediaClient.Builder.socketFactory} or
+ * {@code ParallelSimpleHttpClient.Builder.socketFactory}. Plain streams can be wrapped with
+ * {@link #emulate(InputStream)} and {@link #emulate(OutputStream)}.
+ * <p>
+ * All of the random draws come from generators seeded with the emulator seed and the connection number, so the
+ * n-th connection of two runs with the same seed sees the same delays, stalls and disconnects.
+ */
+public final class NetworkEmulator implements Closeable {
+    private static final long CONNECTION_SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+    private final NetworkConditions mConditions;
+    private final long mSeed;
+    private final Log mLog;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+    private final AtomicInteger mConnectFailureCount = new AtomicInteger();
+    private final AtomicInteger mDisconnectCount = new AtomicInteger();
+
+    public NetworkEmulator(@Nonnull final NetworkConditions conditions, final long seed) {
+        this(conditions, seed, new Log(Log.SYSTEM_OUT));
+    }
+
+    public NetworkEmulator(@Nonnull final NetworkConditions conditions, final long seed, @Nonnull final Log log) {
+        mConditions = checkNotNull(conditions);
+        mSeed = seed;
+        mLog = checkNotNull(log);
+    }
+
+    @Nonnull
+    public NetworkConditions getConditions() {
+        return mConditions;
+    }
+
+    /**
+     * Socket factory making the connections through the emulated network
+     */
+    @Nonnull
+    public SocketFactory getSocketFactory() {
+        return new SocketFactory() {
+            @Override
+            public Socket createSocket(final URI uri) {
+                try {
+                    final EmulatedLink link = connect(uri);
+                    return new EmulatedSocket(super.createSocket(uri), link, mExecutor);
+                } catch (final IOException e) {
+                    throw new RuntimeException("Exception while creating socket ! ", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a stream read through the downstream direction of a new emulated connection
+     */
+    @Nonnull
+    public InputStream emulate(@Nonnull final InputStream inputStream) {
+        final EmulatedLink link = newLink();
+        link.setTransport(inputStream);
+        return link.connectInbound(inputStream, mExecutor);
+    }
+
+    /**
+     * Wraps a stream written through the upstream direction of a new emulated connection
+     */
+    @Nonnull
+    public OutputStream emulate(@Nonnull final OutputStream outputStream) {
+        final EmulatedLink link = newLink();
+        link.setTransport(outputStream);
+        return link.connectOutbound(outputStream, mExecutor);
+    }
+
+    public int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    public int getConnectFailureCount() {
+        return mConnectFailureCount.get();
+    }
+
+    public int getDisconnectCount() {
+        return mDisconnectCount.get();
+    }
+
+    /**
+     * Stops the background tasks of the emulated connections which are still open
+     */
+    @Override
+    public void close() {
+        mExecutor.shutdownNow();
+    }
+
+    @Nonnull
+    Log getLog() {
+        return mLog;
+    }
+
+    void onDisconnect() {
+        mDisconnectCount.incrementAndGet();
+    }
+
+    /**
+     * Emulates the handshake of a new connection
+     */
+    @Nonnull
+    private EmulatedLink connect(@Nonnull final URI uri) throws IOException {
+        final EmulatedLink link = newLink();
+        try {
+            Thread.sleep(link.getConnectDelayInMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (link.isConnectFailure()) {
+            mConnectFailureCount.incrementAndGet();
+            mLog.info("Network emulator refused connection %d to %s", link.getConnectionNumber(), uri);
+            throw new ConnectException("Connection refused by the network emulator");
+        }
+
+        return link;
+    }
+
+    @Nonnull
+    private EmulatedLink newLink() {
+        final int connectionNumber = mConnectionCount.incrementAndGet();
+        final Random random = new Random(mSeed + connectionNumber * CONNECTION_SEED_INCREMENT);
+        return new EmulatedLink(connectionNumber, this, random);
+    }
+}
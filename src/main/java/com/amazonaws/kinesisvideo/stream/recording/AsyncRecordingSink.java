@@ -0,0 +1,501 @@
+package com.amazonaws.kinesisvideo.stream.recording;
+
+import com.amazonaws.kinesisvideo.client.mkv.MkvBoundaries;
+import com.amazonaws.kinesisvideo.client.mkv.MkvStreamSplitter;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Write-behind sink recording the MKV stream into local files.
+ * <p>
+ * The writing thread only copies the data into a bounded queue. A background writer drains the queue in batches,
+ * writes each batch with a single gathering {@link FileChannel} write and forces the data to the disk periodically
+ * rather than on every write. Files are rotated on the fragment boundaries once the configured size or duration
+ * is reached and each rotated file starts with the MKV header of the stream so it can be played on its own.
+ * <p>
+ * NOTE: The sink is meant to be written to from a single thread.
+ */
+public final class AsyncRecordingSink implements Closeable {
+    private static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final long DEFAULT_FORCE_INTERVAL_MILLIS = 1000;
+    private static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final int INITIAL_HEADER_SIZE = 1024;
+    private static final String ROTATED_FILE_FORMAT = "%s-%05d%s";
+    private static final int HOLD_BACK_SIZE = MkvStreamSplitter.HOLD_BACK_SIZE;
+
+    private static final Chunk CLOSE_MARKER = new Chunk(0);
+
+    private final Builder mBuilder;
+    private final Log mLog;
+    private final BlockingQueue<Chunk> mQueue;
+    private final BlockingQueue<Chunk> mFreeChunks;
+    private final ExecutorService mWriter;
+    private final AtomicLong mDroppedChunks = new AtomicLong();
+    private final AtomicLong mDroppedBytes = new AtomicLong();
+    private final AtomicLong mFilesWritten = new AtomicLong();
+    private volatile boolean mFailed;
+
+    // Writing thread state
+    private boolean mClosed;
+    private boolean mDiscontinuity;
+
+    // Writer thread state
+    private final List<Chunk> mBatch = new ArrayList<Chunk>(MAX_BATCH_SIZE);
+    private final List<ByteBuffer> mPendingWrites = new ArrayList<ByteBuffer>();
+    private final MkvStreamSplitter mSplitter = new MkvStreamSplitter();
+    private final MkvStreamSplitter.Listener mSplitListener = new MkvStreamSplitter.Listener() {
+        @Override
+        public void onData(final byte[] buffer, final int offset, final int length) throws IOException {
+            route(buffer, offset, offset + length);
+        }
+
+        @Override
+        public void onBoundary(final int elementId) throws IOException {
+            AsyncRecordingSink.this.onBoundary(elementId);
+        }
+    };
+    private byte[] mHeader = new byte[INITIAL_HEADER_SIZE];
+    private int mHeaderLength;
+    private boolean mCapturingHeader;
+    private boolean mDiscarding;
+    private FileChannel mChannel;
+    private int mFileIndex;
+    private long mFileSize;
+    private long mFileOpenTime;
+    private long mLastForceTime;
+
+    private AsyncRecordingSink(final Builder builder) {
+        mBuilder = builder;
+        mLog = builder.mLog;
+        mQueue = new ArrayBlockingQueue<Chunk>(builder.mQueueCapacity + 1);
+        mFreeChunks = new ArrayBlockingQueue<Chunk>(builder.mQueueCapacity + MAX_BATCH_SIZE);
+        mWriter = Executors.newFixedThreadPool(1);
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        });
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Queues the data for writing. Depending on the {@link RecordingOverflowPolicy} the data is either dropped
+     * or the call blocks when the writer is behind.
+     */
+    public void write(@Nonnull final byte[] buffer, final int offset, final int length) {
+        if (mClosed || mFailed || length <= 0) {
+            return;
+        }
+
+        Chunk chunk = mFreeChunks.poll();
+        if (chunk == null || chunk.mData.length < HOLD_BACK_SIZE + length) {
+            chunk = new Chunk(HOLD_BACK_SIZE + length);
+        }
+
+        System.arraycopy(buffer, offset, chunk.mData, HOLD_BACK_SIZE, length);
+        chunk.mLength = length;
+        chunk.mDiscontinuity = mDiscontinuity;
+
+        if (enqueue(chunk)) {
+            mDiscontinuity = false;
+        } else {
+            mDiscontinuity = true;
+            mDroppedChunks.incrementAndGet();
+            mDroppedBytes.addAndGet(length);
+            mFreeChunks.offer(chunk);
+        }
+    }
+
+    /**
+     * Flushes the queued data and closes the current file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+        try {
+            mQueue.put(CLOSE_MARKER);
+            mWriter.shutdown();
+            if (!mWriter.awaitTermination(mBuilder.mCloseTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                mLog.warn("Recording into %s didn't finish in %d ms", mBuilder.mFilePath,
+                        mBuilder.mCloseTimeoutMillis);
+                mWriter.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mWriter.shutdownNow();
+        }
+    }
+
+    public long getDroppedChunks() {
+        return mDroppedChunks.get();
+    }
+
+    public long getDroppedBytes() {
+        return mDroppedBytes.get();
+    }
+
+    public long getFilesWritten() {
+        return mFilesWritten.get();
+    }
+
+    public int getQueuedChunks() {
+        return mQueue.size();
+    }
+
+    public boolean isFailed() {
+        return mFailed;
+    }
+
+    private boolean enqueue(final Chunk chunk) {
+        if (mBuilder.mOverflowPolicy == RecordingOverflowPolicy.BLOCK) {
+            try {
+                mQueue.put(chunk);
+                return true;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return mQueue.offer(chunk);
+    }
+
+    private void runWriter() {
+        boolean closing = false;
+        try {
+            while (!closing) {
+                mBatch.add(mQueue.take());
+                mQueue.drainTo(mBatch, MAX_BATCH_SIZE - 1);
+
+                for (final Chunk chunk : mBatch) {
+                    if (chunk == CLOSE_MARKER) {
+                        closing = true;
+                    } else if (!mFailed) {
+                        processChunk(chunk);
+                    }
+                }
+
+                if (!mFailed) {
+                    flushPendingWrites();
+                    forceIfDue(closing);
+                }
+
+                // The pending writes are referencing the chunks so they can only be recycled after the flush
+                for (final Chunk chunk : mBatch) {
+                    if (chunk != CLOSE_MARKER) {
+                        mFreeChunks.offer(chunk);
+                    }
+                }
+
+                mBatch.clear();
+            }
+
+            if (!mFailed) {
+                mSplitter.flush(mSplitListener);
+                flushPendingWrites();
+                forceIfDue(true);
+            }
+        } catch (final IOException e) {
+            mFailed = true;
+            mLog.exception(e, "Recording into %s failed. Stopping the recording.", mBuilder.mFilePath);
+            drainUntilClosed(closing);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Keeps taking the chunks off the queue after a failure so that a blocked writing thread is released.
+     */
+    private void drainUntilClosed(final boolean closing) {
+        if (closing) {
+            return;
+        }
+
+        try {
+            while (mQueue.take() != CLOSE_MARKER) {
+                // Discard
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processChunk(final Chunk chunk) throws IOException {
+        if (chunk.mDiscontinuity) {
+            // Some data has been dropped before this chunk. The held back data is still valid
+            // but whatever follows is skipped up to the next boundary.
+            mSplitter.flush(mSplitListener);
+            flushPendingWrites();
+            mDiscarding = true;
+            if (mCapturingHeader) {
+                mCapturingHeader = false;
+                mHeaderLength = 0;
+            }
+        }
+
+        mSplitter.split(chunk.mData, HOLD_BACK_SIZE, chunk.mLength, mSplitListener);
+    }
+
+    private void onBoundary(final int elementId) throws IOException {
+        mDiscarding = false;
+
+        if (elementId == MkvBoundaries.EBML_HEADER_ID) {
+            // New stream - the header that follows replaces the previous one
+            rotateIfDue(false);
+            mCapturingHeader = true;
+            mHeaderLength = 0;
+        } else {
+            mCapturingHeader = false;
+            rotateIfDue(true);
+        }
+    }
+
+    private void route(final byte[] data, final int from, final int to) throws IOException {
+        if (to <= from || mDiscarding) {
+            return;
+        }
+
+        if (mCapturingHeader) {
+            appendToHeader(data, from, to);
+        }
+
+        if (mChannel == null) {
+            openNextFile();
+        }
+
+        mPendingWrites.add(ByteBuffer.wrap(data, from, to - from));
+        mFileSize += to - from;
+    }
+
+    private void appendToHeader(final byte[] data, final int from, final int to) {
+        final int length = to - from;
+        if (mHeaderLength + length > mHeader.length) {
+            final byte[] header = new byte[Math.max(2 * mHeader.length, mHeaderLength + length)];
+            System.arraycopy(mHeader, 0, header, 0, mHeaderLength);
+            mHeader = header;
+        }
+
+        System.arraycopy(data, from, mHeader, mHeaderLength, length);
+        mHeaderLength += length;
+    }
+
+    private void rotateIfDue(final boolean writeHeader) throws IOException {
+        if (mChannel == null || !isRotationDue()) {
+            return;
+        }
+
+        flushPendingWrites();
+        forceIfDue(true);
+        closeChannel();
+        openNextFile();
+
+        if (writeHeader && mHeaderLength > 0) {
+            writeFully(new ByteBuffer[] {ByteBuffer.wrap(mHeader, 0, mHeaderLength)}, mHeaderLength);
+            mFileSize += mHeaderLength;
+        }
+    }
+
+    private boolean isRotationDue() {
+        return (mBuilder.mMaxFileSizeBytes > 0 && mFileSize >= mBuilder.mMaxFileSizeBytes)
+                || (mBuilder.mMaxFileDurationMillis > 0
+                        && System.currentTimeMillis() - mFileOpenTime >= mBuilder.mMaxFileDurationMillis);
+    }
+
+    private void openNextFile() throws IOException {
+        final String path = nextFilePath();
+        mChannel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        mFileIndex++;
+        mFileSize = 0;
+        mFileOpenTime = System.currentTimeMillis();
+        mLastForceTime = mFileOpenTime;
+        mFilesWritten.incrementAndGet();
+        mLog.info("Recording stream data into %s", path);
+    }
+
+    private String nextFilePath() {
+        if (!mBuilder.isRotationEnabled()) {
+            return mBuilder.mFilePath;
+        }
+
+        final String path = mBuilder.mFilePath;
+        final int extension = path.lastIndexOf('.');
+        final int separator = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        if (extension <= separator + 1) {
+            return String.format(Locale.US, ROTATED_FILE_FORMAT, path, mFileIndex, "");
+        }
+
+        return String.format(Locale.US, ROTATED_FILE_FORMAT, path.substring(0, extension), mFileIndex,
+                path.substring(extension));
+    }
+
+    private void flushPendingWrites() throws IOException {
+        if (mPendingWrites.isEmpty()) {
+            return;
+        }
+
+        long size = 0;
+        for (final ByteBuffer buffer : mPendingWrites) {
+            size += buffer.remaining();
+        }
+
+        final ByteBuffer[] buffers = mPendingWrites.toArray(new ByteBuffer[mPendingWrites.size()]);
+        mPendingWrites.clear();
+        writeFully(buffers, size);
+    }
+
+    private void writeFully(final ByteBuffer[] buffers, final long size) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            remaining -= mChannel.write(buffers);
+        }
+    }
+
+    private void forceIfDue(final boolean now) throws IOException {
+        if (mChannel == null) {
+            return;
+        }
+
+        final long currentTime = System.currentTimeMillis();
+        if (now || currentTime - mLastForceTime >= mBuilder.mForceIntervalMillis) {
+            mChannel.force(false);
+            mLastForceTime = currentTime;
+        }
+    }
+
+    private void closeChannel() {
+        if (mChannel == null) {
+            return;
+        }
+
+        try {
+            mChannel.close();
+        } catch (final IOException e) {
+            mLog.exception(e, "Closing recording file %s threw an exception", mBuilder.mFilePath);
+        }
+
+        mChannel = null;
+    }
+
+    /**
+     * Queued copy of the data. The data starts at {@link #HOLD_BACK_SIZE} leaving room to prepend the bytes
+     * held back from the previous chunk without copying.
+     */
+    private static final class Chunk {
+        private final byte[] mData;
+        private int mLength;
+        private boolean mDiscontinuity;
+
+        private Chunk(final int capacity) {
+            mData = new byte[capacity];
+        }
+    }
+
+    public static class Builder {
+        private String mFilePath;
+        private int mQueueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private long mForceIntervalMillis = DEFAULT_FORCE_INTERVAL_MILLIS;
+        private long mCloseTimeoutMillis = DEFAULT_CLOSE_TIMEOUT_MILLIS;
+        private long mMaxFileSizeBytes;
+        private long mMaxFileDurationMillis;
+        private RecordingOverflowPolicy mOverflowPolicy = RecordingOverflowPolicy.DROP;
+        private Log mLog = new Log(Log.SYSTEM_OUT);
+
+        /**
+         * Path of the recording file. With the rotation enabled, the file index is added before the extension.
+         */
+        public Builder filePath(final String filePath) {
+            mFilePath = filePath;
+            return this;
+        }
+
+        /**
+         * Number of writes that can be queued before the overflow policy kicks in.
+         */
+        public Builder queueCapacity(final int queueCapacity) {
+            mQueueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder forceIntervalMillis(final long forceIntervalMillis) {
+            mForceIntervalMillis = forceIntervalMillis;
+            return this;
+        }
+
+        public Builder closeTimeoutMillis(final long closeTimeoutMillis) {
+            mCloseTimeoutMillis = closeTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Rotates the file on the next fragment boundary after the file reaches the size. 0 disables.
+         */
+        public Builder maxFileSizeBytes(final long maxFileSizeBytes) {
+            mMaxFileSizeBytes = maxFileSizeBytes;
+            return this;
+        }
+
+        /**
+         * Rotates the file on the next fragment boundary after the file has been open for the duration. 0 disables.
+         */
+        public Builder maxFileDurationMillis(final long maxFileDurationMillis) {
+            mMaxFileDurationMillis = maxFileDurationMillis;
+            return this;
+        }
+
+        public Builder overflowPolicy(final RecordingOverflowPolicy overflowPolicy) {
+            mOverflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public Builder log(final Log log) {
+            mLog = checkNotNull(log);
+            return this;
+        }
+
+        public AsyncRecordingSink build() {
+            checkNotNull(mFilePath);
+            checkNotNull(mOverflowPolicy);
+            checkArgument(mQueueCapacity > 0, "Queue capacity must be positive");
+            checkArgument(mForceIntervalMillis >= 0, "Force interval can't be negative");
+            checkArgument(mMaxFileSizeBytes >= 0, "Max file size can't be negative");
+            checkArgument(mMaxFileDurationMillis >= 0, "Max file duration can't be negative");
+            return new AsyncRecordingSink(this);
+        }
+
+        private boolean isRotationEnabled() {
+            return mMaxFileSizeBytes > 0 || mMaxFileDurationMillis > 0;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.amazonaws.kinesisvideo.stream.recording;
+
+/**
+ * What the {@link AsyncRecordingSink} does when the disk can't keep up with the stream.
+ */
+public enum RecordingOverflowPolicy {
+    /**
+     * Drop the data that doesn't fit into the queue. The recording resumes on the next fragment boundary
+     * so the upload is never slowed down by the disk.
+     */
+    DROP,
+
+    /**
+     * Block the writing thread until there is room in the queue. The recording is complete but the disk
+     * stalls will propagate to the upload.
+     */
+    BLOCK
+}
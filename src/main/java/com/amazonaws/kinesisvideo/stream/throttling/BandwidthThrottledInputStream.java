@@ -0,0 +1,59 @@
+package com.amazonaws.kinesisvideo.stream.throttling;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that is bandwidth-throttled by a {@link BandwidthThrottler}. Each read is limited to the number of
+ * bytes allowed by the throttler.
+ * <p>
+ * The throttler can be shared between several streams in order to cap their combined bandwidth.
+ */
+public class BandwidthThrottledInputStream extends InputStream {
+    private final InputStream inputStream;
+    private final BandwidthThrottler throttler;
+
+    // This is so that we don't have to allocate it all the time. Just one byte!
+    private final byte[] oneByteBuffer = new byte[1];
+
+    public BandwidthThrottledInputStream(final InputStream inputStream,
+                                         final BandwidthThrottler throttler) {
+        this.inputStream = inputStream;
+        this.throttler = throttler;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int bytesRead = read(oneByteBuffer, 0, 1);
+        return bytesRead == -1 ? -1 : oneByteBuffer[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        final int allowedBytesToRead;
+        synchronized (throttler) {
+            allowedBytesToRead = throttler.getAllowedBytes(len);
+        }
+
+        return inputStream.read(b, off, allowedBytesToRead);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return inputStream.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
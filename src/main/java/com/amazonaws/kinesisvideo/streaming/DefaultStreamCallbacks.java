@@ -42,6 +42,12 @@ public class DefaultStreamCallbacks implements StreamCallbacks {
         // no-op
     }
 
+    @Override
+    public void staleFragmentReport(final long fragmentTimecode, final long ackWaitDuration)
+            throws ProducerException {
+        // no-op
+    }
+
     @Override
     public void streamDataAvailable(final long uploadHandle, final long duration, final long availableSize)
             throws ProducerException {
@@ -4,6 +4,7 @@ import com.amazonaws.kinesisvideo.client.mediasource.CameraMediaSourceConfigurat
 import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceConfiguration;
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
 import com.amazonaws.kinesisvideo.mediasource.bytes.BytesMediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.mediasource.bytes.SyntheticMediaSourceConfiguration;
 import com.amazonaws.kinesisvideo.producer.StreamInfo;
 import com.amazonaws.kinesisvideo.producer.Tag;
 
@@ -58,7 +59,12 @@ public final class ProducerStreamUtil {
             return getCameraStreamInfo(streamName, mediaSourceConfiguration);
         } else if (isBytesConfiguration(mediaSourceConfiguration)) {
             return getBytesStreamInfo(streamName, mediaSourceConfiguration);
-        } else if (isImageFileConfiguration(mediaSourceConfiguration)) {
+        } else if (isSyntheticConfiguration(mediaSourceConfiguration)) {
+            return getSyntheticStreamInfo(streamName, mediaSourceConfiguration);
+        } else if (isImageFileConfiguration(mediaSourceConfiguration)
+                || isH264FileConfiguration(mediaSourceConfiguration)
+                || isMkvFileConfiguration(mediaSourceConfiguration)
+                || isRtpConfiguration(mediaSourceConfiguration)) {
             return getImageFileStreamInfo(mediaSourceConfiguration, streamName);
         }
 
@@ -80,10 +86,29 @@ public final class ProducerStreamUtil {
                 .isAssignableFrom(mediaSourceConfiguration.getClass());
     }
 
+    private static boolean isSyntheticConfiguration(
+            final MediaSourceConfiguration mediaSourceConfiguration) {
+
+        return SyntheticMediaSourceConfiguration.class
+                .isAssignableFrom(mediaSourceConfiguration.getClass());
+    }
+
     private static boolean isImageFileConfiguration(final MediaSourceConfiguration mediaSourceConfiguration) {
         return mediaSourceConfiguration.getClass().getSimpleName().equals("ImageFileMediaSourceConfiguration");
     }
 
+    private static boolean isH264FileConfiguration(final MediaSourceConfiguration mediaSourceConfiguration) {
+        return mediaSourceConfiguration.getClass().getSimpleName().equals("H264FileMediaSourceConfiguration");
+    }
+
+    private static boolean isMkvFileConfiguration(final MediaSourceConfiguration mediaSourceConfiguration) {
+        return mediaSourceConfiguration.getClass().getSimpleName().equals("MkvFileMediaSourceConfiguration");
+    }
+
+    private static boolean isRtpConfiguration(final MediaSourceConfiguration mediaSourceConfiguration) {
+        return mediaSourceConfiguration.getClass().getSimpleName().equals("RtpMediaSourceConfiguration");
+    }
+
     private static StreamInfo getCameraStreamInfo(
             final String streamName,
             final MediaSourceConfiguration mediaSourceConfiguration) throws KinesisVideoException {
@@ -130,12 +155,31 @@ public final class ProducerStreamUtil {
             final MediaSourceConfiguration mediaSourceConfiguration) throws KinesisVideoException {
         final BytesMediaSourceConfiguration configuration =
                 (BytesMediaSourceConfiguration) mediaSourceConfiguration;
+        return getGeneratedStreamInfo(streamName, configuration.getRetentionPeriodInHours(),
+                configuration.getBitRate(), configuration.getFps());
+    }
+
+    private static StreamInfo getSyntheticStreamInfo(final String streamName,
+            final MediaSourceConfiguration mediaSourceConfiguration) throws KinesisVideoException {
+        final SyntheticMediaSourceConfiguration configuration =
+                (SyntheticMediaSourceConfiguration) mediaSourceConfiguration;
+        return getGeneratedStreamInfo(streamName, configuration.getRetentionPeriodInHours(),
+                configuration.getBitRate(), configuration.getFps());
+    }
+
+    /**
+     * Stream of the frames of a generator, opaque bytes rather than a codec
+     */
+    private static StreamInfo getGeneratedStreamInfo(final String streamName,
+                                                     final long retentionPeriodInHours,
+                                                     final int bitRate,
+                                                     final int fps) {
         return new StreamInfo(VERSION_ZERO,
                 streamName,
                 StreamInfo.StreamingType.STREAMING_TYPE_REALTIME,
                 "application/octet-stream",
                 NO_KMS_KEY_ID,
-                configuration.getRetentionPeriodInHours() * HUNDREDS_OF_NANOS_IN_AN_HOUR,
+                retentionPeriodInHours * HUNDREDS_OF_NANOS_IN_AN_HOUR,
                 NOT_ADAPTIVE,
                 MAX_LATENCY_ZERO,
                 DEFAULT_GOP_DURATION * HUNDREDS_OF_NANOS_IN_A_MILLISECOND,
@@ -146,8 +190,8 @@ public final class ProducerStreamUtil {
                 RECOVER_ON_FAILURE,
                 null,
                 null,
-                DEFAULT_BITRATE,
-                FRAMERATE_30,
+                Math.max(DEFAULT_BITRATE, bitRate),
+                Math.max(FRAMERATE_30, fps),
                 DEFAULT_BUFFER_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
                 DEFAULT_REPLAY_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
                 DEFAULT_STALENESS_DURATION_IN_SECONDS * HUNDREDS_OF_NANOS_IN_A_SECOND,
@@ -0,0 +1,198 @@
+package com.amazonaws.kinesisvideo.client.backfill;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.service.local.LocalKinesisVideoServer;
+import com.amazonaws.kinesisvideo.service.local.LocalStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Backfill engine tests against the local PutMedia endpoint
+ */
+public class MkvBackfillEngineTest {
+    private static final long TIMEOUT_IN_MILLIS = 10000;
+    private static final String STREAM_NAME = "stream";
+    private static final int FRAGMENT_COUNT = 8;
+    private static final byte[] EBML_HEADER_ID = { 0x1A, 0x45, (byte) 0xDF, (byte) 0xA3 };
+    private static final byte[] CLUSTER_ID = { 0x1F, 0x43, (byte) 0xB6, 0x75 };
+    private static final byte[] HEADER = concat(EBML_HEADER_ID, filler(20, 0x11));
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+        }
+    });
+    private File mDirectory;
+    private File mFile;
+    private LocalKinesisVideoServer mServer;
+    private MkvBackfillEngine mEngine;
+
+    @Before
+    public void createFile() throws IOException {
+        mDirectory = Files.createTempDirectory("backfill").toFile();
+        mFile = new File(mDirectory, "recording.mkv");
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(HEADER);
+        for (int i = 0; i < FRAGMENT_COUNT; i++) {
+            stream.write(cluster(i, 0x20 + i));
+        }
+
+        Files.write(mFile.toPath(), stream.toByteArray());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (mEngine != null) {
+            mEngine.close();
+        }
+
+        if (mServer != null) {
+            mServer.close();
+        }
+
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+
+        assertTrue(mDirectory.delete());
+    }
+
+    @Test
+    public void matchesTheAcksWithTheFragmentsInOrder() throws Exception {
+        final LocalStream stream = startServer(0);
+        mEngine = engineBuilder()
+                .maxRetries(0)
+                .build();
+
+        mEngine.submit(job());
+        assertTrue(mEngine.awaitCompletion(TIMEOUT_IN_MILLIS));
+
+        final BackfillProgress progress = mEngine.getProgress().get(0);
+        assertTrue(progress.isComplete());
+        assertFalse(progress.isFailed());
+        assertEquals(FRAGMENT_COUNT, progress.getAckedFragmentCount());
+        // Every fragment has been matched to its own ack, so the acked bytes are the file without the header
+        assertEquals(mFile.length() - HEADER.length, progress.getAckedBytes());
+        assertEquals(mFile.length() - HEADER.length, mEngine.getBytesAcked());
+
+        // The batches share a session which sends the header once
+        assertEquals(1, stream.getSessions());
+        assertEquals(mFile.length(), stream.getBytesReceived());
+        assertEquals(FRAGMENT_COUNT, stream.getFragmentsPersisted());
+    }
+
+    @Test
+    public void retriesFromTheFirstUnackedFragment() throws Exception {
+        final LocalStream stream = startServer(0.3);
+        mEngine = engineBuilder()
+                .maxRetries(100)
+                .build();
+
+        mEngine.submit(job());
+        assertTrue(mEngine.awaitCompletion(TIMEOUT_IN_MILLIS));
+
+        final BackfillProgress progress = mEngine.getProgress().get(0);
+        assertTrue(progress.isComplete());
+        assertFalse(progress.isFailed());
+        assertTrue(stream.getFragmentErrors() > 0);
+        assertEquals(stream.getFragmentErrors() + 1, stream.getSessions());
+
+        // None of the fragments acked before an error is sent again
+        assertEquals(FRAGMENT_COUNT, stream.getFragmentsPersisted());
+    }
+
+    @Test
+    public void failsTheFileWhenOutOfRetries() throws Exception {
+        final LocalStream stream = startServer(1);
+        final int maxRetries = 2;
+        mEngine = engineBuilder()
+                .maxRetries(maxRetries)
+                .build();
+
+        mEngine.submit(job());
+        assertTrue(mEngine.awaitCompletion(TIMEOUT_IN_MILLIS));
+
+        final BackfillProgress progress = mEngine.getProgress().get(0);
+        assertTrue(progress.isFailed());
+        assertFalse(progress.isComplete());
+        assertEquals(0, progress.getAckedFragmentCount());
+        assertEquals(maxRetries + 1, stream.getSessions());
+        assertEquals(maxRetries + 1, stream.getFragmentErrors());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTheSameFileTwice() throws Exception {
+        startServer(0);
+        mEngine = engineBuilder().build();
+
+        mEngine.submit(job());
+        mEngine.submit(job());
+    }
+
+    private LocalStream startServer(final double fragmentErrorRate) throws IOException {
+        mServer = LocalKinesisVideoServer.builder()
+                .fragmentErrorRate(fragmentErrorRate)
+                .seed(1)
+                .log(mLog)
+                .build()
+                .start();
+        return mServer.createStream(STREAM_NAME);
+    }
+
+    private MkvBackfillEngine.Builder engineBuilder() {
+        return MkvBackfillEngine.builder()
+                .maxSessions(1)
+                .fragmentsPerBatch(3)
+                .retryDelayInMillis(1)
+                .receiveTimeout((int) TIMEOUT_IN_MILLIS)
+                .log(mLog);
+    }
+
+    private BackfillJob job() {
+        return BackfillJob.builder()
+                .file(mFile)
+                .streamName(STREAM_NAME)
+                .putMediaDestinationUri(URI.create(mServer.getEndpoint() + "/putMedia"))
+                .build();
+    }
+
+    /**
+     * Cluster starting with a single byte timecode
+     */
+    private static byte[] cluster(final int timecode, final int value) {
+        return concat(CLUSTER_ID, new byte[] { (byte) 0xFF, (byte) 0xE7, (byte) 0x81, (byte) timecode },
+                filler(100, value));
+    }
+
+    private static byte[] filler(final int length, final int value) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (final byte[] part : parts) {
+            stream.write(part, 0, part.length);
+        }
+
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,160 @@
+package com.amazonaws.kinesisvideo.client.mkv;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+import org.junit.Test;
+
+/**
+ * Streaming SimpleBlock reader tests
+ */
+public class MkvBlockReaderTest {
+    private static final byte[] EBML_HEADER = element(0x1A45DFA3, element(0x4282, "matroska".getBytes()));
+    private static final byte[] CODEC_PRIVATE_DATA = { 1, 0x64, 0x00, 0x28 };
+    private static final byte[] FRAME = { 0, 0, 0, 2, 0x65, (byte) 0x88 };
+    private static final int UNKNOWN_SIZE = -1;
+
+    private final FrameBufferPool mPool = new FrameBufferPool();
+
+    @Test
+    public void readsBlocksOfUnknownSizeSegment() throws IOException {
+        final byte[] stream = concat(EBML_HEADER, element(0x18538067, UNKNOWN_SIZE, concat(
+                element(0x1549A966, element(0x2AD7B1, 1000000)),
+                tracks(1),
+                element(0x1F43B675, concat(
+                        element(0xE7, 1000),
+                        simpleBlock(1, 0, 0x80, FRAME),
+                        simpleBlock(1, 40, 0x00, FRAME))),
+                element(0x1F43B675, concat(
+                        element(0xE7, 2000),
+                        simpleBlock(1, -10, 0x01, FRAME))))));
+
+        final MkvBlockReader reader = newReader(stream);
+        final MkvBlockReader.Block block = new MkvBlockReader.Block();
+
+        assertTrue(reader.readBlock(block));
+        assertEquals(1, block.getTrack().getNumber());
+        assertEquals("V_MPEG4/ISO/AVC", block.getTrack().getCodecId());
+        assertArrayEquals(CODEC_PRIVATE_DATA, block.getTrack().getCodecPrivateData());
+        assertEquals(1000L * 10000, block.getTimecode());
+        assertTrue(block.isKeyFrame());
+        assertArrayEquals(FRAME, toArray(block.getData()));
+        assertTrue(block.getData().isDirect());
+
+        assertTrue(reader.readBlock(block));
+        assertEquals(1040L * 10000, block.getTimecode());
+        assertFalse(block.isKeyFrame());
+
+        assertTrue(reader.readBlock(block));
+        assertEquals(1990L * 10000, block.getTimecode());
+        assertTrue(block.isDiscardable());
+
+        assertFalse(reader.readBlock(block));
+    }
+
+    @Test
+    public void skipsLacedBlocksAndUnknownTracks() throws IOException {
+        final byte[] stream = concat(EBML_HEADER, element(0x18538067, concat(
+                tracks(1),
+                element(0x1F43B675, concat(
+                        element(0xE7, 0),
+                        simpleBlock(2, 0, 0x80, FRAME),
+                        simpleBlock(1, 0, 0x82, FRAME),
+                        simpleBlock(1, 33, 0x80, FRAME))))));
+
+        final MkvBlockReader reader = newReader(stream);
+        final MkvBlockReader.Block block = new MkvBlockReader.Block();
+
+        assertTrue(reader.readBlock(block));
+        assertEquals(33L * 10000, block.getTimecode());
+        assertEquals(2, reader.getSkippedBlockCount());
+        assertFalse(reader.readBlock(block));
+    }
+
+    @Test(expected = EOFException.class)
+    public void failsOnTruncatedBlock() throws IOException {
+        final byte[] stream = concat(EBML_HEADER, element(0x18538067, UNKNOWN_SIZE, concat(
+                tracks(1),
+                element(0x1F43B675, UNKNOWN_SIZE, simpleBlock(1, 0, 0x80, FRAME)))));
+
+        final MkvBlockReader reader = newReader(Arrays.copyOf(stream, stream.length - 2));
+        reader.readBlock(new MkvBlockReader.Block());
+    }
+
+    private MkvBlockReader newReader(final byte[] stream) {
+        return new MkvBlockReader(Channels.newChannel(new ByteArrayInputStream(stream)), mPool, 64);
+    }
+
+    private static byte[] tracks(final int trackNumber) {
+        return element(0x1654AE6B, element(0xAE, concat(
+                element(0xD7, trackNumber),
+                element(0x83, 1),
+                element(0x86, "V_MPEG4/ISO/AVC".getBytes()),
+                element(0x63A2, CODEC_PRIVATE_DATA))));
+    }
+
+    private static byte[] simpleBlock(final int trackNumber, final int relativeTimecode, final int flags,
+                                      final byte[] data) {
+        return element(0xA3, concat(
+                new byte[] { (byte) (0x80 | trackNumber), (byte) (relativeTimecode >> 8), (byte) relativeTimecode,
+                        (byte) flags },
+                data));
+    }
+
+    private static byte[] element(final int id, final long value) {
+        return element(id, new byte[] { (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8),
+                (byte) value });
+    }
+
+    private static byte[] element(final int id, final byte[] data) {
+        return element(id, data.length, data);
+    }
+
+    private static byte[] element(final int id, final int size, final byte[] data) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            if ((id >>> shift) != 0) {
+                stream.write(id >>> shift);
+            }
+        }
+
+        if (size == UNKNOWN_SIZE) {
+            stream.write(0x01);
+            for (int i = 0; i < 7; i++) {
+                stream.write(0xff);
+            }
+        } else {
+            // 4 byte size
+            stream.write(0x10 | (size >>> 24));
+            stream.write(size >>> 16);
+            stream.write(size >>> 8);
+            stream.write(size);
+        }
+
+        stream.write(data, 0, data.length);
+        return stream.toByteArray();
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (final byte[] part : parts) {
+            stream.write(part, 0, part.length);
+        }
+
+        return stream.toByteArray();
+    }
+}
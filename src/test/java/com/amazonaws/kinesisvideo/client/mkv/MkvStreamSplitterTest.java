@@ -0,0 +1,134 @@
+package com.amazonaws.kinesisvideo.client.mkv;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * MKV stream splitter tests
+ */
+public class MkvStreamSplitterTest {
+    private static final byte[] EBML_HEADER_ID = { 0x1A, 0x45, (byte) 0xDF, (byte) 0xA3 };
+    private static final byte[] CLUSTER_ID = { 0x1F, 0x43, (byte) 0xB6, 0x75 };
+    private static final byte[] STREAM = concat(EBML_HEADER_ID, filler(20, 0x11), CLUSTER_ID, filler(30, 0x22),
+            CLUSTER_ID, filler(2, 0x33), CLUSTER_ID, filler(10, 0x44));
+    private static final long[] BOUNDARY_OFFSETS = { 0, 24, 58, 64 };
+    private static final int[] BOUNDARY_IDS = { MkvBoundaries.EBML_HEADER_ID, MkvBoundaries.CLUSTER_ID,
+            MkvBoundaries.CLUSTER_ID, MkvBoundaries.CLUSTER_ID };
+
+    @Test
+    public void splitsOnTheBoundaries() throws IOException {
+        final RecordingListener listener = new RecordingListener();
+        final MkvStreamSplitter splitter = new MkvStreamSplitter();
+        splitter.split(withHoldBackSpace(STREAM, 0, STREAM.length), MkvStreamSplitter.HOLD_BACK_SIZE,
+                STREAM.length, listener);
+        splitter.flush(listener);
+
+        listener.assertSplit();
+    }
+
+    @Test
+    public void carriesTheElementIdsSplitBetweenBuffers() throws IOException {
+        for (int cut = 1; cut < STREAM.length; cut++) {
+            final RecordingListener listener = new RecordingListener();
+            final MkvStreamSplitter splitter = new MkvStreamSplitter();
+            splitter.split(withHoldBackSpace(STREAM, 0, cut), MkvStreamSplitter.HOLD_BACK_SIZE, cut, listener);
+            splitter.split(withHoldBackSpace(STREAM, cut, STREAM.length - cut), MkvStreamSplitter.HOLD_BACK_SIZE,
+                    STREAM.length - cut, listener);
+            splitter.flush(listener);
+
+            listener.assertSplit();
+        }
+    }
+
+    @Test
+    public void carriesAcrossBuffersShorterThanTheHoldBack() throws IOException {
+        final RecordingListener listener = new RecordingListener();
+        final MkvStreamSplitter splitter = new MkvStreamSplitter();
+        for (int offset = 0; offset < STREAM.length; offset++) {
+            splitter.split(withHoldBackSpace(STREAM, offset, 1), MkvStreamSplitter.HOLD_BACK_SIZE, 1, listener);
+        }
+
+        splitter.flush(listener);
+
+        listener.assertSplit();
+    }
+
+    @Test
+    public void holdsBackTheLastBytesUntilFlushed() throws IOException {
+        final RecordingListener listener = new RecordingListener();
+        final MkvStreamSplitter splitter = new MkvStreamSplitter();
+        final byte[] data = filler(10, 0x55);
+        splitter.split(withHoldBackSpace(data, 0, data.length), MkvStreamSplitter.HOLD_BACK_SIZE, data.length,
+                listener);
+        assertEquals(data.length - MkvStreamSplitter.HOLD_BACK_SIZE, listener.mData.size());
+
+        splitter.flush(listener);
+        assertArrayEquals(data, listener.mData.toByteArray());
+
+        // Nothing is left to flush
+        splitter.flush(listener);
+        assertEquals(data.length, listener.mData.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsWithoutHoldBackSpace() throws IOException {
+        new MkvStreamSplitter().split(STREAM, MkvStreamSplitter.HOLD_BACK_SIZE - 1, 10, new RecordingListener());
+    }
+
+    private static byte[] withHoldBackSpace(final byte[] data, final int offset, final int length) {
+        final byte[] buffer = new byte[MkvStreamSplitter.HOLD_BACK_SIZE + length];
+        System.arraycopy(data, offset, buffer, MkvStreamSplitter.HOLD_BACK_SIZE, length);
+        return buffer;
+    }
+
+    private static byte[] filler(final int length, final int value) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (final byte[] part : parts) {
+            stream.write(part, 0, part.length);
+        }
+
+        return stream.toByteArray();
+    }
+
+    /**
+     * Records the data passed on and where in it the boundaries were reported
+     */
+    private static class RecordingListener implements MkvStreamSplitter.Listener {
+        private final ByteArrayOutputStream mData = new ByteArrayOutputStream();
+        private final List<Long> mBoundaryOffsets = new ArrayList<Long>();
+        private final List<Integer> mBoundaryIds = new ArrayList<Integer>();
+
+        @Override
+        public void onData(final byte[] buffer, final int offset, final int length) {
+            mData.write(buffer, offset, length);
+        }
+
+        @Override
+        public void onBoundary(final int elementId) {
+            mBoundaryOffsets.add((long) mData.size());
+            mBoundaryIds.add(elementId);
+        }
+
+        void assertSplit() {
+            assertArrayEquals(STREAM, mData.toByteArray());
+            assertEquals(BOUNDARY_OFFSETS.length, mBoundaryOffsets.size());
+            for (int i = 0; i < BOUNDARY_OFFSETS.length; i++) {
+                assertEquals(BOUNDARY_OFFSETS[i], mBoundaryOffsets.get(i).longValue());
+                assertEquals(BOUNDARY_IDS[i], mBoundaryIds.get(i).intValue());
+            }
+        }
+    }
+}
@@ -2,12 +2,15 @@ package com.amazonaws.kinesisvideo.common;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.annotation.Nonnull;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.logging.AsyncOutputChannel;
 import com.amazonaws.kinesisvideo.common.logging.Log;
 import com.amazonaws.kinesisvideo.common.logging.LogLevel;
 import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
@@ -241,6 +244,20 @@ public class LogTest {
         assertEquals(null, mMessage);
     }
 
+    @Test
+    public void formatsMutableArgumentsWhenLogged() {
+        final AsyncOutputChannel asyncOutputChannel = new AsyncOutputChannel(mOutputChannel, "LogTest");
+        final AtomicLong counter = new AtomicLong(1);
+        try {
+            new Log(asyncOutputChannel).info("Test %s Message %s", TEST_DEFAULT_TAG_NAME, counter);
+            counter.set(2);
+        } finally {
+            asyncOutputChannel.close();
+        }
+
+        assertEquals(TEST_LOGGED_MESSAGE + 1, mMessage);
+    }
+
     @Test
     public void customTagTest() {
         mLog.setPackagePrefix();
@@ -0,0 +1,50 @@
+package com.amazonaws.kinesisvideo.encoding;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Chunked transfer encoding tests
+ */
+public class ChunkEncoderTest {
+    private static final int[] TEST_PAYLOAD_SIZES = { 1, 15, 16, 0xffff, 0x10000 };
+
+    @Test
+    public void encodesInPlaceAsEncode() {
+        for (final int size : TEST_PAYLOAD_SIZES) {
+            final byte[] payload = payload(size);
+            final byte[] buffer = new byte[ChunkEncoder.MAX_CHUNK_HEADER_SIZE + size
+                    + ChunkEncoder.CHUNK_TRAILER_SIZE];
+            System.arraycopy(payload, 0, buffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, size);
+
+            final int start = ChunkEncoder.encodeInPlace(buffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, size);
+
+            assertArrayEquals("Chunk of " + size + " bytes", ChunkEncoder.encode(payload, size),
+                    Arrays.copyOfRange(buffer, start, buffer.length));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsWhenTheHeaderSpaceIsTooSmall() {
+        final byte[] buffer = new byte[ChunkEncoder.MAX_CHUNK_HEADER_SIZE + 16 + ChunkEncoder.CHUNK_TRAILER_SIZE];
+        ChunkEncoder.encodeInPlace(buffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE - 1, 16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsWhenTheTrailerSpaceIsTooSmall() {
+        final byte[] buffer = new byte[ChunkEncoder.MAX_CHUNK_HEADER_SIZE + 16 + ChunkEncoder.CHUNK_TRAILER_SIZE - 1];
+        ChunkEncoder.encodeInPlace(buffer, ChunkEncoder.MAX_CHUNK_HEADER_SIZE, 16);
+    }
+
+    private static byte[] payload(final int size) {
+        final byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) i;
+        }
+
+        return payload;
+    }
+}
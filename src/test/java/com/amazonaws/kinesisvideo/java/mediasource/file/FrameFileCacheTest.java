@@ -0,0 +1,121 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Frame file cache tests
+ */
+public class FrameFileCacheTest {
+    private static final String FILENAME_FORMAT = "frame-%03d.jpg";
+    private static final int START_FILE_INDEX = 1;
+    // The files are 100, 200, 300 and 400 bytes
+    private static final int FILE_COUNT = 4;
+    private static final int TOTAL_BYTES = 1000;
+
+    private Path mDirectory;
+
+    @Before
+    public void createFiles() throws IOException {
+        mDirectory = Files.createTempDirectory("frames");
+        for (int frame = 0; frame < FILE_COUNT; frame++) {
+            final byte[] data = new byte[sizeOf(frame)];
+            Arrays.fill(data, (byte) (frame + 1));
+            Files.write(mDirectory.resolve(String.format(FILENAME_FORMAT, START_FILE_INDEX + frame)), data);
+        }
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        for (int frame = 0; frame < FILE_COUNT; frame++) {
+            Files.deleteIfExists(mDirectory.resolve(String.format(FILENAME_FORMAT, START_FILE_INDEX + frame)));
+        }
+
+        Files.delete(mDirectory);
+    }
+
+    @Test
+    public void preloadsTheFilesWithinTheLimit() throws IOException {
+        final FrameFileCache cache = new FrameFileCache(configuration(), TOTAL_BYTES);
+
+        assertTrue(cache.isPreloaded());
+        assertEquals(FILE_COUNT, cache.getFrameCount());
+        assertEquals(TOTAL_BYTES, cache.getResidentBytes());
+        for (int frame = 0; frame < FILE_COUNT; frame++) {
+            assertFrame(frame, cache.getFrame(frame));
+        }
+
+        // The frames repeat after the last file
+        assertFrame(1, cache.getFrame(FILE_COUNT + 1));
+    }
+
+    @Test
+    public void mapsTheFilesOverTheLimit() throws IOException {
+        final FrameFileCache cache = new FrameFileCache(configuration(), TOTAL_BYTES - 1);
+
+        assertFalse(cache.isPreloaded());
+        assertEquals(0, cache.getResidentBytes());
+        for (int frame = 0; frame < FILE_COUNT - 1; frame++) {
+            assertFrame(frame, cache.getFrame(frame));
+        }
+
+        assertEquals(600, cache.getResidentBytes());
+
+        // Mapping the last file goes over the limit and drops the first one
+        assertFrame(3, cache.getFrame(3));
+        assertEquals(900, cache.getResidentBytes());
+
+        // Drops the least recently used frame 2 rather than the frame 1 mapped before it
+        assertFrame(1, cache.getFrame(1));
+        assertFrame(0, cache.getFrame(0));
+        assertEquals(700, cache.getResidentBytes());
+    }
+
+    @Test
+    public void keepsTheLatestMappingOverTheLimit() throws IOException {
+        final FrameFileCache cache = new FrameFileCache(configuration(), 50);
+
+        assertFrame(3, cache.getFrame(3));
+        assertEquals(400, cache.getResidentBytes());
+        assertFrame(0, cache.getFrame(0));
+        assertEquals(100, cache.getResidentBytes());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void servesReadOnlyFrames() throws IOException {
+        new FrameFileCache(configuration(), TOTAL_BYTES).getFrame(0).put(0, (byte) 0);
+    }
+
+    private ImageFileMediaSourceConfiguration configuration() {
+        return new ImageFileMediaSourceConfiguration.Builder()
+                .fps(25)
+                .dir(mDirectory.toString() + File.separator)
+                .filenameFormat(FILENAME_FORMAT)
+                .startFileIndex(START_FILE_INDEX)
+                .endFileIndex(START_FILE_INDEX + FILE_COUNT - 1)
+                .build();
+    }
+
+    private static void assertFrame(final int frame, final ByteBuffer data) {
+        assertEquals(0, data.position());
+        assertEquals(sizeOf(frame), data.remaining());
+        while (data.hasRemaining()) {
+            assertEquals(frame + 1, data.get());
+        }
+    }
+
+    private static int sizeOf(final int frame) {
+        return (frame + 1) * 100;
+    }
+}
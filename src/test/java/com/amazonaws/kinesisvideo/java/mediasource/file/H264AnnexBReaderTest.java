@@ -0,0 +1,213 @@
+package com.amazonaws.kinesisvideo.java.mediasource.file;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Annex-B access unit reader tests
+ */
+public class H264AnnexBReaderTest {
+    private static final byte[] FOUR_BYTE_START_CODE = { 0, 0, 0, 1 };
+    private static final byte[] THREE_BYTE_START_CODE = { 0, 0, 1 };
+    private static final byte[] SPS = { 0x67, 0x64, 0x00, 0x28, (byte) 0xac, 0x2b, 0x40 };
+    private static final byte[] PPS = { 0x68, (byte) 0xee, 0x1f, 0x2c };
+    // first_mb_in_slice 0
+    private static final byte[] IDR_SLICE = { 0x65, (byte) 0x88, 0x12, 0x34, 0x56 };
+    private static final byte[] FIRST_SLICE = { 0x41, (byte) 0x9a, 0x22, 0x33 };
+    // first_mb_in_slice 1
+    private static final byte[] SECOND_SLICE = { 0x41, 0x40, 0x44, 0x55 };
+    private static final byte[] ACCESS_UNIT_DELIMITER = { 0x09, 0x10 };
+
+    private Path mFile;
+
+    @After
+    public void deleteFile() throws IOException {
+        if (mFile != null) {
+            Files.deleteIfExists(mFile);
+        }
+    }
+
+    @Test
+    public void findsStartCodesAtEveryAlignment() {
+        for (int offset = 0; offset < 24; offset++) {
+            final ByteBuffer buffer = ByteBuffer.allocate(32);
+            for (int i = 0; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0x55);
+            }
+
+            buffer.put(offset, (byte) 0);
+            buffer.put(offset + 1, (byte) 0);
+            buffer.put(offset + 2, (byte) 1);
+            assertEquals(offset, H264AnnexBReader.findStartCode(buffer, 0, buffer.capacity()));
+            assertEquals(-1, H264AnnexBReader.findStartCode(buffer, offset + 1, buffer.capacity()));
+        }
+    }
+
+    @Test
+    public void ignoresZerosWithoutStartCode() {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0, 0, 2, 0, 0, 0, 3, 0, 1, 0, 0, 0, 0, 1, 0 });
+        assertEquals(11, H264AnnexBReader.findStartCode(buffer, 0, buffer.capacity()));
+        assertEquals(-1, H264AnnexBReader.findStartCode(buffer, 0, 13));
+    }
+
+    @Test
+    public void splitsAccessUnits() throws IOException {
+        final byte[] first = concat(FOUR_BYTE_START_CODE, SPS, THREE_BYTE_START_CODE, PPS,
+                FOUR_BYTE_START_CODE, IDR_SLICE);
+        final byte[] second = concat(FOUR_BYTE_START_CODE, FIRST_SLICE, THREE_BYTE_START_CODE, SECOND_SLICE);
+        final byte[] third = concat(FOUR_BYTE_START_CODE, ACCESS_UNIT_DELIMITER, FOUR_BYTE_START_CODE, FIRST_SLICE);
+        mFile = write(concat(first, second, third));
+
+        final H264AnnexBReader reader = new H264AnnexBReader(mFile);
+        try {
+            assertArrayEquals(first, toArray(reader.next()));
+            assertTrue(reader.isKeyFrame());
+            assertArrayEquals(second, toArray(reader.next()));
+            assertFalse(reader.isKeyFrame());
+            assertArrayEquals(third, toArray(reader.next()));
+            assertFalse(reader.isKeyFrame());
+            assertNull(reader.next());
+
+            reader.rewind();
+            assertArrayEquals(first, toArray(reader.next()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void skipsBytesOutsideNalUnits() throws IOException {
+        final byte[] accessUnit = concat(FOUR_BYTE_START_CODE, IDR_SLICE);
+        mFile = write(concat(new byte[] { 0x12, 0x34 }, accessUnit));
+
+        final H264AnnexBReader reader = new H264AnnexBReader(mFile);
+        try {
+            assertArrayEquals(accessUnit, toArray(reader.next()));
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void movesWindowAcrossAccessUnits() throws IOException {
+        final List<byte[]> accessUnits = new ArrayList<byte[]>();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int frame = 0; frame < 100; frame++) {
+            final byte[] accessUnit = frame % 10 == 0
+                    ? concat(FOUR_BYTE_START_CODE, SPS, FOUR_BYTE_START_CODE, PPS, FOUR_BYTE_START_CODE, IDR_SLICE)
+                    : concat(FOUR_BYTE_START_CODE, FIRST_SLICE, THREE_BYTE_START_CODE, SECOND_SLICE);
+            accessUnits.add(accessUnit);
+            stream.write(accessUnit);
+        }
+
+        mFile = write(stream.toByteArray());
+        final H264AnnexBReader reader = new H264AnnexBReader(mFile, 64);
+        try {
+            for (int frame = 0; frame < accessUnits.size(); frame++) {
+                assertArrayEquals(accessUnits.get(frame), toArray(reader.next()));
+                assertEquals(frame % 10 == 0, reader.isKeyFrame());
+            }
+
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void rewindsToTheFirstWindow() throws IOException {
+        final List<byte[]> accessUnits = new ArrayList<byte[]>();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int frame = 0; frame < 20; frame++) {
+            final byte[] accessUnit = frame % 10 == 0
+                    ? concat(FOUR_BYTE_START_CODE, SPS, FOUR_BYTE_START_CODE, PPS, FOUR_BYTE_START_CODE, IDR_SLICE)
+                    : concat(FOUR_BYTE_START_CODE, FIRST_SLICE, THREE_BYTE_START_CODE, SECOND_SLICE);
+            accessUnits.add(accessUnit);
+            stream.write(accessUnit);
+        }
+
+        mFile = write(stream.toByteArray());
+        final H264AnnexBReader reader = new H264AnnexBReader(mFile, 64);
+        try {
+            for (int loop = 0; loop < 2; loop++) {
+                for (int frame = 0; frame < accessUnits.size(); frame++) {
+                    assertArrayEquals(accessUnits.get(frame), toArray(reader.next()));
+                    assertEquals(frame % 10 == 0, reader.isKeyFrame());
+                }
+
+                assertNull(reader.next());
+                reader.rewind();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnAccessUnitLargerThanWindow() throws IOException {
+        mFile = write(concat(FOUR_BYTE_START_CODE, IDR_SLICE, new byte[64], FOUR_BYTE_START_CODE, FIRST_SLICE));
+
+        final H264AnnexBReader reader = new H264AnnexBReader(mFile, 32);
+        try {
+            reader.next();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void buildsCodecPrivateDataFromSpsAndPps() throws IOException {
+        mFile = write(concat(FOUR_BYTE_START_CODE, SPS, FOUR_BYTE_START_CODE, PPS, FOUR_BYTE_START_CODE, IDR_SLICE));
+
+        final H264AnnexBReader reader = new H264AnnexBReader(mFile);
+        try {
+            assertNull(reader.getCodecPrivateData());
+            reader.next();
+            final byte[] expected = concat(new byte[] { 1, 0x64, 0x00, 0x28, (byte) 0xff, (byte) 0xe1, 0, 7 }, SPS,
+                    new byte[] { 1, 0, 4 }, PPS);
+            assertArrayEquals(expected, reader.getCodecPrivateData());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Path write(final byte[] data) throws IOException {
+        final Path file = Files.createTempFile("annexb", ".h264");
+        Files.write(file, data);
+        return file;
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer) {
+        assertNotNull(buffer);
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        int size = 0;
+        for (final byte[] part : parts) {
+            size += part.length;
+        }
+
+        final byte[] result = new byte[size];
+        int offset = 0;
+        for (final byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+
+        return result;
+    }
+}
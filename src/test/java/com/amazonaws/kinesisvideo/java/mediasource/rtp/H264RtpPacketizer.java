@@ -0,0 +1,230 @@
+package com.amazonaws.kinesisvideo.java.mediasource.rtp;
+
+import com.amazonaws.kinesisvideo.java.mediasource.file.H264AnnexBReader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkArgument;
+import static com.amazonaws.kinesisvideo.common.preconditions.Preconditions.checkNotNull;
+
+/**
+ * Packetizes H.264 access units into RTP packets, RFC 6184 in the non-interleaved mode.
+ * <p>
+ * The NAL units of an Annex-B access unit are sent in single NAL unit packets, small consecutive ones such as the
+ * SPS and PPS aggregated into STAP-A packets and the ones larger than the payload size fragmented into FU-A packets.
+ * The last packet of the access unit has the marker bit. It sends the streams {@link RtpMediaSource} is tested
+ * with over the loopback interface.
+ */
+@NotThreadSafe
+final class H264RtpPacketizer {
+    /**
+     * Default size of the payloads, fitting an ethernet MTU with the IP, UDP and RTP headers
+     */
+    static final int DEFAULT_MAX_PAYLOAD_SIZE = 1400;
+
+    private static final int RTP_VERSION_2 = 0x80;
+    private static final int MARKER = 0x80;
+    private static final int STAP_A_LENGTH_SIZE = 2;
+    private static final int FU_HEADERS_SIZE = 2;
+    private static final int FU_START = 0x80;
+    private static final int FU_END = 0x40;
+    private static final int NAL_HEADER_F_AND_NRI = 0xe0;
+    private static final int NAL_HEADER_NRI = 0x60;
+    private static final int NAL_HEADER_F = 0x80;
+    private static final int START_CODE_SIZE = 3;
+    private static final int SEQUENCE_NUMBER_MASK = 0xffff;
+
+    /**
+     * Receives the packets
+     */
+    interface PacketListener {
+        /**
+         * @param packet RTP packet between the position and the limit, only valid during the call
+         */
+        void onPacket(@Nonnull ByteBuffer packet) throws IOException;
+    }
+
+    private final int mSsrc;
+    private final int mPayloadType;
+    private final int mMaxPayloadSize;
+    private final ByteBuffer mPacket;
+    private int mSequenceNumber;
+    private int[] mNalUnits = new int[32];
+
+    /**
+     * @param ssrc synchronization source of the stream
+     * @param payloadType dynamic payload type of the stream
+     */
+    H264RtpPacketizer(final int ssrc, final int payloadType) {
+        this(ssrc, payloadType, DEFAULT_MAX_PAYLOAD_SIZE, 0);
+    }
+
+    /**
+     * @param ssrc synchronization source of the stream
+     * @param payloadType dynamic payload type of the stream
+     * @param maxPayloadSize maximum size of the payloads
+     * @param sequenceNumber sequence number of the first packet
+     */
+    H264RtpPacketizer(final int ssrc, final int payloadType, final int maxPayloadSize,
+                      final int sequenceNumber) {
+        checkArgument(payloadType >= 0 && payloadType <= 0x7f, "Payload type must be between 0 and 127");
+        checkArgument(maxPayloadSize > FU_HEADERS_SIZE, "Payload size is too small");
+        mSsrc = ssrc;
+        mPayloadType = payloadType;
+        mMaxPayloadSize = maxPayloadSize;
+        mPacket = ByteBuffer.allocate(RtpPacket.HEADER_SIZE + maxPayloadSize);
+        mSequenceNumber = sequenceNumber & SEQUENCE_NUMBER_MASK;
+    }
+
+    /**
+     * Sends an access unit
+     *
+     * @param accessUnit Annex-B access unit between the position and the limit, left unchanged
+     * @param rtpTimestamp RTP timestamp of the access unit
+     * @param listener where the packets go
+     */
+    void packetize(@Nonnull final ByteBuffer accessUnit, final long rtpTimestamp,
+                   @Nonnull final PacketListener listener) throws IOException {
+        checkNotNull(accessUnit);
+        checkNotNull(listener);
+        final int count = splitNalUnits(accessUnit);
+        int i = 0;
+        while (i < count) {
+            final int size = nalUnitSize(i);
+            if (size > mMaxPayloadSize) {
+                sendFragments(accessUnit, i, rtpTimestamp, i == count - 1, listener);
+                i++;
+                continue;
+            }
+
+            // Aggregates the following NAL units fitting in the payload
+            int last = i;
+            int aggregateSize = 1 + STAP_A_LENGTH_SIZE + size;
+            while (last + 1 < count && aggregateSize + STAP_A_LENGTH_SIZE + nalUnitSize(last + 1) <= mMaxPayloadSize) {
+                last++;
+                aggregateSize += STAP_A_LENGTH_SIZE + nalUnitSize(last);
+            }
+
+            if (last > i) {
+                sendAggregate(accessUnit, i, last, rtpTimestamp, last == count - 1, listener);
+            } else {
+                startPacket();
+                copy(accessUnit, mNalUnits[2 * i], size);
+                sendPacket(rtpTimestamp, i == count - 1, listener);
+            }
+
+            i = last + 1;
+        }
+    }
+
+    /**
+     * @return Sequence number of the next packet
+     */
+    int getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
+    /**
+     * Finds the NAL units of the access unit
+     *
+     * @return Number of the NAL units, their starts and ends in pairs in mNalUnits
+     */
+    private int splitNalUnits(final ByteBuffer accessUnit) {
+        final int limit = accessUnit.limit();
+        int count = 0;
+        int startCode = H264AnnexBReader.findStartCode(accessUnit, accessUnit.position(), limit);
+        while (startCode >= 0) {
+            final int start = startCode + START_CODE_SIZE;
+            startCode = H264AnnexBReader.findStartCode(accessUnit, start, limit);
+            int end = startCode >= 0 ? startCode : limit;
+            // Trailing zeros, e.g. the first byte of a 4 byte start code, are not part of the NAL unit
+            while (end > start && accessUnit.get(end - 1) == 0) {
+                end--;
+            }
+
+            if (end > start) {
+                if (2 * count + 2 > mNalUnits.length) {
+                    mNalUnits = Arrays.copyOf(mNalUnits, 2 * mNalUnits.length);
+                }
+
+                mNalUnits[2 * count] = start;
+                mNalUnits[2 * count + 1] = end;
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private int nalUnitSize(final int index) {
+        return mNalUnits[2 * index + 1] - mNalUnits[2 * index];
+    }
+
+    private void sendAggregate(final ByteBuffer accessUnit, final int first, final int last, final long rtpTimestamp,
+                               final boolean isLast, final PacketListener listener) throws IOException {
+        startPacket();
+        mPacket.put((byte) 0);
+        int forbidden = 0;
+        int nri = 0;
+        for (int i = first; i <= last; i++) {
+            final int header = accessUnit.get(mNalUnits[2 * i]) & 0xff;
+            forbidden |= header & NAL_HEADER_F;
+            nri = Math.max(nri, header & NAL_HEADER_NRI);
+            mPacket.putShort((short) nalUnitSize(i));
+            copy(accessUnit, mNalUnits[2 * i], nalUnitSize(i));
+        }
+
+        mPacket.put(RtpPacket.HEADER_SIZE, (byte) (forbidden | nri | H264RtpDepacketizer.NAL_TYPE_STAP_A));
+        sendPacket(rtpTimestamp, isLast, listener);
+    }
+
+    private void sendFragments(final ByteBuffer accessUnit, final int index, final long rtpTimestamp,
+                               final boolean isLast, final PacketListener listener) throws IOException {
+        final int header = accessUnit.get(mNalUnits[2 * index]) & 0xff;
+        final byte indicator = (byte) ((header & NAL_HEADER_F_AND_NRI) | H264RtpDepacketizer.NAL_TYPE_FU_A);
+        final int type = header & H264RtpDepacketizer.NAL_TYPE_MASK;
+        final int end = mNalUnits[2 * index + 1];
+        // The NAL unit header is carried by the FU indicator and header
+        int offset = mNalUnits[2 * index] + 1;
+        boolean isFirst = true;
+        while (offset < end) {
+            final int size = Math.min(end - offset, mMaxPayloadSize - FU_HEADERS_SIZE);
+            final boolean isFinal = offset + size == end;
+            startPacket();
+            mPacket.put(indicator);
+            mPacket.put((byte) ((isFirst ? FU_START : 0) | (isFinal ? FU_END : 0) | type));
+            copy(accessUnit, offset, size);
+            sendPacket(rtpTimestamp, isLast && isFinal, listener);
+            offset += size;
+            isFirst = false;
+        }
+    }
+
+    private void startPacket() {
+        mPacket.clear();
+        mPacket.position(RtpPacket.HEADER_SIZE);
+    }
+
+    private void copy(final ByteBuffer accessUnit, final int offset, final int size) {
+        final ByteBuffer source = accessUnit.duplicate();
+        source.limit(offset + size);
+        source.position(offset);
+        mPacket.put(source);
+    }
+
+    private void sendPacket(final long rtpTimestamp, final boolean isMarker, final PacketListener listener)
+            throws IOException {
+        mPacket.put(0, (byte) RTP_VERSION_2);
+        mPacket.put(1, (byte) ((isMarker ? MARKER : 0) | mPayloadType));
+        mPacket.putShort(2, (short) mSequenceNumber);
+        mPacket.putInt(4, (int) rtpTimestamp);
+        mPacket.putInt(8, mSsrc);
+        mPacket.flip();
+        mSequenceNumber = (mSequenceNumber + 1) & SEQUENCE_NUMBER_MASK;
+        listener.onPacket(mPacket);
+    }
+}
@@ -0,0 +1,282 @@
+package com.amazonaws.kinesisvideo.java.mediasource.rtp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.mediasource.FrameBufferPool;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * H.264 over RTP packetizing, reordering and reassembly tests
+ */
+public class H264RtpTest {
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+    private static final int PAYLOAD_TYPE = 96;
+    private static final int SSRC = 0x12345678;
+    private static final int RTP_TICKS_PER_FRAME = 3000;
+    private static final byte[] START_CODE = { 0, 0, 0, 1 };
+    private static final byte[] SPS = { 0x67, 0x64, 0x00, 0x28, (byte) 0xac, 0x2b, 0x40 };
+    private static final byte[] PPS = { 0x68, (byte) 0xee, 0x1f, 0x2c };
+
+    private final FrameBufferPool mPool = new FrameBufferPool();
+    private final RtpReceiver mReceiver = new RtpReceiver(mPool);
+    private final Random mRandom = new Random(42);
+
+    @After
+    public void close() {
+        mReceiver.close();
+    }
+
+    @Test
+    public void receivesAccessUnitsOverLoopback() throws Exception {
+        final RtpMediaSource source = new RtpMediaSource();
+        source.configure(new RtpMediaSourceConfiguration.Builder()
+                .bindAddress("127.0.0.1")
+                .payloadType(PAYLOAD_TYPE)
+                .receiver(mReceiver)
+                .frameBufferPool(mPool)
+                .build());
+        final RecordingSink sink = new RecordingSink();
+        source.initialize(sink);
+        source.start();
+
+        final List<byte[]> accessUnits = accessUnits(10);
+        final H264RtpPacketizer packetizer = new H264RtpPacketizer(SSRC, PAYLOAD_TYPE);
+        final InetSocketAddress target = new InetSocketAddress("127.0.0.1", source.getLocalPort());
+        final DatagramChannel channel = DatagramChannel.open();
+        try {
+            for (int i = 0; i < accessUnits.size(); i++) {
+                packetizer.packetize(ByteBuffer.wrap(accessUnits.get(i)), 0xfffff000L + i * RTP_TICKS_PER_FRAME,
+                        new H264RtpPacketizer.PacketListener() {
+                            @Override
+                            public void onPacket(final ByteBuffer packet) throws IOException {
+                                channel.send(packet, target);
+                            }
+                        });
+                // Paced so the socket buffer doesn't overflow
+                sink.await(i + 1);
+            }
+        } finally {
+            channel.close();
+            source.stop();
+        }
+
+        assertArrayEquals(new byte[] { 1, 0x64, 0x00, 0x28, (byte) 0xff, (byte) 0xe1, 0, (byte) SPS.length },
+                Arrays.copyOf(sink.mCodecPrivateData, 8));
+        for (int i = 0; i < accessUnits.size(); i++) {
+            final KinesisVideoFrame frame = sink.mFrames.get(i);
+            assertArrayEquals(accessUnits.get(i), sink.mFrameData.get(i));
+            assertEquals(i % 5 == 0, (frame.getFlags() & FrameFlags.FRAME_FLAG_KEY_FRAME) != 0);
+            if (i > 0) {
+                // The RTP timestamps wrap around after the first frames, 3000 ticks are 333333.3 hundreds of nanos
+                assertEquals(333333, frame.getPresentationTs() - sink.mFrames.get(i - 1).getPresentationTs(), 1);
+                assertEquals(333333, frame.getDuration(), 1);
+            }
+        }
+    }
+
+    @Test
+    public void reassemblesReorderedPackets() throws Exception {
+        final List<byte[]> accessUnits = accessUnits(10);
+        final List<RtpPacket> packets = packetize(accessUnits);
+        // Swaps neighbours and moves a few packets further back
+        for (int i = 0; i + 1 < packets.size(); i += 2) {
+            Collections.swap(packets, i, i + 1);
+        }
+
+        for (int i = 0; i + 6 < packets.size(); i += 9) {
+            packets.add(i + 6, packets.remove(i));
+        }
+
+        final RecordingOutput output = new RecordingOutput();
+        final RtpJitterBuffer jitterBuffer = jitterBuffer(output);
+        for (final RtpPacket packet : packets) {
+            jitterBuffer.add(packet, 0);
+        }
+
+        assertEquals(0, jitterBuffer.getLostPacketCount());
+        assertEquals(accessUnits.size(), output.mAccessUnits.size());
+        for (int i = 0; i < accessUnits.size(); i++) {
+            assertArrayEquals(accessUnits.get(i), output.mAccessUnits.get(i));
+            assertEquals(i % 5 == 0, output.mKeyFrames.get(i));
+        }
+    }
+
+    @Test
+    public void dropsAccessUnitsUpToTheNextKeyFrameOnLoss() throws Exception {
+        final List<byte[]> accessUnits = accessUnits(7);
+        final List<RtpPacket> packets = packetize(accessUnits);
+        int lost = 0;
+        while (!packets.get(lost).isMarker()) {
+            lost++;
+        }
+
+        // The second fragment of the second access unit
+        lost += 2;
+        assertEquals(H264RtpDepacketizer.NAL_TYPE_FU_A,
+                packets.get(lost).getBuffer().get(RtpPacket.HEADER_SIZE) & H264RtpDepacketizer.NAL_TYPE_MASK);
+        mPool.release(packets.remove(lost).getBuffer());
+
+        final RecordingOutput output = new RecordingOutput();
+        final RtpJitterBuffer jitterBuffer = jitterBuffer(output);
+        for (final RtpPacket packet : packets) {
+            jitterBuffer.add(packet, 0);
+        }
+
+        // The packets after the missing one are held until it is given up on
+        assertEquals(1, output.mAccessUnits.size());
+        jitterBuffer.onTick(1000L * 1000 * 1000);
+
+        assertEquals(1, jitterBuffer.getLostPacketCount());
+        assertEquals(3, output.mAccessUnits.size());
+        assertArrayEquals(accessUnits.get(0), output.mAccessUnits.get(0));
+        assertArrayEquals(accessUnits.get(5), output.mAccessUnits.get(1));
+        assertArrayEquals(accessUnits.get(6), output.mAccessUnits.get(2));
+    }
+
+    /**
+     * Access units with a key frame every 5, with slices large enough to be fragmented and small parameter sets to be
+     * aggregated
+     */
+    private List<byte[]> accessUnits(final int count) throws IOException {
+        final List<byte[]> accessUnits = new ArrayList<byte[]>();
+        for (int i = 0; i < count; i++) {
+            final ByteArrayOutputStream accessUnit = new ByteArrayOutputStream();
+            if (i % 5 == 0) {
+                accessUnit.write(START_CODE);
+                accessUnit.write(SPS);
+                accessUnit.write(START_CODE);
+                accessUnit.write(PPS);
+                accessUnit.write(START_CODE);
+                accessUnit.write(slice(0x65, 6000 + mRandom.nextInt(3000)));
+            } else {
+                accessUnit.write(START_CODE);
+                accessUnit.write(slice(0x41, 1500 + mRandom.nextInt(3000)));
+                accessUnit.write(START_CODE);
+                accessUnit.write(slice(0x41, 50 + mRandom.nextInt(200)));
+            }
+
+            accessUnits.add(accessUnit.toByteArray());
+        }
+
+        return accessUnits;
+    }
+
+    /**
+     * Slice data without zeros, which could make start codes
+     */
+    private byte[] slice(final int header, final int size) {
+        final byte[] slice = new byte[size];
+        slice[0] = (byte) header;
+        for (int i = 1; i < size; i++) {
+            slice[i] = (byte) (1 + mRandom.nextInt(255));
+        }
+
+        return slice;
+    }
+
+    private List<RtpPacket> packetize(final List<byte[]> accessUnits) throws IOException {
+        // Sequence numbers wrapping around
+        final H264RtpPacketizer packetizer = new H264RtpPacketizer(SSRC, PAYLOAD_TYPE,
+                H264RtpPacketizer.DEFAULT_MAX_PAYLOAD_SIZE, 0xfff0);
+        final List<RtpPacket> packets = new ArrayList<RtpPacket>();
+        for (int i = 0; i < accessUnits.size(); i++) {
+            packetizer.packetize(ByteBuffer.wrap(accessUnits.get(i)), i * RTP_TICKS_PER_FRAME,
+                    new H264RtpPacketizer.PacketListener() {
+                        @Override
+                        public void onPacket(final ByteBuffer packet) {
+                            final ByteBuffer copy = mPool.acquire(packet.remaining());
+                            copy.put(packet);
+                            copy.flip();
+                            packets.add(RtpPacket.parse(copy));
+                        }
+                    });
+        }
+
+        return packets;
+    }
+
+    private RtpJitterBuffer jitterBuffer(final RecordingOutput output) {
+        final H264RtpDepacketizer depacketizer = new H264RtpDepacketizer(mPool, output);
+        return new RtpJitterBuffer(64, 50L * 1000 * 1000, new RtpJitterBuffer.Output() {
+            @Override
+            public void onPacket(final RtpPacket packet) {
+                depacketizer.add(packet);
+                mPool.release(packet.getBuffer());
+            }
+
+            @Override
+            public void onLoss(final int lostPackets) {
+                depacketizer.onLoss();
+            }
+
+            @Override
+            public void onDiscarded(final RtpPacket packet) {
+                fail("Discarded packet " + packet.getSequenceNumber());
+            }
+        });
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private class RecordingOutput implements H264RtpDepacketizer.Output {
+        private final List<byte[]> mAccessUnits = new ArrayList<byte[]>();
+        private final List<Boolean> mKeyFrames = new ArrayList<Boolean>();
+
+        @Override
+        public void onAccessUnit(final ByteBuffer accessUnit, final long rtpTimestamp, final boolean isKeyFrame) {
+            mAccessUnits.add(toArray(accessUnit));
+            mKeyFrames.add(isKeyFrame);
+            mPool.release(accessUnit);
+        }
+    }
+
+    private static class RecordingSink implements MediaSourceSink {
+        private final List<KinesisVideoFrame> mFrames = new ArrayList<KinesisVideoFrame>();
+        private final List<byte[]> mFrameData = new ArrayList<byte[]>();
+        private byte[] mCodecPrivateData;
+
+        @Override
+        public void onFrame(final KinesisVideoFrame frame) {
+            // The buffer goes back to the pool once put
+            final byte[] data = toArray(frame.getData());
+            synchronized (this) {
+                mFrames.add(frame);
+                mFrameData.add(data);
+                notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized void onCodecPrivateData(final byte[] codecPrivateData) {
+            mCodecPrivateData = codecPrivateData;
+        }
+
+        synchronized void await(final int frames) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+            while (mFrames.size() < frames) {
+                final long wait = deadline - System.currentTimeMillis();
+                assertTrue("Timed out waiting for frame " + frames, wait > 0);
+                wait(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.amazonaws.kinesisvideo.mediasource;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.amazonaws.kinesisvideo.client.mediasource.MediaSourceSink;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Fan out of the frames of a source to several sinks
+ */
+public class FanOutMediaSinkTest {
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+    private static final int QUEUE_CAPACITY = 8;
+
+    private final FrameBufferPool mPool = new FrameBufferPool();
+    private final FanOutMediaSink mFanOut = new FanOutMediaSink(mPool, QUEUE_CAPACITY);
+
+    @After
+    public void close() {
+        mFanOut.close();
+    }
+
+    @Test
+    public void handsEveryFrameToEveryTarget() throws Exception {
+        final RecordingSink first = new RecordingSink();
+        final RecordingSink second = new RecordingSink();
+        mFanOut.addTarget(first);
+        mFanOut.addTarget(second);
+
+        for (int i = 0; i < 100; i++) {
+            mFanOut.onFrame(frame(i, i % 10 == 0));
+            // Paced so neither target falls behind
+            first.await(i + 1);
+            second.await(i + 1);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, first.mFrames.get(i).get(0));
+            assertEquals(i, second.mFrames.get(i).get(0));
+        }
+
+        assertTrue(mPool.getAllocatedCount() <= QUEUE_CAPACITY);
+    }
+
+    @Test
+    public void slowTargetDropsFramesUpToTheNextKeyFrame() throws Exception {
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final RecordingSink fast = new RecordingSink();
+        final RecordingSink slow = new RecordingSink() {
+            @Override
+            public void onFrame(final KinesisVideoFrame frame) {
+                try {
+                    unblock.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                super.onFrame(frame);
+            }
+        };
+        mFanOut.addTarget(fast);
+        final FanOutMediaSink.Target slowTarget = mFanOut.addTarget(slow);
+
+        // A queue of frames taken, the first one blocked in the sink, the rest dropped
+        for (int i = 0; i < 20; i++) {
+            mFanOut.onFrame(frame(i, i == 0));
+            fast.await(i + 1);
+        }
+
+        assertEquals(20 - QUEUE_CAPACITY, slowTarget.getDroppedFrameCount());
+
+        unblock.countDown();
+        slow.await(QUEUE_CAPACITY);
+        for (int i = 20; i < 23; i++) {
+            mFanOut.onFrame(frame(i, i == 21));
+            fast.await(i + 1);
+        }
+
+        slow.await(QUEUE_CAPACITY + 2);
+        assertEquals(21, slow.mFrames.get(QUEUE_CAPACITY).get(0));
+        assertEquals(22, slow.mFrames.get(QUEUE_CAPACITY + 1).get(0));
+        assertEquals(21 - QUEUE_CAPACITY, slowTarget.getDroppedFrameCount());
+    }
+
+    @Test
+    public void passesCodecPrivateDataToTargetsAddedLater() throws Exception {
+        final byte[] codecPrivateData = { 1, 2, 3 };
+        mFanOut.onCodecPrivateData(codecPrivateData);
+
+        final RecordingSink sink = new RecordingSink();
+        mFanOut.addTarget(sink);
+        mFanOut.onFrame(frame(0, true));
+        sink.await(1);
+
+        assertArrayEquals(codecPrivateData, sink.mCodecPrivateData);
+        assertEquals(1, sink.mFramesAfterCodecPrivateData.get(0).intValue());
+    }
+
+    @Test
+    public void copiesHeapFramesWithoutConsumingThem() throws Exception {
+        final RecordingSink first = new RecordingSink();
+        final RecordingSink second = new RecordingSink();
+        mFanOut.addTarget(first);
+        mFanOut.addTarget(second);
+
+        final byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        final KinesisVideoFrame frame = new KinesisVideoFrame(0, FrameFlags.FRAME_FLAG_KEY_FRAME, 0, 0, 1,
+                ByteBuffer.wrap(data));
+        mFanOut.onFrame(frame);
+        first.await(1);
+        second.await(1);
+
+        assertEquals(data.length, frame.getSize());
+        assertArrayEquals(data, first.mFrames.get(0).array());
+        assertArrayEquals(data, second.mFrames.get(0).array());
+    }
+
+    private static KinesisVideoFrame frame(final int index, final boolean isKeyFrame) {
+        final ByteBuffer data = ByteBuffer.allocateDirect(1000);
+        data.put(0, (byte) index);
+        return new KinesisVideoFrame(index,
+                isKeyFrame ? FrameFlags.FRAME_FLAG_KEY_FRAME : FrameFlags.FRAME_FLAG_NONE,
+                index, index, 1, data);
+    }
+
+    private static class RecordingSink implements MediaSourceSink {
+        private final List<ByteBuffer> mFrames = new ArrayList<ByteBuffer>();
+        private final List<Integer> mFramesAfterCodecPrivateData = new ArrayList<Integer>();
+        private byte[] mCodecPrivateData;
+
+        @Override
+        public void onFrame(final KinesisVideoFrame frame) {
+            // The buffer goes back to the pool once put
+            final ByteBuffer copy = ByteBuffer.allocate(frame.getSize());
+            copy.put(frame.getData().duplicate());
+            synchronized (this) {
+                mFrames.add(copy);
+                if (mCodecPrivateData != null) {
+                    mFramesAfterCodecPrivateData.add(mFrames.size());
+                }
+
+                notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized void onCodecPrivateData(final byte[] codecPrivateData) {
+            mCodecPrivateData = codecPrivateData;
+        }
+
+        synchronized void await(final int frames) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+            while (mFrames.size() < frames) {
+                final long wait = deadline - System.currentTimeMillis();
+                assertTrue("Timed out waiting for frame " + frames, wait > 0);
+                wait(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.amazonaws.kinesisvideo.mediasource;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Frame pacer tests
+ */
+public class FramePacerTest {
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+    private static final int FPS = 100;
+    private static final int FRAMES = 10;
+    private static final long SLOW_CALLBACK_IN_MILLIS = 55;
+
+    private final FramePacer mFramePacer = new FramePacer(1, "FramePacerTest");
+
+    @After
+    public void closePacer() {
+        mFramePacer.close();
+    }
+
+    @Test
+    public void skipsTheFramesDueWhileTheCallbackWasSlow() throws InterruptedException {
+        final RecordingCallback callback = new RecordingCallback(FRAMES);
+        final FramePacer.Pacing pacing = mFramePacer.schedule(FPS, FramePacer.CatchUpPolicy.SKIP, callback);
+        assertTrue(callback.mDone.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+        pacing.cancel();
+
+        final long[] indices = callback.getFrameIndices();
+        assertEquals(0, indices[0]);
+        // The frames due while the first one was produced are skipped
+        assertTrue(indices[1] >= SLOW_CALLBACK_IN_MILLIS * FPS / 1000);
+
+        long skippedFrames = 0;
+        for (int i = 1; i < indices.length; i++) {
+            assertTrue(indices[i] > indices[i - 1]);
+            skippedFrames += indices[i] - indices[i - 1] - 1;
+        }
+
+        assertEquals(skippedFrames, pacing.getSkippedFrames());
+        assertEquals(skippedFrames, mFramePacer.getSkippedFrameCount());
+        callback.assertTimestamps(pacing);
+        assertTrue(mFramePacer.getOverrunCount() >= 1);
+    }
+
+    @Test
+    public void catchesUpOnTheFramesDueWhileTheCallbackWasSlow() throws InterruptedException {
+        final RecordingCallback callback = new RecordingCallback(FRAMES);
+        final FramePacer.Pacing pacing = mFramePacer.schedule(FPS, FramePacer.CatchUpPolicy.CATCH_UP, callback);
+        assertTrue(callback.mDone.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+        pacing.cancel();
+
+        final long[] indices = callback.getFrameIndices();
+        for (int i = 0; i < indices.length; i++) {
+            assertEquals(i, indices[i]);
+        }
+
+        assertEquals(0, pacing.getSkippedFrames());
+        assertEquals(0, mFramePacer.getSkippedFrameCount());
+        callback.assertTimestamps(pacing);
+        assertTrue(mFramePacer.getOverrunCount() >= 1);
+    }
+
+    @Test
+    public void stopsCallingASourceCancelledDuringItsCallback() throws InterruptedException {
+        final CountDownLatch inCallback = new CountDownLatch(1);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final List<Long> indices = new ArrayList<Long>();
+        final FramePacer.Pacing pacing = mFramePacer.schedule(FPS, FramePacer.CatchUpPolicy.CATCH_UP,
+                new FramePacer.FrameCallback() {
+                    @Override
+                    public void onFrameDue(@Nonnull final FramePacer.Pacing pacing, final long frameIndex,
+                                           final long timestamp) {
+                        synchronized (indices) {
+                            indices.add(frameIndex);
+                        }
+
+                        inCallback.countDown();
+                        try {
+                            cancelled.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+        assertEquals(1, mFramePacer.getActiveSources());
+
+        assertTrue(inCallback.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+        pacing.cancel();
+        assertTrue(pacing.isCancelled());
+        assertEquals(0, mFramePacer.getActiveSources());
+        cancelled.countDown();
+
+        // A few frames would have been due since
+        Thread.sleep(5 * 1000 / FPS);
+        synchronized (indices) {
+            assertEquals(1, indices.size());
+        }
+
+        // Cancelling again doesn't count the source twice
+        pacing.cancel();
+        assertEquals(0, mFramePacer.getActiveSources());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsToScheduleOnAClosedPacer() {
+        mFramePacer.close();
+        mFramePacer.schedule(FPS, FramePacer.CatchUpPolicy.SKIP, new RecordingCallback(1));
+    }
+
+    /**
+     * Records the frames, being slow on the first one
+     */
+    private static class RecordingCallback implements FramePacer.FrameCallback {
+        private final int mFrames;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private final List<long[]> mCalls = new ArrayList<long[]>();
+
+        RecordingCallback(final int frames) {
+            mFrames = frames;
+        }
+
+        @Override
+        public void onFrameDue(@Nonnull final FramePacer.Pacing pacing, final long frameIndex, final long timestamp) {
+            final int calls;
+            synchronized (mCalls) {
+                if (mCalls.size() == mFrames) {
+                    return;
+                }
+
+                mCalls.add(new long[] { frameIndex, timestamp });
+                calls = mCalls.size();
+            }
+
+            if (calls == 1) {
+                try {
+                    Thread.sleep(SLOW_CALLBACK_IN_MILLIS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (calls == mFrames) {
+                mDone.countDown();
+            }
+        }
+
+        long[] getFrameIndices() {
+            synchronized (mCalls) {
+                final long[] indices = new long[mCalls.size()];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = mCalls.get(i)[0];
+                }
+
+                return indices;
+            }
+        }
+
+        /**
+         * The timestamps follow from the frame indices, so they are monotonic and spaced by the frame duration
+         */
+        void assertTimestamps(final FramePacer.Pacing pacing) {
+            synchronized (mCalls) {
+                for (final long[] call : mCalls) {
+                    assertEquals(call[0] * pacing.getFrameDuration(), call[1]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.amazonaws.kinesisvideo.mediasource.bytes;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Synthetic frame size distribution tests
+ */
+public class SyntheticFrameGeneratorTest {
+
+    @Test
+    public void patternHasTheConfiguredBitRate() {
+        final SyntheticFrameGenerator generator = new SyntheticFrameGenerator(
+                new SyntheticMediaSourceConfiguration.Builder()
+                        .withFps(25)
+                        .withBitRate(2_000_000)
+                        .withGopLength(50)
+                        .withFrameSizeVariation(0.5)
+                        .build());
+
+        final long bitRate = generator.getPatternBytes() * Byte.SIZE * 25 / generator.getPatternLength();
+        assertEquals(2_000_000, bitRate, 2_000_000 / 1000);
+        assertEquals(50 * SyntheticFrameGenerator.PATTERN_GOPS, generator.getPatternLength());
+    }
+
+    @Test
+    public void keyFramesHaveTheConfiguredSizeRatio() {
+        final SyntheticFrameGenerator generator = new SyntheticFrameGenerator(
+                new SyntheticMediaSourceConfiguration.Builder()
+                        .withGopLength(10)
+                        .withKeyFrameSizeRatio(5.0)
+                        .withFrameSizeVariation(0.0)
+                        .build());
+
+        for (int frame = 0; frame < 2 * generator.getPatternLength(); frame++) {
+            assertEquals(frame % 10 == 0, generator.isKeyFrame(frame));
+        }
+
+        assertEquals(5.0, (double) generator.getFrameSize(0) / generator.getFrameSize(1), 0.01);
+        assertEquals(generator.getFrameSize(1), generator.getFrameSize(9));
+    }
+
+    @Test
+    public void framesAreReusedDirectBuffers() {
+        final SyntheticFrameGenerator generator = new SyntheticFrameGenerator(
+                new SyntheticMediaSourceConfiguration.Builder().build());
+
+        final ByteBuffer frame = generator.getFrame(3);
+        assertTrue(frame.isDirect());
+        assertEquals(generator.getFrameSize(3), frame.remaining());
+
+        frame.position(frame.limit());
+        assertSame(frame, generator.getFrame(3 + generator.getPatternLength()));
+        assertEquals(generator.getFrameSize(3), frame.remaining());
+    }
+}
@@ -0,0 +1,133 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Flight recorder tests
+ */
+public class FlightRecorderTest {
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+    private static final Pattern LINE = Pattern.compile(
+            "\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z +[+-]\\d+\\.\\d{3} (\\w+) (.*)");
+    private static final Pattern PUT_FRAME =
+            Pattern.compile("PUT_FRAME size=(\\d+) flags=0 pts=(\\d+) dts=(\\d+) duration=(\\d+)");
+
+    @Test
+    public void decodesTheEvents() {
+        final FlightRecorder recorder = new FlightRecorder(16);
+        recorder.onPutFrame(100, 1, 10, 20, 30);
+        recorder.onPutFrameFailed(40, 0x15000010);
+        recorder.onDataAvailable(7, 50, 60);
+        recorder.onSessionStart(7);
+        recorder.onAck(3, 70, 0);
+        recorder.onAck(9, 80, 1);
+        recorder.onStaleFragment(90, 100);
+        recorder.onStreamError(110, 0x52000002);
+        recorder.onStreamTerminated(7, 0x52000001);
+        recorder.onSessionEnd(7);
+        recorder.onBufferUnderflow();
+
+        final String[] lines = recorder.dump().split("\n");
+        assertArrayEquals(new String[] {
+                "PUT_FRAME size=100 flags=1 pts=10 dts=20 duration=30",
+                "PUT_FRAME_FAILED pts=40 status=0x15000010",
+                "DATA_AVAILABLE uploadHandle=7 duration=50 size=60",
+                "SESSION_START uploadHandle=7",
+                "ACK type=PERSISTED timecode=70 result=0",
+                "ACK type=9 timecode=80 result=1",
+                "STALE_FRAGMENT timecode=90 ackWaitDuration=100",
+                "STREAM_ERROR timecode=110 status=0x52000002",
+                "STREAM_TERMINATED uploadHandle=7 status=0x52000001",
+                "SESSION_END uploadHandle=7",
+                "BUFFER_UNDERFLOW "
+        }, eventsOf(lines));
+
+        // The first event has no previous one
+        assertTrue(lines[0].contains(" +0.000 "));
+    }
+
+    @Test
+    public void keepsTheLatestEventsOnWrapAround() {
+        final FlightRecorder recorder = new FlightRecorder(4);
+        for (int i = 0; i < 10; i++) {
+            recorder.onDroppedFrame(i);
+        }
+
+        assertEquals(10, recorder.getEventCount());
+        assertArrayEquals(new String[] {
+                "DROPPED_FRAME timecode=6",
+                "DROPPED_FRAME timecode=7",
+                "DROPPED_FRAME timecode=8",
+                "DROPPED_FRAME timecode=9"
+        }, eventsOf(recorder.dump().split("\n")));
+    }
+
+    @Test
+    public void dumpsNothingBeforeTheFirstEvent() {
+        assertEquals("", new FlightRecorder(4).dump());
+    }
+
+    @Test
+    public void dumpsOnlyCompleteRecordsWhileRecording() throws InterruptedException {
+        final FlightRecorder recorder = new FlightRecorder(8);
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final CountDownLatch started = new CountDownLatch(1);
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long i = 1; !stopped.get(); i++) {
+                    // Every field of a complete record holds the same value
+                    recorder.onPutFrame((int) i, 0, i, i, i);
+                    started.countDown();
+                }
+            }
+        });
+        writer.start();
+        try {
+            assertTrue(started.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+            for (int dump = 0; dump < 1000; dump++) {
+                for (final String event : eventsOf(recorder.dump().split("\n"))) {
+                    if (event.isEmpty()) {
+                        continue;
+                    }
+
+                    final Matcher matcher = PUT_FRAME.matcher(event);
+                    assertTrue(event, matcher.matches());
+                    assertEquals(event, matcher.group(1), matcher.group(2));
+                    assertEquals(event, matcher.group(2), matcher.group(3));
+                    assertEquals(event, matcher.group(3), matcher.group(4));
+                }
+            }
+        } finally {
+            stopped.set(true);
+            writer.join(TIMEOUT_IN_MILLIS);
+        }
+    }
+
+    /**
+     * Strips the time columns of the dumped lines
+     */
+    private static String[] eventsOf(final String[] lines) {
+        final String[] events = new String[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].isEmpty()) {
+                events[i] = "";
+                continue;
+            }
+
+            final Matcher matcher = LINE.matcher(lines[i]);
+            assertTrue(lines[i], matcher.matches());
+            events[i] = matcher.group(1) + " " + matcher.group(2);
+        }
+
+        return events;
+    }
+}
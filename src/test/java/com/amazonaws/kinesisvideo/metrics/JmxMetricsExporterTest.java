@@ -0,0 +1,83 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JMX metrics exporter tests
+ */
+public class JmxMetricsExporterTest {
+    private final List<String> mMessages = new ArrayList<String>();
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            synchronized (mMessages) {
+                mMessages.add(message);
+            }
+        }
+    });
+    private final MBeanServer mServer = MBeanServerFactory.newMBeanServer();
+    private final JmxMetricsExporter mExporter = new JmxMetricsExporter(mServer, mLog);
+
+    @After
+    public void closeExporter() {
+        mExporter.close();
+    }
+
+    @Test
+    public void exposesTheLiveMetrics() throws Exception {
+        final MetricsRegistry client = new MetricsRegistry(MetricsRegistry.CLIENT, "device");
+        final MetricsRegistry stream = client.createChild(MetricsRegistry.STREAM, "my-stream");
+        final Counter frames = stream.counter("frames_put_total");
+        final LatencyHistogram latency = stream.histogram("put_frame_latency_us");
+        latency.record(10);
+        latency.record(20);
+        mExporter.register(stream);
+
+        final ObjectName objectName = new ObjectName(
+                "com.amazonaws.kinesisvideo:type=Stream,client=\"device\",name=\"my-stream\"");
+        assertTrue(mServer.isRegistered(objectName));
+        assertEquals(0L, mServer.getAttribute(objectName, "frames_put_total"));
+
+        frames.add(3);
+        latency.record(30);
+        assertEquals(3L, mServer.getAttribute(objectName, "frames_put_total"));
+        assertEquals(3L, mServer.getAttribute(objectName, "put_frame_latency_us_count"));
+        assertEquals(20.0, mServer.getAttribute(objectName, "put_frame_latency_us_mean"));
+        assertEquals(21L, mServer.getAttribute(objectName, "put_frame_latency_us_p50"));
+        assertEquals(30L, mServer.getAttribute(objectName, "put_frame_latency_us_p99"));
+        assertEquals(30L, mServer.getAttribute(objectName, "put_frame_latency_us_max"));
+        assertEquals(7, mServer.getMBeanInfo(objectName).getAttributes().length);
+
+        mExporter.close();
+        assertFalse(mServer.isRegistered(objectName));
+    }
+
+    @Test
+    public void logsTheRegistrationFailures() throws Exception {
+        final MetricsRegistry registry = new MetricsRegistry(MetricsRegistry.CLIENT, "device");
+        mExporter.register(registry);
+        // Same object name
+        mExporter.register(new MetricsRegistry(MetricsRegistry.CLIENT, "device"));
+
+        synchronized (mMessages) {
+            assertEquals(1, mMessages.size());
+            assertTrue(mMessages.get(0).contains("InstanceAlreadyExistsException"));
+        }
+
+        mExporter.unregister(registry);
+        assertTrue(mServer.queryNames(new ObjectName(JmxMetricsExporter.DOMAIN + ":*"), null).isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Latency histogram tests
+ */
+public class LatencyHistogramTest {
+    private static final double MAX_RELATIVE_ERROR = 0.125;
+
+    @Test
+    public void countsTheSmallValuesExactly() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.bucketOf(value));
+            assertEquals(value, LatencyHistogram.upperBoundOf(value));
+        }
+    }
+
+    @Test
+    public void splitsEveryPowerOfTwoIntoEightBuckets() {
+        assertEquals(16, LatencyHistogram.bucketOf(16));
+        assertEquals(16, LatencyHistogram.bucketOf(17));
+        assertEquals(17, LatencyHistogram.bucketOf(18));
+        assertEquals(17, LatencyHistogram.upperBoundOf(16));
+        assertEquals(31, LatencyHistogram.upperBoundOf(23));
+        assertEquals(24, LatencyHistogram.bucketOf(32));
+        assertEquals(35, LatencyHistogram.upperBoundOf(24));
+    }
+
+    @Test
+    public void keepsTheBucketsContiguous() {
+        long lowerBound = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            final long upperBound = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(upperBound >= lowerBound);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lowerBound));
+            assertEquals(bucket, LatencyHistogram.bucketOf(upperBound));
+            assertTrue(upperBound - lowerBound <= lowerBound * MAX_RELATIVE_ERROR);
+            if (upperBound == Long.MAX_VALUE) {
+                assertEquals(LatencyHistogram.BUCKET_COUNT - 1, bucket);
+                return;
+            }
+
+            lowerBound = upperBound + 1;
+        }
+
+        fail("Buckets don't reach Long.MAX_VALUE");
+    }
+
+    @Test
+    public void ranksThePercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0);
+
+        // The lowest percentiles rank the first value
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(1, histogram.getPercentile(1));
+        // The 50th value is in the bucket of 48 to 51
+        assertEquals(51, histogram.getPercentile(50));
+        // The 90th value is in the bucket of 88 to 95
+        assertEquals(95, histogram.getPercentile(90));
+        // The bucket of 96 to 103 is capped by the max
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(100, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void recordsTheNegativeValuesAsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-10);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void readsZeroWithoutValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPercentilesAboveOneHundred() {
+        new LatencyHistogram().getPercentile(101);
+    }
+}
@@ -0,0 +1,96 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * Metrics registry tests
+ */
+public class MetricsRegistryTest {
+    @Test
+    public void returnsTheSameMetricForTheSameName() {
+        final MetricsRegistry registry = new MetricsRegistry(MetricsRegistry.CLIENT, "device");
+
+        assertSame(registry.counter("a"), registry.counter("a"));
+        assertNotSame(registry.counter("a"), registry.counter("b"));
+        assertSame(registry.histogram("a"), registry.histogram("a"));
+    }
+
+    @Test
+    public void reportsTheMetricsByKindAndName() {
+        final MetricsRegistry registry = new MetricsRegistry(MetricsRegistry.CLIENT, "device");
+        registry.histogram("b");
+        registry.counter("z");
+        registry.gauge("c", constant(1));
+        registry.counter("a");
+        // Replaces the first gauge
+        registry.gauge("c", constant(2));
+
+        final NameCollector collector = new NameCollector();
+        registry.report(collector);
+        assertEquals(Arrays.asList("device/a", "device/z", "device/c=2", "device/b"), collector.mNames);
+    }
+
+    @Test
+    public void reportsTheChildrenAfterTheirParent() {
+        final MetricsRegistry client = new MetricsRegistry(MetricsRegistry.CLIENT, "device");
+        final MetricsRegistry first = client.createChild(MetricsRegistry.STREAM, "first");
+        final MetricsRegistry second = client.createChild(MetricsRegistry.STREAM, "second");
+        client.counter("a");
+        first.counter("a");
+        second.counter("a");
+        assertSame(client, first.getParent());
+        assertEquals(Arrays.asList(first, second), client.getChildren());
+
+        NameCollector collector = new NameCollector();
+        client.reportAll(collector);
+        assertEquals(Arrays.asList("device/a", "first/a", "second/a"), collector.mNames);
+
+        client.removeChild(first);
+        collector = new NameCollector();
+        client.reportAll(collector);
+        assertEquals(Arrays.asList("device/a", "second/a"), collector.mNames);
+    }
+
+    private static Gauge constant(final long value) {
+        return new Gauge() {
+            @Override
+            public long getValue() {
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Collects the reported metrics as registry/name
+     */
+    private static class NameCollector implements MetricsReporter {
+        private final List<String> mNames = new ArrayList<String>();
+
+        @Override
+        public void reportCounter(@Nonnull final MetricsRegistry registry, @Nonnull final String name,
+                                  final long count) {
+            mNames.add(registry.getName() + "/" + name);
+        }
+
+        @Override
+        public void reportGauge(@Nonnull final MetricsRegistry registry, @Nonnull final String name,
+                                final long value) {
+            mNames.add(registry.getName() + "/" + name + "=" + value);
+        }
+
+        @Override
+        public void reportHistogram(@Nonnull final MetricsRegistry registry,
+                                    @Nonnull final String name,
+                                    @Nonnull final LatencyHistogram histogram) {
+            mNames.add(registry.getName() + "/" + name);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.amazonaws.kinesisvideo.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Text metrics exporter tests
+ */
+public class TextMetricsExporterTest {
+    @Test
+    public void exportsTheRegistryTree() {
+        final MetricsRegistry client = new MetricsRegistry(MetricsRegistry.CLIENT, "device");
+        client.counter("frames_put_total").add(1200);
+        client.gauge("storage_available_bytes", new Gauge() {
+            @Override
+            public long getValue() {
+                return 4096;
+            }
+        });
+
+        final MetricsRegistry stream = client.createChild(MetricsRegistry.STREAM, "my-stream");
+        final LatencyHistogram latency = stream.histogram("put_frame_latency_us");
+        latency.record(10);
+        latency.record(20);
+        latency.record(30);
+        stream.counter("errors_total");
+
+        final String labels = "client=\"device\",stream=\"my-stream\"";
+        assertEquals(""
+                        + "kinesisvideo_frames_put_total{client=\"device\"} 1200\n"
+                        + "kinesisvideo_storage_available_bytes{client=\"device\"} 4096\n"
+                        + "kinesisvideo_errors_total{" + labels + "} 0\n"
+                        + "kinesisvideo_put_frame_latency_us{" + labels + ",quantile=\"0.5\"} 21\n"
+                        + "kinesisvideo_put_frame_latency_us{" + labels + ",quantile=\"0.9\"} 30\n"
+                        + "kinesisvideo_put_frame_latency_us{" + labels + ",quantile=\"0.99\"} 30\n"
+                        + "kinesisvideo_put_frame_latency_us_count{" + labels + "} 3\n"
+                        + "kinesisvideo_put_frame_latency_us_sum{" + labels + "} 60\n"
+                        + "kinesisvideo_put_frame_latency_us_max{" + labels + "} 30\n",
+                TextMetricsExporter.export(client));
+    }
+
+    @Test
+    public void escapesTheLabelValues() {
+        final MetricsRegistry registry = new MetricsRegistry(MetricsRegistry.STREAM, "a\"b\\c\nd");
+        registry.counter("frames_put_total").increment();
+
+        assertEquals("kinesisvideo_frames_put_total{stream=\"a\\\"b\\\\c\\nd\"} 1\n",
+                TextMetricsExporter.export(registry));
+    }
+
+    @Test
+    public void appendsToTheGivenBuilder() {
+        final MetricsRegistry registry = new MetricsRegistry(MetricsRegistry.CLIENT, "device");
+        registry.counter("frames_put_total").increment();
+        final StringBuilder builder = new StringBuilder("# metrics\n");
+
+        registry.report(new TextMetricsExporter(builder));
+        assertEquals("# metrics\nkinesisvideo_frames_put_total{client=\"device\"} 1\n", builder.toString());
+    }
+}
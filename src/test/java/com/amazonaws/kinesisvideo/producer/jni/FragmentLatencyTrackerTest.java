@@ -0,0 +1,97 @@
+package com.amazonaws.kinesisvideo.producer.jni;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.metrics.Counter;
+import com.amazonaws.kinesisvideo.metrics.LatencyHistogram;
+import com.amazonaws.kinesisvideo.producer.FragmentAckType;
+
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_MILLISECOND;
+import static com.amazonaws.kinesisvideo.producer.Time.HUNDREDS_OF_NANOS_IN_A_SECOND;
+
+/**
+ * Fragment ack latency tracking tests
+ */
+public class FragmentLatencyTrackerTest {
+    private static final int CAPACITY = 4;
+    private static final long STALE_TIMEOUT_IN_NANOS = TimeUnit.SECONDS.toNanos(20);
+    private static final long FRAGMENT_DURATION = 2 * HUNDREDS_OF_NANOS_IN_A_SECOND;
+    private static final long START = TimeUnit.SECONDS.toNanos(1000);
+
+    private final LatencyHistogram mBufferingLatency = new LatencyHistogram();
+    private final LatencyHistogram mReceivedLatency = new LatencyHistogram();
+    private final LatencyHistogram mPersistedLatency = new LatencyHistogram();
+    private final Counter mUnmatchedAcks = new Counter();
+    private FragmentLatencyTracker mTracker;
+
+    @Before
+    public void setupTracker() {
+        mTracker = new FragmentLatencyTracker(CAPACITY, STALE_TIMEOUT_IN_NANOS,
+                mBufferingLatency, mReceivedLatency, mPersistedLatency, mUnmatchedAcks);
+    }
+
+    @Test
+    public void recordsEachAckTypeOnce() {
+        // Sub-millisecond parts of the frame timecode are not carried by the acks
+        mTracker.onFragmentStart(FRAGMENT_DURATION + 1234, START);
+        mTracker.onAck(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, FRAGMENT_DURATION, millisAfterStart(50));
+        mTracker.onAck(FragmentAckType.FRAGMENT_ACK_TYPE_BUFFERING, FRAGMENT_DURATION, millisAfterStart(60));
+        mTracker.onAck(FragmentAckType.FRAGMENT_ACK_TYPE_RECEIVED, FRAGMENT_DURATION, millisAfterStart(400));
+        mTracker.onAck(FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, FRAGMENT_DURATION, millisAfterStart(1500));
+
+        assertEquals(1, mBufferingLatency.getCount());
+        assertEquals(50, mBufferingLatency.getMax());
+        assertEquals(400, mReceivedLatency.getMax());
+        assertEquals(1500, mPersistedLatency.getMax());
+        assertEquals(0, mUnmatchedAcks.getCount());
+    }
+
+    @Test
+    public void countsAcksOfOverwrittenFragmentsAsUnmatched() {
+        for (int fragment = 0; fragment <= CAPACITY; fragment++) {
+            mTracker.onFragmentStart(fragment * FRAGMENT_DURATION, START);
+        }
+
+        mTracker.onAck(FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, 0, millisAfterStart(1));
+        mTracker.onAck(FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, FRAGMENT_DURATION, millisAfterStart(1));
+
+        assertEquals(1, mUnmatchedAcks.getCount());
+        assertEquals(1, mPersistedLatency.getCount());
+    }
+
+    @Test
+    public void reportsUnpersistedFragmentsStaleOnce() {
+        mTracker.onFragmentStart(0, START);
+        mTracker.onFragmentStart(FRAGMENT_DURATION, START + STALE_TIMEOUT_IN_NANOS);
+        assertTrue(mTracker.pollStaleFragments(START + STALE_TIMEOUT_IN_NANOS - 1).isEmpty());
+
+        final List<FragmentLatencyTracker.StaleFragment> staleFragments =
+                mTracker.pollStaleFragments(START + STALE_TIMEOUT_IN_NANOS);
+        assertEquals(1, staleFragments.size());
+        assertEquals(0, staleFragments.get(0).getTimecode());
+        assertEquals(20 * HUNDREDS_OF_NANOS_IN_A_SECOND, staleFragments.get(0).getAckWaitDuration());
+        assertTrue(mTracker.pollStaleFragments(START + STALE_TIMEOUT_IN_NANOS).isEmpty());
+    }
+
+    @Test
+    public void persistedAckResolvesOlderFragments() {
+        // The first key frame didn't start a fragment so it is never acked
+        mTracker.onFragmentStart(0, START);
+        mTracker.onFragmentStart(FRAGMENT_DURATION, START);
+        mTracker.onFragmentStart(2 * FRAGMENT_DURATION, START);
+        mTracker.onAck(FragmentAckType.FRAGMENT_ACK_TYPE_PERSISTED, FRAGMENT_DURATION, millisAfterStart(1));
+        mTracker.resolve(2 * FRAGMENT_DURATION + HUNDREDS_OF_NANOS_IN_A_MILLISECOND / 2);
+
+        assertTrue(mTracker.pollStaleFragments(START + 2 * STALE_TIMEOUT_IN_NANOS).isEmpty());
+    }
+
+    private static long millisAfterStart(final long millis) {
+        return START + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
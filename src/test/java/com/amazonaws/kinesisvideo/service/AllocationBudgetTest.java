@@ -0,0 +1,367 @@
+package com.amazonaws.kinesisvideo.service;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.kinesisvideo.client.PutMediaClient;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.mediasource.bytes.BytesMediaSourceConfiguration;
+import com.amazonaws.kinesisvideo.metrics.FlightRecorder;
+import com.amazonaws.kinesisvideo.metrics.MetricsRegistry;
+import com.amazonaws.kinesisvideo.producer.AuthCallbacks;
+import com.amazonaws.kinesisvideo.producer.FrameFlags;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoFrame;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoMetrics;
+import com.amazonaws.kinesisvideo.producer.KinesisVideoStreamMetrics;
+import com.amazonaws.kinesisvideo.producer.ProducerException;
+import com.amazonaws.kinesisvideo.producer.ReadResult;
+import com.amazonaws.kinesisvideo.producer.ServiceCallbacks;
+import com.amazonaws.kinesisvideo.producer.jni.NativeKinesisVideoProducerJni;
+import com.amazonaws.kinesisvideo.producer.jni.NativeKinesisVideoProducerStream;
+import com.amazonaws.kinesisvideo.socket.SocketFactory;
+import com.amazonaws.kinesisvideo.storage.DefaultStorageCallbacks;
+import com.amazonaws.kinesisvideo.util.ProducerStreamUtil;
+
+/**
+ * Allocation budgets of the per-frame and per-chunk paths.
+ * <p>
+ * Each test drives a path through a warm-up and then measures the heap bytes allocated per operation by the
+ * thread running it. The native producer is stubbed out so only the Java side of the path is measured. The
+ * budgets are in allocation-budgets.properties and can be overridden with -Dallocation.budget.[path]=[bytes].
+ */
+public class AllocationBudgetTest {
+    private static final String BUDGETS_RESOURCE = "/allocation-budgets.properties";
+    private static final String BUDGET_PROPERTY_PREFIX = "allocation.budget.";
+    private static final int WARMUP_OPERATIONS = 20000;
+    private static final int MEASURED_OPERATIONS = 20000;
+    private static final long COMPLETION_TIMEOUT_IN_SECONDS = 60;
+
+    private static final String STREAM_NAME = "allocation-budget";
+    private static final long STREAM_HANDLE = 1;
+    private static final long UPLOAD_HANDLE = 1;
+    private static final int FPS = 30;
+    private static final int FRAME_SIZE = 1024;
+    private static final int KEY_FRAME_INTERVAL = 30;
+    private static final long FRAME_DURATION = 333333L;
+    private static final int PUT_MEDIA_PAYLOAD_SIZE = 16 * 1024;
+    private static final URI PUT_MEDIA_URI = URI.create("http://localhost/putMedia");
+    private static final String ACK_CHUNK = "7d\r\n{\"EventType\":\"PERSISTED\",\"FragmentTimecode\":1525107814000,"
+            + "\"FragmentNumber\":\"91343852333181432392682062622220765191907580000\"}\r\n";
+
+    private Properties mBudgets;
+    private Log mLog;
+
+    @Before
+    public void setup() throws IOException {
+        Assume.assumeTrue("Thread allocation counters are not available", AllocationMeter.isSupported());
+
+        mBudgets = new Properties();
+        final InputStream budgets = getClass().getResourceAsStream(BUDGETS_RESOURCE);
+        assertNotNull("Missing " + BUDGETS_RESOURCE, budgets);
+        try {
+            mBudgets.load(budgets);
+        } finally {
+            budgets.close();
+        }
+
+        mLog = new Log(new OutputChannel() {
+            @Override
+            public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+                // Only the cost of producing the messages counts
+            }
+        });
+    }
+
+    /**
+     * The Java side of putFrame including the data hand-off the native producer does
+     */
+    @Test
+    public void putFrameTest() throws Exception {
+        final AllocationMeter meter = new AllocationMeter();
+        final NativeKinesisVideoProducerStream stream = createStream(new StubProducerJni(mLog, meter));
+
+        // The frames are built beforehand as they are allocated by the caller
+        final byte[] data = new byte[FRAME_SIZE];
+        final KinesisVideoFrame[] frames = new KinesisVideoFrame[WARMUP_OPERATIONS + MEASURED_OPERATIONS];
+        for (int index = 0; index < frames.length; index++) {
+            final int flags = index % KEY_FRAME_INTERVAL == 0
+                    ? FrameFlags.FRAME_FLAG_KEY_FRAME
+                    : FrameFlags.FRAME_FLAG_NONE;
+            final long timestamp = index * FRAME_DURATION;
+            frames[index] = new KinesisVideoFrame(index, flags, timestamp, timestamp, FRAME_DURATION,
+                    ByteBuffer.wrap(data));
+        }
+
+        for (final KinesisVideoFrame frame : frames) {
+            stream.putFrame(frame);
+        }
+
+        assertWithinBudget("putFrame", meter);
+    }
+
+    /**
+     * The PutMedia send loop reading the stream data and writing it chunk encoded to the socket
+     */
+    @Test
+    public void putMediaChunkTest() throws Exception {
+        final AllocationMeter meter = new AllocationMeter();
+        final NativeKinesisVideoProducerStream stream = createStream(new StubProducerJni(mLog, meter));
+        final InputStream dataStream = stream.getDataStream(UPLOAD_HANDLE);
+        stream.streamDataAvailable(UPLOAD_HANDLE, 0, 0);
+
+        // Both the sender and the receiver report their completion
+        final CountDownLatch completed = new CountDownLatch(2);
+        final PutMediaClient client = PutMediaClient.builder()
+                .putMediaDestinationUri(PUT_MEDIA_URI)
+                .streamName(STREAM_NAME)
+                .timestamp(System.currentTimeMillis())
+                .fragmentTimecodeType("RELATIVE")
+                .mkvStream(dataStream)
+                .receiveAcks(new Consumer<InputStream>() {
+                    @Override
+                    public void accept(final InputStream inputStream) {
+                        // No acks are sent back
+                    }
+                })
+                .receiveCompletion(new Consumer<Exception>() {
+                    @Override
+                    public void accept(final Exception exception) {
+                        completed.countDown();
+                    }
+                })
+                .socketFactory(new SocketFactory() {
+                    @Override
+                    public Socket createSocket(final URI uri) {
+                        return new DiscardingSocket();
+                    }
+                })
+                .log(mLog)
+                .build();
+        client.putMediaInBackground();
+
+        assertTrue("The PutMedia send loop did not finish",
+                completed.await(COMPLETION_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS));
+        assertWithinBudget("putMediaChunk", meter);
+    }
+
+    /**
+     * Reading the ack stream and handing every read to the stream, one ack per read
+     */
+    @Test
+    public void ackReadTest() throws Exception {
+        final AllocationMeter meter = new AllocationMeter();
+        final NativeKinesisVideoProducerStream stream = createStream(new StubProducerJni(mLog, meter));
+        final byte[] ack = ACK_CHUNK.getBytes(StandardCharsets.US_ASCII);
+
+        new AckConsumer(UPLOAD_HANDLE, stream, mLog).accept(new InputStream() {
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(@Nonnull final byte[] buffer, final int offset, final int length) {
+                if (meter.isDone()) {
+                    return -1;
+                }
+
+                final int bytesRead = Math.min(length, ack.length);
+                System.arraycopy(ack, 0, buffer, offset, bytesRead);
+                return bytesRead;
+            }
+        });
+
+        assertWithinBudget("ackRead", meter);
+    }
+
+    private NativeKinesisVideoProducerStream createStream(@Nonnull final NativeKinesisVideoProducerJni jni)
+            throws KinesisVideoException {
+        final BytesMediaSourceConfiguration configuration = new BytesMediaSourceConfiguration.Builder()
+                .withFps(FPS)
+                .withFrameSize(FRAME_SIZE)
+                .withKeyFrameInterval(KEY_FRAME_INTERVAL)
+                .build();
+        return new NativeKinesisVideoProducerStream(jni,
+                ProducerStreamUtil.toStreamInfo(STREAM_NAME, configuration),
+                STREAM_HANDLE,
+                mLog,
+                null,
+                new MetricsRegistry(MetricsRegistry.STREAM, STREAM_NAME),
+                null,
+                new FlightRecorder(FlightRecorder.DEFAULT_CAPACITY));
+    }
+
+    private void assertWithinBudget(@Nonnull final String path, @Nonnull final AllocationMeter meter) {
+        assertTrue(path + " was not measured", meter.isDone());
+
+        final String budget = System.getProperty(BUDGET_PROPERTY_PREFIX + path, mBudgets.getProperty(path));
+        assertNotNull("No allocation budget for " + path, budget);
+
+        final double bytesPerOperation = meter.getBytesPerOperation();
+        mLog.info("%s allocated %.1f bytes per operation", path, bytesPerOperation);
+        assertTrue(String.format(Locale.US, "%s allocated %.1f bytes per operation, over its budget of %s bytes",
+                        path, bytesPerOperation, budget),
+                bytesPerOperation <= Long.parseLong(budget.trim()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T noOp(@Nonnull final Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+            }
+        });
+    }
+
+    /**
+     * Samples the allocation counter of the operating thread at the end of the warm-up and of the measurement
+     */
+    private static final class AllocationMeter {
+        private int mOperations;
+        private long mStartBytes;
+        private long mEndBytes;
+        private volatile boolean mDone;
+
+        static boolean isSupported() {
+            return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                            .isThreadAllocatedMemoryEnabled();
+        }
+
+        void operation() {
+            if (mDone) {
+                return;
+            }
+
+            mOperations++;
+            if (mOperations == WARMUP_OPERATIONS) {
+                mStartBytes = allocatedBytes();
+            } else if (mOperations == WARMUP_OPERATIONS + MEASURED_OPERATIONS) {
+                mEndBytes = allocatedBytes();
+                mDone = true;
+            }
+        }
+
+        boolean isDone() {
+            return mDone;
+        }
+
+        double getBytesPerOperation() {
+            return (double) (mEndBytes - mStartBytes) / MEASURED_OPERATIONS;
+        }
+
+        private static long allocatedBytes() {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+    /**
+     * Producer whose native calls are replaced by allocation free stand-ins counting the operations
+     */
+    private static final class StubProducerJni extends NativeKinesisVideoProducerJni {
+        private final AllocationMeter mMeter;
+        private final KinesisVideoMetrics mMetrics = new KinesisVideoMetrics();
+        private final byte[] mStreamData = new byte[PUT_MEDIA_PAYLOAD_SIZE];
+
+        StubProducerJni(@Nonnull final Log log, @Nonnull final AllocationMeter meter) throws ProducerException {
+            super(noOp(AuthCallbacks.class), new DefaultStorageCallbacks(), noOp(ServiceCallbacks.class), log);
+            mMeter = meter;
+        }
+
+        @Override
+        public void putFrame(final long streamHandle, @Nonnull final KinesisVideoFrame kinesisVideoFrame) {
+            // The native producer takes the frame data through getData
+            kinesisVideoFrame.getData();
+            mMeter.operation();
+        }
+
+        @Nonnull
+        @Override
+        public KinesisVideoMetrics getMetrics() {
+            return mMetrics;
+        }
+
+        @Override
+        public void getStreamMetrics(final long streamHandle, @Nonnull final KinesisVideoStreamMetrics streamMetrics) {
+        }
+
+        @Override
+        public void getStreamData(final long streamHandle,
+                                  @Nonnull final ByteBuffer fillBuffer,
+                                  @Nonnull final ReadResult readResult) {
+            if (mMeter.isDone()) {
+                readResult.setReadResult(UPLOAD_HANDLE, 0, true);
+                return;
+            }
+
+            final int bytesRead = Math.min(fillBuffer.remaining(), mStreamData.length);
+            fillBuffer.put(mStreamData, 0, bytesRead);
+            readResult.setReadResult(UPLOAD_HANDLE, bytesRead, false);
+            mMeter.operation();
+        }
+
+        @Override
+        public void parseFragmentAck(final long streamHandle,
+                                     final long uploadHandle,
+                                     @Nonnull final String kinesisVideoFragmentAck) {
+            mMeter.operation();
+        }
+    }
+
+    /**
+     * Unconnected socket which discards the request and has no response
+     */
+    private static final class DiscardingSocket extends Socket {
+        private final InputStream mInputStream = new ByteArrayInputStream(new byte[0]);
+        private final OutputStream mOutputStream = new OutputStream() {
+            @Override
+            public void write(final int b) {
+            }
+
+            @Override
+            public void write(@Nonnull final byte[] buffer, final int offset, final int length) {
+            }
+        };
+
+        @Override
+        public InputStream getInputStream() {
+            return mInputStream;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return mOutputStream;
+        }
+
+        @Override
+        public void setSoTimeout(final int timeout) {
+        }
+    }
+}
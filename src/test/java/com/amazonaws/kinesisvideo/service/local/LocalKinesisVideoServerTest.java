@@ -0,0 +1,246 @@
+package com.amazonaws.kinesisvideo.service.local;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.amazonaws.kinesisvideo.client.PutMediaClient;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Local Kinesis Video server smoke tests
+ */
+public class LocalKinesisVideoServerTest {
+    private static final long TIMEOUT_IN_MILLIS = 10000;
+    private static final String STREAM_NAME = "stream";
+    private static final byte[] EBML_HEADER_ID = { 0x1A, 0x45, (byte) 0xDF, (byte) 0xA3 };
+    private static final byte[] CLUSTER_ID = { 0x1F, 0x43, (byte) 0xB6, 0x75 };
+    private static final byte[] HEADER = concat(EBML_HEADER_ID, filler(20, 0x11));
+    private static final byte[] STREAM = concat(HEADER, cluster(10, 0x22), cluster(20, 0x33), cluster(30, 0x44));
+    private static final Pattern ACK = Pattern.compile("\"EventType\":\"(\\w+)\",\"FragmentTimecode\":(\\d+)");
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+        }
+    });
+    private LocalKinesisVideoServer mServer;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = LocalKinesisVideoServer.builder()
+                .persistedAckLatencyInMillis(20)
+                .log(mLog)
+                .build()
+                .start();
+    }
+
+    @After
+    public void stopServer() {
+        mServer.close();
+    }
+
+    @Test
+    public void acksEveryFragmentInOrder() throws Exception {
+        final LocalStream stream = mServer.createStream(STREAM_NAME);
+
+        final List<String> acks = putMedia(3);
+        assertEquals(Arrays.asList(
+                "BUFFERING 10", "RECEIVED 10", "PERSISTED 10",
+                "BUFFERING 20", "RECEIVED 20", "PERSISTED 20",
+                "BUFFERING 30", "RECEIVED 30", "PERSISTED 30"), acks);
+        assertEquals(1, stream.getSessions());
+        assertEquals(STREAM.length, stream.getBytesReceived());
+        assertEquals(3, stream.getFragmentsReceived());
+        assertEquals(0, stream.getFragmentErrors());
+
+        // Counted once the ack has been written
+        final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+        while (stream.getFragmentsPersisted() < 3) {
+            assertTrue("Persisted fragments weren't counted", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        assertEquals(3, stream.getFragmentsPersisted());
+    }
+
+    @Test
+    public void endsTheSessionAfterAnErrorAck() throws Exception {
+        mServer.close();
+        mServer = LocalKinesisVideoServer.builder()
+                .fragmentErrorRate(1)
+                .log(mLog)
+                .build()
+                .start();
+        final LocalStream stream = mServer.createStream(STREAM_NAME);
+
+        final List<String> acks = putMedia(1);
+        assertEquals(Arrays.asList("BUFFERING 10", "RECEIVED 10", "ERROR 10"), acks);
+        assertEquals(1, stream.getFragmentErrors());
+        assertEquals(0, stream.getFragmentsPersisted());
+    }
+
+    @Test
+    public void describesTheCreatedStreams() throws IOException {
+        assertEquals(404, call("/describeStream", "{\"StreamName\":\"" + STREAM_NAME + "\"}"));
+        assertEquals(200, call("/createStream", "{\"StreamName\":\"" + STREAM_NAME + "\",\"DeviceName\":\"device\"}"));
+        assertEquals(400, call("/createStream", "{\"StreamName\":\"" + STREAM_NAME + "\"}"));
+        assertEquals(200, call("/describeStream", "{\"StreamName\":\"" + STREAM_NAME + "\"}"));
+
+        final LocalStream stream = mServer.getStream(STREAM_NAME);
+        assertNotNull(stream);
+        assertEquals("device", stream.getDeviceName());
+    }
+
+    /**
+     * Sends the stream and collects the acks until the given number of them have ended a fragment
+     */
+    private List<String> putMedia(final int fragmentEndAcks) throws Exception {
+        final AckCollector acks = new AckCollector(fragmentEndAcks);
+        final PutMediaClient client = PutMediaClient.builder()
+                .putMediaDestinationUri(URI.create(mServer.getEndpoint() + "/putMedia"))
+                .mkvStream(new ByteArrayInputStream(STREAM))
+                .streamName(STREAM_NAME)
+                .timestamp(System.currentTimeMillis())
+                .fragmentTimecodeType("ABSOLUTE")
+                .receiveAcks(acks)
+                .receiveCompletion(new Consumer<Exception>() {
+                    @Override
+                    public void accept(@Nullable final Exception exception) {
+                    }
+                })
+                .receiveTimeout((int) TIMEOUT_IN_MILLIS)
+                .log(mLog)
+                .build();
+        client.putMediaInBackground();
+        try {
+            assertTrue(acks.mDone.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+        } finally {
+            client.close();
+        }
+
+        return acks.getAcks();
+    }
+
+    /**
+     * Posts the JSON body to the control plane
+     *
+     * @return the status code
+     */
+    private int call(final String path, final String body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(mServer.getEndpoint() + path)
+                .openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (final OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+
+            final int statusCode = connection.getResponseCode();
+            if (statusCode == 404) {
+                assertEquals("ResourceNotFoundException", connection.getHeaderField("x-amzn-ErrorType"));
+            }
+
+            return statusCode;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Cluster starting with a single byte timecode
+     */
+    private static byte[] cluster(final int timecode, final int value) {
+        return concat(CLUSTER_ID, new byte[] { (byte) 0xFF, (byte) 0xE7, (byte) 0x81, (byte) timecode },
+                filler(100, value));
+    }
+
+    private static byte[] filler(final int length, final int value) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (final byte[] part : parts) {
+            stream.write(part, 0, part.length);
+        }
+
+        return stream.toByteArray();
+    }
+
+    /**
+     * Reads the ack stream until enough fragments have been persisted or failed
+     */
+    private static class AckCollector implements Consumer<InputStream> {
+        private final int mFragmentEndAcks;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private final StringBuffer mAcks = new StringBuffer();
+
+        AckCollector(final int fragmentEndAcks) {
+            mFragmentEndAcks = fragmentEndAcks;
+        }
+
+        @Override
+        public void accept(final InputStream inputStream) {
+            try {
+                final byte[] buffer = new byte[256];
+                int bytesRead;
+                while (countFragmentEndAcks() < mFragmentEndAcks && (bytesRead = inputStream.read(buffer)) != -1) {
+                    mAcks.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
+                }
+
+                mDone.countDown();
+            } catch (final IOException e) {
+                fail(e.toString());
+            }
+        }
+
+        List<String> getAcks() {
+            final List<String> acks = new ArrayList<String>();
+            final Matcher matcher = ACK.matcher(mAcks);
+            while (matcher.find()) {
+                acks.add(matcher.group(1) + " " + matcher.group(2));
+            }
+
+            return acks;
+        }
+
+        private int countFragmentEndAcks() {
+            int count = 0;
+            for (final String ack : getAcks()) {
+                if (ack.startsWith("PERSISTED") || ack.startsWith("ERROR")) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.amazonaws.kinesisvideo.service.spool;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.amazonaws.kinesisvideo.auth.KinesisVideoCredentialsProvider;
+import com.amazonaws.kinesisvideo.client.KinesisVideoClientConfiguration;
+import com.amazonaws.kinesisvideo.common.exception.KinesisVideoException;
+import com.amazonaws.kinesisvideo.common.function.Consumer;
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import com.amazonaws.kinesisvideo.producer.StreamDescription;
+import com.amazonaws.kinesisvideo.producer.client.KinesisVideoServiceClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Offline spool tests
+ */
+public class OfflineSpoolTest {
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+    private static final long PROBE_INTERVAL_IN_MILLIS = 10;
+    private static final String STREAM_NAME = "stream";
+    private static final String DATA_ENDPOINT = "https://localhost";
+    private static final String CONTAINER_TYPE = "video/h264";
+    private static final long STREAM_START_TIME_IN_MILLIS = 1000;
+    private static final byte[] EBML_HEADER_ID = { 0x1A, 0x45, (byte) 0xDF, (byte) 0xA3 };
+    private static final byte[] CLUSTER_ID = { 0x1F, 0x43, (byte) 0xB6, 0x75 };
+    private static final byte[] HEADER = concat(EBML_HEADER_ID, filler(20, 0x11));
+    private static final Pattern ACK_TIMECODE = Pattern.compile("\"FragmentTimecode\":(\\d+)");
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+        }
+    });
+    private final FakeServiceClient mServiceClient = new FakeServiceClient();
+    private final AckCollector mAcks = new AckCollector();
+    private final CompletionRecorder mCompletion = new CompletionRecorder();
+    private File mDirectory;
+    private OfflineSpool mSpool;
+
+    @Before
+    public void createSpool() throws IOException {
+        mDirectory = Files.createTempDirectory("spool").toFile();
+    }
+
+    @After
+    public void deleteSpool() {
+        if (mSpool != null) {
+            mSpool.close();
+        }
+
+        delete(mDirectory);
+    }
+
+    @Test
+    public void backfillsTheSpooledFragmentsInTheRecordingOrder() throws Exception {
+        final byte[] first = cluster(1, 0x22);
+        final byte[] second = cluster(2, 0x33);
+        final byte[] third = cluster(3, 0x44);
+        mSpool = spoolBuilder()
+                .maxSegmentSize(1)
+                .build();
+        mSpool.attach(mServiceClient, null);
+        mSpool.cacheDataEndpoint(STREAM_NAME, DATA_ENDPOINT);
+        mSpool.goOffline();
+
+        spool(new ByteArrayInputStream(concat(HEADER, first, second, third)));
+        assertTrue(mCompletion.await());
+        assertNull(mCompletion.mException);
+        assertTrue(mAcks.await());
+        assertEquals(Arrays.asList(1L, 2L, 3L), mAcks.getPersistedTimecodes());
+
+        final List<SpoolSegment> segments = mSpool.getSpooledSegments(STREAM_NAME);
+        assertEquals(3, segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            assertEquals(i + 1, segments.get(i).getFirstFragmentTimecode());
+            assertEquals(1, segments.get(i).getFragmentCount());
+        }
+
+        assertTrue(mServiceClient.mPuts.isEmpty());
+        mServiceClient.mReachable = true;
+        awaitEmptySpool();
+
+        // Every segment is a session of its own starting with the header
+        assertEquals(3, mServiceClient.mPuts.size());
+        assertArrayEquals(concat(HEADER, first), mServiceClient.mPuts.get(0));
+        assertArrayEquals(concat(HEADER, second), mServiceClient.mPuts.get(1));
+        assertArrayEquals(concat(HEADER, third), mServiceClient.mPuts.get(2));
+        assertFalse(mSpool.isOffline());
+    }
+
+    @Test
+    public void handsOverAtTheNextClusterBoundary() throws Exception {
+        final byte[] first = cluster(1, 0x22);
+        final byte[] second = cluster(2, 0x33);
+        final byte[] third = cluster(3, 0x44);
+        mSpool = spoolBuilder().build();
+        mSpool.attach(mServiceClient, null);
+        mSpool.cacheDataEndpoint(STREAM_NAME, DATA_ENDPOINT);
+        mSpool.goOffline();
+
+        final PipedInputStream dataStream = new PipedInputStream(1024);
+        final PipedOutputStream dataOutputStream = new PipedOutputStream(dataStream);
+        spool(dataStream);
+        dataOutputStream.write(concat(HEADER, first, second));
+        dataOutputStream.flush();
+        mAcks.awaitPersisted(1);
+
+        mServiceClient.mReachable = true;
+        awaitOnline();
+        assertTrue(mServiceClient.mPuts.isEmpty());
+
+        // The second fragment is completed by the boundary of the third one which goes to the network instead
+        dataOutputStream.write(third);
+        dataOutputStream.flush();
+        assertTrue(mCompletion.await());
+        assertNotNull(mCompletion.mException);
+        assertTrue(mAcks.await());
+        assertEquals(Arrays.asList(1L, 2L), mAcks.getPersistedTimecodes());
+
+        final List<SpoolSegment> segments = mSpool.getSpooledSegments(STREAM_NAME);
+        assertEquals(1, segments.size());
+        assertEquals(2, segments.get(0).getFragmentCount());
+        assertEquals(1, segments.get(0).getFirstFragmentTimecode());
+        assertEquals(2, segments.get(0).getLastFragmentTimecode());
+
+        // The next session caching the endpoint backfills what was spooled before the hand-over
+        mSpool.cacheDataEndpoint(STREAM_NAME, DATA_ENDPOINT);
+        awaitEmptySpool();
+        assertEquals(1, mServiceClient.mPuts.size());
+        assertArrayEquals(concat(HEADER, first, second), mServiceClient.mPuts.get(0));
+        dataOutputStream.close();
+    }
+
+    @Test
+    public void detectsConnectivityErrorsInTheCauses() {
+        assertTrue(OfflineSpool.isConnectivityError(new KinesisVideoException(new ConnectException())));
+        assertTrue(OfflineSpool.isConnectivityError(
+                new RuntimeException(new KinesisVideoException(new ConnectException()))));
+        assertFalse(OfflineSpool.isConnectivityError(new KinesisVideoException("Access denied")));
+        assertFalse(OfflineSpool.isConnectivityError(null));
+    }
+
+    private OfflineSpool.Builder spoolBuilder() {
+        return OfflineSpool.builder()
+                .directory(mDirectory)
+                .backfillSessions(1)
+                .probeIntervalMillis(PROBE_INTERVAL_IN_MILLIS)
+                .log(mLog);
+    }
+
+    private void spool(final InputStream dataStream) throws KinesisVideoException {
+        mSpool.spool(STREAM_NAME, CONTAINER_TYPE, STREAM_START_TIME_IN_MILLIS, true, dataStream, mAcks,
+                mCompletion);
+    }
+
+    private void awaitOnline() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+        while (mSpool.isOffline()) {
+            assertTrue("Spool didn't go online", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitEmptySpool() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+        while (!mSpool.getSpooledSegments(STREAM_NAME).isEmpty()) {
+            assertTrue("Spool wasn't backfilled", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Cluster starting with a single byte timecode
+     */
+    private static byte[] cluster(final int timecode, final int value) {
+        return concat(CLUSTER_ID, new byte[] { (byte) 0xFF, (byte) 0xE7, (byte) 0x81, (byte) timecode },
+                filler(40, value));
+    }
+
+    private static int countClusters(final byte[] data) {
+        int count = 0;
+        for (int i = 0; i + CLUSTER_ID.length <= data.length; i++) {
+            if (Arrays.equals(CLUSTER_ID, Arrays.copyOfRange(data, i, i + CLUSTER_ID.length))) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static void delete(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+
+        assertTrue(file.delete());
+    }
+
+    private static byte[] filler(final int length, final int value) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (final byte[] part : parts) {
+            stream.write(part, 0, part.length);
+        }
+
+        return stream.toByteArray();
+    }
+
+    /**
+     * Reads the ack stream of a session to the end
+     */
+    private static class AckCollector implements Consumer<InputStream> {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private final StringBuffer mAcks = new StringBuffer();
+
+        @Override
+        public void accept(final InputStream inputStream) {
+            try {
+                final byte[] buffer = new byte[256];
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    mAcks.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
+                }
+            } catch (final IOException e) {
+                fail(e.toString());
+            } finally {
+                mDone.countDown();
+            }
+        }
+
+        /**
+         * Waits for the end of the ack stream which starts with the status line of the response
+         */
+        boolean await() throws InterruptedException {
+            return mDone.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS)
+                    && mAcks.toString().startsWith("HTTP/1.1 200 OK\r\n");
+        }
+
+        void awaitPersisted(final int count) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+            while (getPersistedTimecodes().size() < count) {
+                assertTrue("Fragments weren't acked", System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+        }
+
+        List<Long> getPersistedTimecodes() {
+            final List<Long> timecodes = new ArrayList<Long>();
+            final Matcher matcher = ACK_TIMECODE.matcher(mAcks);
+            while (matcher.find()) {
+                timecodes.add(Long.parseLong(matcher.group(1)));
+            }
+
+            return timecodes;
+        }
+    }
+
+    /**
+     * Keeps the exception the session completed with
+     */
+    private static class CompletionRecorder implements Consumer<Exception> {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile Exception mException;
+
+        @Override
+        public void accept(@Nullable final Exception exception) {
+            mException = exception;
+            mDone.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return mDone.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Service client which is unreachable until told otherwise and persists every fragment it is sent
+     */
+    private static class FakeServiceClient implements KinesisVideoServiceClient {
+        private final List<byte[]> mPuts = Collections.synchronizedList(new ArrayList<byte[]>());
+        private volatile boolean mReachable;
+
+        @Override
+        public void initialize(@Nonnull final KinesisVideoClientConfiguration configuration) {
+        }
+
+        @Override
+        public String createStream(@Nonnull final String streamName,
+                                   @Nonnull final String deviceName,
+                                   @Nonnull final String contentType,
+                                   @Nullable final String kmsKeyId,
+                                   final long retentionPeriodInHours,
+                                   final long timeoutInMillis,
+                                   @Nullable final KinesisVideoCredentialsProvider credentialsProvider) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StreamDescription describeStream(@Nonnull final String streamName,
+                                                final long timeoutInMillis,
+                                                @Nullable final KinesisVideoCredentialsProvider credentialsProvider) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteStream(@Nonnull final String streamName,
+                                 @Nonnull final String version,
+                                 final Date creationTime,
+                                 final long timeoutInMillis,
+                                 @Nullable final KinesisVideoCredentialsProvider credentialsProvider) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void tagStream(@Nonnull final String streamArn,
+                              @Nullable final Map<String, String> tags,
+                              final long timeoutInMillis,
+                              @Nullable final KinesisVideoCredentialsProvider credentialsProvider) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getDataEndpoint(@Nonnull final String streamName,
+                                      @Nonnull final String apiName,
+                                      final long timeoutInMillis,
+                                      @Nullable final KinesisVideoCredentialsProvider credentialsProvider)
+                throws KinesisVideoException {
+            if (!mReachable) {
+                throw new KinesisVideoException(new ConnectException("Network is unreachable"));
+            }
+
+            return DATA_ENDPOINT;
+        }
+
+        @Override
+        public void putMedia(@Nonnull final String streamName,
+                             @Nonnull final String containerType,
+                             final long streamStartTimeInMillis,
+                             final boolean absoluteFragmentTimes,
+                             final boolean ackRequired,
+                             @Nonnull final String dataEndpoint,
+                             final long timeoutInMillis,
+                             @Nullable final KinesisVideoCredentialsProvider credentialsProvider,
+                             @Nonnull final InputStream dataStream,
+                             @Nonnull final Consumer<InputStream> acksConsumer,
+                             @Nullable final Consumer<Exception> completionCallback)
+                throws KinesisVideoException {
+            assertEquals(STREAM_NAME, streamName);
+            assertEquals(CONTAINER_TYPE, containerType);
+            assertEquals(STREAM_START_TIME_IN_MILLIS, streamStartTimeInMillis);
+            assertTrue(absoluteFragmentTimes);
+
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            try {
+                final byte[] buffer = new byte[256];
+                int bytesRead;
+                while ((bytesRead = dataStream.read(buffer)) != -1) {
+                    data.write(buffer, 0, bytesRead);
+                }
+            } catch (final IOException e) {
+                throw new KinesisVideoException(e);
+            }
+
+            mPuts.add(data.toByteArray());
+            final StringBuilder acks = new StringBuilder("HTTP/1.1 200 OK\r\n");
+            for (int i = 0; i < countClusters(data.toByteArray()); i++) {
+                acks.append("{\"EventType\":\"PERSISTED\"}");
+            }
+
+            acksConsumer.accept(new ByteArrayInputStream(acks.toString().getBytes(StandardCharsets.UTF_8)));
+            if (completionCallback != null) {
+                completionCallback.accept(null);
+            }
+        }
+    }
+}
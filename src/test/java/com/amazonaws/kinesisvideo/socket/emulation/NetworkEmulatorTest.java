@@ -0,0 +1,176 @@
+package com.amazonaws.kinesisvideo.socket.emulation;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import org.junit.Test;
+
+/**
+ * Network emulator tests
+ */
+public class NetworkEmulatorTest {
+    private static final long SEED = 42;
+    private static final int TIMEOUT_IN_MILLIS = 5000;
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+        }
+    });
+
+    @Test
+    public void delaysTheSegments() throws IOException {
+        final NetworkConditions conditions = NetworkConditions.builder()
+                .withOneWayDelay(DelayDistribution.constant(100))
+                .build();
+        final DelayLine line = new DelayLine(conditions, 0, new Random(SEED));
+        final byte[] data = filler(10);
+
+        final long start = System.nanoTime();
+        line.put(data, 0, data.length);
+        assertArrayEquals(data, line.take(TIMEOUT_IN_MILLIS));
+        assertTrue(System.nanoTime() - start >= 100 * 1000 * 1000L);
+    }
+
+    @Test
+    public void holdsUpTheStalledSegments() throws IOException {
+        final NetworkConditions conditions = NetworkConditions.builder()
+                .withStalls(1, DelayDistribution.constant(500))
+                .build();
+        final DelayLine line = new DelayLine(conditions, 0, new Random(SEED));
+        final byte[] data = filler(10);
+        line.put(data, 0, data.length);
+
+        try {
+            line.take(50);
+            fail("Stalled segment was delivered");
+        } catch (final SocketTimeoutException e) {
+            // Expected
+        }
+
+        assertArrayEquals(data, line.take(TIMEOUT_IN_MILLIS));
+        line.endOfStream();
+        assertNull(line.take(TIMEOUT_IN_MILLIS));
+    }
+
+    @Test
+    public void blocksTheWriterOnAFullWindow() throws Exception {
+        final NetworkConditions conditions = NetworkConditions.builder()
+                .withWindowSize(100)
+                .build();
+        final DelayLine line = new DelayLine(conditions, 0, new Random(SEED));
+        final byte[] data = filler(100);
+        line.put(data, 0, data.length);
+
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    line.put(data, 0, 1);
+                } catch (final IOException e) {
+                    fail(e.toString());
+                }
+            }
+        });
+        writer.start();
+        writer.join(100);
+        assertTrue(writer.isAlive());
+
+        assertArrayEquals(data, line.take(TIMEOUT_IN_MILLIS));
+        writer.join(TIMEOUT_IN_MILLIS);
+        assertFalse(writer.isAlive());
+        assertEquals(1, line.take(TIMEOUT_IN_MILLIS).length);
+    }
+
+    @Test
+    public void deliversTheStreamInOrder() throws IOException {
+        final NetworkConditions conditions = NetworkConditions.builder()
+                .withOneWayDelay(DelayDistribution.uniform(0, 5))
+                .withStalls(0.1, DelayDistribution.constant(10))
+                .build();
+        final byte[] data = new byte[20 * DelayLine.SEGMENT_SIZE];
+        new Random(SEED).nextBytes(data);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        final NetworkEmulator emulator = new NetworkEmulator(conditions, SEED, mLog);
+        try {
+            final OutputStream outputStream = emulator.emulate(received);
+            final Random random = new Random(SEED);
+            int offset = 0;
+            while (offset < data.length) {
+                final int length = Math.min(data.length - offset, 1 + random.nextInt(3000));
+                outputStream.write(data, offset, length);
+                offset += length;
+            }
+
+            // Delivers the bytes in flight
+            outputStream.close();
+        } finally {
+            emulator.close();
+        }
+
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    public void dropsTheConnectionsAfterTheSameBytesForTheSameSeed() {
+        final NetworkConditions conditions = NetworkConditions.builder()
+                .withDisconnects(1, 1000, 5000)
+                .build();
+
+        final long[] first = bytesBeforeDisconnects(conditions, SEED);
+        assertArrayEquals(first, bytesBeforeDisconnects(conditions, SEED));
+        for (final long bytes : first) {
+            assertTrue(bytes >= 1000 && bytes <= 5000);
+        }
+
+        assertFalse(first[0] == first[1] && first[1] == first[2]);
+    }
+
+    /**
+     * Writes a byte at a time into three connections until they are dropped
+     */
+    private long[] bytesBeforeDisconnects(final NetworkConditions conditions, final long seed) {
+        final long[] bytes = new long[3];
+        final NetworkEmulator emulator = new NetworkEmulator(conditions, seed, mLog);
+        try {
+            for (int i = 0; i < bytes.length; i++) {
+                final OutputStream outputStream = emulator.emulate(new ByteArrayOutputStream());
+                try {
+                    while (true) {
+                        outputStream.write(0);
+                        bytes[i]++;
+                    }
+                } catch (final SocketException e) {
+                    // Dropped
+                } catch (final IOException e) {
+                    fail(e.toString());
+                }
+            }
+        } finally {
+            emulator.close();
+        }
+
+        assertEquals(bytes.length, emulator.getDisconnectCount());
+        return bytes;
+    }
+
+    private static byte[] filler(final int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,215 @@
+package com.amazonaws.kinesisvideo.stream.recording;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.amazonaws.kinesisvideo.common.logging.Log;
+import com.amazonaws.kinesisvideo.common.logging.OutputChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Write-behind recording sink tests
+ */
+public class AsyncRecordingSinkTest {
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+    private static final int QUEUE_CAPACITY = 2;
+    private static final byte[] EBML_HEADER_ID = { 0x1A, 0x45, (byte) 0xDF, (byte) 0xA3 };
+    private static final byte[] CLUSTER_ID = { 0x1F, 0x43, (byte) 0xB6, 0x75 };
+    private static final byte[] HEADER = concat(EBML_HEADER_ID, filler(20, 0x11));
+
+    private final Log mLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+        }
+    });
+    private final CountDownLatch mFileOpening = new CountDownLatch(1);
+    private final CountDownLatch mFileOpened = new CountDownLatch(1);
+    private Path mDirectory;
+
+    /**
+     * Holds the writer in the log call announcing the first file, so the writes pile up in the queue
+     */
+    private final Log mBlockingLog = new Log(new OutputChannel() {
+        @Override
+        public void print(final int level, @Nonnull final String tag, @Nonnull final String message) {
+            if (message.startsWith("Recording stream data into")) {
+                mFileOpening.countDown();
+                try {
+                    mFileOpened.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    });
+
+    @Before
+    public void createDirectory() throws IOException {
+        mDirectory = Files.createTempDirectory("recording");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        final File[] files = mDirectory.toFile().listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+
+        Files.delete(mDirectory);
+    }
+
+    @Test
+    public void recordsTheStream() throws IOException {
+        final byte[] stream = concat(HEADER, CLUSTER_ID, filler(100, 0x22), CLUSTER_ID, filler(100, 0x33));
+        final AsyncRecordingSink sink = AsyncRecordingSink.builder()
+                .filePath(file("stream.mkv"))
+                .log(mLog)
+                .build();
+        for (int offset = 0; offset < stream.length; offset += 7) {
+            sink.write(stream, offset, Math.min(7, stream.length - offset));
+        }
+
+        sink.close();
+
+        assertArrayEquals(stream, read("stream.mkv"));
+        assertEquals(1, sink.getFilesWritten());
+        assertEquals(0, sink.getDroppedChunks());
+    }
+
+    @Test
+    public void dropsWhenFullAndResyncsAtTheNextBoundary() throws Exception {
+        final byte[] first = concat(HEADER, CLUSTER_ID, filler(10, 0x22));
+        final byte[] queued = filler(10, 0x33);
+        final byte[] dropped = filler(10, 0x44);
+        final byte[] afterDrop = concat(filler(10, 0x55), CLUSTER_ID, filler(10, 0x66));
+        final AsyncRecordingSink sink = AsyncRecordingSink.builder()
+                .filePath(file("stream.mkv"))
+                .queueCapacity(QUEUE_CAPACITY)
+                .overflowPolicy(RecordingOverflowPolicy.DROP)
+                .log(mBlockingLog)
+                .build();
+
+        sink.write(first, 0, first.length);
+        assertTrue(mFileOpening.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+
+        // The queue has a slot more than its capacity for the close marker
+        for (int i = 0; i <= QUEUE_CAPACITY; i++) {
+            sink.write(queued, 0, queued.length);
+        }
+
+        sink.write(dropped, 0, dropped.length);
+        assertEquals(1, sink.getDroppedChunks());
+        assertEquals(dropped.length, sink.getDroppedBytes());
+
+        mFileOpened.countDown();
+        awaitEmptyQueue(sink);
+        // The data following the drop is discarded up to the next cluster
+        sink.write(afterDrop, 0, afterDrop.length);
+        sink.close();
+
+        assertArrayEquals(concat(first, queued, queued, queued, CLUSTER_ID, filler(10, 0x66)),
+                read("stream.mkv"));
+        assertEquals(1, sink.getDroppedChunks());
+    }
+
+    @Test
+    public void blocksWhenFull() throws Exception {
+        final byte[] first = concat(HEADER, CLUSTER_ID, filler(10, 0x22));
+        final byte[] queued = filler(10, 0x33);
+        final AsyncRecordingSink sink = AsyncRecordingSink.builder()
+                .filePath(file("stream.mkv"))
+                .queueCapacity(QUEUE_CAPACITY)
+                .overflowPolicy(RecordingOverflowPolicy.BLOCK)
+                .log(mBlockingLog)
+                .build();
+
+        sink.write(first, 0, first.length);
+        assertTrue(mFileOpening.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+        for (int i = 0; i <= QUEUE_CAPACITY; i++) {
+            sink.write(queued, 0, queued.length);
+        }
+
+        final Thread blocked = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sink.write(queued, 0, queued.length);
+            }
+        });
+        blocked.start();
+        blocked.join(200);
+        assertTrue(blocked.isAlive());
+
+        mFileOpened.countDown();
+        blocked.join(TIMEOUT_IN_MILLIS);
+        assertFalse(blocked.isAlive());
+        sink.close();
+
+        assertArrayEquals(concat(first, queued, queued, queued, queued), read("stream.mkv"));
+        assertEquals(0, sink.getDroppedChunks());
+    }
+
+    @Test
+    public void rotatesOnClusterBoundariesWithTheHeader() throws IOException {
+        final byte[] firstCluster = concat(CLUSTER_ID, filler(50, 0x22));
+        final byte[] secondCluster = concat(CLUSTER_ID, filler(50, 0x33));
+        final byte[] thirdCluster = concat(CLUSTER_ID, filler(50, 0x44));
+        final byte[] stream = concat(HEADER, firstCluster, secondCluster, thirdCluster);
+        final AsyncRecordingSink sink = AsyncRecordingSink.builder()
+                .filePath(file("stream.mkv"))
+                .maxFileSizeBytes(HEADER.length + 1)
+                .log(mLog)
+                .build();
+        sink.write(stream, 0, stream.length);
+        sink.close();
+
+        assertEquals(3, sink.getFilesWritten());
+        assertArrayEquals(concat(HEADER, firstCluster), read("stream-00000.mkv"));
+        assertArrayEquals(concat(HEADER, secondCluster), read("stream-00001.mkv"));
+        assertArrayEquals(concat(HEADER, thirdCluster), read("stream-00002.mkv"));
+    }
+
+    private static void awaitEmptyQueue(final AsyncRecordingSink sink) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+        while (sink.getQueuedChunks() > 0) {
+            assertTrue("Queue wasn't drained", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private String file(final String name) {
+        return mDirectory.resolve(name).toString();
+    }
+
+    private byte[] read(final String name) throws IOException {
+        return Files.readAllBytes(mDirectory.resolve(name));
+    }
+
+    private static byte[] filler(final int length, final int value) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (final byte[] part : parts) {
+            stream.write(part, 0, part.length);
+        }
+
+        return stream.toByteArray();
+    }
+}